@@ -25,7 +25,6 @@ import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import io.github.dsheirer.alias.id.AliasID;
 import io.github.dsheirer.alias.id.broadcast.BroadcastChannel;
 import io.github.dsheirer.alias.id.esn.Esn;
-import io.github.dsheirer.alias.id.priority.Priority;
 import io.github.dsheirer.alias.id.radio.Radio;
 import io.github.dsheirer.alias.id.radio.RadioRange;
 import io.github.dsheirer.alias.id.status.UnitStatusID;
@@ -42,24 +41,30 @@ import io.github.dsheirer.identifier.radio.RadioIdentifier;
 import io.github.dsheirer.identifier.status.UnitStatusIdentifier;
 import io.github.dsheirer.identifier.status.UserStatusIdentifier;
 import io.github.dsheirer.identifier.talkgroup.TalkgroupIdentifier;
+import io.github.dsheirer.identifier.tone.AmbeTone;
+import io.github.dsheirer.identifier.tone.Tone;
 import io.github.dsheirer.identifier.tone.ToneIdentifier;
 import io.github.dsheirer.identifier.tone.ToneSequence;
 import io.github.dsheirer.protocol.Protocol;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 /**
  * List of aliases that share the same alias list name and provides convenient methods for looking up alias
@@ -74,9 +79,12 @@ public class AliasList
     private Map<Integer,Alias> mUnitStatusMap = new HashMap<>();
     private Map<Integer,Alias> mUserStatusMap = new HashMap<>();
     private Map<ToneSequence,Alias> mToneSequenceMap = new HashMap<>();
+    private volatile Map<AmbeTone,List<Map.Entry<ToneSequence,Alias>>> mToneSequenceIndex;
     private boolean mHasAliasActions = false;
     private String mName;
     private ObservableList<Alias> mAliases = FXCollections.observableArrayList(Alias.extractor());
+    private Map<IdentifierCollection,AliasResolution> mResolutionCache = new WeakHashMap<>();
+    private volatile long mVersion = 0;
 
     /**
      * List of aliases where all aliases share the same list name.  Contains
@@ -87,6 +95,10 @@ public class AliasList
     public AliasList(String name)
     {
         mName = name;
+
+        //The alias extractor reports changes to alias identifiers and attributes made directly against an alias
+        //(e.g. AliasModel.updateBroadcastChannel()) as list updates, so that cached resolutions are invalidated.
+        mAliases.addListener((ListChangeListener<Alias>)change -> mVersion++);
     }
 
     /**
@@ -116,6 +128,8 @@ public class AliasList
         {
             mAliases.add(alias);
         }
+
+        mVersion++;
     }
 
     /**
@@ -248,7 +262,11 @@ public class AliasList
                             }
                             else
                             {
-                                mToneSequenceMap.put(toneSequence, alias);
+                                synchronized(mToneSequenceMap)
+                                {
+                                    mToneSequenceMap.put(toneSequence, alias);
+                                    mToneSequenceIndex = null;
+                                }
                             }
                         }
                         break;
@@ -277,11 +295,27 @@ public class AliasList
         mESNMap.values().removeAll(collection);
         mUnitStatusMap.values().removeAll(collection);
         mUserStatusMap.values().removeAll(collection);
-        mToneSequenceMap.values().removeAll(collection);
+
+        synchronized(mToneSequenceMap)
+        {
+            mToneSequenceMap.values().removeAll(collection);
+            mToneSequenceIndex = null;
+        }
+
+        mVersion++;
 
         validate();
     }
 
+    /**
+     * Modification counter for this alias list.  The value changes each time an alias is added, removed or updated
+     * so that cached alias resolutions can be detected as stale.
+     */
+    public long getVersion()
+    {
+        return mVersion;
+    }
+
     /**
      * Identifies all aliases with an alias identifier that has the overlap flag set, resets the flag, and then readds
      * each alias back to this alias list so that overlap can be detected again.
@@ -448,13 +482,7 @@ public class AliasList
 
                         if(toneSequence != null && toneSequence.hasTones())
                         {
-                            for(Map.Entry<ToneSequence,Alias> entry: mToneSequenceMap.entrySet())
-                            {
-                                if(entry.getKey().isContainedIn(toneSequence))
-                                {
-                                    return toList(entry.getValue());
-                                }
-                            }
+                            return toList(getToneSequenceAlias(toneSequence));
                         }
                     }
                     break;
@@ -464,6 +492,57 @@ public class AliasList
         return Collections.emptyList();
     }
 
+    /**
+     * Finds the alias with a tone sequence that is contained in the tone sequence argument.  Alias tone sequences are
+     * indexed by their first tone, so only the aliases whose first tone occurs in the argument sequence are checked.
+     */
+    private Alias getToneSequenceAlias(ToneSequence toneSequence)
+    {
+        Map<AmbeTone,List<Map.Entry<ToneSequence,Alias>>> index = mToneSequenceIndex;
+
+        if(index == null)
+        {
+            synchronized(mToneSequenceMap)
+            {
+                index = new EnumMap<>(AmbeTone.class);
+
+                for(Map.Entry<ToneSequence,Alias> entry: mToneSequenceMap.entrySet())
+                {
+                    if(entry.getKey().hasTones())
+                    {
+                        index.computeIfAbsent(entry.getKey().getTones().get(0).getAmbeTone(), tone -> new ArrayList<>())
+                            .add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                    }
+                }
+
+                mToneSequenceIndex = index;
+            }
+        }
+
+        EnumSet<AmbeTone> checked = EnumSet.noneOf(AmbeTone.class);
+
+        for(Tone tone: toneSequence.getTones())
+        {
+            if(checked.add(tone.getAmbeTone()))
+            {
+                List<Map.Entry<ToneSequence,Alias>> candidates = index.get(tone.getAmbeTone());
+
+                if(candidates != null)
+                {
+                    for(Map.Entry<ToneSequence,Alias> candidate: candidates)
+                    {
+                        if(candidate.getKey().isContainedIn(toneSequence))
+                        {
+                            return candidate.getValue();
+                        }
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
     private static List<Alias> toList(Alias alias)
     {
         if(alias != null)
@@ -477,26 +556,71 @@ public class AliasList
     }
 
     /**
-     * Indicates if any of the identifiers contain a broadcast channel for streaming of audio.
-     * @param identifierCollection to inspect
-     * @return true if the identifier collection is designated for streaming to one or more channels.
+     * Resolves all identifiers in the collection against this alias list.  The resolution is cached against the
+     * collection instance and reused until either the collection or this alias list is modified.  When only the
+     * collection has changed, alias matches for identifiers that were already resolved are carried forward so that
+     * only the added identifiers are looked up.
+     *
+     * @param identifierCollection to resolve
+     * @return alias resolution for the current state of the collection
      */
-    public boolean isStreamable(IdentifierCollection identifierCollection)
+    public AliasResolution resolve(IdentifierCollection identifierCollection)
     {
+        long aliasListVersion = mVersion;
+        int identifierCollectionVersion = identifierCollection.getVersion();
+
+        AliasResolution previous;
+
+        synchronized(mResolutionCache)
+        {
+            previous = mResolutionCache.get(identifierCollection);
+        }
+
+        if(previous != null && previous.getAliasListVersion() == aliasListVersion)
+        {
+            if(previous.getIdentifierCollectionVersion() == identifierCollectionVersion)
+            {
+                return previous;
+            }
+        }
+        else
+        {
+            previous = null;
+        }
+
+        Map<Identifier,List<Alias>> identifierAliases = new HashMap<>();
+
         for(Identifier identifier: identifierCollection.getIdentifiers())
         {
-            List<Alias> aliases = getAliases(identifier);
+            List<Alias> aliases = previous != null ? previous.getAliases(identifier) : null;
 
-            for(Alias alias: aliases)
+            if(aliases == null)
             {
-                if(alias != null && alias.isStreamable())
-                {
-                    return true;
-                }
+                aliases = getAliases(identifier);
             }
+
+            identifierAliases.put(identifier, aliases);
         }
 
-        return false;
+        AliasResolution resolution = new AliasResolution(identifierAliases, aliasListVersion,
+            identifierCollectionVersion);
+
+        synchronized(mResolutionCache)
+        {
+            mResolutionCache.put(identifierCollection, resolution);
+        }
+
+        return resolution;
+    }
+
+    /**
+     * Indicates if any of the identifiers contain a broadcast channel for streaming of audio.
+     * @param identifierCollection to inspect
+     * @return true if the identifier collection is designated for streaming to one or more channels.
+     */
+    public boolean isStreamable(IdentifierCollection identifierCollection)
+    {
+        return resolve(identifierCollection).isStreamable();
     }
 
     /**
@@ -506,20 +630,7 @@ public class AliasList
      */
     public boolean isRecordable(IdentifierCollection identifierCollection)
     {
-        for(Identifier identifier: identifierCollection.getIdentifiers())
-        {
-            List<Alias> aliases = getAliases(identifier);
-
-            for(Alias alias: aliases)
-            {
-                if(alias != null && alias.isRecordable())
-                {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return resolve(identifierCollection).isRecordable();
     }
 
     /**
@@ -539,22 +650,7 @@ public class AliasList
      */
     public int getAudioPlaybackPriority(IdentifierCollection identifierCollection)
     {
-        int priority = Priority.DEFAULT_PRIORITY;
-
-        for(Identifier identifier: identifierCollection.getIdentifiers())
-        {
-            List<Alias> aliases = getAliases(identifier);
-
-            for(Alias alias: aliases)
-            {
-                if(alias != null && alias.getPlaybackPriority() < priority)
-                {
-                    priority = alias.getPlaybackPriority();
-                }
-            }
-        }
-
-        return priority;
+        return resolve(identifierCollection).getPlaybackPriority();
     }
 
     /**
@@ -564,28 +660,7 @@ public class AliasList
      */
     public List<BroadcastChannel> getBroadcastChannels(IdentifierCollection identifierCollection)
     {
-        List<BroadcastChannel> channels = new ArrayList<>();
-
-        for(Identifier identifier: identifierCollection.getIdentifiers())
-        {
-            List<Alias> aliases = getAliases(identifier);
-
-            for(Alias alias: aliases)
-            {
-                if(alias != null && alias.isStreamable())
-                {
-                    for(BroadcastChannel broadcastChannel: alias.getBroadcastChannels())
-                    {
-                        if(!channels.contains(broadcastChannel))
-                        {
-                            channels.add(broadcastChannel);
-                        }
-                    }
-                }
-            }
-        }
-
-        return channels;
+        return new ArrayList<>(resolve(identifierCollection).getBroadcastChannels());
     }
 
     /**
@@ -595,34 +670,58 @@ public class AliasList
     {
         private Map<Integer,Alias> mTalkgroupAliasMap = new TreeMap<>();
         private Map<TalkgroupRange, Alias> mTalkgroupRangeAliasMap = new HashMap<>();
+        private volatile IntervalIndex<Alias> mIndex;
 
         public TalkgroupAliasList()
         {
         }
 
-        public Alias getAlias(TalkgroupIdentifier identifier)
+        /**
+         * Lookup index for the current set of values and ranges.  The index is rebuilt on first use after any change.
+         */
+        private IntervalIndex<Alias> getIndex()
         {
-            int value = identifier.getValue();
+            IntervalIndex<Alias> index = mIndex;
 
-            Alias mapValue = mTalkgroupAliasMap.get(value);
-            if (mapValue != null)
+            if(index == null)
             {
-                return mapValue;
-            }
-
-            for(Map.Entry<TalkgroupRange, Alias> entry : mTalkgroupRangeAliasMap.entrySet())
-            {
-                if(entry.getKey().contains(value))
+                synchronized(this)
                 {
-                    return entry.getValue();
+                    index = mIndex;
+
+                    if(index == null)
+                    {
+                        IntervalIndex.Builder<Alias> builder = IntervalIndex.builder();
+
+                        for(Map.Entry<Integer,Alias> entry: mTalkgroupAliasMap.entrySet())
+                        {
+                            builder.add(entry.getKey(), entry.getValue());
+                        }
+
+                        for(Map.Entry<TalkgroupRange,Alias> entry: mTalkgroupRangeAliasMap.entrySet())
+                        {
+                            builder.add(entry.getKey().getMinTalkgroup(), entry.getKey().getMaxTalkgroup(),
+                                entry.getValue());
+                        }
+
+                        index = builder.build();
+                        mIndex = index;
+                    }
                 }
             }
 
-            return null;
+            return index;
+        }
+
+        public Alias getAlias(TalkgroupIdentifier identifier)
+        {
+            return getIndex().get(identifier.getValue());
         }
 
-        public void add(Talkgroup talkgroup, Alias alias)
+        public synchronized void add(Talkgroup talkgroup, Alias alias)
         {
+            mIndex = null;
+
             //Detect talkgroup collisions and set overlap flag for both
             if(mTalkgroupAliasMap.containsKey(talkgroup.getValue()))
             {
@@ -645,8 +744,10 @@ public class AliasList
             mTalkgroupAliasMap.put(talkgroup.getValue(), alias);
         }
 
-        public void add(TalkgroupRange talkgroupRange, Alias alias)
+        public synchronized void add(TalkgroupRange talkgroupRange, Alias alias)
         {
+            mIndex = null;
+
             //Log warning if the new talkgroup range overlaps with any existing ranges
             for(Map.Entry<TalkgroupRange,Alias> entry: mTalkgroupRangeAliasMap.entrySet())
             {
@@ -663,8 +764,9 @@ public class AliasList
         /**
          * Removes the alias from both the talkgroup and the talkgroup range maps.
          */
-        public void remove(Alias alias)
+        public synchronized void remove(Alias alias)
         {
+            mIndex = null;
             mTalkgroupAliasMap.values().removeAll(Collections.singleton(alias));
             mTalkgroupRangeAliasMap.values().removeAll(Collections.singleton(alias));
         }
@@ -677,34 +779,58 @@ public class AliasList
     {
         private Map<Integer,Alias> mRadioAliasMap = new TreeMap<>();
         private Map<RadioRange, Alias> mRadioRangeAliasMap = new HashMap<>();
+        private volatile IntervalIndex<Alias> mIndex;
 
         public RadioAliasList()
         {
         }
 
-        public Alias getAlias(RadioIdentifier identifier)
+        /**
+         * Lookup index for the current set of values and ranges.  The index is rebuilt on first use after any change.
+         */
+        private IntervalIndex<Alias> getIndex()
         {
-            int value = identifier.getValue();
+            IntervalIndex<Alias> index = mIndex;
 
-            Alias mapValue = mRadioAliasMap.get(value);
-            if(mapValue != null)
+            if(index == null)
             {
-                return mapValue;
-            }
-
-            for(Map.Entry<RadioRange, Alias> entry : mRadioRangeAliasMap.entrySet())
-            {
-                if(entry.getKey().contains(value))
+                synchronized(this)
                 {
-                    return entry.getValue();
+                    index = mIndex;
+
+                    if(index == null)
+                    {
+                        IntervalIndex.Builder<Alias> builder = IntervalIndex.builder();
+
+                        for(Map.Entry<Integer,Alias> entry: mRadioAliasMap.entrySet())
+                        {
+                            builder.add(entry.getKey(), entry.getValue());
+                        }
+
+                        for(Map.Entry<RadioRange,Alias> entry: mRadioRangeAliasMap.entrySet())
+                        {
+                            builder.add(entry.getKey().getMinRadio(), entry.getKey().getMaxRadio(),
+                                entry.getValue());
+                        }
+
+                        index = builder.build();
+                        mIndex = index;
+                    }
                 }
             }
 
-            return null;
+            return index;
         }
 
-        public void add(Radio radio, Alias alias)
+        public Alias getAlias(RadioIdentifier identifier)
         {
+            return getIndex().get(identifier.getValue());
+        }
+
+        public synchronized void add(Radio radio, Alias alias)
+        {
+            mIndex = null;
+
             //Detect collisions
             if(mRadioAliasMap.containsKey(radio.getValue()))
             {
@@ -727,8 +853,10 @@ public class AliasList
             mRadioAliasMap.put(radio.getValue(), alias);
         }
 
-        public void add(RadioRange radioRange, Alias alias)
+        public synchronized void add(RadioRange radioRange, Alias alias)
         {
+            mIndex = null;
+
             //Log warning if the new range overlaps with any existing ranges
             for(Map.Entry<RadioRange,Alias> entry: mRadioRangeAliasMap.entrySet())
             {
@@ -745,8 +873,9 @@ public class AliasList
         /**
          * Removes the alias from both the radio and the radio range maps.
          */
-        public void remove(Alias alias)
+        public synchronized void remove(Alias alias)
         {
+            mIndex = null;
             mRadioAliasMap.values().removeAll(Collections.singleton(alias));
             mRadioRangeAliasMap.values().removeAll(Collections.singleton(alias));
         }
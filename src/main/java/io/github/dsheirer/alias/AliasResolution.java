@@ -0,0 +1,166 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.alias;
+
+import io.github.dsheirer.alias.id.broadcast.BroadcastChannel;
+import io.github.dsheirer.alias.id.priority.Priority;
+import io.github.dsheirer.identifier.Identifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of resolving every identifier in an identifier collection against an alias list.  The aggregate
+ * recording, streaming and playback priority decisions are computed once when the resolution is created so that
+ * the audio recording, streaming and playback subsystems can share a single alias lookup for a call.
+ *
+ * Resolutions are immutable and are tagged with the alias list version and the identifier collection version that
+ * they were created from.  The alias list uses these versions to decide when a cached resolution is stale.
+ */
+public class AliasResolution
+{
+    private final long mAliasListVersion;
+    private final int mIdentifierCollectionVersion;
+    private final Map<Identifier,List<Alias>> mIdentifierAliases;
+    private final List<Alias> mAliases = new ArrayList<>();
+    private final List<BroadcastChannel> mBroadcastChannels = new ArrayList<>();
+    private boolean mRecordable = false;
+    private boolean mStreamable = false;
+    private int mPlaybackPriority = Priority.DEFAULT_PRIORITY;
+
+    /**
+     * Constructs an instance
+     * @param identifierAliases map of each identifier to the (possibly empty) list of matching aliases
+     * @param aliasListVersion version of the alias list that produced the alias matches
+     * @param identifierCollectionVersion version of the identifier collection that was resolved
+     */
+    AliasResolution(Map<Identifier,List<Alias>> identifierAliases, long aliasListVersion,
+                    int identifierCollectionVersion)
+    {
+        mIdentifierAliases = Collections.unmodifiableMap(identifierAliases);
+        mAliasListVersion = aliasListVersion;
+        mIdentifierCollectionVersion = identifierCollectionVersion;
+
+        for(List<Alias> aliases: identifierAliases.values())
+        {
+            for(Alias alias: aliases)
+            {
+                if(alias != null && !mAliases.contains(alias))
+                {
+                    mAliases.add(alias);
+
+                    if(alias.isRecordable())
+                    {
+                        mRecordable = true;
+                    }
+
+                    if(alias.isStreamable())
+                    {
+                        mStreamable = true;
+
+                        for(BroadcastChannel broadcastChannel: alias.getBroadcastChannels())
+                        {
+                            if(!mBroadcastChannels.contains(broadcastChannel))
+                            {
+                                mBroadcastChannels.add(broadcastChannel);
+                            }
+                        }
+                    }
+
+                    if(alias.getPlaybackPriority() < mPlaybackPriority)
+                    {
+                        mPlaybackPriority = alias.getPlaybackPriority();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Version of the alias list used to create this resolution
+     */
+    public long getAliasListVersion()
+    {
+        return mAliasListVersion;
+    }
+
+    /**
+     * Version of the identifier collection used to create this resolution
+     */
+    public int getIdentifierCollectionVersion()
+    {
+        return mIdentifierCollectionVersion;
+    }
+
+    /**
+     * Aliases matched to the identifier when the identifier was part of the resolved collection.
+     * @param identifier to lookup
+     * @return list of aliases, or null if the identifier was not part of the resolved collection
+     */
+    public List<Alias> getAliases(Identifier identifier)
+    {
+        return mIdentifierAliases.get(identifier);
+    }
+
+    /**
+     * Distinct set of aliases matched by all identifiers in the resolved collection.
+     */
+    public List<Alias> getAliases()
+    {
+        return Collections.unmodifiableList(mAliases);
+    }
+
+    /**
+     * Indicates if any of the matched aliases are designated for recording.
+     */
+    public boolean isRecordable()
+    {
+        return mRecordable;
+    }
+
+    /**
+     * Indicates if any of the matched aliases are designated for streaming to a broadcast channel.
+     */
+    public boolean isStreamable()
+    {
+        return mStreamable;
+    }
+
+    /**
+     * Lowest (ie highest precedence) audio playback priority specified by the matched aliases, or the default
+     * priority when none of the aliases specify a priority.
+     */
+    public int getPlaybackPriority()
+    {
+        return mPlaybackPriority;
+    }
+
+    /**
+     * Distinct list of streaming broadcast channels specified by the matched aliases.
+     */
+    public List<BroadcastChannel> getBroadcastChannels()
+    {
+        return Collections.unmodifiableList(mBroadcastChannels);
+    }
+}
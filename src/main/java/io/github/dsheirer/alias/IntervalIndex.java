@@ -0,0 +1,323 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.alias;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Immutable lookup index for integer identifier values (ie talkgroups or radio IDs) that supports both exact values
+ * and inclusive value ranges.
+ *
+ * Exact values are held in an open-addressing hash table with primitive int keys so that lookups don't box the value.
+ * Ranges are held in arrays sorted by range start along with a running maximum of the range ends, so that a lookup is
+ * a binary search followed by a short backward scan that stops as soon as no earlier range can reach the value.
+ *
+ * Exact values take precedence over ranges.  When ranges overlap, the containing range with the highest start value
+ * is returned.  Instances are created with a Builder and are safe to share between threads once built.
+ */
+public class IntervalIndex<T>
+{
+    private final static Logger mLog = LoggerFactory.getLogger(IntervalIndex.class);
+
+    private int[] mKeys;
+    private Object[] mValues;
+    private int mMask;
+    private int mShift;
+    private int[] mRangeStarts;
+    private int[] mRangeEnds;
+    private int[] mRangeMaxEnds;
+    private Object[] mRangeValues;
+
+    private IntervalIndex(Builder<T> builder)
+    {
+        //Power of two capacity with a load factor of at most 0.5
+        int capacity = Math.max(Integer.highestOneBit(Math.max(builder.mKeys.size(), 1) * 2 - 1) << 1, 2);
+        mKeys = new int[capacity];
+        mValues = new Object[capacity];
+        mMask = capacity - 1;
+        mShift = Integer.numberOfLeadingZeros(mMask);
+
+        for(int x = 0; x < builder.mKeys.size(); x++)
+        {
+            int key = builder.mKeys.get(x);
+            int slot = slot(key);
+
+            while(mValues[slot] != null && mKeys[slot] != key)
+            {
+                slot = (slot + 1) & mMask;
+            }
+
+            //Later additions replace earlier additions for the same key
+            mKeys[slot] = key;
+            mValues[slot] = builder.mValues.get(x);
+        }
+
+        List<Range<T>> ranges = new ArrayList<>(builder.mRanges);
+        ranges.sort(Comparator.comparingInt(range -> range.mStart));
+
+        int count = ranges.size();
+        mRangeStarts = new int[count];
+        mRangeEnds = new int[count];
+        mRangeMaxEnds = new int[count];
+        mRangeValues = new Object[count];
+
+        int maxEnd = Integer.MIN_VALUE;
+
+        for(int x = 0; x < count; x++)
+        {
+            Range<T> range = ranges.get(x);
+            mRangeStarts[x] = range.mStart;
+            mRangeEnds[x] = range.mEnd;
+            maxEnd = Math.max(maxEnd, range.mEnd);
+            mRangeMaxEnds[x] = maxEnd;
+            mRangeValues[x] = range.mValue;
+        }
+    }
+
+    private int slot(int key)
+    {
+        //Fibonacci hashing - the high bits of the product are the best mixed
+        return (key * 0x9E3779B9) >>> mShift;
+    }
+
+    /**
+     * Looks up the value mapped to the exact key, or the value of a range that contains the key.
+     *
+     * @param key to lookup
+     * @return mapped value or null
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int key)
+    {
+        int slot = slot(key);
+        Object value = mValues[slot];
+
+        while(value != null)
+        {
+            if(mKeys[slot] == key)
+            {
+                return (T)value;
+            }
+
+            slot = (slot + 1) & mMask;
+            value = mValues[slot];
+        }
+
+        return getRange(key);
+    }
+
+    /**
+     * Looks up the value of a range that contains the key
+     */
+    @SuppressWarnings("unchecked")
+    private T getRange(int key)
+    {
+        //Index of the last range that starts at or before the key
+        int index = Arrays.binarySearch(mRangeStarts, key);
+
+        if(index < 0)
+        {
+            index = -index - 2;
+        }
+        else
+        {
+            //Advance to the last of any ranges sharing the same start
+            while(index + 1 < mRangeStarts.length && mRangeStarts[index + 1] == key)
+            {
+                index++;
+            }
+        }
+
+        for(int x = index; x >= 0 && mRangeMaxEnds[x] >= key; x--)
+        {
+            if(mRangeEnds[x] >= key)
+            {
+                return (T)mRangeValues[x];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Number of ranges in this index
+     */
+    public int getRangeCount()
+    {
+        return mRangeStarts.length;
+    }
+
+    /**
+     * Creates a new builder
+     */
+    public static <T> Builder<T> builder()
+    {
+        return new Builder<>();
+    }
+
+    /**
+     * Builder for creating an immutable interval index
+     */
+    public static class Builder<T>
+    {
+        private List<Integer> mKeys = new ArrayList<>();
+        private List<T> mValues = new ArrayList<>();
+        private List<Range<T>> mRanges = new ArrayList<>();
+
+        private Builder()
+        {
+        }
+
+        /**
+         * Adds an exact key mapping
+         */
+        public Builder<T> add(int key, T value)
+        {
+            if(value != null)
+            {
+                mKeys.add(key);
+                mValues.add(value);
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds an inclusive range mapping
+         */
+        public Builder<T> add(int start, int end, T value)
+        {
+            if(value != null)
+            {
+                mRanges.add(new Range<>(Math.min(start, end), Math.max(start, end), value));
+            }
+
+            return this;
+        }
+
+        /**
+         * Creates the index
+         */
+        public IntervalIndex<T> build()
+        {
+            return new IntervalIndex<>(this);
+        }
+    }
+
+    private static class Range<T>
+    {
+        private int mStart;
+        private int mEnd;
+        private T mValue;
+
+        private Range(int start, int end, T value)
+        {
+            mStart = start;
+            mEnd = end;
+            mValue = value;
+        }
+    }
+
+    /**
+     * Compares lookup throughput of the index against the linear range scan that it replaces for 10k and 100k
+     * ranges, with one exact value per range.
+     */
+    public static void main(String[] args)
+    {
+        for(int count: new int[]{10_000, 100_000})
+        {
+            Random random = new Random(count);
+            Builder<String> builder = IntervalIndex.builder();
+            int[][] ranges = new int[count][];
+            String[] values = new String[count];
+
+            for(int x = 0; x < count; x++)
+            {
+                int start = x * 100;
+                ranges[x] = new int[]{start + 10, start + 10 + random.nextInt(50)};
+                values[x] = "Alias " + x;
+                builder.add(ranges[x][0], ranges[x][1], values[x]);
+                builder.add(start, values[x]);
+            }
+
+            IntervalIndex<String> index = builder.build();
+
+            int lookups = 200_000;
+            int[] keys = new int[lookups];
+
+            for(int x = 0; x < lookups; x++)
+            {
+                keys[x] = random.nextInt(count * 100);
+            }
+
+            int linearLookups = count >= 100_000 ? 2_000 : 20_000;
+
+            for(int pass = 0; pass < 2; pass++)
+            {
+                long start = System.nanoTime();
+                int hits = 0;
+
+                for(int x = 0; x < linearLookups; x++)
+                {
+                    int key = keys[x];
+
+                    for(int y = 0; y < count; y++)
+                    {
+                        if(ranges[y][0] <= key && key <= ranges[y][1])
+                        {
+                            hits++;
+                            break;
+                        }
+                    }
+                }
+
+                double linearNanos = (double)(System.nanoTime() - start) / linearLookups;
+
+                start = System.nanoTime();
+                int indexHits = 0;
+
+                for(int key: keys)
+                {
+                    if(index.get(key) != null)
+                    {
+                        indexHits++;
+                    }
+                }
+
+                double indexNanos = (double)(System.nanoTime() - start) / lookups;
+
+                if(pass == 1)
+                {
+                    mLog.info(String.format("%,d ranges - linear scan: %,.0f ns/lookup (%d hits)  index: %,.1f ns/lookup " +
+                        "(%d hits)", count, linearNanos, hits, indexNanos, indexHits));
+                }
+            }
+        }
+    }
+}
@@ -16,10 +16,11 @@
 
 package io.github.dsheirer.audio;
 
-import io.github.dsheirer.alias.Alias;
 import io.github.dsheirer.alias.AliasList;
+import io.github.dsheirer.alias.AliasResolution;
 import io.github.dsheirer.alias.id.broadcast.BroadcastChannel;
 import io.github.dsheirer.alias.id.priority.Priority;
+import io.github.dsheirer.audio.convert.MP3EncoderSession;
 import io.github.dsheirer.identifier.Identifier;
 import io.github.dsheirer.identifier.IdentifierCollection;
 import io.github.dsheirer.identifier.IdentifierUpdateNotification;
@@ -72,6 +73,7 @@ public class AudioSegment implements Listener<IdentifierUpdateNotification>
     private MutableIdentifierCollection mIdentifierCollection = new MutableIdentifierCollection();
     private Broadcaster<IdentifierUpdateNotification> mIdentifierUpdateNotificationBroadcaster = new Broadcaster<>();
     private List<float[]> mAudioBuffers = new CopyOnWriteArrayList();
+    private MP3EncoderSession mMP3EncoderSession;
     private AtomicInteger mConsumerCount = new AtomicInteger();
     private AliasList mAliasList;
     private long mStartTimestamp = System.currentTimeMillis();
@@ -322,7 +324,12 @@ public class AudioSegment implements Listener<IdentifierUpdateNotification>
     private void dispose()
     {
         mDisposing = true;
-        mAudioBuffers.clear();
+        synchronized(mAudioBuffers)
+        {
+            mAudioBuffers.clear();
+            mMP3EncoderSession = null;
+        }
+
         mIdentifierCollection.clear();
         mIdentifierUpdateNotificationBroadcaster.clear();
         mLinkedAudioSegment = null;
@@ -375,10 +382,55 @@ public class AudioSegment implements Listener<IdentifierUpdateNotification>
             throw new IllegalStateException("Can't add audio to an audio segment that is being disposed");
         }
 
-        mAudioBuffers.add(audioBuffer);
+        synchronized(mAudioBuffers)
+        {
+            mAudioBuffers.add(audioBuffer);
+
+            if(mMP3EncoderSession != null && !mMP3EncoderSession.isFinished())
+            {
+                mMP3EncoderSession.encode(audioBuffer);
+            }
+        }
+
         mSampleCount += audioBuffer.length;
     }
 
+    /**
+     * Indicates if incremental MP3 encoding has been started for this segment
+     */
+    public boolean hasMP3EncoderSession()
+    {
+        return mMP3EncoderSession != null;
+    }
+
+    /**
+     * Starts incremental MP3 encoding for this segment, if not already started, and returns the encoder session.
+     * Audio buffers that were added before the session started are encoded before this method returns and each
+     * audio buffer added afterward is encoded as it arrives.  Consumers should start the session as soon as they
+     * know that they need MP3 audio so that the encoding work is spread across the life of the call.
+     *
+     * @return shared MP3 encoder session for this segment
+     */
+    public MP3EncoderSession getMP3EncoderSession()
+    {
+        synchronized(mAudioBuffers)
+        {
+            if(mMP3EncoderSession == null)
+            {
+                MP3EncoderSession session = new MP3EncoderSession();
+
+                for(float[] audioBuffer: mAudioBuffers)
+                {
+                    session.encode(audioBuffer);
+                }
+
+                mMP3EncoderSession = session;
+            }
+
+            return mMP3EncoderSession;
+        }
+    }
+
     /**
      * Adds a listener to receive identifier update notifications
      */
@@ -404,25 +456,23 @@ public class AudioSegment implements Listener<IdentifierUpdateNotification>
     {
         mIdentifierCollection.update(identifier);
 
-        List<Alias> aliases = mAliasList.getAliases(identifier);
+        //The alias list caches the resolution against this collection, so only changed identifiers are looked up
+        AliasResolution resolution = mAliasList.resolve(mIdentifierCollection);
 
-        for(Alias alias: aliases)
+        if(resolution.isRecordable())
         {
-            if(alias.isRecordable())
-            {
-                mRecordAudio.set(true);
-            }
+            mRecordAudio.set(true);
+        }
 
-            //Add all broadcast channels for the alias ... let the set handle duplication.
-            mBroadcastChannels.addAll(alias.getBroadcastChannels());
+        //Add all broadcast channels for the aliases ... let the set handle duplication.
+        mBroadcastChannels.addAll(resolution.getBroadcastChannels());
 
-            //Only assign a playback priority if it is lower priority than the current setting.
-            int playbackPriority = alias.getPlaybackPriority();
+        //Only assign a playback priority if it is lower priority than the current setting.
+        int playbackPriority = resolution.getPlaybackPriority();
 
-            if(playbackPriority < mMonitorPriority.get())
-            {
-                mMonitorPriority.set(playbackPriority);
-            }
+        if(playbackPriority < mMonitorPriority.get())
+        {
+            mMonitorPriority.set(playbackPriority);
         }
     }
 
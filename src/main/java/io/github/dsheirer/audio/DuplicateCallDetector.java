@@ -19,14 +19,18 @@
 
 package io.github.dsheirer.audio;
 
+import io.github.dsheirer.alias.AliasList;
 import io.github.dsheirer.identifier.Form;
 import io.github.dsheirer.identifier.Identifier;
 import io.github.dsheirer.identifier.IdentifierClass;
+import io.github.dsheirer.identifier.IdentifierCollection;
 import io.github.dsheirer.identifier.Role;
 import io.github.dsheirer.identifier.configuration.SystemConfigurationIdentifier;
 import io.github.dsheirer.identifier.patch.PatchGroupIdentifier;
 import io.github.dsheirer.identifier.radio.RadioIdentifier;
 import io.github.dsheirer.identifier.talkgroup.TalkgroupIdentifier;
+import io.github.dsheirer.module.decode.p25.identifier.radio.APCO25RadioIdentifier;
+import io.github.dsheirer.module.decode.p25.identifier.talkgroup.APCO25Talkgroup;
 import io.github.dsheirer.preference.UserPreferences;
 import io.github.dsheirer.preference.duplicate.DuplicateCallDetectionPreference;
 import io.github.dsheirer.sample.Listener;
@@ -35,29 +39,50 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Detects duplicate calls that occur within the same system.  This detector is thread safe for the receive() method.
  *
+ * Each in-progress audio segment is indexed into hash buckets by normalized identifier keys (TO talkgroup/patch group,
+ * TO radio and FROM radio values).  A segment is a duplicate when it shares a key with an earlier, non-duplicate
+ * segment, so each new or updated segment is checked with a bucket lookup instead of against every other segment.
+ * Segments are evicted from the buckets when they complete or are flagged as duplicates.
+ *
  * Note: system in this context refers to the system name value that is used in channel configurations.  All decoder
  * channels must share the same system name for call duplication detection.
  */
 public class DuplicateCallDetector implements Listener<AudioSegment>
 {
     private final static Logger mLog = LoggerFactory.getLogger(DuplicateCallDetector.class);
+    private static final long[] NO_KEYS = new long[0];
+    private static final long KEY_ROLE_TO = 1L << 40;
+    private static final long KEY_ROLE_FROM = 2L << 40;
+    private static final long KEY_TYPE_TALKGROUP = 1L << 32;
+    private static final long KEY_TYPE_RADIO = 2L << 32;
+
     private DuplicateCallDetectionPreference mDuplicateCallDetectionPreference;
     private Map<String,SystemDuplicateCallDetector> mDetectorMap = new HashMap();
 
     public DuplicateCallDetector(UserPreferences userPreferences)
     {
-        mDuplicateCallDetectionPreference = userPreferences.getDuplicateCallDetectionPreference();
+        this(userPreferences.getDuplicateCallDetectionPreference());
+    }
+
+    public DuplicateCallDetector(DuplicateCallDetectionPreference duplicateCallDetectionPreference)
+    {
+        mDuplicateCallDetectionPreference = duplicateCallDetectionPreference;
     }
 
     @Override
@@ -88,12 +113,149 @@ public class DuplicateCallDetector implements Listener<AudioSegment>
         }
     }
 
+    /**
+     * Summary of the duplicate detection metrics for each system
+     */
+    public String getMetrics()
+    {
+        StringBuilder sb = new StringBuilder();
+
+        synchronized(mDetectorMap)
+        {
+            for(Map.Entry<String,SystemDuplicateCallDetector> entry: mDetectorMap.entrySet())
+            {
+                SystemDuplicateCallDetector detector = entry.getValue();
+                sb.append("Duplicate Call Detector [").append(entry.getKey()).append("]");
+                sb.append(" segments:").append(detector.getSegmentCount());
+                sb.append(" tracked:").append(detector.getTrackedSegmentCount());
+                sb.append(" duplicates:").append(detector.getDuplicateCount());
+                sb.append(" avg detection latency ms:").append(detector.getAverageDetectionLatency());
+                sb.append(" max detection latency ms:").append(detector.getMaximumDetectionLatency());
+                sb.append("\n");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Creates the sorted, distinct identifier keys for the identifier collection.
+     *
+     * Talkgroups and patch groups share the same key space so that a talkgroup call and a patch group call for the
+     * same talkgroup value are detected as duplicates.  TO values are only included when detection by talkgroup is
+     * enabled and FROM values are only included when detection by radio is enabled.
+     */
+    private static long[] getKeys(IdentifierCollection identifierCollection, boolean byTalkgroup, boolean byRadio)
+    {
+        List<Identifier> to = byTalkgroup ? identifierCollection.getIdentifiers(Role.TO) : List.of();
+        List<Identifier> from = byRadio ? identifierCollection.getIdentifiers(Role.FROM) : List.of();
+
+        if(to.isEmpty() && from.isEmpty())
+        {
+            return NO_KEYS;
+        }
+
+        long[] keys = new long[to.size() + from.size()];
+        int count = 0;
+
+        for(Identifier identifier: to)
+        {
+            long key = getKey(identifier, KEY_ROLE_TO);
+
+            if(key != 0)
+            {
+                keys[count++] = key;
+            }
+        }
+
+        for(Identifier identifier: from)
+        {
+            if(identifier instanceof RadioIdentifier)
+            {
+                keys[count++] = getKey(identifier, KEY_ROLE_FROM);
+            }
+        }
+
+        if(count == 0)
+        {
+            return NO_KEYS;
+        }
+
+        Arrays.sort(keys, 0, count);
+
+        int distinct = 1;
+
+        for(int x = 1; x < count; x++)
+        {
+            if(keys[x] != keys[distinct - 1])
+            {
+                keys[distinct++] = keys[x];
+            }
+        }
+
+        return distinct == keys.length ? keys : Arrays.copyOf(keys, distinct);
+    }
+
+    /**
+     * Normalized key for a talkgroup, patch group or radio identifier
+     * @return key or 0 if the identifier type isn't used for duplicate detection
+     */
+    private static long getKey(Identifier identifier, long role)
+    {
+        if(identifier instanceof TalkgroupIdentifier)
+        {
+            return role | KEY_TYPE_TALKGROUP | (((TalkgroupIdentifier)identifier).getValue() & 0xFFFFFFFFL);
+        }
+        else if(identifier instanceof PatchGroupIdentifier)
+        {
+            int talkgroup = ((PatchGroupIdentifier)identifier).getValue().getPatchGroup().getValue();
+            return role | KEY_TYPE_TALKGROUP | (talkgroup & 0xFFFFFFFFL);
+        }
+        else if(identifier instanceof RadioIdentifier)
+        {
+            return role | KEY_TYPE_RADIO | (((RadioIdentifier)identifier).getValue() & 0xFFFFFFFFL);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Audio segment held by a system detector with its arrival sequence and the identifier keys that it is
+     * currently indexed under.
+     */
+    private static class TrackedSegment
+    {
+        private AudioSegment mAudioSegment;
+        private long mSequence;
+        private long mReceived;
+        private int mVersion = -1;
+        private long[] mKeys = NO_KEYS;
+        private boolean mDuplicate;
+
+        private TrackedSegment(AudioSegment audioSegment, long sequence)
+        {
+            mAudioSegment = audioSegment;
+            mSequence = sequence;
+            mReceived = System.currentTimeMillis();
+        }
+    }
+
     public class SystemDuplicateCallDetector
     {
-        private LinkedTransferQueue<AudioSegment> mAudioSegmentQueue = new LinkedTransferQueue<>();
-        private List<AudioSegment> mAudioSegments = new ArrayList<>();
+        private LinkedTransferQueue<TrackedSegment> mAudioSegmentQueue = new LinkedTransferQueue<>();
+        private List<TrackedSegment> mTrackedSegments = new ArrayList<>();
+        private Map<Long,List<TrackedSegment>> mBuckets = new HashMap<>();
+        private List<TrackedSegment> mDuplicates = new ArrayList<>();
         private AtomicBoolean mMonitoring = new AtomicBoolean();
         private ScheduledFuture<?> mProcessorFuture;
+        private long mNextSequence;
+        private boolean mByTalkgroup;
+        private boolean mByRadio;
+        private volatile int mTrackedSegmentCount;
+        private AtomicLong mSegmentCount = new AtomicLong();
+        private AtomicLong mDuplicateCount = new AtomicLong();
+        private AtomicLong mDetectionLatencyTotal = new AtomicLong();
+        private AtomicLong mDetectionLatencyMaximum = new AtomicLong();
 
         public SystemDuplicateCallDetector()
         {
@@ -104,11 +266,55 @@ public class DuplicateCallDetector implements Listener<AudioSegment>
             //Block on audio segment queue so that we don't interfere with monitoring shutdown
             synchronized(mAudioSegmentQueue)
             {
-                mAudioSegmentQueue.add(audioSegment);
+                mAudioSegmentQueue.add(new TrackedSegment(audioSegment, mNextSequence++));
+                mSegmentCount.incrementAndGet();
                 startMonitoring();
             }
         }
 
+        /**
+         * Number of audio segments received by this detector
+         */
+        public long getSegmentCount()
+        {
+            return mSegmentCount.get();
+        }
+
+        /**
+         * Number of in-progress audio segments currently tracked for duplicates
+         */
+        public int getTrackedSegmentCount()
+        {
+            return mTrackedSegmentCount;
+        }
+
+        /**
+         * Number of audio segments flagged as duplicates
+         */
+        public long getDuplicateCount()
+        {
+            return mDuplicateCount.get();
+        }
+
+        /**
+         * Average elapsed time from receipt of a segment until it was flagged as a duplicate
+         * @return latency in milliseconds
+         */
+        public long getAverageDetectionLatency()
+        {
+            long count = mDuplicateCount.get();
+            return count > 0 ? mDetectionLatencyTotal.get() / count : 0;
+        }
+
+        /**
+         * Maximum elapsed time from receipt of a segment until it was flagged as a duplicate
+         * @return latency in milliseconds
+         */
+        public long getMaximumDetectionLatency()
+        {
+            return mDetectionLatencyMaximum.get();
+        }
+
         private void startMonitoring()
         {
             if(mMonitoring.compareAndSet(false, true))
@@ -130,100 +336,88 @@ public class DuplicateCallDetector implements Listener<AudioSegment>
         }
 
         /**
-         * Checks if either the TO or FROM integer identifiers for the audio segments are the same
-         * @param segment1 to compare
-         * @param segment2 to compare
-         * @return true if integer identifiers are the same
+         * Adds the tracked segment to the bucket for each of its keys
          */
-        private boolean isDuplicate(AudioSegment segment1, AudioSegment segment2)
+        private void index(TrackedSegment trackedSegment)
         {
-            if(mDuplicateCallDetectionPreference.isDuplicateCallDetectionByTalkgroupEnabled())
+            for(long key: trackedSegment.mKeys)
             {
-                //Step 1 check for duplicate TO values
-                List<Identifier> to1 = segment1.getIdentifierCollection().getIdentifiers(Role.TO);
-                List<Identifier> to2 = segment2.getIdentifierCollection().getIdentifiers(Role.TO);
-
-                if(isDuplicate(to1, to2))
-                {
-                    return true;
-                }
+                mBuckets.computeIfAbsent(key, k -> new ArrayList<>(2)).add(trackedSegment);
             }
-
-            if(mDuplicateCallDetectionPreference.isDuplicateCallDetectionByRadioEnabled())
-            {
-                //Step 2 check for duplicate FROM values
-                List<Identifier> from1 = segment1.getIdentifierCollection().getIdentifiers(Role.FROM);
-                List<Identifier> from2 = segment2.getIdentifierCollection().getIdentifiers(Role.FROM);
-
-                return isDuplicate(from1, from2);
-            }
-
-            return false;
         }
 
         /**
-         * Checks both lists of identifiers to determine if there are talkgroups or radio identifiers that are
-         * the same in both lists.  Note: talkgroup check compares both talkgroups and patch groups.
-         *
-         * @param identifiers1
-         * @param identifiers2
-         * @return
+         * Removes the tracked segment from the bucket for each of its keys
          */
-        private boolean isDuplicate(List<Identifier> identifiers1, List<Identifier> identifiers2)
+        private void unindex(TrackedSegment trackedSegment)
         {
-            for(Identifier identifier1: identifiers1)
+            for(long key: trackedSegment.mKeys)
             {
-                if(identifier1 instanceof TalkgroupIdentifier)
+                List<TrackedSegment> bucket = mBuckets.get(key);
+
+                if(bucket != null)
                 {
-                    int talkgroup1 = ((TalkgroupIdentifier)identifier1).getValue();
+                    bucket.remove(trackedSegment);
 
-                    for(Identifier identifier2: identifiers2)
+                    if(bucket.isEmpty())
                     {
-                        if(identifier2 instanceof TalkgroupIdentifier &&
-                           ((TalkgroupIdentifier)identifier2).getValue() == talkgroup1)
-                        {
-                            return true;
-                        }
-                        else if(identifier2 instanceof PatchGroupIdentifier &&
-                            ((PatchGroupIdentifier)identifier2).getValue().getPatchGroup().getValue() == talkgroup1)
-                        {
-                            return true;
-                        }
+                        mBuckets.remove(key);
                     }
                 }
-                else if(identifier1 instanceof PatchGroupIdentifier)
-                {
-                    int talkgroup1 = ((PatchGroupIdentifier)identifier1).getValue().getPatchGroup().getValue();
+            }
+        }
 
-                    for(Identifier identifier2: identifiers2)
+        /**
+         * Checks the buckets for the tracked segment's keys.  If an earlier segment shares a key, the tracked segment
+         * is a duplicate.  Otherwise, any later segments that share a key are duplicates of the tracked segment.
+         */
+        private void detect(TrackedSegment trackedSegment)
+        {
+            for(long key: trackedSegment.mKeys)
+            {
+                for(TrackedSegment other: mBuckets.get(key))
+                {
+                    if(other.mSequence < trackedSegment.mSequence)
                     {
-                        if(identifier2 instanceof TalkgroupIdentifier &&
-                            ((TalkgroupIdentifier)identifier2).getValue() == talkgroup1)
-                        {
-                            return true;
-                        }
-                        else if(identifier2 instanceof PatchGroupIdentifier &&
-                            ((PatchGroupIdentifier)identifier2).getValue().getPatchGroup().getValue() == talkgroup1)
-                        {
-                            return true;
-                        }
+                        flag(trackedSegment);
+                        return;
                     }
                 }
-                else if(identifier1 instanceof RadioIdentifier)
-                {
-                    int radio1 = ((RadioIdentifier)identifier1).getValue();
+            }
 
-                    for(Identifier identifier2: identifiers2)
+            for(long key: trackedSegment.mKeys)
+            {
+                for(TrackedSegment other: mBuckets.get(key))
+                {
+                    if(other.mSequence > trackedSegment.mSequence && !other.mDuplicate)
                     {
-                        if(identifier2 instanceof RadioIdentifier && ((RadioIdentifier)identifier2).getValue() == radio1)
-                        {
-                            return true;
-                        }
+                        mDuplicates.add(other);
+                        other.mDuplicate = true;
                     }
                 }
             }
 
-            return false;
+            for(TrackedSegment duplicate: mDuplicates)
+            {
+                flag(duplicate);
+            }
+
+            mDuplicates.clear();
+        }
+
+        /**
+         * Flags the tracked segment as a duplicate and removes it from the buckets
+         */
+        private void flag(TrackedSegment trackedSegment)
+        {
+            trackedSegment.mDuplicate = true;
+            unindex(trackedSegment);
+            trackedSegment.mKeys = NO_KEYS;
+
+            long latency = System.currentTimeMillis() - trackedSegment.mReceived;
+            mDetectionLatencyTotal.addAndGet(latency);
+            mDetectionLatencyMaximum.accumulateAndGet(latency, Math::max);
+            mDuplicateCount.incrementAndGet();
         }
 
         /**
@@ -232,60 +426,74 @@ public class DuplicateCallDetector implements Listener<AudioSegment>
         private void process()
         {
             //Transfer in newly arrived audio segments
-            mAudioSegmentQueue.drainTo(mAudioSegments);
+            mAudioSegmentQueue.drainTo(mTrackedSegments);
 
             //Remove any completed audio segments.
-            mAudioSegments.removeIf(audioSegment -> {
-                boolean complete = audioSegment.completeProperty().get();
+            mTrackedSegments.removeIf(trackedSegment -> {
+                boolean complete = trackedSegment.mAudioSegment.completeProperty().get();
 
                 if(complete)
                 {
-                    audioSegment.decrementConsumerCount();
+                    unindex(trackedSegment);
+                    trackedSegment.mAudioSegment.decrementConsumerCount();
                 }
 
                 return complete;
             });
 
-            //Only check for duplicates if there is more than one call
-            if(mAudioSegments.size() > 1)
-            {
-                List<AudioSegment> duplicates = new ArrayList<>();
+            //Re-key all segments when the detection preferences change
+            boolean byTalkgroup = mDuplicateCallDetectionPreference.isDuplicateCallDetectionByTalkgroupEnabled();
+            boolean byRadio = mDuplicateCallDetectionPreference.isDuplicateCallDetectionByRadioEnabled();
+            boolean rekey = byTalkgroup != mByTalkgroup || byRadio != mByRadio;
+            mByTalkgroup = byTalkgroup;
+            mByRadio = byRadio;
 
-                int currentIndex = 0;
-                while(currentIndex < mAudioSegments.size() - 1)
+            //Only new segments and segments with updated identifiers need to be checked, in order of arrival
+            boolean duplicates = false;
+
+            for(TrackedSegment trackedSegment: mTrackedSegments)
+            {
+                if(!trackedSegment.mDuplicate)
                 {
-                    AudioSegment current = mAudioSegments.get(currentIndex);
+                    IdentifierCollection identifierCollection = trackedSegment.mAudioSegment.getIdentifierCollection();
+                    int version = identifierCollection.getVersion();
 
-                    if(!current.isDuplicate())
+                    if(rekey || version != trackedSegment.mVersion)
                     {
-                        int checkIndex = currentIndex + 1;
+                        trackedSegment.mVersion = version;
+                        long[] keys = getKeys(identifierCollection, byTalkgroup, byRadio);
 
-                        while(checkIndex < mAudioSegments.size())
+                        if(!Arrays.equals(keys, trackedSegment.mKeys))
                         {
-                            AudioSegment toCheck = mAudioSegments.get(checkIndex);
-
-                            if(!toCheck.isDuplicate())
-                            {
-                                if(isDuplicate(current, toCheck))
-                                {
-                                    toCheck.setDuplicate(true);
-                                    toCheck.decrementConsumerCount();
-                                    duplicates.add(toCheck);
-                                }
-                            }
-
-                            checkIndex++;
+                            unindex(trackedSegment);
+                            trackedSegment.mKeys = keys;
+                            index(trackedSegment);
+                            detect(trackedSegment);
                         }
                     }
-
-                    currentIndex++;
                 }
 
-                mAudioSegments.removeAll(duplicates);
+                duplicates |= trackedSegment.mDuplicate;
             }
 
+            if(duplicates)
+            {
+                mTrackedSegments.removeIf(trackedSegment -> {
+                    if(trackedSegment.mDuplicate)
+                    {
+                        trackedSegment.mAudioSegment.setDuplicate(true);
+                        trackedSegment.mAudioSegment.decrementConsumerCount();
+                        return true;
+                    }
+
+                    return false;
+                });
+            }
+
+            mTrackedSegmentCount = mTrackedSegments.size();
+
             //Finally, if the audio segment queue is empty, shutdown montitoring until a new segment arrives
-            if(mAudioSegments.isEmpty())
+            if(mTrackedSegments.isEmpty())
             {
                 //Block on the audio segment queue so that we can shutdown before any new segments are added, and
                 //allow the add(segment) to restart monitoring as soon as needed.
@@ -307,4 +515,99 @@ public class DuplicateCallDetector implements Listener<AudioSegment>
             }
         }
     }
+
+    /**
+     * Load test harness that replays synthetic call storms against the detector.  Each call is heard on every
+     * simulcast site, so every call should produce (sites - 1) duplicates, and every concurrent call that was randomly
+     * assigned a talkgroup that is already active should produce (sites) duplicates.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        int sites = 8;
+        int talkgroups = 2000;
+        int callsPerStorm = 250;
+        int storms = 20;
+        String system = "Call Storm";
+
+        //Detect by talkgroup only, independent of the persisted user preferences
+        DuplicateCallDetectionPreference preference = new DuplicateCallDetectionPreference(null)
+        {
+            @Override
+            public boolean isDuplicateCallDetectionByTalkgroupEnabled()
+            {
+                return true;
+            }
+
+            @Override
+            public boolean isDuplicateCallDetectionByRadioEnabled()
+            {
+                return false;
+            }
+        };
+
+        DuplicateCallDetector detector = new DuplicateCallDetector(preference);
+        AliasList aliasList = new AliasList("Call Storm");
+        Random random = new Random(42);
+        List<AudioSegment> inProgress = new ArrayList<>();
+        Set<Integer> stormTalkgroups = new HashSet<>();
+        long segments = 0;
+        long expected = 0;
+        long flagged = 0;
+
+        long start = System.currentTimeMillis();
+
+        for(int storm = 0; storm < storms; storm++)
+        {
+            for(int call = 0; call < callsPerStorm; call++)
+            {
+                int talkgroup = 1 + random.nextInt(talkgroups);
+                int radio = 1 + random.nextInt(100000);
+                expected += stormTalkgroups.add(talkgroup) ? sites - 1 : sites;
+
+                for(int site = 0; site < sites; site++)
+                {
+                    AudioSegment audioSegment = new AudioSegment(aliasList, 0);
+                    audioSegment.addIdentifier(SystemConfigurationIdentifier.create(system));
+                    audioSegment.addIdentifier(APCO25Talkgroup.create(talkgroup));
+                    audioSegment.incrementConsumerCount();
+                    detector.receive(audioSegment);
+                    inProgress.add(audioSegment);
+                    segments++;
+
+                    //Radio identifier arrives after the call starts
+                    audioSegment.addIdentifier(APCO25RadioIdentifier.createFrom(radio));
+                }
+            }
+
+            Thread.sleep(100);
+
+            for(AudioSegment audioSegment: inProgress)
+            {
+                if(audioSegment.isDuplicate())
+                {
+                    flagged++;
+                }
+
+                audioSegment.completeProperty().set(true);
+            }
+
+            inProgress.clear();
+            stormTalkgroups.clear();
+        }
+
+        Thread.sleep(250);
+
+        mLog.info("Replayed " + segments + " segments (" + storms + " storms of " + callsPerStorm + " calls on " +
+            sites + " sites) in " + (System.currentTimeMillis() - start) + " ms");
+        mLog.info("Flagged " + flagged + " of " + expected + " expected duplicates when detecting by talkgroup only");
+        mLog.info(detector.getMetrics());
+
+        ThreadPool.SCHEDULED.shutdown();
+
+        if(flagged != expected)
+        {
+            throw new IllegalStateException("Duplicate call detection mismatch - flagged [" + flagged +
+                "] expected [" + expected + "]");
+        }
+    }
 }
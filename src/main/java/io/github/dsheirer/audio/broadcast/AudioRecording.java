@@ -23,6 +23,8 @@ import io.github.dsheirer.identifier.IdentifierCollection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -32,6 +34,7 @@ public class AudioRecording implements Comparable<AudioRecording>
     private final static Logger mLog = LoggerFactory.getLogger(AudioRecording.class);
 
     private Path mPath;
+    private AudioRecordingBufferPool.PooledAudio mPooledAudio;
     private long mStartTime;
     private long mRecordingLength;
     private AtomicInteger mPendingReplayCount = new AtomicInteger();
@@ -57,13 +60,83 @@ public class AudioRecording implements Comparable<AudioRecording>
     }
 
     /**
-     * Path to the completed audio recording
+     * In-memory audio recording that is ready to be streamed
+     *
+     * @param pooledAudio containing the encoded recording
+     * @param identifierCollection associated with the recording
+     * @param start time of recording in milliseconds since epoch
+     * @param recordingLength in milliseconds
+     */
+    public AudioRecording(AudioRecordingBufferPool.PooledAudio pooledAudio,
+                          Collection<BroadcastChannel> broadcastChannels, IdentifierCollection identifierCollection,
+                          long start, long recordingLength)
+    {
+        this((Path)null, broadcastChannels, identifierCollection, start, recordingLength);
+        mPooledAudio = pooledAudio;
+    }
+
+    /**
+     * Path to the completed audio recording, or null if the recording is held in memory
      */
     public Path getPath()
     {
         return mPath;
     }
 
+    /**
+     * Indicates if the recording is held in memory rather than in a temporary file
+     */
+    public boolean isInMemory()
+    {
+        return mPooledAudio != null;
+    }
+
+    /**
+     * Encoded audio for the recording, read from memory or from the temporary recording file.  In-memory audio is
+     * shared by all consumers of the recording and must not be modified.
+     * @throws IOException if the recording file can't be read or the recording was disposed
+     */
+    public byte[] getAudio() throws IOException
+    {
+        if(mPooledAudio != null)
+        {
+            try
+            {
+                return mPooledAudio.getBytes();
+            }
+            catch(IllegalStateException ise)
+            {
+                throw new IOException("Audio recording was disposed", ise);
+            }
+        }
+
+        return Files.readAllBytes(mPath);
+    }
+
+    /**
+     * Releases the in-memory audio buffers or deletes the temporary recording file
+     * @throws IOException if the temporary recording file can't be deleted
+     */
+    public void dispose() throws IOException
+    {
+        if(mPooledAudio != null)
+        {
+            mPooledAudio.release();
+        }
+        else if(mPath != null)
+        {
+            Files.deleteIfExists(mPath);
+        }
+    }
+
+    /**
+     * Description of the recording location for logging
+     */
+    public String getDescription()
+    {
+        return mPath != null ? mPath.toString() : "in-memory recording";
+    }
+
     /**
      * Collection of broadcast channels that this recording should be streamed to
      */
@@ -0,0 +1,230 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.audio.broadcast;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory budget for the encoded audio of in-memory streaming recordings.  The total memory held by queued recordings
+ * is limited by the memory budget.  When storing a recording would exceed the budget, the caller should spill the
+ * recording to a temporary file instead.
+ *
+ * Stored audio is held in a single array that is shared, without copying, by every consumer of the recording.  An
+ * audio array that is stored by itself (e.g. the encoder's output) is retained as-is and only accounted against the
+ * budget.
+ */
+public class AudioRecordingBufferPool
+{
+    public static final long DEFAULT_MEMORY_BUDGET = 32L * 1024 * 1024;
+
+    private AtomicLong mBytesInUse = new AtomicLong();
+    private AtomicLong mPeakBytesInUse = new AtomicLong();
+    private AtomicInteger mRecordingsInMemory = new AtomicInteger();
+    private AtomicLong mStoredRecordingCount = new AtomicLong();
+    private AtomicLong mSpilledRecordingCount = new AtomicLong();
+    private long mMemoryBudget;
+
+    /**
+     * Constructs an instance
+     * @param memoryBudget maximum number of bytes held by in-memory recordings
+     */
+    public AudioRecordingBufferPool(long memoryBudget)
+    {
+        mMemoryBudget = memoryBudget;
+    }
+
+    /**
+     * Constructs an instance with the default memory budget
+     */
+    public AudioRecordingBufferPool()
+    {
+        this(DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * Stores the audio byte arrays, in order, as a single audio array.  A single array argument is retained without
+     * copying, so the caller must not modify it afterward.
+     *
+     * @param audio byte arrays to store
+     * @return pooled audio or null if storing the audio would exceed the memory budget
+     */
+    public PooledAudio store(byte[]... audio)
+    {
+        int length = 0;
+
+        for(byte[] bytes: audio)
+        {
+            length += bytes.length;
+        }
+
+        while(true)
+        {
+            long inUse = mBytesInUse.get();
+
+            if(inUse + length > mMemoryBudget)
+            {
+                mSpilledRecordingCount.incrementAndGet();
+                return null;
+            }
+
+            if(mBytesInUse.compareAndSet(inUse, inUse + length))
+            {
+                mPeakBytesInUse.accumulateAndGet(inUse + length, Math::max);
+                break;
+            }
+        }
+
+        mRecordingsInMemory.incrementAndGet();
+        mStoredRecordingCount.incrementAndGet();
+
+        if(audio.length == 1)
+        {
+            return new PooledAudio(audio[0]);
+        }
+
+        byte[] joined = new byte[length];
+        int offset = 0;
+
+        for(byte[] bytes: audio)
+        {
+            System.arraycopy(bytes, 0, joined, offset, bytes.length);
+            offset += bytes.length;
+        }
+
+        return new PooledAudio(joined);
+    }
+
+    private void release(PooledAudio pooledAudio)
+    {
+        mBytesInUse.addAndGet(-pooledAudio.getLength());
+        mRecordingsInMemory.decrementAndGet();
+    }
+    /**
+     * Memory budget in bytes
+     */
+    public long getMemoryBudget()
+    {
+        return mMemoryBudget;
+    }
+
+    /**
+     * Bytes currently held by in-memory recordings
+     */
+    public long getBytesInUse()
+    {
+        return mBytesInUse.get();
+    }
+
+    /**
+     * Peak bytes held by in-memory recordings
+     */
+    public long getPeakBytesInUse()
+    {
+        return mPeakBytesInUse.get();
+    }
+
+    /**
+     * Number of recordings currently held in memory
+     */
+    public int getRecordingsInMemory()
+    {
+        return mRecordingsInMemory.get();
+    }
+
+    /**
+     * Number of recordings that were stored in memory
+     */
+    public long getStoredRecordingCount()
+    {
+        return mStoredRecordingCount.get();
+    }
+
+    /**
+     * Number of recordings that were spilled to temporary files
+     */
+    public long getSpilledRecordingCount()
+    {
+        return mSpilledRecordingCount.get();
+    }
+
+    /**
+     * Summary of the memory and spill metrics
+     */
+    public String getMetrics()
+    {
+        return "Streaming recording buffers - in memory:" + getRecordingsInMemory() + " bytes:" + getBytesInUse() +
+            " peak bytes:" + getPeakBytesInUse() + " budget:" + getMemoryBudget() + " stored:" +
+            getStoredRecordingCount() + " spilled:" + getSpilledRecordingCount();
+    }
+
+    /**
+     * Encoded audio that is accounted against the memory budget until it is released.
+     */
+    public class PooledAudio
+    {
+        private byte[] mAudio;
+        private int mLength;
+        private boolean mReleased;
+
+        private PooledAudio(byte[] audio)
+        {
+            mAudio = audio;
+            mLength = audio.length;
+        }
+
+        /**
+         * Length of the audio in bytes
+         */
+        public int getLength()
+        {
+            return mLength;
+        }
+
+        /**
+         * Audio bytes.  The array is shared by all consumers of the recording and must not be modified.
+         * @throws IllegalStateException if the audio was released
+         */
+        public synchronized byte[] getBytes()
+        {
+            if(mReleased)
+            {
+                throw new IllegalStateException("Pooled audio was released");
+            }
+
+            return mAudio;
+        }
+
+        /**
+         * Releases the audio from the memory budget.  Subsequent calls have no effect.
+         */
+        public synchronized void release()
+        {
+            if(!mReleased)
+            {
+                mReleased = true;
+                AudioRecordingBufferPool.this.release(this);
+                mAudio = null;
+            }
+        }
+    }
+}
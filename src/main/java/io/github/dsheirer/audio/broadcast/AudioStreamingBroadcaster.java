@@ -366,9 +366,9 @@ public abstract class AudioStreamingBroadcaster<T extends BroadcastConfiguration
 
                 try
                 {
-                    if(Files.exists(nextRecording.getPath()))
+                    if(nextRecording.isInMemory() || Files.exists(nextRecording.getPath()))
                     {
-                        byte[] audio = Files.readAllBytes(nextRecording.getPath());
+                        byte[] audio = nextRecording.getAudio();
 
                         if(audio != null && audio.length > 0)
                         {
@@ -394,7 +394,7 @@ public abstract class AudioStreamingBroadcaster<T extends BroadcastConfiguration
                 catch(IOException ioe)
                 {
                     mLog.error("Stream [" + getBroadcastConfiguration().getName() + "] error reading temporary audio " +
-                        "stream recording [" + nextRecording.getPath().toString() + "] - skipping recording - ", ioe);
+                        "stream recording [" + nextRecording.getDescription() + "] - skipping recording - ", ioe);
 
                     mInputStream = null;
                     metadataUpdateRequired = false;
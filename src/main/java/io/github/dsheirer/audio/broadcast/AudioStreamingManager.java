@@ -40,8 +40,9 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Audio streaming manager monitors audio segments through completion and creates temporary streaming recordings on
- * disk and enqueues the temporary recording for streaming.
+ * Audio streaming manager monitors audio segments through completion and creates temporary streaming recordings and
+ * enqueues the temporary recording for streaming.  Recordings are held in pooled memory buffers and are only written
+ * to temporary files on disk when the queued recordings exceed the buffer pool memory budget.
  */
 public class AudioStreamingManager implements Listener<AudioSegment>
 {
@@ -53,6 +54,7 @@ public class AudioStreamingManager implements Listener<AudioSegment>
     private UserPreferences mUserPreferences;
     private ScheduledFuture<?> mAudioSegmentProcessorFuture;
     private int mNextRecordingNumber = 1;
+    private AudioRecordingBufferPool mBufferPool = new AudioRecordingBufferPool();
 
     /**
      * Constructs an instance
@@ -112,6 +114,16 @@ public class AudioStreamingManager implements Listener<AudioSegment>
         }
 
         mAudioSegments.clear();
+
+        mLog.info(mBufferPool.getMetrics());
+    }
+
+    /**
+     * Pooled buffers for in-memory streaming recordings, with memory and spill metrics
+     */
+    public AudioRecordingBufferPool getBufferPool()
+    {
+        return mBufferPool;
     }
 
     /**
@@ -132,13 +144,20 @@ public class AudioStreamingManager implements Listener<AudioSegment>
                 it.remove();
                 audioSegment.decrementConsumerCount();
             }
-            else if(audioSegment.completeProperty().get())
+            else if(!audioSegment.completeProperty().get())
+            {
+                //Start incremental MP3 encoding as soon as the in-progress segment is flagged for streaming
+                if(audioSegment.hasBroadcastChannels() && !audioSegment.hasMP3EncoderSession())
+                {
+                    audioSegment.getMP3EncoderSession();
+                }
+            }
+            else
             {
                 it.remove();
 
                 if(mAudioRecordingListener != null && audioSegment.hasBroadcastChannels())
                 {
-                    Path path = getTemporaryRecordingPath();
                     long length = 0;
 
                     for(float[] audioBuffer: audioSegment.getAudioBuffers())
@@ -150,12 +169,32 @@ public class AudioStreamingManager implements Listener<AudioSegment>
 
                     try
                     {
-                        AudioSegmentRecorder.record(audioSegment, path, RecordFormat.MP3);
                         IdentifierCollection identifierCollectionCopy =
-                            new IdentifierCollection(audioSegment.getIdentifierCollection().getIdentifiers());
+                            audioSegment.getIdentifierCollection().snapshot();
+                        AudioRecording audioRecording = null;
+
+                        if(audioSegment.hasAudio())
+                        {
+                            AudioRecordingBufferPool.PooledAudio pooledAudio =
+                                mBufferPool.store(AudioSegmentRecorder.getMP3ID3(audioSegment),
+                                    audioSegment.getMP3EncoderSession().getMP3Audio());
+
+                            if(pooledAudio != null)
+                            {
+                                audioRecording = new AudioRecording(pooledAudio, audioSegment.getBroadcastChannels(),
+                                    identifierCollectionCopy, audioSegment.getStartTimestamp(), length);
+                            }
+                        }
+
+                        //Spill to a temporary file when the in-memory recordings exceed the memory budget
+                        if(audioRecording == null)
+                        {
+                            Path path = getTemporaryRecordingPath();
+                            AudioSegmentRecorder.record(audioSegment, path, RecordFormat.MP3);
+                            audioRecording = new AudioRecording(path, audioSegment.getBroadcastChannels(),
+                                identifierCollectionCopy, audioSegment.getStartTimestamp(), length);
+                        }
 
-                        AudioRecording audioRecording = new AudioRecording(path, audioSegment.getBroadcastChannels(),
-                            identifierCollectionCopy, audioSegment.getStartTimestamp(), length);
                         mAudioRecordingListener.receive(audioRecording);
                     }
                     catch(IOException ioe)
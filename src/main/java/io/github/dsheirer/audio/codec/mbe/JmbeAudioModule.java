@@ -33,24 +33,10 @@ import io.github.dsheirer.preference.PreferenceType;
 import io.github.dsheirer.preference.UserPreferences;
 import io.github.dsheirer.sample.Listener;
 import jmbe.iface.IAudioCodec;
-import jmbe.iface.IAudioCodecLibrary;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.lang.reflect.InvocationTargetException;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
 
 public abstract class JmbeAudioModule extends AbstractAudioModule implements Listener<IMessage>, IMessageListener,
     ISquelchStateListener
 {
-    private static final Logger mLog = LoggerFactory.getLogger(JmbeAudioModule.class);
-    private static final String JMBE_AUDIO_LIBRARY = "JMBE";
-    private static List<String> mLibraryLoadStatusLogged = new ArrayList<>();
     private IAudioCodec mAudioCodec;
     private UserPreferences mUserPreferences;
 
@@ -91,7 +77,6 @@ public abstract class JmbeAudioModule extends AbstractAudioModule implements Lis
     {
         if(preferenceType == PreferenceType.JMBE_LIBRARY)
         {
-            mLibraryLoadStatusLogged.clear();
             loadConverter();
         }
     }
@@ -102,144 +87,44 @@ public abstract class JmbeAudioModule extends AbstractAudioModule implements Lis
     protected abstract String getCodecName();
 
     /**
-     * Loads audio frame processing chain.  Constructs an imbe targetdataline
-     * to receive the raw imbe frames.  Adds an IMBE to 8k PCM format conversion
-     * stream wrapper.  Finally, adds an upsampling (8k to 48k) stream wrapper.
+     * Acquires an audio codec from the shared JMBE library codec pool, loading the library if it is not already
+     * loaded from the library path in the user preferences.  Any previously acquired codec is released first.
      */
     protected void loadConverter()
     {
-        IAudioCodec audioConverter = null;
-
-        Path path = mUserPreferences.getJmbeLibraryPreference().getPathJmbeLibrary();
-
-        if(path != null)
-        {
-            try
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.info("Loading JMBE library from [" + path.toString() + "]");
-                }
-
-                URLClassLoader childClassLoader = new URLClassLoader(new URL[]{path.toUri().toURL()},
-                    this.getClass().getClassLoader());
-
-                Class classToLoad = Class.forName("jmbe.JMBEAudioLibrary", true, childClassLoader);
+        releaseConverter();
 
-                Object instance = classToLoad.getDeclaredConstructor().newInstance();
-
-                if(instance instanceof IAudioCodecLibrary)
-                {
-                    IAudioCodecLibrary library = (IAudioCodecLibrary)instance;
+        JmbeLibrary library = JmbeLibrary.getInstance();
+        library.load(mUserPreferences.getJmbeLibraryPreference().getPathJmbeLibrary());
+        mAudioCodec = library.acquire(getCodecName());
+    }
 
-                    if((library.getMajorVersion() == 1 && library.getMinorVersion() >= 0 &&
-                        library.getBuildVersion() >= 0) || library.getMajorVersion() >= 1)
-                    {
-                        audioConverter = library.getAudioConverter(getCodecName());
+    /**
+     * Releases the audio codec back to the shared JMBE library codec pool
+     */
+    private void releaseConverter()
+    {
+        IAudioCodec audioCodec = mAudioCodec;
+        mAudioCodec = null;
 
-                        if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                        {
-                            mLog.info("JMBE audio conversion library loaded: " + library.getVersion());
-                            mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                        }
-                    }
-                    else
-                    {
-                        if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                        {
-                            mLog.warn("JMBE library version 1.0.0 or higher is required - found: " + library.getVersion());
-                            mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                        }
-                    }
-                }
-                else
-                {
-                    if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                    {
-                        mLog.info("JMBE audio conversion library NOT FOUND");
-                        mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                    }
-                }
-            }
-            catch(IllegalArgumentException iae)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY + getCodecName()))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library - " + iae.getMessage());
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY + getCodecName());
-                }
-            }
-            catch(NoSuchMethodException nsme)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library - no such method exception");
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                }
-            }
-            catch(MalformedURLException mue)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library from path [" + path + "]");
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                }
-            }
-            catch(ClassNotFoundException e1)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library - class not found");
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                }
-            }
-            catch(InvocationTargetException ite)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library - invocation target exception", ite);
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                }
-            }
-            catch(InstantiationException e1)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library - instantiation exception", e1);
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                }
-            }
-            catch(IllegalAccessException e1)
-            {
-                if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-                {
-                    mLog.error("Couldn't load JMBE audio conversion library - security restrictions");
-                    mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-                }
-            }
-        }
-        else
+        if(audioCodec != null)
         {
-            if(!mLibraryLoadStatusLogged.contains(JMBE_AUDIO_LIBRARY))
-            {
-                mLog.warn("JMBE audio library path is NOT SET in your User Preferences.");
-                mLibraryLoadStatusLogged.add(JMBE_AUDIO_LIBRARY);
-            }
+            JmbeLibrary.getInstance().release(getCodecName(), audioCodec);
         }
+    }
 
-        if(audioConverter != null)
+    @Override
+    public void dispose()
+    {
+        try
         {
-            mAudioCodec = audioConverter;
+            MyEventBus.getEventBus().unregister(this);
         }
-        else
+        catch(IllegalArgumentException iae)
         {
-            mAudioCodec = null;
+            //Do nothing - already unregistered
         }
-    }
 
-    @Override
-    public void dispose()
-    {
-        mAudioCodec = null;
+        releaseConverter();
     }
 }
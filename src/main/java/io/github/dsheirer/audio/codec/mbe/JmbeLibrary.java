@@ -0,0 +1,381 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+
+package io.github.dsheirer.audio.codec.mbe;
+
+import jmbe.iface.IAudioCodec;
+import jmbe.iface.IAudioCodecLibrary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide loader for the JMBE audio codec library with a pool of reusable audio codec instances.
+ *
+ * The library jar is loaded once through a single class loader and is only reloaded when the library path, or the
+ * library file itself, changes.  Audio modules acquire a codec when they are created and release it when they are
+ * disposed.  Released codecs are reset and reused by the next audio module, so a newly granted traffic channel doesn't
+ * have to load the library or construct a new codec.
+ */
+public class JmbeLibrary
+{
+    private static final Logger mLog = LoggerFactory.getLogger(JmbeLibrary.class);
+    private static final int MAX_POOLED_CODECS_PER_TYPE = 32;
+    private static JmbeLibrary sInstance;
+
+    private Path mLibraryPath;
+    private long mLibraryLastModified;
+    private URLClassLoader mClassLoader;
+    private Set<URLClassLoader> mRetiredClassLoaders = new HashSet<>();
+    private Map<ClassLoader,Integer> mCodecsInUseByClassLoader = new HashMap<>();
+    private IAudioCodecLibrary mLibrary;
+    private Map<String,Queue<IAudioCodec>> mCodecPools = new ConcurrentHashMap<>();
+    private AtomicInteger mCodecsInUse = new AtomicInteger();
+    private AtomicLong mCodecsCreated = new AtomicLong();
+    private AtomicLong mCodecsReused = new AtomicLong();
+    private AtomicLong mCodecCreateTimeNanos = new AtomicLong();
+    private long mLibraryLoadTimeMillis;
+
+    private JmbeLibrary()
+    {
+    }
+
+    /**
+     * Singleton instance
+     */
+    public static synchronized JmbeLibrary getInstance()
+    {
+        if(sInstance == null)
+        {
+            sInstance = new JmbeLibrary();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Loads the JMBE library from the path, unless the library from the same path and file modification time is
+     * already loaded, or has already failed to load.  Codecs pooled from a previously loaded library are discarded.
+     *
+     * @param path to the JMBE library jar, or null if the library path is not set
+     */
+    public synchronized void load(Path path)
+    {
+        long lastModified = getLastModified(path);
+
+        if(mLibraryPath != null && mLibraryPath.equals(path) && mLibraryLastModified == lastModified)
+        {
+            return;
+        }
+
+        unload();
+
+        mLibraryPath = path;
+        mLibraryLastModified = lastModified;
+
+        if(path == null)
+        {
+            mLog.warn("JMBE audio library path is NOT SET in your User Preferences.");
+            return;
+        }
+
+        mLog.info("Loading JMBE library from [" + path.toString() + "]");
+
+        long start = System.currentTimeMillis();
+        URLClassLoader classLoader = null;
+
+        try
+        {
+            classLoader = new URLClassLoader(new URL[]{path.toUri().toURL()}, getClass().getClassLoader());
+
+            Class<?> classToLoad = Class.forName("jmbe.JMBEAudioLibrary", true, classLoader);
+
+            Object instance = classToLoad.getDeclaredConstructor().newInstance();
+
+            if(instance instanceof IAudioCodecLibrary)
+            {
+                IAudioCodecLibrary library = (IAudioCodecLibrary)instance;
+
+                if((library.getMajorVersion() == 1 && library.getMinorVersion() >= 0 &&
+                    library.getBuildVersion() >= 0) || library.getMajorVersion() >= 1)
+                {
+                    mLibrary = library;
+                    mClassLoader = classLoader;
+                    mLibraryLoadTimeMillis = System.currentTimeMillis() - start;
+                    mLog.info("JMBE audio conversion library loaded: " + library.getVersion() + " in [" +
+                        mLibraryLoadTimeMillis + " ms]");
+                }
+                else
+                {
+                    mLog.warn("JMBE library version 1.0.0 or higher is required - found: " + library.getVersion());
+                }
+            }
+            else
+            {
+                mLog.info("JMBE audio conversion library NOT FOUND");
+            }
+        }
+        catch(IllegalArgumentException iae)
+        {
+            mLog.error("Couldn't load JMBE audio conversion library - " + iae.getMessage());
+        }
+        catch(MalformedURLException mue)
+        {
+            mLog.error("Couldn't load JMBE audio conversion library from path [" + path + "]");
+        }
+        catch(ClassNotFoundException cnfe)
+        {
+            mLog.error("Couldn't load JMBE audio conversion library - class not found");
+        }
+        catch(ReflectiveOperationException roe)
+        {
+            mLog.error("Couldn't load JMBE audio conversion library - " + roe.getClass().getSimpleName(), roe);
+        }
+
+        if(mLibrary == null && classLoader != null)
+        {
+            close(classLoader);
+        }
+    }
+
+    /**
+     * Indicates if the JMBE library is loaded
+     */
+    public synchronized boolean isLoaded()
+    {
+        return mLibrary != null;
+    }
+
+    /**
+     * Acquires an audio codec from the pool, or creates a new codec when none are available.  Release the codec
+     * when it is no longer needed so that it can be reused.
+     *
+     * @param codecName for the codec (e.g. IMBE or AMBE)
+     * @return audio codec or null if the library is not loaded or doesn't provide the codec
+     */
+    public IAudioCodec acquire(String codecName)
+    {
+        IAudioCodec codec = mCodecPools.computeIfAbsent(codecName, name -> new ConcurrentLinkedQueue<>()).poll();
+
+        if(codec != null)
+        {
+            mCodecsReused.incrementAndGet();
+        }
+        else
+        {
+            IAudioCodecLibrary library;
+
+            synchronized(this)
+            {
+                library = mLibrary;
+            }
+
+            if(library == null)
+            {
+                return null;
+            }
+
+            try
+            {
+                long start = System.nanoTime();
+                codec = library.getAudioConverter(codecName);
+                mCodecCreateTimeNanos.addAndGet(System.nanoTime() - start);
+                mCodecsCreated.incrementAndGet();
+            }
+            catch(IllegalArgumentException iae)
+            {
+                mLog.error("Couldn't load JMBE audio codec [" + codecName + "] - " + iae.getMessage());
+                return null;
+            }
+        }
+
+        if(codec != null)
+        {
+            mCodecsInUse.incrementAndGet();
+
+            synchronized(this)
+            {
+                mCodecsInUseByClassLoader.merge(codec.getClass().getClassLoader(), 1, Integer::sum);
+            }
+        }
+
+        return codec;
+    }
+
+    /**
+     * Releases the audio codec so that it can be reused.  The codec is reset before it is returned to the pool.
+     * Codecs from a previously loaded library are discarded.
+     *
+     * @param codecName that was used to acquire the codec
+     * @param codec to release
+     */
+    public void release(String codecName, IAudioCodec codec)
+    {
+        if(codec == null)
+        {
+            return;
+        }
+
+        mCodecsInUse.decrementAndGet();
+
+        ClassLoader codecClassLoader = codec.getClass().getClassLoader();
+
+        synchronized(this)
+        {
+            Integer inUse = mCodecsInUseByClassLoader.computeIfPresent(codecClassLoader,
+                (loader, count) -> count > 1 ? count - 1 : null);
+
+            //Close a retired library's class loader once the last codec from that library is released
+            if(inUse == null && mRetiredClassLoaders.remove(codecClassLoader))
+            {
+                close((URLClassLoader)codecClassLoader);
+            }
+
+            //Pool the codec under the same lock as the class loader check so that a concurrent unload() can't clear
+            //the pools between the check and the offer and leave a codec from an unloaded library in the pool
+            if(mClassLoader != null && codecClassLoader == mClassLoader)
+            {
+                Queue<IAudioCodec> pool = mCodecPools.computeIfAbsent(codecName,
+                    name -> new ConcurrentLinkedQueue<>());
+
+                if(pool.size() < MAX_POOLED_CODECS_PER_TYPE)
+                {
+                    codec.reset();
+                    pool.offer(codec);
+                }
+            }
+        }
+    }
+
+    /**
+     * Summary of library load time and codec pool occupancy
+     */
+    public String getMetrics()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("JMBE Library - loaded:").append(isLoaded());
+        sb.append(" load time ms:").append(mLibraryLoadTimeMillis);
+        sb.append(" codecs in use:").append(mCodecsInUse.get());
+        sb.append(" created:").append(mCodecsCreated.get());
+        sb.append(" reused:").append(mCodecsReused.get());
+
+        long created = mCodecsCreated.get();
+        sb.append(" avg create time us:").append(created > 0 ? mCodecCreateTimeNanos.get() / created / 1000 : 0);
+
+        for(Map.Entry<String,Queue<IAudioCodec>> entry : mCodecPools.entrySet())
+        {
+            sb.append(" pooled ").append(entry.getKey()).append(":").append(entry.getValue().size());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Discards the pooled codecs and the currently loaded library.  Codecs from the library that are in use remain
+     * usable until they are released, and the library's class loader is closed when the last of them is released.
+     */
+    private void unload()
+    {
+        mCodecPools.clear();
+        mLibrary = null;
+
+        if(mClassLoader != null)
+        {
+            if(mCodecsInUseByClassLoader.containsKey(mClassLoader))
+            {
+                mRetiredClassLoaders.add(mClassLoader);
+            }
+            else
+            {
+                close(mClassLoader);
+            }
+
+            mClassLoader = null;
+        }
+    }
+
+    /**
+     * Unloads the library and closes the class loaders for the current and any previously loaded libraries.  Invoke
+     * after the decoders are stopped, at application shutdown.
+     */
+    public synchronized void shutdown()
+    {
+        unload();
+
+        for(URLClassLoader classLoader : mRetiredClassLoaders)
+        {
+            close(classLoader);
+        }
+
+        mRetiredClassLoaders.clear();
+        mCodecsInUseByClassLoader.clear();
+        mLibraryPath = null;
+        mLibraryLastModified = 0;
+    }
+
+    /**
+     * Last modified timestamp for the file, or 0 if the file doesn't exist or can't be accessed
+     */
+    private static long getLastModified(Path path)
+    {
+        if(path != null)
+        {
+            try
+            {
+                return Files.getLastModifiedTime(path).toMillis();
+            }
+            catch(IOException ioe)
+            {
+                //Do nothing - the load attempt will report the error
+            }
+        }
+
+        return 0;
+    }
+
+    private static void close(URLClassLoader classLoader)
+    {
+        try
+        {
+            classLoader.close();
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error closing JMBE library class loader", ioe);
+        }
+    }
+}
@@ -20,6 +20,7 @@ package io.github.dsheirer.audio.convert;
 
 import io.github.dsheirer.audio.AudioFormats;
 import io.github.dsheirer.audio.AudioUtils;
+import io.github.dsheirer.sample.ConversionUtils;
 import net.sourceforge.lame.lowlevel.LameEncoder;
 import net.sourceforge.lame.mp3.Lame;
 import net.sourceforge.lame.mp3.MPEGMode;
@@ -114,6 +115,45 @@ public class MP3AudioConverter implements IAudioConverter
         }
     }
 
+    /**
+     * Converts a single PCM audio buffer to MP3.  The encoder retains any partial frame between invocations, so
+     * successive calls produce a continuous MP3 stream that is completed by a final call to flush().
+     *
+     * @param audioBuffer of 8 kHz PCM samples
+     * @return MP3 frame bytes produced by this buffer, possibly empty
+     */
+    public byte[] convertAudio(float[] audioBuffer)
+    {
+        mMP3Stream.reset();
+
+        byte[] pcmBytes = ConversionUtils.convertToSigned16BitSamples(audioBuffer).array();
+
+        int pcmBytesPosition = 0;
+
+        try
+        {
+            while(pcmBytesPosition < pcmBytes.length)
+            {
+                int pcmBufferSize = FastMath.min(mMP3Buffer.length, pcmBytes.length - pcmBytesPosition);
+                int mp3BufferSize = mEncoder.encodeBuffer(pcmBytes, pcmBytesPosition, pcmBufferSize, mMP3Buffer);
+                pcmBytesPosition += pcmBufferSize;
+
+                //The encoder buffers input until it has enough samples for a full frame
+                if(mp3BufferSize > 0)
+                {
+                    mMP3Stream.write(mMP3Buffer, 0, mp3BufferSize);
+                }
+            }
+
+            return mMP3Stream.toByteArray();
+        }
+        catch(Exception e)
+        {
+            mLog.error("There was an error converting audio to MP3: " + e.getMessage());
+            return new byte[0];
+        }
+    }
+
     @Override
     public byte[] flush()
     {
@@ -0,0 +1,103 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.audio.convert;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Incremental MP3 encoder attached to an audio segment.  Audio buffers are encoded as the producer adds them to the
+ * segment, so that the encoding work is spread across the life of the call instead of occurring in a single burst
+ * when the call completes.  Recording and streaming consumers share the encoded audio via getMP3Audio() instead of
+ * each re-encoding the segment's audio buffers.
+ *
+ * All methods are thread-safe.
+ */
+public class MP3EncoderSession
+{
+    public static final int MP3_BIT_RATE = 16;
+    public static final boolean CONSTANT_BIT_RATE = false;
+
+    private MP3AudioConverter mConverter = new MP3AudioConverter(MP3_BIT_RATE, CONSTANT_BIT_RATE);
+    private ByteArrayOutputStream mMP3Stream = new ByteArrayOutputStream();
+    private byte[] mMP3Audio;
+    private int mEncodedBufferCount;
+
+    /**
+     * Encodes the audio buffer and appends the produced MP3 frames to the encoded audio.
+     *
+     * @param audioBuffer to encode
+     * @throws IllegalStateException if the session has already been finished via getMP3Audio()
+     */
+    public synchronized void encode(float[] audioBuffer)
+    {
+        if(mMP3Audio != null)
+        {
+            throw new IllegalStateException("Can't encode audio after the MP3 encoder session is finished");
+        }
+
+        byte[] mp3 = mConverter.convertAudio(audioBuffer);
+        mMP3Stream.write(mp3, 0, mp3.length);
+        mEncodedBufferCount++;
+    }
+
+    /**
+     * Number of audio buffers encoded by this session
+     */
+    public synchronized int getEncodedBufferCount()
+    {
+        return mEncodedBufferCount;
+    }
+
+    /**
+     * Indicates if this session has been finished and no longer accepts audio
+     */
+    public synchronized boolean isFinished()
+    {
+        return mMP3Audio != null;
+    }
+
+    /**
+     * Finishes the session on the first invocation by flushing the final partial frame from the encoder, and
+     * returns the complete MP3 encoded audio.  Subsequent invocations return the same encoded audio, so this method
+     * should only be invoked once the producer has added all audio to the segment.
+     *
+     * @return MP3 encoded audio
+     */
+    public synchronized byte[] getMP3Audio()
+    {
+        if(mMP3Audio == null)
+        {
+            byte[] lastFrame = mConverter.flush();
+
+            if(lastFrame != null && lastFrame.length > 0)
+            {
+                mMP3Stream.write(lastFrame, 0, lastFrame.length);
+            }
+
+            mMP3Audio = mMP3Stream.toByteArray();
+            mMP3Stream = null;
+            mConverter = null;
+        }
+
+        return mMP3Audio;
+    }
+}
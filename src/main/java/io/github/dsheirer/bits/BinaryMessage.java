@@ -26,7 +26,16 @@ import org.apache.commons.lang3.Validate;
 import org.apache.commons.math3.util.FastMath;
 
 import java.util.BitSet;
+import java.util.Random;
 
+/**
+ * Binary message based on a bitset with a logical (constructed) size and methods for accessing field values.
+ *
+ * Field values are extracted from a cached snapshot of the bitset's 64-bit words, so that contiguous fields are
+ * read with a shift and mask instead of testing each bit.  Field index arrays are scanned for runs of ascending or
+ * descending contiguous indices and each run is extracted as a single field.  The snapshot is discarded by every
+ * method that modifies the bitset, so messages are normally assembled first and then parsed.
+ */
 public class BinaryMessage extends BitSet
 {
     private static final long serialVersionUID = 1L;
@@ -58,6 +67,12 @@ public class BinaryMessage extends BitSet
      */
     private CRC mCRC;
 
+    /**
+     * Snapshot of the bitset words for field extraction, created on first access after any modification.  The
+     * snapshot array is never modified once created, so it can be shared with copies of this message.
+     */
+    private transient volatile long[] mWords;
+
     public BinaryMessage(int size)
     {
         super(size);
@@ -103,6 +118,7 @@ public class BinaryMessage extends BitSet
         this.mPointer = toCopyFrom.pointer();
         this.mCRC = toCopyFrom.mCRC;
         this.mSize = toCopyFrom.mSize;
+        this.mWords = toCopyFrom.mWords;
     }
 
     public BinaryMessage(BitSet bitset, int size)
@@ -255,6 +271,188 @@ public class BinaryMessage extends BitSet
         mPointer = 0;
     }
 
+    /*
+     * Bitset modification methods are overridden to discard the word snapshot used for field extraction.
+     */
+
+    @Override
+    public void set(int bitIndex)
+    {
+        super.set(bitIndex);
+        mWords = null;
+    }
+
+    @Override
+    public void set(int bitIndex, boolean value)
+    {
+        super.set(bitIndex, value);
+        mWords = null;
+    }
+
+    @Override
+    public void set(int fromIndex, int toIndex)
+    {
+        super.set(fromIndex, toIndex);
+        mWords = null;
+    }
+
+    @Override
+    public void set(int fromIndex, int toIndex, boolean value)
+    {
+        super.set(fromIndex, toIndex, value);
+        mWords = null;
+    }
+
+    @Override
+    public void clear(int bitIndex)
+    {
+        super.clear(bitIndex);
+        mWords = null;
+    }
+
+    @Override
+    public void clear(int fromIndex, int toIndex)
+    {
+        super.clear(fromIndex, toIndex);
+        mWords = null;
+    }
+
+    @Override
+    public void flip(int bitIndex)
+    {
+        super.flip(bitIndex);
+        mWords = null;
+    }
+
+    @Override
+    public void flip(int fromIndex, int toIndex)
+    {
+        super.flip(fromIndex, toIndex);
+        mWords = null;
+    }
+
+    @Override
+    public void and(BitSet set)
+    {
+        super.and(set);
+        mWords = null;
+    }
+
+    @Override
+    public void or(BitSet set)
+    {
+        super.or(set);
+        mWords = null;
+    }
+
+    @Override
+    public void xor(BitSet set)
+    {
+        super.xor(set);
+        mWords = null;
+    }
+
+    @Override
+    public void andNot(BitSet set)
+    {
+        super.andNot(set);
+        mWords = null;
+    }
+
+    /**
+     * Snapshot of the bitset words, created if necessary.
+     */
+    private long[] getWords()
+    {
+        long[] words = mWords;
+
+        if(words == null)
+        {
+            words = toLongArray();
+            mWords = words;
+        }
+
+        return words;
+    }
+
+    /**
+     * Extracts width bits starting at the index, where the bit at index is placed in the least significant bit
+     * position of the returned value (ie bitset word order).
+     *
+     * @param words snapshot
+     * @param index of the first bit
+     * @param width in bits, 1 - 64
+     * @return raw bits, including unmasked bits above the width
+     */
+    private static long getRawBits(long[] words, int index, int width)
+    {
+        int wordIndex = index >> 6;
+        int shift = index & 0x3F;
+
+        long raw = wordIndex < words.length ? words[wordIndex] >>> shift : 0;
+
+        if(shift + width > 64 && wordIndex + 1 < words.length)
+        {
+            raw |= words[wordIndex + 1] << (64 - shift);
+        }
+
+        return raw;
+    }
+
+    /**
+     * Extracts width bits starting at the index with the bit at index as the most significant bit.
+     */
+    private static long getField(long[] words, int index, int width)
+    {
+        return Long.reverse(getRawBits(words, index, width)) >>> (64 - width);
+    }
+
+    /**
+     * Extracts the value of the bits at the indices array positions plus the offset, where the first index is the
+     * most significant bit.  Runs of contiguous ascending or descending indices are extracted as a single field.
+     */
+    private long getFieldValue(int[] bits, int offset)
+    {
+        long[] words = getWords();
+        long value = 0;
+        int x = 0;
+
+        while(x < bits.length)
+        {
+            int start = bits[x];
+            int run = 1;
+
+            if(x + 1 < bits.length && bits[x + 1] == start + 1)
+            {
+                while(x + run < bits.length && bits[x + run] == start + run)
+                {
+                    run++;
+                }
+
+                value = (value << run) | getField(words, start + offset, run);
+            }
+            else if(x + 1 < bits.length && bits[x + 1] == start - 1)
+            {
+                while(x + run < bits.length && bits[x + run] == start - run)
+                {
+                    run++;
+                }
+
+                //Descending indices place the lowest index in the least significant bit, matching the word order
+                long raw = getRawBits(words, start - run + 1 + offset, run);
+                value = (value << run) | (run == 64 ? raw : raw & ((1L << run) - 1));
+            }
+            else
+            {
+                value = (value << 1) | (getRawBits(words, start + offset, 1) & 1);
+            }
+
+            x += run;
+        }
+
+        return value;
+    }
+
     /**
      * Adds a the bit parameters to this bitset, placing it in the index
      * specified by mPointer, and incrementing mPointer to prepare for the next
@@ -433,19 +631,7 @@ public class BinaryMessage extends BitSet
                 + "or less to fit into a primitive integer value");
         }
 
-        int value = 0;
-
-        for(int index : bits)
-        {
-            value = Integer.rotateLeft(value, 1);
-
-            if(get(index))
-            {
-                value++;
-            }
-        }
-
-        return value;
+        return (int)getFieldValue(bits, 0);
     }
 
     /**
@@ -465,19 +651,7 @@ public class BinaryMessage extends BitSet
                 + "or less to fit into a primitive integer value");
         }
 
-        int value = 0;
-
-        for(int index : bits)
-        {
-            value = Integer.rotateLeft(value, 1);
-
-            if(get(index + offset))
-            {
-                value++;
-            }
-        }
-
-        return value;
+        return (int)getFieldValue(bits, offset);
     }
 
     public void setInt(int value, int[] indices)
@@ -513,19 +687,7 @@ public class BinaryMessage extends BitSet
                 + "indexes to form a proper byte");
         }
 
-        int value = 0;
-
-        for(int index : bits)
-        {
-            value = Integer.rotateLeft(value, 1);
-
-            if(get(index))
-            {
-                value++;
-            }
-        }
-
-        return (byte)(value & 0xFF);
+        return (byte)(getFieldValue(bits, 0) & 0xFF);
     }
 
     /**
@@ -545,19 +707,7 @@ public class BinaryMessage extends BitSet
                 + "indexes to form a proper byte");
         }
 
-        int value = 0;
-
-        for(int index : bits)
-        {
-            value = Integer.rotateLeft(value, 1);
-
-            if(get(index + offset))
-            {
-                value++;
-            }
-        }
-
-        return (byte)(value & 0xFF);
+        return (byte)(getFieldValue(bits, offset) & 0xFF);
     }
 
     /**
@@ -673,19 +823,7 @@ public class BinaryMessage extends BitSet
                 + "or less to fit into a primitive long value");
         }
 
-        long value = 0;
-
-        for(int index : bits)
-        {
-            value = Long.rotateLeft(value, 1);
-
-            if(get(index))
-            {
-                value++;
-            }
-        }
-
-        return value;
+        return getFieldValue(bits, 0);
     }
 
     /**
@@ -705,19 +843,7 @@ public class BinaryMessage extends BitSet
                 + "or less to fit into a primitive long value");
         }
 
-        long value = 0;
-
-        for(int index : bits)
-        {
-            value = Long.rotateLeft(value, 1);
-
-            if(get(index + offset))
-            {
-                value++;
-            }
-        }
-
-        return value;
+        return getFieldValue(bits, offset);
     }
 
     /**
@@ -804,7 +930,11 @@ public class BinaryMessage extends BitSet
 
         int value = 0;
 
-        if(start < end)
+        if(start <= end && end - start < 32)
+        {
+            return (int)getField(getWords(), start, end - start + 1);
+        }
+        else if(start < end)
         {
             for(int x = start; x <= end; x++)
             {
@@ -856,7 +986,11 @@ public class BinaryMessage extends BitSet
 
         long value = 0;
 
-        if(start < end)
+        if(start <= end && end - start < 64)
+        {
+            return getField(getWords(), start, end - start + 1);
+        }
+        else if(start < end)
         {
             for(int x = start; x <= end; x++)
             {
@@ -1117,19 +1251,107 @@ public class BinaryMessage extends BitSet
         this.xor(mask);
     }
 
+    /**
+     * Reference field extraction that tests each bit, used to verify and benchmark the word based extraction.
+     */
+    private static long getFieldValueByBit(BinaryMessage message, int[] bits)
+    {
+        long value = 0;
+
+        for(int index : bits)
+        {
+            value = Long.rotateLeft(value, 1);
+
+            if(message.get(index))
+            {
+                value++;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Verifies and benchmarks field extraction against the per-bit reference using random 196-bit messages (P25
+     * trellis decoded block size) and a mix of contiguous, split and reversed field index arrays.
+     */
     public static void main(String[] args)
     {
-        BinaryMessage message = new BinaryMessage(10);
-        message.set(1);
-        message.set(4);
-        message.set(5);
-        message.set(8);
-        message.set(9);
+        Random random = new Random(7);
+        BinaryMessage[] messages = new BinaryMessage[10000];
+
+        for(int x = 0; x < messages.length; x++)
+        {
+            messages[x] = new BinaryMessage(196);
+
+            for(int bit = 0; bit < 196; bit++)
+            {
+                if(random.nextBoolean())
+                {
+                    messages[x].set(bit);
+                }
+            }
+        }
 
-        System.out.println("Hex: " + message.toHexString() + " Size:" + message.size());
-        for(int x = 0; x < 10; x++)
+        int[][] fields = new int[][]{getFieldIndexes(0, 8, false), getFieldIndexes(8, 24, false),
+            getFieldIndexes(60, 16, false), getFieldIndexes(120, 32, false), getFieldIndexes(100, 12, true),
+            {136, 137, 180, 181, 182, 183}, {1, 5, 9, 13, 17, 21, 25, 29}, getFieldIndexes(130, 64, false)};
+
+        int mismatches = 0;
+
+        for(BinaryMessage message: messages)
         {
-            System.out.println(x + ": " + message.getHex(x, x + 10));
+            for(int[] field: fields)
+            {
+                if(message.getLong(field) != getFieldValueByBit(message, field))
+                {
+                    mismatches++;
+                }
+            }
+
+            for(int start = 0; start < 160; start += 7)
+            {
+                if(message.getInt(start, start + 31) != (int)getFieldValueByBit(message,
+                    getFieldIndexes(start, 32, false)))
+                {
+                    mismatches++;
+                }
+            }
         }
+
+        long checksum = 0;
+        long start = System.nanoTime();
+
+        for(int repeat = 0; repeat < 20; repeat++)
+        {
+            for(BinaryMessage message: messages)
+            {
+                for(int[] field: fields)
+                {
+                    checksum += getFieldValueByBit(message, field);
+                }
+            }
+        }
+
+        long bitDuration = System.nanoTime() - start;
+        start = System.nanoTime();
+
+        for(int repeat = 0; repeat < 20; repeat++)
+        {
+            for(BinaryMessage message: messages)
+            {
+                for(int[] field: fields)
+                {
+                    checksum -= message.getLong(field);
+                }
+            }
+        }
+
+        long wordDuration = System.nanoTime() - start;
+        long extractions = 20L * messages.length * fields.length;
+
+        System.out.println("Mismatches: " + mismatches + " Checksum: " + checksum);
+        System.out.println("Per-bit extraction: " + (bitDuration / extractions) + " ns/field  Word extraction: " +
+            (wordDuration / extractions) + " ns/field");
     }
 }
@@ -96,6 +96,22 @@ public class ChannelEvent
         return new ChannelEvent(channel, Event.REQUEST_DISABLE);
     }
 
+    /**
+     * Creates a request to prepare a traffic channel processing chain in advance of a channel grant
+     */
+    public static ChannelEvent requestPrepare(Channel channel)
+    {
+        return new ChannelEvent(channel, Event.REQUEST_PREPARE);
+    }
+
+    /**
+     * Creates a request to delete a channel and dispose of any processing chain that is retained for the channel
+     */
+    public static ChannelEvent requestDelete(Channel channel)
+    {
+        return new ChannelEvent(channel, Event.REQUEST_DELETE);
+    }
+
     /**
      * Channel events to describe the specific event
      */
@@ -125,6 +141,8 @@ public class ChannelEvent
         REQUEST_DISABLE,
         //Request to enable a channel - response will be a PROCESSING_START_NOTIFICATION
         REQUEST_ENABLE,
+        //Request to construct a processing chain for a traffic channel in advance of a channel grant
+        REQUEST_PREPARE,
         //Request to select the channel
         REQUEST_SELECT;
     }
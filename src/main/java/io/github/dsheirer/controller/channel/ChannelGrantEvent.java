@@ -30,6 +30,7 @@ public class ChannelGrantEvent extends ChannelEvent
 {
     private IChannelDescriptor mChannelDescriptor;
     private IdentifierCollection mIdentifierCollection;
+    private long mTimestamp = System.nanoTime();
 
     /**
      * Constructs a channel grant event
@@ -61,4 +62,12 @@ public class ChannelGrantEvent extends ChannelEvent
     {
         return mIdentifierCollection;
     }
+
+    /**
+     * Time this grant event was created, in System.nanoTime() units, for measuring channel grant latency
+     */
+    public long getTimestamp()
+    {
+        return mTimestamp;
+    }
 }
@@ -26,6 +26,7 @@ import io.github.dsheirer.audio.AudioSegment;
 import io.github.dsheirer.channel.IChannelDescriptor;
 import io.github.dsheirer.channel.metadata.ChannelMetadata;
 import io.github.dsheirer.channel.metadata.ChannelMetadataModel;
+import io.github.dsheirer.controller.NamingThreadFactory;
 import io.github.dsheirer.controller.channel.map.ChannelMapModel;
 import io.github.dsheirer.filter.FilterSet;
 import io.github.dsheirer.identifier.Form;
@@ -42,6 +43,7 @@ import io.github.dsheirer.module.decode.event.IDecodeEvent;
 import io.github.dsheirer.module.decode.event.MessageActivityModel;
 import io.github.dsheirer.module.log.EventLogManager;
 import io.github.dsheirer.preference.UserPreferences;
+import io.github.dsheirer.properties.SystemProperties;
 import io.github.dsheirer.record.RecorderFactory;
 import io.github.dsheirer.sample.Broadcaster;
 import io.github.dsheirer.sample.Listener;
@@ -51,27 +53,49 @@ import io.github.dsheirer.source.SourceException;
 import io.github.dsheirer.source.SourceManager;
 import io.github.dsheirer.source.config.SourceConfigTuner;
 import io.github.dsheirer.source.config.SourceConfigTunerMultipleFrequency;
+import io.github.dsheirer.util.LatencyHistogram;
 import javafx.application.Platform;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Channel processing manager handles all starting and stopping of channel decoding.  A processing chain is created
  * for each channel that is enabled.  The processing chain contains all of the components needed to decode a specific
  * channel and protocol along with all logging and baseband or bitstream recording.  Audio recording is handled outside
  * of this class by the RecorderManager.
+ *
+ * Channel requests are processed concurrently and are only serialized per channel, with the exception of tuner
+ * channel source allocation which is serialized across all channels.  Traffic channel managers can request that
+ * processing chains for their traffic channels be prepared in advance, so that a channel grant only has to allocate
+ * a source and start the chain.  The delay from each channel grant to the arrival of the first baseband sample
+ * buffer is recorded in a latency histogram.
  */
 public class ChannelProcessingManager implements Listener<ChannelEvent>
 {
     private final static Logger mLog = LoggerFactory.getLogger(ChannelProcessingManager.class);
     private static final String TUNER_UNAVAILABLE_DESCRIPTION = "TUNER UNAVAILABLE";
-    private Map<Channel,ProcessingChain> mProcessingChains = new HashMap<>();
+    public static final String PROPERTY_PREPARED_TRAFFIC_CHANNEL_COUNT = "traffic.channel.prepared.count";
+    public static final int DEFAULT_PREPARED_TRAFFIC_CHANNEL_COUNT = 2;
+    private Map<Channel,ProcessingChain> mProcessingChains = new ConcurrentHashMap<>();
+    private final Object mSourceAllocationLock = new Object();
+    private Map<Channel,Future<?>> mPendingPreparations = new ConcurrentHashMap<>();
+    private ExecutorService mPreparationExecutor = Executors.newSingleThreadExecutor(
+        new NamingThreadFactory("sdrtrunk processing chain preparation"));
+    private LatencyHistogram mGrantLatencyHistogram = new LatencyHistogram("Channel grant to first sample");
+    private AtomicLong mProcessingChainsCreated = new AtomicLong();
+    private AtomicLong mProcessingChainsReused = new AtomicLong();
 
     private List<Listener<AudioSegment>> mAudioSegmentListeners = new CopyOnWriteArrayList<>();
     private List<Listener<IDecodeEvent>> mDecodeEventListeners = new CopyOnWriteArrayList<>();
@@ -83,7 +107,7 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
     private SourceManager mSourceManager;
     private AliasModel mAliasModel;
     private UserPreferences mUserPreferences;
-    private List<Long> mUnTunableFrequencies = new ArrayList<>();
+    private Set<Long> mUnTunableFrequencies = ConcurrentHashMap.newKeySet();
 
     /**
      * Constructs the channel processing manager
@@ -113,13 +137,52 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
         return mChannelMetadataModel;
     }
 
+    /**
+     * Number of traffic channels per traffic channel pool that a traffic channel manager should request to be prepared
+     * in advance of channel grants.
+     */
+    public static int getPreparedTrafficChannelCount()
+    {
+        return SystemProperties.getInstance().get(PROPERTY_PREPARED_TRAFFIC_CHANNEL_COUNT,
+            DEFAULT_PREPARED_TRAFFIC_CHANNEL_COUNT);
+    }
+
+    /**
+     * Requests that processing chains be prepared in advance for the first traffic channels in a traffic channel
+     * pool.  Traffic channel managers return channels to the head of the available queue after use, so grants are
+     * served from these prepared channels first and the remaining channels only get a processing chain when
+     * concurrent grants require one.
+     *
+     * @param trafficChannels in the traffic channel pool
+     * @param listener to receive the prepare requests
+     */
+    public static void prepareTrafficChannels(List<Channel> trafficChannels, Listener<ChannelEvent> listener)
+    {
+        int count = Math.min(getPreparedTrafficChannelCount(), trafficChannels.size());
+
+        for(int x = 0; x < count; x++)
+        {
+            listener.receive(ChannelEvent.requestPrepare(trafficChannels.get(x)));
+        }
+    }
+
+    /**
+     * Histogram of the delay between a traffic channel grant event and the arrival of the first baseband sample
+     * buffer in the traffic channel processing chain.
+     */
+    public LatencyHistogram getGrantLatencyHistogram()
+    {
+        return mGrantLatencyHistogram;
+    }
+
     /**
      * Indicates if a processing chain is constructed for the channel and that
      * the processing chain is currently processing.
      */
     private boolean isProcessing(Channel channel)
     {
-        return mProcessingChains.containsKey(channel) && mProcessingChains.get(channel).isProcessing();
+        ProcessingChain processingChain = mProcessingChains.get(channel);
+        return processingChain != null && processingChain.isProcessing();
     }
 
     /**
@@ -128,7 +191,15 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
      */
     public boolean isProcessing()
     {
-        return !mProcessingChains.isEmpty();
+        for(ProcessingChain processingChain : mProcessingChains.values())
+        {
+            if(processingChain.isProcessing())
+            {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -168,49 +239,45 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
      * @param event that requests either enable/start or disable/stop a channel.
      */
     @Override
-    public synchronized void receive(ChannelEvent event)
+    public void receive(ChannelEvent event)
     {
         Channel channel = event.getChannel();
 
         switch(event.getEvent())
         {
             case REQUEST_ENABLE:
-                if(!isProcessing(channel))
+                //Requests for a channel that is already processing are ignored under the channel lock
+                try
                 {
-                    try
-                    {
-                        startProcessing(event);
-                    }
-                    catch(ChannelException ce)
+                    startProcessing(event);
+                }
+                catch(ChannelException ce)
+                {
+                    if(channel.getSourceConfiguration() instanceof SourceConfigTuner)
                     {
-                        if(channel.getSourceConfiguration() instanceof SourceConfigTuner)
-                        {
-                            long frequency = ((SourceConfigTuner)channel.getSourceConfiguration()).getFrequency();
+                        long frequency = ((SourceConfigTuner)channel.getSourceConfiguration()).getFrequency();
 
-                            if(!mUnTunableFrequencies.contains(frequency))
-                            {
-                                mUnTunableFrequencies.add(frequency);
-                                mLog.error("Error starting requested channel [" + channel.getName() + ":" + frequency +
-                                    "] - " + ce.getMessage());
-                            }
-                        }
-                        else if(channel.getSourceConfiguration() instanceof SourceConfigTunerMultipleFrequency)
+                        if(mUnTunableFrequencies.add(frequency))
                         {
-                            List<Long> frequencies = ((SourceConfigTunerMultipleFrequency)channel
-                                .getSourceConfiguration()).getFrequencies();
-
-                            if(frequencies.size() > 0 && !mUnTunableFrequencies.contains(frequencies.get(0)))
-                            {
-                                mUnTunableFrequencies.add(frequencies.get(0));
-                                mLog.error("Error starting requested channel [" + channel.getName() + ":" + frequencies +
-                                    "] - " + ce.getMessage());
-                            }
+                            mLog.error("Error starting requested channel [" + channel.getName() + ":" + frequency +
+                                "] - " + ce.getMessage());
                         }
-                        else
+                    }
+                    else if(channel.getSourceConfiguration() instanceof SourceConfigTunerMultipleFrequency)
+                    {
+                        List<Long> frequencies = ((SourceConfigTunerMultipleFrequency)channel
+                            .getSourceConfiguration()).getFrequencies();
+
+                        if(frequencies.size() > 0 && mUnTunableFrequencies.add(frequencies.get(0)))
                         {
-                            mLog.error("Error starting requested channel [" + channel.getName() + "] - " + ce.getMessage());
+                            mLog.error("Error starting requested channel [" + channel.getName() + ":" + frequencies +
+                                "] - " + ce.getMessage());
                         }
                     }
+                    else
+                    {
+                        mLog.error("Error starting requested channel [" + channel.getName() + "] - " + ce.getMessage());
+                    }
                 }
                 break;
             case REQUEST_DISABLE:
@@ -251,6 +318,12 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
                     }
                 }
                 break;
+            case REQUEST_PREPARE:
+                prepareProcessingChain(channel);
+                break;
+            case REQUEST_DELETE:
+                deleteProcessingChain(channel);
+                break;
             default:
                 break;
         }
@@ -263,7 +336,10 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
      */
     public void start(Channel channel) throws ChannelException
     {
-        startProcessing(new ChannelEvent(channel, ChannelEvent.Event.REQUEST_ENABLE));
+        if(!startProcessing(new ChannelEvent(channel, ChannelEvent.Event.REQUEST_ENABLE)))
+        {
+            throw new ChannelException("Channel is already playing");
+        }
     }
 
     /**
@@ -279,182 +355,312 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
      * Starts a channel/processing chain
      *
      * @param event that requested the channel start
+     * @return true if the channel was started or false if the channel is already processing
+     * @throws ChannelException if the channel can't be started
      */
-    private void startProcessing(ChannelEvent event) throws ChannelException
+    private boolean startProcessing(ChannelEvent event) throws ChannelException
     {
         Channel channel = event.getChannel();
 
-        ProcessingChain processingChain = mProcessingChains.get(channel);
-
-        //If we're already processing, ignore the request
-        if(processingChain != null && processingChain.isProcessing())
+        synchronized(channel)
         {
-            throw new ChannelException("Channel is already playing");
-        }
+            ProcessingChain processingChain = mProcessingChains.get(channel);
 
-        //Ensure that we can get a source before we construct a new processing chain
-        Source source = null;
+            //If we're already processing, ignore the request
+            if(processingChain != null && processingChain.isProcessing())
+            {
+                return false;
+            }
 
-        try
-        {
-            source = mSourceManager.getSource(channel.getSourceConfiguration(),
-                channel.getDecodeConfiguration().getChannelSpecification());
-        }
-        catch(SourceException se)
-        {
-            mLog.debug("Error obtaining source for channel [" + channel.getName() + "]", se);
-        }
+            //Ensure that we can get a source before we construct a new processing chain.  Tuner channel source
+            //allocation is not thread-safe, so allocation requests are serialized across all channels.
+            Source source = null;
 
-        if(source == null)
-        {
-            //This has to be done on the FX event thread when the playlist editor is constructed
-            Platform.runLater(() -> channel.setProcessing(false));
+            synchronized(mSourceAllocationLock)
+            {
+                try
+                {
+                    source = mSourceManager.getSource(channel.getSourceConfiguration(),
+                        channel.getDecodeConfiguration().getChannelSpecification());
+                }
+                catch(SourceException se)
+                {
+                    mLog.debug("Error obtaining source for channel [" + channel.getName() + "]", se);
+                }
+            }
 
-            mChannelEventBroadcaster.broadcast(new ChannelEvent(channel,
-                ChannelEvent.Event.NOTIFICATION_PROCESSING_START_REJECTED, TUNER_UNAVAILABLE_DESCRIPTION));
+            if(source == null)
+            {
+                //This has to be done on the FX event thread when the playlist editor is constructed
+                Platform.runLater(() -> channel.setProcessing(false));
 
-            throw new ChannelException("No Tuner Available");
-        }
+                mChannelEventBroadcaster.broadcast(new ChannelEvent(channel,
+                    ChannelEvent.Event.NOTIFICATION_PROCESSING_START_REJECTED, TUNER_UNAVAILABLE_DESCRIPTION));
 
-        if(processingChain == null)
-        {
-            processingChain = new ProcessingChain(channel, mAliasModel);
-            mChannelEventBroadcaster.addListener(processingChain);
+                throw new ChannelException("No Tuner Available");
+            }
 
-            /* Register global listeners */
-            for(Listener<AudioSegment> listener : mAudioSegmentListeners)
+            if(processingChain == null)
             {
-                processingChain.addAudioSegmentListener(listener);
+                processingChain = createProcessingChain(channel);
             }
+            else
+            {
+                mProcessingChainsReused.incrementAndGet();
+            }
+
+            /* Setup event logging */
+            List<Module> loggers = mEventLogManager.getLoggers(channel);
 
-            for(Listener<IDecodeEvent> listener : mDecodeEventListeners)
+            if(!loggers.isEmpty())
             {
-                processingChain.addDecodeEventListener(listener);
+                processingChain.addModules(loggers);
             }
 
-            //Add a listener to detect source error state that indicates the channel should be shutdown
-            processingChain.addSourceEventListener(sourceEvent ->
+            //Add recorders
+            processingChain.addModules(RecorderFactory.getRecorders(mUserPreferences, channel));
+
+            //Register channel to receive frequency correction events to show in the spectral display (hack!)
+            processingChain.addFrequencyChangeListener(channel);
+
+            //Set the samples source
+            processingChain.setSource(source);
+
+            //Inject the channel identifier for traffic channels and preload user identifiers
+            if(channel.isTrafficChannel() && event instanceof ChannelGrantEvent)
             {
-                if(sourceEvent.getEvent() == SourceEvent.Event.NOTIFICATION_ERROR_STATE && sourceEvent.getSource() != null)
-                {
-                    Channel toShutdown = null;
+                ChannelGrantEvent channelGrantEvent = (ChannelGrantEvent)event;
+                IChannelDescriptor channelDescriptor = channelGrantEvent.getChannelDescriptor();
 
-                    for(Map.Entry<Channel,ProcessingChain> entry: mProcessingChains.entrySet())
-                    {
-                        if(entry.getValue().hasSource(sourceEvent.getSource()))
-                        {
-                            toShutdown = entry.getKey();
-                            break;
-                        }
-                    }
+                IdentifierCollection identifierCollection = channelGrantEvent.getIdentifierCollection();
 
-                    if(toShutdown != null)
+                if(channelDescriptor != null)
+                {
+                    for(int timeslot = 0; timeslot < channelDescriptor.getTimeslotCount(); timeslot++)
                     {
-                        mLog.warn("Channel source error detected - stopping channel [" + toShutdown.getName() + "]");
+                        DecoderLogicalChannelNameIdentifier identifier = DecoderLogicalChannelNameIdentifier
+                            .create(channelDescriptor.toString(), channelDescriptor.getProtocol());
+                        IdentifierUpdateNotification notification = new IdentifierUpdateNotification(identifier,
+                            IdentifierUpdateNotification.Operation.ADD, timeslot);
+                        processingChain.getChannelState().updateChannelStateIdentifiers(notification);
 
-                        try
-                        {
-                            stopProcessing(toShutdown, true);
-                        }
-                        catch(ChannelException ce)
+                        //Inject scramble parameters
+                        for(Identifier scrambleParameters:
+                            identifierCollection.getIdentifiers(Form.SCRAMBLE_PARAMETERS))
                         {
-                            mLog.error("Error stopping channel [" + channel.getName() + "] with source error - " +
-                                ce.getMessage());
+                            //Broadcast scramble parameters to both timeslots
+                            IdentifierUpdateNotification scrambleNotification =
+                                new IdentifierUpdateNotification(scrambleParameters,
+                                    IdentifierUpdateNotification.Operation.ADD, timeslot);
+                            processingChain.getChannelState().updateChannelStateIdentifiers(scrambleNotification);
                         }
                     }
                 }
-            });
 
-            //Register this manager to receive channel events from traffic channel manager modules within
-            //the processing chain
-            processingChain.addChannelEventListener(this);
+                for(Identifier userIdentifier : identifierCollection.getIdentifiers(IdentifierClass.USER))
+                {
+                    if(channelDescriptor.getTimeslotCount() > 1)
+                    {
+                        //Only broadcast an identifier update for the timeslot specified in the originating collection
+                        IdentifierUpdateNotification notification = new IdentifierUpdateNotification(userIdentifier,
+                            IdentifierUpdateNotification.Operation.ADD, identifierCollection.getTimeslot());
+                        processingChain.getChannelState().updateChannelStateIdentifiers(notification);
+                    }
+                    else
+                    {
+                        //Only broadcast an identifier update for the timeslot specified in the originating collection
+                        IdentifierUpdateNotification notification = new IdentifierUpdateNotification(userIdentifier,
+                            IdentifierUpdateNotification.Operation.ADD, 0);
+                        processingChain.getChannelState().updateChannelStateIdentifiers(notification);
+                    }
+                }
 
-            //Register channel to receive frequency correction events to show in the spectral display (hack!)
-            processingChain.addFrequencyChangeListener(channel);
+                processingChain.measureFirstSampleLatency(mGrantLatencyHistogram, channelGrantEvent.getTimestamp());
+            }
 
-            /* Processing Modules */
-            List<Module> modules = DecoderFactory.getModules(mChannelMapModel, channel, mAliasModel, mUserPreferences);
-            processingChain.addModules(modules);
+            processingChain.start();
+            //This has to be done on the FX event thread when the playlist editor is constructed
+            Platform.runLater(() -> channel.setProcessing(true));
 
-            /* Setup message activity model with filtering */
-            FilterSet<IMessage> messageFilter = DecoderFactory.getMessageFilters(modules);
-            MessageActivityModel messageModel = new MessageActivityModel(messageFilter);
-            processingChain.setMessageActivityModel(messageModel);
+            getChannelMetadataModel().add(processingChain.getChannelState().getChannelMetadata(), channel);
 
+            mProcessingChains.put(channel, processingChain);
         }
 
-        /* Setup event logging */
-        List<Module> loggers = mEventLogManager.getLoggers(channel);
+        mChannelEventBroadcaster.broadcast(new ChannelEvent(channel, ChannelEvent.Event.NOTIFICATION_PROCESSING_START));
 
-        if(!loggers.isEmpty())
+        return true;
+    }
+
+    /**
+     * Creates a processing chain for the channel with the decoder modules and global listeners registered.  Event
+     * loggers, recorders and the sample source are added each time the processing chain is started.
+     *
+     * @param channel for the processing chain
+     * @return constructed processing chain
+     */
+    private ProcessingChain createProcessingChain(Channel channel)
+    {
+        ProcessingChain processingChain = new ProcessingChain(channel, mAliasModel);
+        mChannelEventBroadcaster.addListener(processingChain);
+
+        /* Register global listeners */
+        for(Listener<AudioSegment> listener : mAudioSegmentListeners)
         {
-            processingChain.addModules(loggers);
+            processingChain.addAudioSegmentListener(listener);
         }
 
-        //Add recorders
-        processingChain.addModules(RecorderFactory.getRecorders(mUserPreferences, channel));
-
-        //Set the samples source
-        processingChain.setSource(source);
+        for(Listener<IDecodeEvent> listener : mDecodeEventListeners)
+        {
+            processingChain.addDecodeEventListener(listener);
+        }
 
-        //Inject the channel identifier for traffic channels and preload user identifiers
-        if(channel.isTrafficChannel() && event instanceof ChannelGrantEvent)
+        //Add a listener to detect source error state that indicates the channel should be shutdown
+        processingChain.addSourceEventListener(sourceEvent ->
         {
-            ChannelGrantEvent channelGrantEvent = (ChannelGrantEvent)event;
-            IChannelDescriptor channelDescriptor = channelGrantEvent.getChannelDescriptor();
+            if(sourceEvent.getEvent() == SourceEvent.Event.NOTIFICATION_ERROR_STATE && sourceEvent.getSource() != null)
+            {
+                Channel toShutdown = null;
 
-            IdentifierCollection identifierCollection = channelGrantEvent.getIdentifierCollection();
+                for(Map.Entry<Channel,ProcessingChain> entry: mProcessingChains.entrySet())
+                {
+                    if(entry.getValue().hasSource(sourceEvent.getSource()))
+                    {
+                        toShutdown = entry.getKey();
+                        break;
+                    }
+                }
 
-            if(channelDescriptor != null)
-            {
-                for(int timeslot = 0; timeslot < channelDescriptor.getTimeslotCount(); timeslot++)
+                if(toShutdown != null)
                 {
-                    DecoderLogicalChannelNameIdentifier identifier =
-                        DecoderLogicalChannelNameIdentifier.create(channelDescriptor.toString(), channelDescriptor.getProtocol());
-                    IdentifierUpdateNotification notification = new IdentifierUpdateNotification(identifier,
-                        IdentifierUpdateNotification.Operation.ADD, timeslot);
-                    processingChain.getChannelState().updateChannelStateIdentifiers(notification);
-
-                    //Inject scramble parameters
-                    for(Identifier scrambleParameters: identifierCollection.getIdentifiers(Form.SCRAMBLE_PARAMETERS))
+                    mLog.warn("Channel source error detected - stopping channel [" + toShutdown.getName() + "]");
+
+                    try
                     {
-                        //Broadcast scramble parameters to both timeslots
-                        IdentifierUpdateNotification scrambleNotification = new IdentifierUpdateNotification(scrambleParameters,
-                            IdentifierUpdateNotification.Operation.ADD, timeslot);
-                        processingChain.getChannelState().updateChannelStateIdentifiers(scrambleNotification);
+                        stopProcessing(toShutdown, true);
+                    }
+                    catch(ChannelException ce)
+                    {
+                        mLog.error("Error stopping channel [" + channel.getName() + "] with source error - " +
+                            ce.getMessage());
                     }
                 }
             }
+        });
 
-            for(Identifier userIdentifier : identifierCollection.getIdentifiers(IdentifierClass.USER))
+        //Register this manager to receive channel events from traffic channel manager modules within
+        //the processing chain
+        processingChain.addChannelEventListener(this);
+
+        /* Processing Modules */
+        List<Module> modules = DecoderFactory.getModules(mChannelMapModel, channel, mAliasModel, mUserPreferences);
+        processingChain.addModules(modules);
+
+        /* Setup message activity model with filtering */
+        FilterSet<IMessage> messageFilter = DecoderFactory.getMessageFilters(modules);
+        MessageActivityModel messageModel = new MessageActivityModel(messageFilter);
+        processingChain.setMessageActivityModel(messageModel);
+
+        mProcessingChainsCreated.incrementAndGet();
+
+        return processingChain;
+    }
+
+    /**
+     * Constructs a processing chain for the traffic channel on the preparation executor so that it is ready to start
+     * when the channel is granted.  Requests for a channel that already has a processing chain or a pending
+     * preparation are ignored.
+     *
+     * The pending preparation is tracked per channel so that a delete request can cancel it.  The preparation task
+     * only constructs the chain if its pending entry is still present when it acquires the channel lock, so a chain
+     * is never added after the channel has been deleted.
+     *
+     * @param channel to prepare
+     */
+    private void prepareProcessingChain(Channel channel)
+    {
+        synchronized(channel)
+        {
+            if(!channel.isTrafficChannel() || mProcessingChains.containsKey(channel) ||
+                mPendingPreparations.containsKey(channel))
             {
-                if(channelDescriptor.getTimeslotCount() > 1)
-                {
-                    //Only broadcast an identifier update for the timeslot specified in the originating collection
-                    IdentifierUpdateNotification notification = new IdentifierUpdateNotification(userIdentifier,
-                        IdentifierUpdateNotification.Operation.ADD, channelGrantEvent.getIdentifierCollection().getTimeslot());
-                    processingChain.getChannelState().updateChannelStateIdentifiers(notification);
-                }
-                else
-                {
-                    //Only broadcast an identifier update for the timeslot specified in the originating collection
-                    IdentifierUpdateNotification notification = new IdentifierUpdateNotification(userIdentifier,
-                        IdentifierUpdateNotification.Operation.ADD, 0);
-                    processingChain.getChannelState().updateChannelStateIdentifiers(notification);
-                }
+                return;
             }
 
+            try
+            {
+                mPendingPreparations.put(channel, mPreparationExecutor.submit(() -> {
+                    synchronized(channel)
+                    {
+                        if(mPendingPreparations.remove(channel) != null && !mProcessingChains.containsKey(channel))
+                        {
+                            try
+                            {
+                                mProcessingChains.put(channel, createProcessingChain(channel));
+                            }
+                            catch(Exception e)
+                            {
+                                mLog.error("Error preparing processing chain for channel [" + channel.getName() +
+                                    "]", e);
+                            }
+                        }
+                    }
+                }));
+            }
+            catch(RejectedExecutionException ree)
+            {
+                //Ignore - the channel processing manager is shutting down
+            }
         }
+    }
 
-        processingChain.start();
-        //This has to be done on the FX event thread when the playlist editor is constructed
-        Platform.runLater(() -> channel.setProcessing(true));
+    /**
+     * Cancels any pending processing chain preparation for the channel.  Must be invoked while holding the channel
+     * lock.
+     */
+    private void cancelPreparation(Channel channel)
+    {
+        Future<?> pending = mPendingPreparations.remove(channel);
 
-        getChannelMetadataModel().add(processingChain.getChannelState().getChannelMetadata(), channel);
+        if(pending != null)
+        {
+            pending.cancel(false);
+        }
+    }
 
-        mProcessingChains.put(channel, processingChain);
+    /**
+     * Stops the channel if it is processing and disposes of the processing chain that is retained for the channel.
+     *
+     * @param channel to delete
+     */
+    private void deleteProcessingChain(Channel channel)
+    {
+        synchronized(channel)
+        {
+            cancelPreparation(channel);
 
-        mChannelEventBroadcaster.broadcast(new ChannelEvent(channel, ChannelEvent.Event.NOTIFICATION_PROCESSING_START));
+            if(isProcessing(channel))
+            {
+                try
+                {
+                    stopProcessing(channel, true);
+                }
+                catch(ChannelException ce)
+                {
+                    mLog.error("Error stopping deleted channel [" + channel.getName() + "] - " + ce.getMessage());
+                }
+            }
+            else
+            {
+                ProcessingChain processingChain = mProcessingChains.remove(channel);
+
+                if(processingChain != null)
+                {
+                    mChannelEventBroadcaster.removeListener(processingChain);
+                    processingChain.dispose();
+                }
+            }
+        }
     }
 
     /**
@@ -468,10 +674,15 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
         //This has to be done on the FX event thread when the playlist editor is constructed
         Platform.runLater(() -> channel.setProcessing(false));
 
-        if(mProcessingChains.containsKey(channel))
+        synchronized(channel)
         {
             ProcessingChain processingChain = mProcessingChains.get(channel);
 
+            if(processingChain == null)
+            {
+                throw new ChannelException("Channel is not currently playing");
+            }
+
             for(ChannelMetadata channelMetadata: processingChain.getChannelState().getChannelMetadata())
             {
                 getChannelMetadataModel().remove(channelMetadata);
@@ -487,7 +698,8 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
             processingChain.removeFrequencyChangeListener(channel);
             channel.resetFrequencyCorrection();
 
-            mChannelEventBroadcaster.broadcast(new ChannelEvent(channel, ChannelEvent.Event.NOTIFICATION_PROCESSING_STOP));
+            mChannelEventBroadcaster.broadcast(new ChannelEvent(channel,
+                ChannelEvent.Event.NOTIFICATION_PROCESSING_STOP));
 
             if(remove)
             {
@@ -496,30 +708,47 @@ public class ChannelProcessingManager implements Listener<ChannelEvent>
                 processingChain.dispose();
             }
         }
-        else
-        {
-            throw new ChannelException("Channel is not currently playing");
-        }
     }
 
     /**
-     * Stops all currently processing channels to prepare for shutdown.
+     * Stops all currently processing channels and disposes of any prepared processing chains to prepare for shutdown.
      */
     public void shutdown()
     {
+        mPreparationExecutor.shutdown();
+
+        //Cancel pending preparations first, waiting on the channel lock for any chain that is being constructed
+        for(Channel channel: new ArrayList<>(mPendingPreparations.keySet()))
+        {
+            synchronized(channel)
+            {
+                cancelPreparation(channel);
+            }
+        }
+
         List<Channel> channelsToStop = new ArrayList<>(mProcessingChains.keySet());
 
         for(Channel channel : channelsToStop)
         {
-            try
+            if(isProcessing(channel))
             {
-                stopProcessing(channel, true);
+                try
+                {
+                    stopProcessing(channel, true);
+                }
+                catch(ChannelException ce)
+                {
+                    mLog.error("Error stopping channel [" + channel.getName() + "] - " + ce.getMessage());
+                }
             }
-            catch(ChannelException ce)
+            else
             {
-                mLog.error("Error stopping channel [" + channel.getName() + "] - " + ce.getMessage());
+                deleteProcessingChain(channel);
             }
         }
+
+        mLog.info("Processing chains created [" + mProcessingChainsCreated.get() + "] reused [" +
+            mProcessingChainsReused.get() + "] - " + mGrantLatencyHistogram.getSummary());
     }
 
     /**
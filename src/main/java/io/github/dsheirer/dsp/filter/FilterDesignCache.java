@@ -0,0 +1,364 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.dsp.filter;
+
+import io.github.dsheirer.dsp.filter.design.FilterDesignException;
+import io.github.dsheirer.dsp.filter.fir.FIRFilterSpecification;
+import io.github.dsheirer.dsp.filter.fir.remez.RemezFIRFilterDesigner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Process-wide, thread-safe cache of designed filter coefficients (taps).
+ *
+ * Filter designs are keyed by the full design specification, so any decoder, demodulator or channelizer that
+ * requests an identical filter reuses the taps designed by the first request instead of re-running the (Remez)
+ * design algorithm.  The cache can be saved to a compact file at shutdown and loaded at startup so that filters
+ * are available before the first channel starts.
+ *
+ * Callers receive a copy of the cached taps, so the cached design can't be modified.
+ */
+public class FilterDesignCache
+{
+    private final static Logger mLog = LoggerFactory.getLogger(FilterDesignCache.class);
+
+    /**
+     * File format version.  Increment this value whenever a filter design algorithm changes so that filters designed
+     * by the previous algorithm are not loaded from a persisted cache.
+     */
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_MAGIC = 0x46444331; //FDC1
+
+    /**
+     * Maximum number of filter designs held in the cache and persisted to the file.  When the cache is full, a new
+     * design replaces a design that was loaded from the file but not requested during this session, or is designed
+     * but not cached when every cached design has been requested.
+     */
+    public static final int MAXIMUM_ENTRIES = 2048;
+
+    /**
+     * Maximum filter length accepted from a persisted cache file
+     */
+    private static final int MAXIMUM_TAP_COUNT = 65536;
+
+    private static final Map<String,float[]> sCache = new ConcurrentHashMap<>();
+    private static final Set<String> sRequestedKeys = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong sHitCount = new AtomicLong();
+    private static final AtomicLong sMissCount = new AtomicLong();
+    private static final AtomicLong sDesignTimeNanos = new AtomicLong();
+    private static final AtomicLong sDesignTimeMaxNanos = new AtomicLong();
+    private static volatile int sLoadedCount;
+
+    /**
+     * Filter design that can be cached
+     */
+    public interface Design
+    {
+        /**
+         * Designs the filter
+         * @return filter taps or null if the filter can't be designed
+         * @throws FilterDesignException if there is an error while designing the filter
+         */
+        float[] design() throws FilterDesignException;
+    }
+
+    private FilterDesignCache()
+    {
+        //Not instantiated - use static methods
+    }
+
+    /**
+     * Gets the filter taps for the specification using the remez exchange design algorithm, designing the filter
+     * only if it has not previously been designed.
+     *
+     * @param specification for the filter
+     * @return filter taps or null if the filter can't be designed to the specification
+     * @throws FilterDesignException if the filter cannot be designed
+     */
+    public static float[] getTaps(FIRFilterSpecification specification) throws FilterDesignException
+    {
+        return get("remez:" + specification.getDesignKey(), () -> {
+            RemezFIRFilterDesigner designer = new RemezFIRFilterDesigner(specification);
+            return designer.isValid() ? designer.getImpulseResponse() : null;
+        });
+    }
+
+    /**
+     * Gets the filter taps for the key, designing the filter only if it has not previously been designed.
+     *
+     * @param key that uniquely identifies the filter design and every parameter that affects the designed taps
+     * @param design to produce the taps when they are not cached
+     * @return copy of the filter taps or null if the filter can't be designed.  Failed designs are not cached.
+     * @throws FilterDesignException if the filter cannot be designed
+     */
+    public static float[] get(String key, Design design) throws FilterDesignException
+    {
+        float[] taps = sCache.get(key);
+
+        if(taps != null)
+        {
+            sHitCount.incrementAndGet();
+            sRequestedKeys.add(key);
+            return taps.clone();
+        }
+
+        sMissCount.incrementAndGet();
+
+        long start = System.nanoTime();
+        taps = design.design();
+        long elapsed = System.nanoTime() - start;
+
+        sDesignTimeNanos.addAndGet(elapsed);
+        sDesignTimeMaxNanos.accumulateAndGet(elapsed, Math::max);
+
+        if(taps == null)
+        {
+            return null;
+        }
+
+        sRequestedKeys.add(key);
+
+        if(sCache.size() >= MAXIMUM_ENTRIES && !evictUnrequested())
+        {
+            return taps;
+        }
+
+        float[] existing = sCache.putIfAbsent(key, taps.clone());
+
+        return existing != null ? existing.clone() : taps;
+    }
+
+    /**
+     * Removes one filter design that was loaded from the persisted cache but has not been requested during this
+     * session, to make room for a newly designed filter.
+     *
+     * @return true if a design was removed, or false if every cached design has been requested during this session
+     */
+    private static boolean evictUnrequested()
+    {
+        for(String key : sCache.keySet())
+        {
+            if(!sRequestedKeys.contains(key) && sCache.remove(key) != null)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Number of filter designs in the cache
+     */
+    public static int size()
+    {
+        return sCache.size();
+    }
+
+    /**
+     * Removes all filter designs from the cache
+     */
+    public static void clear()
+    {
+        sCache.clear();
+        sRequestedKeys.clear();
+    }
+
+    /**
+     * Summary of the cache hit, miss and filter design time metrics
+     */
+    public static String getMetrics()
+    {
+        long misses = sMissCount.get();
+
+        return "Filter Design Cache - filters:" + sCache.size() + " loaded:" + sLoadedCount +
+            " hits:" + sHitCount.get() + " misses:" + misses +
+            " design time ms total:" + (sDesignTimeNanos.get() / 1_000_000) +
+            " avg:" + (misses > 0 ? (sDesignTimeNanos.get() / misses / 1_000_000) : 0) +
+            " max:" + (sDesignTimeMaxNanos.get() / 1_000_000);
+    }
+
+    /**
+     * Loads previously designed filters from the file.  A missing file is ignored and a file from a different cache
+     * version is ignored so that the filters are designed again.  A file that can't be read or that contains an
+     * invalid entry is discarded in its entirety and deleted.
+     *
+     * @param path to the persisted filter design cache
+     */
+    public static void load(Path path)
+    {
+        if(path == null || !Files.exists(path))
+        {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Map<String,float[]> loaded = new HashMap<>();
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+            new InflaterInputStream(Files.newInputStream(path)))))
+        {
+            if(in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+            {
+                mLog.info("Ignoring filter design cache from a different version [" + path + "]");
+                return;
+            }
+
+            int entries = in.readInt();
+
+            if(entries < 0 || entries > MAXIMUM_ENTRIES)
+            {
+                throw new IOException("Invalid filter design count [" + entries + "]");
+            }
+
+            for(int x = 0; x < entries; x++)
+            {
+                String key = in.readUTF();
+                int length = in.readInt();
+
+                if(length <= 0 || length > MAXIMUM_TAP_COUNT)
+                {
+                    throw new IOException("Invalid filter length [" + length + "] for filter design [" + key + "]");
+                }
+
+                float[] taps = new float[length];
+
+                for(int y = 0; y < taps.length; y++)
+                {
+                    taps[y] = in.readFloat();
+
+                    if(!Float.isFinite(taps[y]))
+                    {
+                        throw new IOException("Invalid filter tap value for filter design [" + key + "]");
+                    }
+                }
+
+                loaded.put(key, taps);
+            }
+        }
+        catch(IOException | RuntimeException e)
+        {
+            mLog.error("Error loading filter design cache [" + path + "] - discarding and deleting the file", e);
+
+            try
+            {
+                Files.deleteIfExists(path);
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Unable to delete filter design cache [" + path + "]", ioe);
+            }
+
+            return;
+        }
+
+        int count = 0;
+
+        for(Map.Entry<String,float[]> entry : loaded.entrySet())
+        {
+            if(sCache.size() >= MAXIMUM_ENTRIES)
+            {
+                break;
+            }
+
+            if(sCache.putIfAbsent(entry.getKey(), entry.getValue()) == null)
+            {
+                count++;
+            }
+        }
+
+        sLoadedCount = count;
+        mLog.info("Loaded [" + count + "] filter designs in [" + (System.currentTimeMillis() - start) + " ms]");
+    }
+
+    /**
+     * Saves the cached filter designs to the file, replacing any existing file.  Designs that were requested during
+     * this session are saved first, followed by designs that were loaded but not requested, up to the maximum
+     * number of entries, so that stale designs are pruned from the file when the cache is full.
+     *
+     * @param path for the persisted filter design cache
+     */
+    public static void save(Path path)
+    {
+        if(path == null)
+        {
+            return;
+        }
+
+        List<Map.Entry<String,float[]>> entries = new ArrayList<>(sCache.entrySet());
+        entries.sort((a, b) -> Boolean.compare(!sRequestedKeys.contains(a.getKey()),
+            !sRequestedKeys.contains(b.getKey())));
+
+        if(entries.size() > MAXIMUM_ENTRIES)
+        {
+            entries = new ArrayList<>(entries.subList(0, MAXIMUM_ENTRIES));
+        }
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try
+        {
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(Files.newOutputStream(temporary)))))
+            {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeInt(entries.size());
+
+                for(Map.Entry<String,float[]> entry : entries)
+                {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+
+                    for(float tap : entry.getValue())
+                    {
+                        out.writeFloat(tap);
+                    }
+                }
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            mLog.info("Saved [" + entries.size() + "] filter designs - " + getMetrics());
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error saving filter design cache [" + path + "]", ioe);
+        }
+    }
+}
@@ -24,7 +24,6 @@ package io.github.dsheirer.dsp.filter;
 
 import io.github.dsheirer.dsp.filter.design.FilterDesignException;
 import io.github.dsheirer.dsp.filter.fir.FIRFilterSpecification;
-import io.github.dsheirer.dsp.filter.fir.remez.RemezFIRFilterDesigner;
 import io.github.dsheirer.dsp.filter.fir.remez.RemezFIRFilterDesignerWithLagrange;
 import org.apache.commons.math3.util.FastMath;
 import org.jtransforms.fft.FloatFFT_1D;
@@ -666,7 +665,8 @@ public class FilterFactory
     }
 
     /**
-     * Creates a filter from the filter specification using the remez exchange design algorithm
+     * Creates a filter from the filter specification using the remez exchange design algorithm.  Filters are designed
+     * once per specification and reused from the process-wide filter design cache.
      *
      * @param specification
      * @return filter coefficients
@@ -674,14 +674,7 @@ public class FilterFactory
      */
     public static float[] getTaps(FIRFilterSpecification specification) throws FilterDesignException
     {
-        RemezFIRFilterDesigner designer = new RemezFIRFilterDesigner(specification);
-
-        if(designer.isValid())
-        {
-            return designer.getImpulseResponse();
-        }
-
-        return null;
+        return FilterDesignCache.getTaps(specification);
     }
 
     /**
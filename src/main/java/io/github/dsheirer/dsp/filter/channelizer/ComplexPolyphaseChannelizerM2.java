@@ -18,6 +18,7 @@
  ******************************************************************************/
 package io.github.dsheirer.dsp.filter.channelizer;
 
+import io.github.dsheirer.controller.NamingThreadFactory;
 import io.github.dsheirer.dsp.filter.FilterFactory;
 import io.github.dsheirer.dsp.filter.design.FilterDesignException;
 import io.github.dsheirer.sample.IOverflowListener;
@@ -29,10 +30,20 @@ import org.jtransforms.fft.FloatFFT_1D;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Non-Maximally Decimated Polyphase Filter Bank (NMDPFB) channelizer that divides the input baseband complex sample
@@ -57,6 +68,12 @@ import java.util.List;
  *   -Rearrange the sub-channel results to correctly order the sub-channels
  *   -Perform IFFT
  *
+ * Parallel Mode: by default, all sample blocks are filtered on the calling thread and the IFFT is performed on a
+ * separate IFFT processor thread.  When parallelism is set greater than one, each received sample buffer is split
+ * into contiguous ranges of sample blocks that are filtered and IFFT rotated concurrently by a pool of filter workers,
+ * with the calling thread processing one of the ranges.  Each worker writes to a results array that is pre-assigned
+ * by block index, so the channel results maintain sample order for each channel.
+ *
  * Note: design the prototype filter as a Nyquist windowed filter with a -6.02 db attenuation at the channel edge
  * frequency if you need Perfect Reconstruction where you'll later re-join two or more channels to form a wider
  * bandwidth channel or to isolate a signal that located between two channels.
@@ -72,6 +89,13 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
     private FloatFFT_1D mFFT;
     private float[] mInlineSamples;
     private float[] mInlineFilter;
+    private float[] mFilterAccumulator;
+    private float[] mParallelSamples = new float[0];
+    private List<float[]> mParallelResults = new ArrayList<>();
+    private List<FilterWorker> mFilterWorkers = new ArrayList<>();
+    private List<Future<Void>> mFilterWorkerFutures = new ArrayList<>();
+    private volatile ExecutorService mFilterWorkerExecutor;
+    private int mParallelism = 1;
     private boolean mTopBlockIndicator = true;
     private int[] mTopBlockMap;
     private int[] mMiddleBlockMap;
@@ -128,7 +152,19 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
      */
     public void start()
     {
-        mIFFTProcessor.start();
+        if(mParallelism > 1)
+        {
+            //Parallel mode performs the IFFT in the filter workers, so the IFFT processor isn't needed
+            if(mFilterWorkerExecutor == null)
+            {
+                mFilterWorkerExecutor = Executors.newFixedThreadPool(mParallelism - 1,
+                    new NamingThreadFactory("sdrtrunk polyphase channelizer"));
+            }
+        }
+        else
+        {
+            mIFFTProcessor.start();
+        }
     }
 
     /**
@@ -136,7 +172,43 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
      */
     public void stop()
     {
-        mIFFTProcessor.stop();
+        if(mIFFTProcessor.isRunning())
+        {
+            mIFFTProcessor.stop();
+            mLog.debug(mIFFTProcessor.getLatencyHistogram().getSummary());
+        }
+
+        ExecutorService executor = mFilterWorkerExecutor;
+        mFilterWorkerExecutor = null;
+
+        if(executor != null)
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Sets the number of threads used to filter each received sample buffer.  A value of one (default) filters all
+     * sample blocks on the calling thread and performs the IFFT on the IFFT processor thread.  Values greater than one
+     * enable parallel mode where the filtering and IFFT for each buffer is split across the calling thread and a pool
+     * of (parallelism - 1) worker threads.
+     *
+     * Note: this method should be invoked prior to invoking start().
+     *
+     * @param parallelism number of threads to use for filtering, minimum 1.
+     */
+    public void setParallelism(int parallelism)
+    {
+        mParallelism = FastMath.max(parallelism, 1);
+        initFilterWorkers();
+    }
+
+    /**
+     * Number of threads used to filter each received sample buffer.
+     */
+    public int getParallelism()
+    {
+        return mParallelism;
     }
 
     /**
@@ -189,6 +261,12 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
     @Override
     public void receive(ReusableComplexBuffer reusableComplexBuffer)
     {
+        if(mParallelism > 1)
+        {
+            receiveParallel(reusableComplexBuffer);
+            return;
+        }
+
         ReusableChannelResultsBuffer channelResultsBuffer = getChannelResultsBuffer();
         channelResultsBuffer.setTimestamp(reusableComplexBuffer.getTimestamp());
 
@@ -234,6 +312,147 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
         reusableComplexBuffer.decrementUserCount();
     }
 
+    /**
+     * Parallel mode implementation of the receive() method.  Loads each complete block of samples from the buffer
+     * into a contiguous sample history array, in reverse (newest first) order, so that the filter input for each block
+     * is a contiguous region of the array.  The blocks are then divided across the filter workers for filtering and
+     * IFFT and the completed channel results buffer is dispatched from the calling thread.
+     */
+    private void receiveParallel(ReusableComplexBuffer reusableComplexBuffer)
+    {
+        ReusableChannelResultsBuffer channelResultsBuffer = getChannelResultsBuffer();
+        channelResultsBuffer.setTimestamp(reusableComplexBuffer.getTimestamp());
+
+        float[] samples = reusableComplexBuffer.getSamples();
+        int blockCount = (mSampleBufferPointer + samples.length) / mSamplesPerBlock;
+
+        if(blockCount == 0)
+        {
+            System.arraycopy(samples, 0, mInlineSamples, mSampleBufferPointer, samples.length);
+            mSampleBufferPointer += samples.length;
+        }
+        else
+        {
+            int historyLength = mInlineSamples.length - mSamplesPerBlock;
+            int requiredLength = (blockCount * mSamplesPerBlock) + historyLength;
+
+            if(mParallelSamples.length < requiredLength)
+            {
+                mParallelSamples = new float[requiredLength];
+            }
+
+            int samplesPointer = 0;
+
+            for(int block = 0; block < blockCount; block++)
+            {
+                int offset = (blockCount - block - 1) * mSamplesPerBlock;
+
+                if(block == 0 && mSampleBufferPointer > 0)
+                {
+                    //Complete the partial block left over from the previous buffer
+                    System.arraycopy(mInlineSamples, 0, mParallelSamples, offset, mSampleBufferPointer);
+                    samplesPointer = mSamplesPerBlock - mSampleBufferPointer;
+                    System.arraycopy(samples, 0, mParallelSamples, offset + mSampleBufferPointer, samplesPointer);
+                }
+                else
+                {
+                    System.arraycopy(samples, samplesPointer, mParallelSamples, offset, mSamplesPerBlock);
+                    samplesPointer += mSamplesPerBlock;
+                }
+            }
+
+            //Append the existing sample history behind the new sample blocks
+            System.arraycopy(mInlineSamples, mSamplesPerBlock, mParallelSamples, blockCount * mSamplesPerBlock,
+                historyLength);
+
+            //Assign a results array to each block, in order, so that workers can fill them independently
+            mParallelResults.clear();
+
+            for(int block = 0; block < blockCount; block++)
+            {
+                float[] results = channelResultsBuffer.getEmptyBuffer(getSubChannelCount());
+                mParallelResults.add(results);
+                channelResultsBuffer.addChannelResults(results);
+            }
+
+            int blocksPerWorker = (int)FastMath.ceil((double)blockCount / (double)mFilterWorkers.size());
+            int startBlock = 0;
+
+            for(FilterWorker filterWorker: mFilterWorkers)
+            {
+                int endBlock = FastMath.min(startBlock + blocksPerWorker, blockCount);
+                filterWorker.setBlocks(startBlock, endBlock, mTopBlockIndicator ^ (startBlock % 2 == 1));
+                startBlock = endBlock;
+            }
+
+            mFilterWorkerFutures.clear();
+
+            ExecutorService executor = mFilterWorkerExecutor;
+
+            for(int x = 1; x < mFilterWorkers.size(); x++)
+            {
+                FilterWorker filterWorker = mFilterWorkers.get(x);
+
+                if(filterWorker.hasBlocks())
+                {
+                    Future<Void> future = null;
+
+                    if(executor != null)
+                    {
+                        try
+                        {
+                            future = executor.submit(filterWorker);
+                        }
+                        catch(RejectedExecutionException ree)
+                        {
+                            //The channelizer was stopped while a sample buffer was being delivered
+                        }
+                    }
+
+                    if(future != null)
+                    {
+                        mFilterWorkerFutures.add(future);
+                    }
+                    else
+                    {
+                        filterWorker.call();
+                    }
+                }
+            }
+
+            //The calling thread processes the first range of blocks while the workers process the remaining ranges
+            mFilterWorkers.get(0).call();
+
+            for(Future<Void> future: mFilterWorkerFutures)
+            {
+                try
+                {
+                    future.get();
+                }
+                catch(InterruptedException | ExecutionException e)
+                {
+                    mLog.error("Error while processing polyphase channelizer filter worker", e);
+                }
+            }
+
+            if(blockCount % 2 == 1)
+            {
+                mTopBlockIndicator = !mTopBlockIndicator;
+            }
+
+            //Update the sample history from the most recent blocks and retain any partial block samples
+            System.arraycopy(mParallelSamples, 0, mInlineSamples, mSamplesPerBlock, historyLength);
+            mSampleBufferPointer = samples.length - samplesPointer;
+            System.arraycopy(samples, samplesPointer, mInlineSamples, 0, mSampleBufferPointer);
+        }
+
+        //The IFFT was performed by the filter workers, so we can dispatch the results buffer directly
+        dispatch(channelResultsBuffer);
+
+        //Decrement the user count to let the originator know we're done with their buffer
+        reusableComplexBuffer.decrementUserCount();
+    }
+
     /**
      * Creates a top-block processing accumulator map that maps each interim filter and sample index product
      * to the corresponding final output index for the array that will feed the IFFT.
@@ -333,70 +552,290 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
     /**
      * Processes the sample buffer for each new block of sample data that is loaded and distributes the results to any
      * registered channel listeners.
+     *
+     * The multiply and accumulate steps are fused into a single pass over the inline sample and filter arrays and the
+     * accumulator is a preallocated working array that is reused for each block so that no arrays are allocated
+     * while processing samples.
      */
     private void process(ReusableChannelResultsBuffer channelResultsBuffer)
     {
+        float[] filterAccumulator = mFilterAccumulator;
+        int subChannelCount = filterAccumulator.length;
+
+        filter(mInlineSamples, 0, mInlineFilter, filterAccumulator, mTapsPerChannel);
+
+        float[] processed = channelResultsBuffer.getEmptyBuffer(subChannelCount);
+        int[] blockMap = mTopBlockIndicator ? mTopBlockMap : mMiddleBlockMap;
+
+        for(int x = 0; x < subChannelCount; x++)
+        {
+            processed[x] = filterAccumulator[blockMap[x]];
+        }
+
+        channelResultsBuffer.addChannelResults(processed);
+
+        mTopBlockIndicator = !mTopBlockIndicator;
+    }
+
+    /**
+     * Initializes the channelizer filter structures.
+     *
+     * @param coefficients of the prototype filter for this channelizer
+     */
+    private void init(float[] coefficients)
+    {
+        mFFT = new FloatFFT_1D(getChannelCount());
+        int channelCount = getChannelCount();
         int bufferLength = getSubChannelCount() * mTapsPerChannel;
-        float[] inlineInterimOutput = new float[bufferLength];
+        mSamplesPerBlock = getChannelCount(); //Same as subChannelCount / 2
+        mTopBlockMap = getTopBlockMap(channelCount);
+        mMiddleBlockMap = getMiddleBlockMap(channelCount);
+        mInlineFilter = getAlignedFilter(coefficients, channelCount, mTapsPerChannel);
+        mInlineSamples = new float[bufferLength];
+        mFilterAccumulator = new float[getSubChannelCount()];
+        initFilterWorkers();
+    }
 
-        //Multiply each of the samples by the corresponding filter tap
-        for(int x = 0; x < mInlineSamples.length; x++)
+    /**
+     * Creates the filter workers used for parallel mode processing.  Each worker has its own accumulator and FFT
+     * instances so that workers can process concurrently.
+     */
+    private void initFilterWorkers()
+    {
+        mFilterWorkers.clear();
+
+        if(mParallelism > 1)
         {
-            inlineInterimOutput[x] = mInlineSamples[x] * mInlineFilter[x];
+            for(int x = 0; x < mParallelism; x++)
+            {
+                mFilterWorkers.add(new FilterWorker());
+            }
         }
+    }
 
-        float[] filterAccumulator = new float[getSubChannelCount()];
+    /**
+     * Multiplies each of the samples by the corresponding filter tap and accumulates the results into each of the
+     * I/Q sub-channels in a single pass.
+     *
+     * @param samples array containing the inline sample buffer
+     * @param offset to the start of the inline sample buffer within the samples array
+     * @param filter rearranged to align with the inline sample buffer
+     * @param accumulator to receive the filtered results for each sub-channel
+     * @param tapsPerChannel of the filter
+     */
+    private static void filter(float[] samples, int offset, float[] filter, float[] accumulator, int tapsPerChannel)
+    {
+        int subChannelCount = accumulator.length;
+
+        //Seed the accumulator with the first tap products to avoid clearing the accumulator for each block
+        for(int channel = 0; channel < subChannelCount; channel++)
+        {
+            accumulator[channel] = samples[offset + channel] * filter[channel];
+        }
 
-        int tapOffset = 0;
+        int tapOffset;
 
-        //Accumulate the sample/filter product results into each of the I/Q sub-channels
-        for(int tap = 0; tap < mTapsPerChannel; tap++)
+        for(int tap = 1; tap < tapsPerChannel; tap++)
         {
-            tapOffset = tap * getSubChannelCount();
+            tapOffset = tap * subChannelCount;
 
-            for(int channel = 0; channel < getSubChannelCount(); channel++)
+            for(int channel = 0; channel < subChannelCount; channel++)
             {
-                filterAccumulator[channel] += inlineInterimOutput[tapOffset + channel];
+                accumulator[channel] += samples[offset + tapOffset + channel] * filter[tapOffset + channel];
             }
         }
+    }
 
-        float[] processed = channelResultsBuffer.getEmptyBuffer(getSubChannelCount());
+    /**
+     * Processes the specified number of sample blocks through the filter stage and returns the elapsed nanoseconds.
+     * When legacy is true, each block is processed by the original filter stage, inlined here as the benchmark
+     * baseline, which allocates interim and accumulator arrays for each block and performs the multiply and
+     * accumulate steps in separate passes.  Otherwise, each block is processed by the fused filter stage.
+     */
+    private long benchmark(int iterations, int blocksPerIteration, boolean legacy)
+    {
+        int subChannelCount = getSubChannelCount();
+        long start = System.nanoTime();
 
-        if(mTopBlockIndicator)
+        for(int iteration = 0; iteration < iterations; iteration++)
         {
-            for(int x = 0; x < getSubChannelCount(); x++)
+            ReusableChannelResultsBuffer buffer = getChannelResultsBuffer();
+
+            for(int block = 0; block < blocksPerIteration; block++)
             {
-                processed[x] = filterAccumulator[mTopBlockMap[x]];
+                if(legacy)
+                {
+                    float[] inlineInterimOutput = new float[subChannelCount * mTapsPerChannel];
+
+                    for(int x = 0; x < mInlineSamples.length; x++)
+                    {
+                        inlineInterimOutput[x] = mInlineSamples[x] * mInlineFilter[x];
+                    }
+
+                    float[] filterAccumulator = new float[subChannelCount];
+
+                    for(int tap = 0; tap < mTapsPerChannel; tap++)
+                    {
+                        int tapOffset = tap * subChannelCount;
+
+                        for(int channel = 0; channel < subChannelCount; channel++)
+                        {
+                            filterAccumulator[channel] += inlineInterimOutput[tapOffset + channel];
+                        }
+                    }
+
+                    float[] processed = buffer.getEmptyBuffer(subChannelCount);
+                    int[] blockMap = mTopBlockIndicator ? mTopBlockMap : mMiddleBlockMap;
+
+                    for(int x = 0; x < subChannelCount; x++)
+                    {
+                        processed[x] = filterAccumulator[blockMap[x]];
+                    }
+
+                    buffer.addChannelResults(processed);
+                    mTopBlockIndicator = !mTopBlockIndicator;
+                }
+                else
+                {
+                    process(buffer);
+                }
             }
+
+            buffer.decrementUserCount();
         }
-        else
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Current thread's total allocated bytes, or -1 if the JVM doesn't support allocation measurement.
+     */
+    private static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if(bean instanceof com.sun.management.ThreadMXBean)
         {
-            for(int x = 0; x < getSubChannelCount(); x++)
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return -1;
+    }
+
+    /**
+     * Filter stage benchmark comparing the legacy (allocating) filter stage against the fused multiply-accumulate
+     * filter stage that uses preallocated working arrays.  Reports samples per second and bytes allocated per block.
+     */
+    public static void main(String[] args)
+    {
+        int iterations = 2000;
+        int blocksPerIteration = 100;
+
+        try
+        {
+            ComplexPolyphaseChannelizerM2 channelizer = new ComplexPolyphaseChannelizerM2(10000000.0, 9);
+
+            Random random = new Random();
+
+            for(int x = 0; x < channelizer.mInlineSamples.length; x++)
             {
-                processed[x] = filterAccumulator[mMiddleBlockMap[x]];
+                channelizer.mInlineSamples[x] = random.nextFloat() * 2.0f - 1.0f;
             }
-        }
 
-        channelResultsBuffer.addChannelResults(processed);
+            mLog.info("Warm up ...");
+            for(int x = 0; x < 5; x++)
+            {
+                channelizer.benchmark(iterations, blocksPerIteration, true);
+                channelizer.benchmark(iterations, blocksPerIteration, false);
+            }
 
-        mTopBlockIndicator = !mTopBlockIndicator;
+            long blocks = (long)iterations * blocksPerIteration;
+            double samples = (double)blocks * channelizer.mSamplesPerBlock / 2.0;
+
+            long allocatedStart = getAllocatedBytes();
+            long legacyDuration = channelizer.benchmark(iterations, blocksPerIteration, true);
+            long legacyAllocated = getAllocatedBytes() - allocatedStart;
+
+            allocatedStart = getAllocatedBytes();
+            long fusedDuration = channelizer.benchmark(iterations, blocksPerIteration, false);
+            long fusedAllocated = getAllocatedBytes() - allocatedStart;
+
+            mLog.info("Legacy Filter Stage - Samples/Sec: " +
+                DECIMAL_FORMAT.format(samples / (legacyDuration / 1E9)) + " Bytes/Block: " +
+                DECIMAL_FORMAT.format((double)legacyAllocated / blocks));
+            mLog.info(" Fused Filter Stage - Samples/Sec: " +
+                DECIMAL_FORMAT.format(samples / (fusedDuration / 1E9)) + " Bytes/Block: " +
+                DECIMAL_FORMAT.format((double)fusedAllocated / blocks));
+        }
+        catch(FilterDesignException fde)
+        {
+            mLog.error("Error designing channelizer filter", fde);
+        }
+
+        System.exit(0);
     }
 
     /**
-     * Initializes the channelizer filter structures.
-     *
-     * @param coefficients of the prototype filter for this channelizer
+     * Parallel mode filter worker.  Filters a contiguous range of sample blocks from the parallel sample history and
+     * performs the IFFT on each of the corresponding channel results arrays.
      */
-    private void init(float[] coefficients)
+    public class FilterWorker implements Callable<Void>
     {
-        mFFT = new FloatFFT_1D(getChannelCount());
-        int channelCount = getChannelCount();
-        int bufferLength = getSubChannelCount() * mTapsPerChannel;
-        mSamplesPerBlock = getChannelCount(); //Same as subChannelCount / 2
-        mTopBlockMap = getTopBlockMap(channelCount);
-        mMiddleBlockMap = getMiddleBlockMap(channelCount);
-        mInlineFilter = getAlignedFilter(coefficients, channelCount, mTapsPerChannel);
-        mInlineSamples = new float[bufferLength];
+        private FloatFFT_1D mWorkerFFT = new FloatFFT_1D(getChannelCount());
+        private float[] mWorkerAccumulator = new float[getSubChannelCount()];
+        private int mStartBlock;
+        private int mEndBlock;
+        private boolean mStartTopBlockIndicator;
+
+        /**
+         * Sets the range of blocks to process.
+         * @param startBlock index, inclusive
+         * @param endBlock index, exclusive
+         * @param topBlockIndicator for the start block
+         */
+        public void setBlocks(int startBlock, int endBlock, boolean topBlockIndicator)
+        {
+            mStartBlock = startBlock;
+            mEndBlock = endBlock;
+            mStartTopBlockIndicator = topBlockIndicator;
+        }
+
+        /**
+         * Indicates if this worker has a non-empty range of blocks to process
+         */
+        public boolean hasBlocks()
+        {
+            return mStartBlock < mEndBlock;
+        }
+
+        @Override
+        public Void call()
+        {
+            int blockCount = mParallelResults.size();
+            boolean topBlockIndicator = mStartTopBlockIndicator;
+
+            for(int block = mStartBlock; block < mEndBlock; block++)
+            {
+                int offset = (blockCount - block - 1) * mSamplesPerBlock;
+
+                filter(mParallelSamples, offset, mInlineFilter, mWorkerAccumulator, mTapsPerChannel);
+
+                float[] processed = mParallelResults.get(block);
+                int[] blockMap = topBlockIndicator ? mTopBlockMap : mMiddleBlockMap;
+
+                for(int x = 0; x < processed.length; x++)
+                {
+                    processed[x] = mWorkerAccumulator[blockMap[x]];
+                }
+
+                //Rotate each of the channels to the correct phase using the IFFT
+                mWorkerFFT.complexInverse(processed, true);
+
+                topBlockIndicator = !topBlockIndicator;
+            }
+
+            return null;
+        }
     }
 
     /**
@@ -408,7 +847,10 @@ public class ComplexPolyphaseChannelizerM2 extends AbstractComplexPolyphaseChann
     {
         public IFFTProcessor(int maximumSize, int resetThreshold)
         {
-            super(maximumSize, resetThreshold);
+            //Channel results buffers are only received from the channelizer's sample processing thread
+            super(maximumSize, resetThreshold, false);
+            setThreadName("sdrtrunk polyphase ifft processor");
+            setDispatchMode(DispatchMode.SIGNALLING);
 
             //We create a listener interface to receive the buffers from the scheduled thread pool
             //dispatcher thread that is part of this continuous buffer processor.  We perform an IFFT on each
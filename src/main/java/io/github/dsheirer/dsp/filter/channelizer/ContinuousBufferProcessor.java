@@ -15,9 +15,12 @@
  ******************************************************************************/
 package io.github.dsheirer.dsp.filter.channelizer;
 
+import io.github.dsheirer.controller.NamingThreadFactory;
 import io.github.dsheirer.sample.IOverflowListener;
 import io.github.dsheirer.sample.Listener;
-import io.github.dsheirer.sample.OverflowableTransferQueue;
+import io.github.dsheirer.sample.OverflowableRingBuffer;
+import io.github.dsheirer.sample.AbstractOverflowableQueue;
+import io.github.dsheirer.util.LatencyHistogram;
 import io.github.dsheirer.util.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,16 +31,42 @@ import java.util.List;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class ContinuousBufferProcessor<E> implements Listener<E>
 {
     private final static Logger mLog = LoggerFactory.getLogger(ContinuousBufferProcessor.class);
 
-    protected OverflowableTransferQueue<E> mQueue;
+    protected AbstractOverflowableQueue<E> mQueue;
     private Listener<List<E>> mListener;
     private ScheduledFuture<?> mScheduledFuture;
     private AtomicBoolean mRunning = new AtomicBoolean();
     private long mProcessingPeriod = 5; //milliseconds
+    private DispatchMode mDispatchMode = DispatchMode.POLLING;
+    private int mBatchThreshold = 1;
+    private String mThreadName = "sdrtrunk buffer processor";
+    private Thread mSignallingThread;
+    private AtomicInteger mPendingCount = new AtomicInteger();
+    private AtomicLong mFirstArrival = new AtomicLong();
+    private LatencyHistogram mLatencyHistogram = new LatencyHistogram("Buffer processor");
+
+    /**
+     * Buffer dispatch modes.
+     *
+     * POLLING: queued buffers are dispatched by a scheduled thread pool task once every processing period, whether
+     * or not any buffers have arrived.
+     *
+     * SIGNALLING: a dedicated dispatch thread parks until buffers arrive and is signalled by the producer once the
+     * batch threshold is reached.  A partial batch is dispatched once the processing period elapses after the first
+     * buffer of the batch arrives.  The dispatch thread does not wake up while the queue is empty.
+     */
+    public enum DispatchMode
+    {
+        POLLING,
+        SIGNALLING;
+    }
 
     /**
      * Scheduled Buffer Processor combines an internal overflowable buffer with a scheduled runnable processing task
@@ -47,15 +76,28 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
      * pool runnable thread.  This allows the calling input thread to quickly return without incurring any subsequent
      * processing workload.
      *
-     * The internal queue is an overflowable queue implementation that allows a listener to be registered to receive
+     * The internal queue is an overflowable ring buffer that allows a listener to be registered to receive
      * notifications of overflow and reset state.  Queue sizing parameters are specified in the constructor.
      *
      * @param maximumSize of the internal queue (overflow happens when this is exceeded)
      * @param resetThreshold of the internal queue (overflow reset happens once queue size falls below this threshold
+     * @param multipleProducers set to true if buffers will be received from more than one thread, or false if buffers
+     * will only ever be received from a single thread at a time.
+     */
+    public ContinuousBufferProcessor(int maximumSize, int resetThreshold, boolean multipleProducers)
+    {
+        this(new OverflowableRingBuffer<>(maximumSize, resetThreshold, multipleProducers));
+    }
+
+    /**
+     * Constructs an instance that supports receiving buffers from multiple threads.
+     *
+     * @param maximumSize of the internal queue (overflow happens when this is exceeded)
+     * @param resetThreshold of the internal queue (overflow reset happens once queue size falls below this threshold
      */
     public ContinuousBufferProcessor(int maximumSize, int resetThreshold)
     {
-        this(new OverflowableTransferQueue<>(maximumSize, resetThreshold));
+        this(maximumSize, resetThreshold, true);
     }
 
     /**
@@ -76,6 +118,63 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
         mProcessingPeriod = milliseconds;
     }
 
+    /**
+     * Sets the buffer dispatch mode.  This must be invoked prior to start().
+     *
+     * @param dispatchMode (default = POLLING)
+     */
+    public void setDispatchMode(DispatchMode dispatchMode)
+    {
+        if(isRunning())
+        {
+            throw new IllegalStateException("Dispatch mode can't be changed while the processor is running");
+        }
+
+        mDispatchMode = dispatchMode;
+    }
+
+    /**
+     * Current buffer dispatch mode
+     */
+    public DispatchMode getDispatchMode()
+    {
+        return mDispatchMode;
+    }
+
+    /**
+     * Sets the number of queued buffers that will cause the dispatch thread to be signalled immediately when
+     * operating in SIGNALLING mode.  Fewer queued buffers are dispatched once the processing period elapses.
+     *
+     * @param batchThreshold (default = 1)
+     */
+    public void setBatchThreshold(int batchThreshold)
+    {
+        if(batchThreshold < 1)
+        {
+            throw new IllegalArgumentException("Batch threshold must be 1 or greater");
+        }
+
+        mBatchThreshold = batchThreshold;
+    }
+
+    /**
+     * Sets the name prefix for the dispatch thread when operating in SIGNALLING mode.
+     */
+    public void setThreadName(String threadName)
+    {
+        mThreadName = threadName;
+        mLatencyHistogram = new LatencyHistogram(threadName);
+    }
+
+    /**
+     * Histogram of the delay between the arrival of the first buffer of each batch and the dispatch of that batch
+     * to the listener.  Latency is only recorded when operating in SIGNALLING mode.
+     */
+    public LatencyHistogram getLatencyHistogram()
+    {
+        return mLatencyHistogram;
+    }
+
     /**
      * Scheduled Buffer Processor combines an internal overflowable buffer with a scheduled runnable processing task
      * for periodically distributing internally queued elements to the registered listener.  This processor provides
@@ -89,7 +188,7 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
      *
      * @param queue implmentation of an overflowable transfer queue
      */
-    public ContinuousBufferProcessor(OverflowableTransferQueue<E> queue)
+    public ContinuousBufferProcessor(AbstractOverflowableQueue<E> queue)
     {
         mQueue = queue;
     }
@@ -124,7 +223,27 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
     @Override
     public void receive(E e)
     {
-        mQueue.offer(e);
+        //Only count buffers that were accepted by the queue so that overflow drops don't leave phantom pending counts
+        if(mQueue.offer(e) && mDispatchMode == DispatchMode.SIGNALLING)
+        {
+            if(mFirstArrival.get() == 0)
+            {
+                mFirstArrival.compareAndSet(0, System.nanoTime());
+            }
+
+            int pending = mPendingCount.incrementAndGet();
+
+            //Only signal on the empty-to-occupied transition and when the batch fills, to avoid an unpark per buffer
+            if(pending == 1 || pending == mBatchThreshold)
+            {
+                Thread thread = mSignallingThread;
+
+                if(thread != null)
+                {
+                    LockSupport.unpark(thread);
+                }
+            }
+        }
     }
 
     /**
@@ -134,7 +253,44 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
     {
         if(mRunning.compareAndSet(false, true))
         {
-            mScheduledFuture = ThreadPool.SCHEDULED.scheduleAtFixedRate(new Processor(), 0, mProcessingPeriod, TimeUnit.MILLISECONDS);
+            if(mDispatchMode == DispatchMode.SIGNALLING)
+            {
+                mSignallingThread = new NamingThreadFactory(mThreadName).newThread(new SignallingProcessor());
+                mSignallingThread.setDaemon(true);
+                mSignallingThread.start();
+            }
+            else
+            {
+                mScheduledFuture = ThreadPool.SCHEDULED.scheduleAtFixedRate(new Processor(), 0, mProcessingPeriod,
+                    TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Stops the signalling dispatch thread and waits for it to exit so that the caller can safely clear or flush
+     * the queue.
+     */
+    private void stopSignallingThread()
+    {
+        Thread thread = mSignallingThread;
+        mSignallingThread = null;
+
+        if(thread != null)
+        {
+            LockSupport.unpark(thread);
+
+            if(thread != Thread.currentThread())
+            {
+                try
+                {
+                    thread.join(1000);
+                }
+                catch(InterruptedException ie)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
         }
     }
 
@@ -151,7 +307,10 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
                 mScheduledFuture = null;
             }
 
+            stopSignallingThread();
             clearQueue();
+            mPendingCount.set(0);
+            mFirstArrival.set(0);
         }
     }
 
@@ -169,20 +328,41 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
                 mScheduledFuture = null;
             }
 
-            process();
+            stopSignallingThread();
+            dispatch();
+        }
+    }
+
+    /**
+     * Records the dispatch latency for the current batch and distributes the queued buffers to the listener
+     *
+     * @return number of buffers removed from the queue
+     */
+    private int dispatch()
+    {
+        long firstArrival = mFirstArrival.getAndSet(0);
+
+        if(firstArrival != 0)
+        {
+            mLatencyHistogram.add(System.nanoTime() - firstArrival);
         }
+
+        return process();
     }
 
     /**
      * Distributes queued buffers to the listener
+     *
+     * @return number of buffers removed from the queue
      */
-    protected void process()
+    protected int process()
     {
         List<E> buffers = new ArrayList<>();
+        int count = 0;
 
         try
         {
-            mQueue.drainTo(buffers);
+            count = mQueue.drainTo(buffers);
 
             if(mListener != null)
             {
@@ -193,6 +373,8 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
         {
             mLog.error("Error while dispatching buffers to listener", throwable);
         }
+
+        return count;
     }
 
     /**
@@ -221,7 +403,54 @@ public class ContinuousBufferProcessor<E> implements Listener<E>
         @Override
         public void run()
         {
-            process();
+            dispatch();
+        }
+    }
+
+    /**
+     * Dedicated dispatch thread for SIGNALLING mode.  Parks indefinitely while the queue is empty and parks for up
+     * to the processing period while a partial batch is accumulating.
+     */
+    class SignallingProcessor implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(mProcessingPeriod);
+
+            while(mRunning.get() && mSignallingThread == Thread.currentThread())
+            {
+                int pending = mPendingCount.get();
+
+                //The count can be briefly negative when a buffer is drained before its producer increments the count
+                if(pending <= 0)
+                {
+                    LockSupport.park(this);
+                }
+                else
+                {
+                    if(pending < mBatchThreshold)
+                    {
+                        long deadline = mFirstArrival.get() + timeout;
+                        long remaining = deadline - System.nanoTime();
+
+                        if(remaining > 0)
+                        {
+                            LockSupport.parkNanos(this, remaining);
+
+                            //Re-evaluate in case of a spurious wakeup before the batch filled or the deadline passed
+                            if(mPendingCount.get() < mBatchThreshold && deadline - System.nanoTime() > 0)
+                            {
+                                continue;
+                            }
+                        }
+                    }
+
+                    //Only remove the buffers that were actually drained so that buffers which arrive while the
+                    //batch is dispatched are still counted toward the next batch
+                    mPendingCount.addAndGet(-dispatch());
+                }
+            }
         }
     }
 }
@@ -16,7 +16,7 @@
 package io.github.dsheirer.dsp.filter.channelizer;
 
 import io.github.dsheirer.sample.buffer.AbstractReusableBuffer;
-import io.github.dsheirer.sample.buffer.OverflowableReusableBufferTransferQueue;
+import io.github.dsheirer.sample.buffer.OverflowableReusableBufferRingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,26 +35,51 @@ public class ContinuousReusableBufferProcessor<T extends AbstractReusableBuffer>
      * pool runnable thread.  This allows the calling input thread to quickly return without incurring any subsequent
      * processing workload.
      *
-     * The internal queue is an overflowable queue implementation that allows a listener to be registered to receive
+     * The internal queue is an overflowable ring buffer that allows a listener to be registered to receive
      * notifications of overflow and reset state.  Queue sizing parameters are specified in the constructor.
      *
      * @param maximumSize of the internal queue (overflow happens when this is exceeded)
      * @param resetThreshold of the internal queue (overflow reset happens once queue size falls below this threshold
+     * @param multipleProducers set to true if buffers will be received from more than one thread, or false if buffers
+     * will only ever be received from a single thread at a time.
+     */
+    public ContinuousReusableBufferProcessor(int maximumSize, int resetThreshold, boolean multipleProducers)
+    {
+        super(new OverflowableReusableBufferRingBuffer<T>(maximumSize, resetThreshold, multipleProducers));
+    }
+
+    /**
+     * Constructs an instance that supports receiving buffers from multiple threads.
+     *
+     * @param maximumSize of the internal queue (overflow happens when this is exceeded)
+     * @param resetThreshold of the internal queue (overflow reset happens once queue size falls below this threshold
      */
     public ContinuousReusableBufferProcessor(int maximumSize, int resetThreshold)
     {
-        super(new OverflowableReusableBufferTransferQueue<T>(maximumSize, resetThreshold));
+        this(maximumSize, resetThreshold, true);
+    }
+
+    /**
+     * Constructs an instance that uses the specified reusable buffer queue.
+     *
+     * @param queue for holding buffers awaiting distribution
+     */
+    public ContinuousReusableBufferProcessor(OverflowableReusableBufferRingBuffer<T> queue)
+    {
+        super(queue);
     }
 
     /**
      * Distributes queued buffers to the listener
+     *
+     * @return number of buffers removed from the queue
      */
     @Override
-    protected void process()
+    protected int process()
     {
         List<T> buffers = new ArrayList<>();
 
-        mQueue.drainTo(buffers);
+        int count = mQueue.drainTo(buffers);
 
         try
         {
@@ -84,5 +109,7 @@ public class ContinuousReusableBufferProcessor<T extends AbstractReusableBuffer>
                 }
             }
         }
+
+        return count;
     }
 }
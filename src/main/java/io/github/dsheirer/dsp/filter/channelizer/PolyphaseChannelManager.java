@@ -21,6 +21,7 @@
  */
 package io.github.dsheirer.dsp.filter.channelizer;
 
+import io.github.dsheirer.dsp.filter.FilterDesignCache;
 import io.github.dsheirer.dsp.filter.FilterFactory;
 import io.github.dsheirer.dsp.filter.channelizer.output.IPolyphaseChannelOutputProcessor;
 import io.github.dsheirer.dsp.filter.channelizer.output.OneChannelOutputProcessor;
@@ -74,6 +75,8 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
     private static final double CHANNEL_OVERSAMPLING = 2.0;
     private static final int POLYPHASE_CHANNELIZER_TAPS_PER_CHANNEL = 9;
     private static final int POLYPHASE_SYNTHESIZER_TAPS_PER_CHANNEL = 9;
+    private static final int POLYPHASE_CHANNELIZER_PARALLELISM =
+        FastMath.max(2, Runtime.getRuntime().availableProcessors() / 2);
 
     private Broadcaster<SourceEvent> mSourceEventBroadcaster = new Broadcaster<>();
     private IReusableComplexBufferProvider mReusableBufferProvider;
@@ -84,6 +87,7 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
     private BufferSourceEventMonitor mBufferSourceEventMonitor = new BufferSourceEventMonitor();
     private ContinuousBufferProcessor<ReusableComplexBuffer> mBufferProcessor;
     private Map<Integer,float[]> mOutputProcessorFilters = new HashMap<>();
+    private boolean mParallel;
 
     /**
      * Creates a polyphase channel manager instance.
@@ -92,9 +96,10 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
      * streams
      * @param frequency of the baseband complex buffer sample stream (ie center frequency)
      * @param sampleRate of the baseband complex buffer sample stream
+     * @param parallel to use a multi-threaded polyphase channelizer that splits each buffer across worker threads
      */
     public PolyphaseChannelManager(IReusableComplexBufferProvider reusableComplexBufferProvider,
-                                   long frequency, double sampleRate)
+                                   long frequency, double sampleRate, boolean parallel)
     {
         if(reusableComplexBufferProvider == null)
         {
@@ -102,6 +107,7 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
         }
 
         mReusableBufferProvider = reusableComplexBufferProvider;
+        mParallel = parallel;
 
         int channelCount = (int)(sampleRate / MINIMUM_CHANNEL_BANDWIDTH);
 
@@ -114,17 +120,44 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
         mChannelCalculator = new ChannelCalculator(sampleRate, channelCount, frequency, CHANNEL_OVERSAMPLING);
 
         mBufferProcessor = new ContinuousBufferProcessor(200, 50);
+        mBufferProcessor.setThreadName("sdrtrunk polyphase buffer processor");
+        mBufferProcessor.setDispatchMode(ContinuousBufferProcessor.DispatchMode.SIGNALLING);
         mBufferProcessor.setListener(mBufferSourceEventMonitor);
     }
 
+    /**
+     * Creates a single-threaded polyphase channel manager instance.
+     *
+     * @param reusableComplexBufferProvider (ie tuner) that supports register/deregister for reusable baseband sample buffer
+     * streams
+     * @param frequency of the baseband complex buffer sample stream (ie center frequency)
+     * @param sampleRate of the baseband complex buffer sample stream
+     */
+    public PolyphaseChannelManager(IReusableComplexBufferProvider reusableComplexBufferProvider,
+                                   long frequency, double sampleRate)
+    {
+        this(reusableComplexBufferProvider, frequency, sampleRate, false);
+    }
+
     /**
      * Creates a polyphase channel manager for the tuner controller
      *
      * @param tunerController for a tuner that provides a baseband complex buffer stream.
+     * @param parallel to use a multi-threaded polyphase channelizer
+     */
+    public PolyphaseChannelManager(TunerController tunerController, boolean parallel)
+    {
+        this(tunerController, tunerController.getFrequency(), tunerController.getSampleRate(), parallel);
+    }
+
+    /**
+     * Creates a single-threaded polyphase channel manager for the tuner controller
+     *
+     * @param tunerController for a tuner that provides a baseband complex buffer stream.
      */
     public PolyphaseChannelManager(TunerController tunerController)
     {
-        this(tunerController, tunerController.getFrequency(), tunerController.getSampleRate());
+        this(tunerController, false);
     }
 
     /**
@@ -277,6 +310,7 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
                 mReusableBufferProvider.removeBufferListener(mBufferProcessor);
                 mBufferProcessor.stop();
                 mPolyphaseChannelizer.stop();
+                mLog.debug(mBufferProcessor.getLatencyHistogram().getSummary());
             }
         }
 
@@ -354,6 +388,11 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
             {
                 mPolyphaseChannelizer = new ComplexPolyphaseChannelizerM2(tunerSampleRate,
                     POLYPHASE_CHANNELIZER_TAPS_PER_CHANNEL);
+
+                if(mParallel)
+                {
+                    mPolyphaseChannelizer.setParallelism(POLYPHASE_CHANNELIZER_PARALLELISM);
+                }
             }
             catch(IllegalArgumentException iae)
             {
@@ -503,8 +542,13 @@ public class PolyphaseChannelManager implements ISourceEventProcessor
 
         if(taps == null)
         {
-            taps = FilterFactory.getSincM2Synthesizer(mChannelCalculator.getChannelSampleRate(),
-                mChannelCalculator.getChannelBandwidth(), channels, POLYPHASE_SYNTHESIZER_TAPS_PER_CHANNEL);
+            double channelSampleRate = mChannelCalculator.getChannelSampleRate();
+            double channelBandwidth = mChannelCalculator.getChannelBandwidth();
+            String key = "sincM2Synthesizer:" + channelSampleRate + "," + channelBandwidth + "," + channels + "," +
+                POLYPHASE_SYNTHESIZER_TAPS_PER_CHANNEL;
+
+            taps = FilterDesignCache.get(key, () -> FilterFactory.getSincM2Synthesizer(channelSampleRate,
+                channelBandwidth, channels, POLYPHASE_SYNTHESIZER_TAPS_PER_CHANNEL));
 
             mOutputProcessorFilters.put(channels, taps);
         }
@@ -19,7 +19,7 @@
 package io.github.dsheirer.dsp.filter.channelizer.output;
 
 import io.github.dsheirer.dsp.mixer.IOscillator;
-import io.github.dsheirer.dsp.mixer.Oscillator;
+import io.github.dsheirer.dsp.mixer.TableOscillator;
 import io.github.dsheirer.sample.IOverflowListener;
 import io.github.dsheirer.sample.buffer.OverflowableReusableBufferTransferQueue;
 import io.github.dsheirer.sample.buffer.ReusableChannelResultsBuffer;
@@ -57,8 +57,7 @@ public abstract class ChannelOutputProcessor implements IPolyphaseChannelOutputP
         mInputChannelCount = inputChannelCount;
         mGain = gain;
 
-//TODO: swap this out and use the LowPhaseNoiseOscillator
-        mFrequencyCorrectionMixer = new Oscillator(0, sampleRate);
+        mFrequencyCorrectionMixer = new TableOscillator(0, sampleRate);
         mMaxResultsToProcess = (int)(sampleRate / 10) * 2;  //process at 100 millis interval, twice the expected inflow rate
 
         mChannelResultsQueue = new OverflowableReusableBufferTransferQueue<>((int)(sampleRate * 3), (int)(sampleRate * 0.5));
@@ -61,6 +61,25 @@ public class FIRFilterSpecification
         return sb.toString();
     }
 
+    /**
+     * Key that uniquely identifies this specification.  Includes every parameter that affects the designed filter, so
+     * two specifications with the same key produce the same filter.
+     */
+    public String getDesignKey()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(mRemezFilterType.name()).append(",").append(mOrder).append(",").append(mGridDensity);
+
+        for(FrequencyBand band : mFrequencyBands)
+        {
+            sb.append(",[").append(band.getStart()).append(",").append(band.getEnd());
+            sb.append(",").append(band.getAmplitude()).append(",").append(band.getRippleDB());
+            sb.append(",").append(band.mWeight).append("]");
+        }
+
+        return sb.toString();
+    }
+
     public void addFrequencyBand(FrequencyBand band)
     {
         mFrequencyBands.add(band);
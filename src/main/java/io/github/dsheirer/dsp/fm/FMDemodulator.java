@@ -22,19 +22,44 @@ import io.github.dsheirer.sample.buffer.ReusableComplexBuffer;
 import io.github.dsheirer.sample.buffer.ReusableFloatBuffer;
 import io.github.dsheirer.sample.complex.Complex;
 import org.apache.commons.math3.util.FastMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
 
 /**
  * FM Demodulator for demodulating complex samples and producing demodulated floating point samples.
+ *
+ * The phase difference between successive samples is the arc-tangent of the quadrature divided by the inphase
+ * component of the current sample multiplied by the conjugate of the previous sample, limited to the range +/- PI/2.
+ * Buffer demodulation can use an exact double precision arc-tangent or a float-only approximation, selected via the
+ * ArcTangent setting.
  */
 public class FMDemodulator
 {
+    private final static Logger mLog = LoggerFactory.getLogger(FMDemodulator.class);
+
+    private static final float HALF_PI = (float)(FastMath.PI / 2.0);
+    private static final int ARC_TANGENT_TABLE_SEGMENTS = 1024;
+    private static final float[] ARC_TANGENT_TABLE = new float[ARC_TANGENT_TABLE_SEGMENTS + 2];
+
+    static
+    {
+        //Includes one entry beyond 1.0 so that interpolation at 1.0 doesn't need a bounds check
+        for(int x = 0; x < ARC_TANGENT_TABLE.length; x++)
+        {
+            ARC_TANGENT_TABLE[x] = (float)FastMath.atan((double)x / ARC_TANGENT_TABLE_SEGMENTS);
+        }
+    }
+
     private ReusableBufferQueue mReusableBufferQueue = new ReusableBufferQueue("FMDemodulator");
     private float mPreviousI = 0.0f;
     private float mPreviousQ = 0.0f;
+    private ArcTangent mArcTangent;
     protected float mGain;
 
     /**
-     * Creates an FM demodulator instance with a default gain of 1.0.
+     * Creates an FM demodulator instance with a default gain of 1.0 using the exact arc-tangent.
      */
     public FMDemodulator()
     {
@@ -42,12 +67,24 @@ public class FMDemodulator
     }
 
     /**
-     * Creates an FM demodulator instance and applies the gain value to each demodulated output sample.
+     * Creates an FM demodulator instance and applies the gain value to each demodulated output sample, using the
+     * exact arc-tangent.
      * @param gain to apply to demodulated samples.
      */
     public FMDemodulator(float gain)
+    {
+        this(gain, ArcTangent.EXACT);
+    }
+
+    /**
+     * Creates an FM demodulator instance and applies the gain value to each demodulated output sample.
+     * @param gain to apply to demodulated samples.
+     * @param arcTangent implementation to use when demodulating sample buffers
+     */
+    public FMDemodulator(float gain, ArcTangent arcTangent)
     {
         mGain = gain;
+        mArcTangent = arcTangent;
     }
 
     /**
@@ -134,17 +171,136 @@ public class FMDemodulator
     {
         ReusableFloatBuffer demodulatedBuffer = mReusableBufferQueue.getBuffer(basebandSampleBuffer.getSampleCount());
 
-        float[] basebandSamples = basebandSampleBuffer.getSamples();
-        float[] demodulatedSamples = demodulatedBuffer.getSamples();
+        demodulate(basebandSampleBuffer.getSamples(), demodulatedBuffer.getSamples());
+
+        basebandSampleBuffer.decrementUserCount();
+
+        return demodulatedBuffer;
+    }
+
+    /**
+     * Demodulates the complex baseband samples into the demodulated samples array using the arc-tangent setting
+     * for this demodulator.
+     *
+     * @param basebandSamples containing complex samples arranged as i0,q0,i1,q1 ... iN-1,qN-1
+     * @param demodulatedSamples to receive the N demodulated samples
+     */
+    public void demodulate(float[] basebandSamples, float[] demodulatedSamples)
+    {
+        if(mArcTangent == ArcTangent.EXACT)
+        {
+            for(int x = 0; x < basebandSamples.length; x += 2)
+            {
+                demodulatedSamples[x / 2] = demodulate(basebandSamples[x], basebandSamples[x + 1]);
+            }
+
+            return;
+        }
+
+        boolean table = mArcTangent == ArcTangent.TABLE;
+        float gain = mGain;
+        float previousI = mPreviousI;
+        float previousQ = mPreviousQ;
 
         for(int x = 0; x < basebandSamples.length; x += 2)
         {
-            demodulatedSamples[x / 2] = demodulate(basebandSamples[x], basebandSamples[x + 1]);
+            float currentI = basebandSamples[x];
+            float currentQ = basebandSamples[x + 1];
+
+            //Multiply the current sample against the complex conjugate of the previous sample
+            float inphase = (currentI * previousI) + (currentQ * previousQ);
+            float quadrature = (currentQ * previousI) - (currentI * previousQ);
+
+            float angle = table ? arcTangentTable(quadrature, inphase) : arcTangentPolynomial(quadrature, inphase);
+            demodulatedSamples[x / 2] = angle * gain;
+
+            previousI = currentI;
+            previousQ = currentQ;
         }
 
-        basebandSampleBuffer.decrementUserCount();
+        mPreviousI = previousI;
+        mPreviousQ = previousQ;
+    }
 
-        return demodulatedBuffer;
+    /**
+     * Approximates atan(quadrature / inphase) with a 9th order polynomial.  Maximum error is 1.2E-5 radians.
+     *
+     * @param quadrature value
+     * @param inphase value
+     * @return angle in the range +/- PI/2, or zero when the inphase value is zero
+     */
+    public static float arcTangentPolynomial(float quadrature, float inphase)
+    {
+        if(inphase == 0.0f)
+        {
+            return 0.0f;
+        }
+
+        float absoluteQuadrature = Math.abs(quadrature);
+        float absoluteInphase = Math.abs(inphase);
+        float angle;
+
+        if(absoluteQuadrature <= absoluteInphase)
+        {
+            angle = polynomial(absoluteQuadrature / absoluteInphase);
+        }
+        else
+        {
+            angle = HALF_PI - polynomial(absoluteInphase / absoluteQuadrature);
+        }
+
+        return (quadrature < 0.0f) != (inphase < 0.0f) ? -angle : angle;
+    }
+
+    /**
+     * Minimax polynomial approximation of atan(z) over the range 0 <= z <= 1
+     */
+    private static float polynomial(float z)
+    {
+        float z2 = z * z;
+        return z * (0.9998660f + z2 * (-0.3302995f + z2 * (0.1801410f + z2 * (-0.0851330f + z2 * 0.0208351f))));
+    }
+
+    /**
+     * Approximates atan(quadrature / inphase) using linear interpolation of a 1024 segment table.  Maximum error is
+     * 1.0E-6 radians.
+     *
+     * @param quadrature value
+     * @param inphase value
+     * @return angle in the range +/- PI/2, or zero when the inphase value is zero
+     */
+    public static float arcTangentTable(float quadrature, float inphase)
+    {
+        if(inphase == 0.0f)
+        {
+            return 0.0f;
+        }
+
+        float absoluteQuadrature = Math.abs(quadrature);
+        float absoluteInphase = Math.abs(inphase);
+        float angle;
+
+        if(absoluteQuadrature <= absoluteInphase)
+        {
+            angle = table(absoluteQuadrature / absoluteInphase);
+        }
+        else
+        {
+            angle = HALF_PI - table(absoluteInphase / absoluteQuadrature);
+        }
+
+        return (quadrature < 0.0f) != (inphase < 0.0f) ? -angle : angle;
+    }
+
+    /**
+     * Interpolated table lookup of atan(z) over the range 0 <= z <= 1
+     */
+    private static float table(float z)
+    {
+        float position = z * ARC_TANGENT_TABLE_SEGMENTS;
+        int index = (int)position;
+        float fraction = position - index;
+        return ARC_TANGENT_TABLE[index] + fraction * (ARC_TANGENT_TABLE[index + 1] - ARC_TANGENT_TABLE[index]);
     }
 
     public void dispose()
@@ -168,4 +324,116 @@ public class FMDemodulator
     {
         mGain = gain;
     }
+
+    /**
+     * Arc-tangent implementation used for demodulating sample buffers
+     */
+    public ArcTangent getArcTangent()
+    {
+        return mArcTangent;
+    }
+
+    /**
+     * Sets the arc-tangent implementation used for demodulating sample buffers
+     */
+    public void setArcTangent(ArcTangent arcTangent)
+    {
+        mArcTangent = arcTangent;
+    }
+
+    /**
+     * Arc-tangent implementations for the phase discriminator.
+     *
+     * EXACT: double precision FastMath.atan()
+     * POLYNOMIAL: float-only 9th order polynomial approximation with a maximum error of 1.2E-5 radians
+     * TABLE: float-only interpolated table lookup with a maximum error of 1.0E-6 radians
+     */
+    public enum ArcTangent
+    {
+        EXACT,
+        POLYNOMIAL,
+        TABLE;
+    }
+
+    /**
+     * Demodulates the samples with a fresh demodulator and returns the duration in nanoseconds
+     */
+    private static long benchmark(ArcTangent arcTangent, float[] samples, float[] demodulated, int iterations)
+    {
+        FMDemodulator demodulator = new FMDemodulator(1.0f, arcTangent);
+        long start = System.nanoTime();
+
+        for(int x = 0; x < iterations; x++)
+        {
+            demodulator.demodulate(samples, demodulated);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(1234);
+        int sampleCount = 2048;
+        float[] samples = new float[sampleCount * 2];
+
+        //Random phase steps and amplitudes, including phase steps beyond +/- PI/2
+        double phase = 0.0;
+
+        for(int x = 0; x < samples.length; x += 2)
+        {
+            phase += (random.nextDouble() - 0.5) * 2.0 * FastMath.PI;
+            double amplitude = 0.001 + random.nextDouble();
+            samples[x] = (float)(amplitude * FastMath.cos(phase));
+            samples[x + 1] = (float)(amplitude * FastMath.sin(phase));
+        }
+
+        float[] exact = new float[sampleCount];
+        new FMDemodulator(1.0f, ArcTangent.EXACT).demodulate(samples, exact);
+
+        for(ArcTangent arcTangent: new ArcTangent[]{ArcTangent.POLYNOMIAL, ArcTangent.TABLE})
+        {
+            float[] approximate = new float[sampleCount];
+            new FMDemodulator(1.0f, arcTangent).demodulate(samples, approximate);
+
+            double maxError = 0.0;
+
+            for(int x = 0; x < sampleCount; x++)
+            {
+                maxError = FastMath.max(maxError, FastMath.abs(exact[x] - approximate[x]));
+            }
+
+            mLog.info(arcTangent + " maximum error versus exact: " + maxError + " radians");
+        }
+
+        //Dense sweep of the approximation kernels against the exact arc-tangent across all octants
+        double maxPolynomialError = 0.0;
+        double maxTableError = 0.0;
+
+        for(int x = 0; x < 1_000_000; x++)
+        {
+            double angle = (x / 1_000_000.0 - 0.5) * 2.0 * FastMath.PI;
+            float inphase = (float)FastMath.cos(angle);
+            float quadrature = (float)FastMath.sin(angle);
+            double expected = inphase != 0.0f ? FastMath.atan((double)quadrature / inphase) : 0.0;
+            maxPolynomialError = FastMath.max(maxPolynomialError,
+                FastMath.abs(expected - arcTangentPolynomial(quadrature, inphase)));
+            maxTableError = FastMath.max(maxTableError, FastMath.abs(expected - arcTangentTable(quadrature, inphase)));
+        }
+
+        mLog.info("Kernel maximum error - polynomial: " + maxPolynomialError + " table: " + maxTableError);
+
+        float[] demodulated = new float[sampleCount];
+        int iterations = 20000;
+
+        for(ArcTangent arcTangent: ArcTangent.values())
+        {
+            //Warm up
+            benchmark(arcTangent, samples, demodulated, iterations);
+            benchmark(arcTangent, samples, demodulated, iterations);
+            long duration = benchmark(arcTangent, samples, demodulated, iterations);
+            double samplesPerSecond = (double)sampleCount * iterations / (duration / 1E9);
+            mLog.info(String.format("%-10s %8.1f Msps", arcTangent, samplesPerSecond / 1E6));
+        }
+    }
 }
\ No newline at end of file
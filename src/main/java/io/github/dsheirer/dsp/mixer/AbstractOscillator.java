@@ -100,19 +100,29 @@ public abstract class AbstractOscillator implements IOscillator
      */
     @Override
     public float[] mixComplex(float[] samples)
+    {
+        mixComplex(samples, samples);
+        return samples;
+    }
+
+    /**
+     * Performs complex heterodyne against the samples using this oscillator
+     * @param samples to mix with this oscillator
+     * @param mixedSamples to receive the mixed samples
+     */
+    @Override
+    public void mixComplex(float[] samples, float[] mixedSamples)
     {
         for(int x = 0; x < samples.length; x += 2)
         {
             float i = Complex.multiplyInphase(samples[x], samples[x + 1], inphase(), quadrature());
             float q = Complex.multiplyQuadrature(samples[x], samples[x + 1], inphase(), quadrature());
 
-            samples[x] = i;
-            samples[x + 1] = q;
+            mixedSamples[x] = i;
+            mixedSamples[x + 1] = q;
 
             rotate();
         }
-
-        return samples;
     }
 
     /**
@@ -112,4 +112,13 @@ public interface IOscillator
      * @return mixed/heterdyned samples
      */
     float[] mixComplex(float[] complexSamples);
+
+    /**
+     * Mixes (heterodynes) the complex sample array using the current settings of this oscillator and places the
+     * results in the mixed samples array.
+     * @param complexSamples to mix to a new frequency
+     * @param mixedSamples to receive the mixed samples, with a length equal to or greater than the complex samples.
+     * This can be the same array as the complex samples array.
+     */
+    void mixComplex(float[] complexSamples, float[] mixedSamples);
 }
@@ -0,0 +1,427 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.dsp.mixer;
+
+import org.apache.commons.math3.util.FastMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Table-driven complex oscillator optimized for mixing whole sample buffers.
+ *
+ * The rotation value for each sample is the product of a block phasor and an entry from a precomputed table of
+ * rotation values.  The block phasor is maintained in double precision and is advanced and renormalized once per
+ * pass through the table, so that the per-sample work in the mixing loops is a pair of complex multiplies against
+ * array values with no normalization and no data dependency between samples.
+ *
+ * When the frequency and sample rate are both integral and the oscillator period (in samples) is short enough, the
+ * table holds a whole number of oscillator cycles and the block phasor never changes, so there is no accumulated
+ * phase error.  Otherwise, the table holds a fixed block of rotation values and the phase error is limited to the
+ * double precision block recurrence.
+ *
+ * Frequency and sample rate changes can arrive on a different thread than the one that is mixing samples.  Each
+ * change builds a new immutable rotation table that is published through a volatile field.  The mixing thread owns
+ * the table index and block phasor, picks up a newly published table at the start of each call, and re-bases the
+ * block phasor on the current rotation value so that the output remains phase continuous across changes.
+ */
+public class TableOscillator extends AbstractOscillator
+{
+    private final static Logger mLog = LoggerFactory.getLogger(TableOscillator.class);
+
+    private static final int BLOCK_SIZE = 256;
+    private static final int MAX_PERIODIC_TABLE_SIZE = 4096;
+    private static final double TWO_PI = 2.0 * FastMath.PI;
+
+    private volatile Table mPublishedTable;
+    private Table mTable;
+    private int mTableIndex;
+    private double mBlockInphase;
+    private double mBlockQuadrature;
+
+    /**
+     * Constructs an instance
+     *
+     * @param frequency - positive or negative frequency in hertz
+     * @param sampleRate - in hertz
+     */
+    public TableOscillator(double frequency, double sampleRate)
+    {
+        super(frequency, sampleRate);
+    }
+
+    /**
+     * Builds and publishes a new rotation table after a frequency or sample rate change.  The mixing thread applies
+     * the new table the next time that it produces samples.
+     */
+    @Override
+    protected void update()
+    {
+        double anglePerSample = TWO_PI * getFrequency() / getSampleRate();
+        int periodicTableSize = getPeriodicTableSize(getFrequency(), getSampleRate());
+        int tableSize = periodicTableSize > 0 ? periodicTableSize : BLOCK_SIZE;
+
+        float[] tableInphase = new float[tableSize];
+        float[] tableQuadrature = new float[tableSize];
+
+        //Fill the table using a double precision recurrence, re-seeded from the exact angle every 64 entries
+        double stepInphase = FastMath.cos(anglePerSample);
+        double stepQuadrature = FastMath.sin(anglePerSample);
+        double inphase = 1.0;
+        double quadrature = 0.0;
+
+        for(int x = 0; x < tableSize; x++)
+        {
+            if((x & 0x3F) == 0)
+            {
+                double angle = (anglePerSample * x) % TWO_PI;
+                inphase = FastMath.cos(angle);
+                quadrature = FastMath.sin(angle);
+            }
+
+            tableInphase[x] = (float)inphase;
+            tableQuadrature[x] = (float)quadrature;
+
+            double temp = inphase * stepInphase - quadrature * stepQuadrature;
+            quadrature = inphase * stepQuadrature + quadrature * stepInphase;
+            inphase = temp;
+        }
+
+        if(periodicTableSize > 0)
+        {
+            //The table spans a whole number of oscillator cycles
+            mPublishedTable = new Table(tableInphase, tableQuadrature, 1.0, 0.0);
+        }
+        else
+        {
+            double blockAngle = (anglePerSample * tableSize) % TWO_PI;
+            mPublishedTable = new Table(tableInphase, tableQuadrature, FastMath.cos(blockAngle),
+                FastMath.sin(blockAngle));
+        }
+    }
+
+    /**
+     * Current rotation table.  When a new table has been published, the current rotation value becomes the new block
+     * phasor and the table index restarts at zero.  Must only be invoked by the mixing thread.
+     */
+    private Table getTable()
+    {
+        Table published = mPublishedTable;
+
+        if(published != mTable)
+        {
+            if(mTable == null)
+            {
+                mBlockInphase = 1.0;
+                mBlockQuadrature = 0.0;
+            }
+            else
+            {
+                double inphase = mBlockInphase * mTable.mInphase[mTableIndex] -
+                    mBlockQuadrature * mTable.mQuadrature[mTableIndex];
+                double quadrature = mBlockInphase * mTable.mQuadrature[mTableIndex] +
+                    mBlockQuadrature * mTable.mInphase[mTableIndex];
+                double gain = 1.0 / FastMath.sqrt(inphase * inphase + quadrature * quadrature);
+                mBlockInphase = inphase * gain;
+                mBlockQuadrature = quadrature * gain;
+            }
+
+            mTable = published;
+            mTableIndex = 0;
+        }
+
+        return mTable;
+    }
+
+    /**
+     * Determines the size of a table that holds a whole number of oscillator cycles and at least one block of
+     * samples, when the frequency and sample rate are integral.
+     *
+     * @return table size or 0 if the oscillator can't be represented by a periodic table
+     */
+    private static int getPeriodicTableSize(double frequency, double sampleRate)
+    {
+        long frequencyHz = FastMath.round(FastMath.abs(frequency));
+        long sampleRateHz = FastMath.round(sampleRate);
+
+        if(sampleRateHz <= 0 || frequencyHz != FastMath.abs(frequency) || sampleRateHz != sampleRate)
+        {
+            return 0;
+        }
+
+        long period = sampleRateHz / gcd(frequencyHz, sampleRateHz);
+        long size = period * ((BLOCK_SIZE + period - 1) / period);
+
+        return size <= MAX_PERIODIC_TABLE_SIZE ? (int)size : 0;
+    }
+
+    /**
+     * Greatest common divisor
+     */
+    private static long gcd(long a, long b)
+    {
+        while(b != 0)
+        {
+            long temp = a % b;
+            a = b;
+            b = temp;
+        }
+
+        return a;
+    }
+
+    /**
+     * Advances the block phasor by one pass through the table and renormalizes it.
+     */
+    private void advanceBlock(Table table)
+    {
+        double inphase = mBlockInphase * table.mBlockStepInphase - mBlockQuadrature * table.mBlockStepQuadrature;
+        double quadrature = mBlockInphase * table.mBlockStepQuadrature + mBlockQuadrature * table.mBlockStepInphase;
+        double gain = 1.0 / FastMath.sqrt(inphase * inphase + quadrature * quadrature);
+        mBlockInphase = inphase * gain;
+        mBlockQuadrature = quadrature * gain;
+        mTableIndex = 0;
+    }
+
+    @Override
+    public float inphase()
+    {
+        Table table = getTable();
+        return (float)(mBlockInphase * table.mInphase[mTableIndex] - mBlockQuadrature * table.mQuadrature[mTableIndex]);
+    }
+
+    @Override
+    public float quadrature()
+    {
+        Table table = getTable();
+        return (float)(mBlockInphase * table.mQuadrature[mTableIndex] + mBlockQuadrature * table.mInphase[mTableIndex]);
+    }
+
+    @Override
+    public void rotate()
+    {
+        Table table = getTable();
+        mTableIndex++;
+
+        if(mTableIndex >= table.mInphase.length)
+        {
+            advanceBlock(table);
+        }
+    }
+
+    /**
+     * Performs complex heterodyne against the samples using this oscillator
+     * @param samples to mix with this oscillator
+     * @return the samples array, mixed in place
+     */
+    @Override
+    public float[] mixComplex(float[] samples)
+    {
+        mixComplex(samples, samples);
+        return samples;
+    }
+
+    /**
+     * Performs complex heterodyne against the samples using this oscillator, processing the samples in segments that
+     * run to the end of the rotation table.
+     *
+     * @param samples to mix with this oscillator
+     * @param mixedSamples to receive the mixed samples.  May be the same array as the samples argument.
+     */
+    @Override
+    public void mixComplex(float[] samples, float[] mixedSamples)
+    {
+        Table table = getTable();
+        float[] tableInphase = table.mInphase;
+        float[] tableQuadrature = table.mQuadrature;
+        int offset = 0;
+
+        while(offset < samples.length)
+        {
+            int segmentLength = FastMath.min(tableInphase.length - mTableIndex, (samples.length - offset) / 2);
+            float blockInphase = (float)mBlockInphase;
+            float blockQuadrature = (float)mBlockQuadrature;
+            int tableIndex = mTableIndex;
+
+            for(int x = 0; x < segmentLength; x++)
+            {
+                float rotationInphase = blockInphase * tableInphase[tableIndex + x] -
+                    blockQuadrature * tableQuadrature[tableIndex + x];
+                float rotationQuadrature = blockInphase * tableQuadrature[tableIndex + x] +
+                    blockQuadrature * tableInphase[tableIndex + x];
+
+                int sampleIndex = offset + 2 * x;
+                float inphase = samples[sampleIndex];
+                float quadrature = samples[sampleIndex + 1];
+
+                mixedSamples[sampleIndex] = inphase * rotationInphase - quadrature * rotationQuadrature;
+                mixedSamples[sampleIndex + 1] = inphase * rotationQuadrature + quadrature * rotationInphase;
+            }
+
+            offset += 2 * segmentLength;
+            mTableIndex += segmentLength;
+
+            if(mTableIndex >= tableInphase.length)
+            {
+                advanceBlock(table);
+            }
+
+            //Guard against an odd length sample array
+            if(segmentLength == 0)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Immutable rotation table and the block phasor step for one pass through the table
+     */
+    private static class Table
+    {
+        private final float[] mInphase;
+        private final float[] mQuadrature;
+        private final double mBlockStepInphase;
+        private final double mBlockStepQuadrature;
+
+        private Table(float[] inphase, float[] quadrature, double blockStepInphase, double blockStepQuadrature)
+        {
+            mInphase = inphase;
+            mQuadrature = quadrature;
+            mBlockStepInphase = blockStepInphase;
+            mBlockStepQuadrature = blockStepQuadrature;
+        }
+    }
+
+    /**
+     * Generates an array of complex samples from this oscillator.
+     * @param sampleCount number of samples to generate and length of the resulting float array.
+     */
+    @Override
+    public float[] generateComplex(int sampleCount)
+    {
+        float[] samples = new float[sampleCount * 2];
+
+        for(int x = 0; x < samples.length; x += 2)
+        {
+            samples[x] = 1.0f;
+        }
+
+        return mixComplex(samples);
+    }
+
+    /**
+     * Measures mixing throughput for the oscillator
+     * @return duration in nanoseconds
+     */
+    private static long throughput(IOscillator oscillator, float[] samples, int iterations)
+    {
+        long start = System.nanoTime();
+
+        for(int x = 0; x < iterations; x++)
+        {
+            oscillator.mixComplex(samples);
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Measures the maximum phase error and magnitude error of the oscillator output, relative to the exact phase
+     * computed from the sample index, over the specified number of samples.
+     *
+     * @return array of maximum phase error (radians) and maximum magnitude error
+     */
+    private static double[] drift(IOscillator oscillator, long sampleCount, int bufferSize)
+    {
+        float[] samples = new float[bufferSize * 2];
+        double anglePerSample = TWO_PI * oscillator.getFrequency() / oscillator.getSampleRate();
+        double initialPhase = Double.NaN;
+        double maxPhaseError = 0.0;
+        double maxMagnitudeError = 0.0;
+        long sampleIndex = 0;
+
+        while(sampleIndex < sampleCount)
+        {
+            for(int x = 0; x < samples.length; x += 2)
+            {
+                samples[x] = 1.0f;
+                samples[x + 1] = 0.0f;
+            }
+
+            oscillator.mixComplex(samples);
+
+            for(int x = 0; x < samples.length; x += 2)
+            {
+                double phase = FastMath.atan2(samples[x + 1], samples[x]);
+
+                if(Double.isNaN(initialPhase))
+                {
+                    initialPhase = phase;
+                }
+
+                double expected = initialPhase + (anglePerSample * sampleIndex) % TWO_PI;
+                double error = FastMath.abs(Math.IEEEremainder(phase - expected, TWO_PI));
+                maxPhaseError = FastMath.max(maxPhaseError, error);
+
+                double magnitude = FastMath.sqrt(samples[x] * samples[x] + samples[x + 1] * samples[x + 1]);
+                maxMagnitudeError = FastMath.max(maxMagnitudeError, FastMath.abs(1.0 - magnitude));
+                sampleIndex++;
+            }
+        }
+
+        return new double[]{maxPhaseError, maxMagnitudeError};
+    }
+
+    public static void main(String[] args)
+    {
+        double sampleRate = 25000.0;
+        double[] frequencies = {1250.0, 1234.567};
+        int bufferSize = 2048;
+        int iterations = 20000;
+        long driftSamples = 20_000_000;
+
+        for(double frequency: frequencies)
+        {
+            IOscillator[] oscillators = {new Oscillator(frequency, sampleRate),
+                new LowPhaseNoiseOscillator(frequency, sampleRate), new TableOscillator(frequency, sampleRate)};
+
+            for(IOscillator oscillator: oscillators)
+            {
+                float[] samples = new float[bufferSize * 2];
+
+                //Warm up
+                throughput(oscillator, samples, iterations);
+                throughput(oscillator, samples, iterations);
+
+                long duration = throughput(oscillator, samples, iterations);
+                double samplesPerSecond = (double)bufferSize * iterations / (duration / 1E9);
+
+                oscillator.setFrequency(frequency);
+                double[] errors = drift(oscillator, driftSamples, bufferSize);
+
+                mLog.info(String.format("%-24s %10.3f Hz  %8.1f Msps  max phase error: %.3e rad  max magnitude " +
+                        "error: %.3e", oscillator.getClass().getSimpleName(), frequency, samplesPerSecond / 1E6,
+                    errors[0], errors[1]));
+            }
+        }
+    }
+}
@@ -26,8 +26,14 @@ import org.apache.commons.math3.util.FastMath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 /**
  * Berlekemp Massey decoder for 63-bit primitive RS/BCH block codes
+ *
+ * Decoder instances are normally shared across decoding threads, so the decoding work arrays are held in a per-thread
+ * workspace and reused across decode invocations.  Decoding statistics are accumulated in a statistics instance
+ * that is shared by all decoders of the same code and correction capacity.
  */
 public class BerlekempMassey_63
 {
@@ -48,7 +54,16 @@ public class BerlekempMassey_63
 	int[] alpha_to;
 	int[] index_of;
 	int[] gg;
-	
+
+	/* alpha_to[] repeated twice so that the sum of two index form values can be used without a modulus */
+	private int[] alpha_to_2;
+
+	/* syndrome exponents ( i * j ) % NN for codeword symbol j and syndrome i, indexed as [ j * ( NN - KK ) + i - 1 ] */
+	private int[] syndrome_powers;
+
+	private ThreadLocal<Workspace> mWorkspace = ThreadLocal.withInitial( Workspace::new );
+	private String mStatisticsName;
+
 	public BerlekempMassey_63( int tt )
     {
 		TT = tt;
@@ -64,8 +79,46 @@ public class BerlekempMassey_63
         generate_gf( generator_polinomial );
 
         gen_poly();
+
+        generate_syndrome_tables();
+
+        mStatisticsName = getClass().getSimpleName() + " TT:" + TT;
     }
 
+	/**
+	 * Decoding statistics for this code type and maximum correctable error count in the statistics scope that is
+	 * active on the calling thread.
+	 *
+	 * @return statistics or null if there is no active statistics scope
+	 */
+	public ErrorCorrectionStatistics getStatistics()
+	{
+		return ErrorCorrectionStatisticsScope.getActiveStatistics( mStatisticsName );
+	}
+
+	/**
+	 * Generates the lookup tables used to compute the syndromes without modulus operations.
+	 */
+	private void generate_syndrome_tables()
+	{
+		alpha_to_2 = new int[ 2 * NN ];
+
+		for( int i = 0; i < 2 * NN; i++ )
+		{
+			alpha_to_2[ i ] = alpha_to[ i % NN ];
+		}
+
+		syndrome_powers = new int[ NN * ( NN - KK ) ];
+
+		for( int j = 0; j < NN; j++ )
+		{
+			for( int i = 1; i <= NN - KK; i++ )
+			{
+				syndrome_powers[ j * ( NN - KK ) + i - 1 ] = ( i * j ) % NN;
+			}
+		}
+	}
+
 	/**
 	 * Generates the Golay Field.
 	 * 
@@ -189,53 +242,74 @@ public class BerlekempMassey_63
     public boolean decode( final int[] input, int[] output ) //input, output
     {
     	int u, q;
-        int[][] elp = new int[ NN - KK + 2 ][ NN - KK ];
-        int[] d = new int[ NN - KK + 2 ]; 
-        int[] l = new int[ NN - KK + 2 ]; 
-        int[] u_lu = new int[ NN - KK + 2 ];
-        int[] s = new int[ NN - KK + 1 ];
+        Workspace workspace = mWorkspace.get();
+        ErrorCorrectionStatistics statistics = getStatistics();
+        int[][] elp = workspace.elp;
+        int[] d = workspace.d;
+        int[] l = workspace.l;
+        int[] u_lu = workspace.u_lu;
+        int[] s = workspace.s;
         int count = 0; 
         boolean syn_error = false;
-        int[] root = new int[ TT ];
-        int[] loc = new int[ TT ];
-        int[] z = new int[ TT + 1 ];
-        int[] err = new int[ NN ];
-        int[] reg = new int[ TT + 1 ];
+        int[] root = workspace.root;
+        int[] loc = workspace.loc;
+        int[] z = workspace.z;
+        int[] err = workspace.err;
+        int[] reg = workspace.reg;
 
         boolean irrecoverable_error = false;
 
-    	/* put recd[i] into index form (ie as powers of alpha) */
-        for( int i = 0; i < NN; i++ )
-        {
-            output[ i ] = index_of[ input[ i ] ];
-        }
-        
-        /* first form the syndromes */
-        for( int i = 1; i <= NN - KK; i++ ) 
+        Arrays.fill( s, 0 );
+
+    	/* put recd[i] into index form (ie as powers of alpha) and accumulate each symbol's contribution to the
+    	   2*tt syndromes, skipping zero symbols */
+        for( int j = 0; j < NN; j++ )
         {
-            s[ i ] = 0;
-            
-            for( int j = 0; j < NN; j++ )
+            int symbol = index_of[ input[ j ] ];
+            output[ j ] = symbol;
+
+            if( symbol != -1 )
             {
-                if( output[ j ] != -1 )
+                int offset = j * ( NN - KK ) - 1;
+
+                for( int i = 1; i <= NN - KK; i++ )
                 {
-                	/* recd[j] in index form */
-                	s[ i ] ^= alpha_to[ ( output[ j ] + i * j ) % NN ];
+                	s[ i ] ^= alpha_to_2[ symbol + syndrome_powers[ offset + i ] ];
                 }
             }
-            
+        }
+
+        for( int i = 1; i <= NN - KK; i++ )
+        {
             /* convert syndrome from polynomial form to index form  */
             if( s[ i ] != 0 )
             {
-            	/* set flag if non-zero syndrome => error */            	
-                syn_error = true; 
+            	/* set flag if non-zero syndrome => error */
+                syn_error = true;
             }
-            
+
             s[ i ] = index_of[ s[ i ] ];
         }
-        
-        if( syn_error ) /* if errors, try and correct */
+
+        if( !syn_error )
         {
+            /* no non-zero syndromes => no errors: output received codeword */
+            System.arraycopy( input, 0, output, 0, NN );
+
+            if( statistics != null )
+            {
+                statistics.recordClean();
+            }
+
+            return false;
+        }
+        else /* if errors, try and correct */
+        {
+            for( int[] row: elp )
+            {
+                Arrays.fill( row, 0 );
+            }
+
             /* compute the error location polynomial via the Berlekamp iterative algorithm,
              following the terminology of Lin and Costello :   d[u] is the 'mu'th
              discrepancy, where u='mu'+1 and 'mu' (the Greek letter!) is the step number
@@ -471,6 +545,21 @@ public class BerlekempMassey_63
                             output[loc[i]] ^= err[loc[i]]; /*recd[i] must be in polynomial form */
                         }
                     }
+
+                    if( statistics != null )
+                    {
+                        int correctedSymbols = 0;
+
+                        for( int i = 0; i < NN; i++ )
+                        {
+                            if( output[ i ] != input[ i ] )
+                            {
+                                correctedSymbols++;
+                            }
+                        }
+
+                        statistics.recordCorrected( correctedSymbols );
+                    }
                 } 
                 else 
                 {
@@ -485,37 +574,35 @@ public class BerlekempMassey_63
                 irrecoverable_error = true;
             }
         } 
-        else 
-        {
-            /* no non-zero syndromes => no errors: output received codeword */
-        	for (int i = 0; i < NN; i++)
-        	{
-                if (output[i] != -1) /* convert recd[] to polynomial form */
-                {
-                    output[i] = alpha_to[output[i]];
-                }
-                else
-                {
-                    output[i] = 0;
-                }
-        	}
-        }
 
         if( irrecoverable_error ) 
         {
-        	for (int i = 0; i < NN; i++) /* could return error flag if desired */
-        	{
-                if (output[i] != -1) /* convert recd[] to polynomial form */
-                {
-                    output[i] = alpha_to[output[i]];
-                }
-                else
-                {
-                    output[i] = 0; /* just output received codeword as is */
-                }
-        	}
+            /* just output received codeword as is */
+            System.arraycopy( input, 0, output, 0, NN );
+
+            if( statistics != null )
+            {
+                statistics.recordFailure();
+            }
         }
 
         return irrecoverable_error;
     }
+
+    /**
+     * Reusable work arrays for a single decoding thread
+     */
+    private class Workspace
+    {
+        private int[][] elp = new int[ NN - KK + 2 ][ NN - KK ];
+        private int[] d = new int[ NN - KK + 2 ];
+        private int[] l = new int[ NN - KK + 2 ];
+        private int[] u_lu = new int[ NN - KK + 2 ];
+        private int[] s = new int[ NN - KK + 1 ];
+        private int[] root = new int[ TT ];
+        private int[] loc = new int[ TT ];
+        private int[] z = new int[ TT + 1 ];
+        private int[] err = new int[ NN ];
+        private int[] reg = new int[ TT + 1 ];
+    }
 }
@@ -0,0 +1,174 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.edac;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decoding statistics for a block code error detection and correction decoder within a single decoding channel.
+ * Decoders access statistics through the statistics scope that is active on the calling thread.
+ *
+ * @see ErrorCorrectionStatisticsScope
+ */
+public class ErrorCorrectionStatistics
+{
+    private String mName;
+    private LongAdder mCodewordCount = new LongAdder();
+    private LongAdder mCleanCount = new LongAdder();
+    private LongAdder mCorrectedCount = new LongAdder();
+    private LongAdder mCorrectedSymbolCount = new LongAdder();
+    private LongAdder mFailureCount = new LongAdder();
+    private volatile long mResetTimestamp;
+
+    /**
+     * Constructs an instance.
+     * @param name of the decoder
+     * @param startTimestamp for the codeword rate measurement, normally the start of the channel's run
+     */
+    ErrorCorrectionStatistics(String name, long startTimestamp)
+    {
+        mName = name;
+        mResetTimestamp = startTimestamp;
+    }
+
+    /**
+     * Decoder name
+     */
+    public String getName()
+    {
+        return mName;
+    }
+
+    /**
+     * Records a codeword that decoded without any errors
+     */
+    void recordClean()
+    {
+        mCodewordCount.increment();
+        mCleanCount.increment();
+    }
+
+    /**
+     * Records a codeword that was decoded with errors that were corrected
+     * @param correctedSymbolCount number of symbols (or bits) that were corrected
+     */
+    void recordCorrected(int correctedSymbolCount)
+    {
+        mCodewordCount.increment();
+        mCorrectedCount.increment();
+        mCorrectedSymbolCount.add(correctedSymbolCount);
+    }
+
+    /**
+     * Records a codeword with errors that could not be corrected
+     */
+    void recordFailure()
+    {
+        mCodewordCount.increment();
+        mFailureCount.increment();
+    }
+
+    /**
+     * Total number of codewords decoded
+     */
+    public long getCodewordCount()
+    {
+        return mCodewordCount.sum();
+    }
+
+    /**
+     * Number of codewords that decoded without errors
+     */
+    public long getCleanCount()
+    {
+        return mCleanCount.sum();
+    }
+
+    /**
+     * Number of codewords with corrected errors
+     */
+    public long getCorrectedCount()
+    {
+        return mCorrectedCount.sum();
+    }
+
+    /**
+     * Total number of corrected symbols across all corrected codewords
+     */
+    public long getCorrectedSymbolCount()
+    {
+        return mCorrectedSymbolCount.sum();
+    }
+
+    /**
+     * Number of codewords with errors that could not be corrected
+     */
+    public long getFailureCount()
+    {
+        return mFailureCount.sum();
+    }
+
+    /**
+     * Average codeword decode rate since the start timestamp or the last reset.
+     * @return codewords per second
+     */
+    public double getCodewordsPerSecond()
+    {
+        long elapsed = System.currentTimeMillis() - mResetTimestamp;
+
+        if(elapsed <= 0)
+        {
+            return 0.0;
+        }
+
+        return getCodewordCount() * 1000.0 / elapsed;
+    }
+
+    /**
+     * Resets all counters
+     */
+    public void reset()
+    {
+        mCodewordCount.reset();
+        mCleanCount.reset();
+        mCorrectedCount.reset();
+        mCorrectedSymbolCount.reset();
+        mFailureCount.reset();
+        mResetTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Summary of the decoding statistics
+     */
+    public String getSummary()
+    {
+        return String.format("%s codewords:%d (%.1f/sec) clean:%d corrected:%d (symbols:%d) failed:%d", mName,
+            getCodewordCount(), getCodewordsPerSecond(), getCleanCount(), getCorrectedCount(),
+            getCorrectedSymbolCount(), getFailureCount());
+    }
+
+    @Override
+    public String toString()
+    {
+        return getSummary();
+    }
+}
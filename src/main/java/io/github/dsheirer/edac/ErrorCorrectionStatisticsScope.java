@@ -0,0 +1,108 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.edac;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Set of block code decoder statistics for a single decoding channel.
+ *
+ * Block code decoders are shared across channels, so the decoders record into the scope that is active on the
+ * calling thread.  A processing chain activates its scope while it delivers each sample buffer to its decoder
+ * modules, so the codewords decoded while processing the buffer are attributed to that channel.  Codewords that are
+ * decoded outside of an active scope (e.g. lazily decoded message fields accessed from a user interface thread) are
+ * not recorded.
+ */
+public class ErrorCorrectionStatisticsScope
+{
+    private static final ThreadLocal<ErrorCorrectionStatisticsScope> ACTIVE_SCOPE = new ThreadLocal<>();
+
+    private Map<String,ErrorCorrectionStatistics> mStatisticsMap = new ConcurrentHashMap<>();
+    private volatile long mStartTimestamp = System.currentTimeMillis();
+
+    /**
+     * Activates this scope on the calling thread.
+     * @return the previously active scope, to be restored via deactivate()
+     */
+    public ErrorCorrectionStatisticsScope activate()
+    {
+        ErrorCorrectionStatisticsScope previous = ACTIVE_SCOPE.get();
+        ACTIVE_SCOPE.set(this);
+        return previous;
+    }
+
+    /**
+     * Restores the previously active scope on the calling thread.
+     * @param previous scope returned by activate()
+     */
+    public void deactivate(ErrorCorrectionStatisticsScope previous)
+    {
+        if(previous != null)
+        {
+            ACTIVE_SCOPE.set(previous);
+        }
+        else
+        {
+            ACTIVE_SCOPE.remove();
+        }
+    }
+
+    /**
+     * Statistics for the named decoder in the scope that is active on the calling thread, created on first access.
+     * @param name of the decoder, including any code parameters that distinguish decoders of the same type
+     * @return statistics or null if there is no active scope
+     */
+    static ErrorCorrectionStatistics getActiveStatistics(String name)
+    {
+        ErrorCorrectionStatisticsScope scope = ACTIVE_SCOPE.get();
+
+        if(scope != null)
+        {
+            return scope.mStatisticsMap.computeIfAbsent(name,
+                key -> new ErrorCorrectionStatistics(key, scope.mStartTimestamp));
+        }
+
+        return null;
+    }
+
+    /**
+     * All statistics in this scope, sorted by name.
+     */
+    public List<ErrorCorrectionStatistics> getAll()
+    {
+        List<ErrorCorrectionStatistics> statistics = new ArrayList<>(mStatisticsMap.values());
+        statistics.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return statistics;
+    }
+
+    /**
+     * Removes all statistics and restarts the rate measurement period
+     */
+    public void reset()
+    {
+        mStartTimestamp = System.currentTimeMillis();
+        mStatisticsMap.clear();
+    }
+}
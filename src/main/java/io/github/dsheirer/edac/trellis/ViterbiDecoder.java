@@ -18,19 +18,29 @@
  ******************************************************************************/
 package io.github.dsheirer.edac.trellis;
 
+import io.github.dsheirer.bits.CorrectedBinaryMessage;
 import org.apache.commons.math3.util.FastMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 public abstract class ViterbiDecoder
 {
+    private final static Logger mLog = LoggerFactory.getLogger(ViterbiDecoder.class);
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
     private int mInputBitLength;
     private int mInputValueCount;
     private int mOutputBitLength;
     private int mOutputValueCount;
+    private volatile BranchMetrics mBranchMetrics;
+    private ThreadLocal<Workspace> mWorkspace = ThreadLocal.withInitial(Workspace::new);
 
     /**
      * Viterbi decoder for trellis coded modulation (TCM) encoded binary sequences.
@@ -129,18 +139,164 @@ public abstract class ViterbiDecoder
      */
     public Path decode(int[] transmittedOutputValues)
     {
-        Collection<Path> survivingPaths = new ArrayList<>();
+        int[] inputValues = new int[transmittedOutputValues.length - 1];
 
-        survivingPaths.add(new Path(createStartingNode()));
+        decode(transmittedOutputValues, inputValues);
 
-        //Add all but the last transmitted value to the starting path, creating a set of survivors at each iteration.
-        for(int x = 0; x < transmittedOutputValues.length - 1; x++)
+        Path path = new Path(createStartingNode());
+
+        for(int x = 0; x < inputValues.length; x++)
         {
-            survivingPaths = add(survivingPaths, transmittedOutputValues[x]);
+            path.add(createNode(inputValues[x], transmittedOutputValues[x]));
         }
 
-        //Flush the survivors with the final transmitted value and return the lone surviving path
-        return flush(survivingPaths, transmittedOutputValues[transmittedOutputValues.length - 1]);
+        path.add(createFlushingNode(transmittedOutputValues[transmittedOutputValues.length - 1]));
+
+        return path;
+    }
+
+    /**
+     * Decodes the TCM encoded transmitted output values into the most likely sequence of input values using
+     * precomputed branch metrics, fixed size path metric arrays and a traceback table.  This method does not create
+     * any node or path objects and produces the same result as the path based add() and flush() methods, including
+     * the tie-breaking between equal error survivors (lowest preceding state wins).
+     *
+     * @param transmittedOutputValues from the encoded message, where the final value is the flushing value
+     * @param inputValues array to receive the decoded input values, sized to at least transmitted length - 1
+     * @return cumulative error (ie Hamming distance) of the most likely path
+     */
+    public int decode(int[] transmittedOutputValues, int[] inputValues)
+    {
+        if(transmittedOutputValues.length == 0)
+        {
+            throw new IllegalArgumentException("Transmitted output values cannot be empty");
+        }
+
+        int symbolCount = transmittedOutputValues.length - 1;
+
+        if(inputValues.length < symbolCount)
+        {
+            throw new IllegalArgumentException("Input values array length [" + inputValues.length +
+                "] must be at least [" + symbolCount + "]");
+        }
+
+        BranchMetrics branchMetrics = getBranchMetrics();
+        Workspace workspace = mWorkspace.get();
+        int stateCount = getInputValueCount();
+        int[] traceback = workspace.getTraceback(symbolCount * stateCount);
+        int[] pathMetrics = workspace.mPathMetrics;
+        int[] nextPathMetrics = workspace.mNextPathMetrics;
+
+        Arrays.fill(pathMetrics, UNREACHABLE);
+        pathMetrics[branchMetrics.mStartingState] = 0;
+
+        for(int x = 0; x < symbolCount; x++)
+        {
+            int symbolOffset = transmittedOutputValues[x] * stateCount * stateCount;
+            int tracebackOffset = x * stateCount;
+
+            for(int state = 0; state < stateCount; state++)
+            {
+                int bestMetric = UNREACHABLE;
+                int bestPrevious = 0;
+
+                for(int previous = 0; previous < stateCount; previous++)
+                {
+                    if(pathMetrics[previous] != UNREACHABLE)
+                    {
+                        int metric = pathMetrics[previous] +
+                            branchMetrics.mErrors[symbolOffset + previous * stateCount + state];
+
+                        if(metric < bestMetric)
+                        {
+                            bestMetric = metric;
+                            bestPrevious = previous;
+                        }
+                    }
+                }
+
+                nextPathMetrics[state] = bestMetric;
+                traceback[tracebackOffset + state] = bestPrevious;
+            }
+
+            int[] swap = pathMetrics;
+            pathMetrics = nextPathMetrics;
+            nextPathMetrics = swap;
+        }
+
+        //Flush each survivor into the flushing state and select the survivor with the lowest error
+        int flushOffset = transmittedOutputValues[symbolCount] * stateCount;
+        int bestMetric = UNREACHABLE;
+        int state = 0;
+
+        for(int previous = 0; previous < stateCount; previous++)
+        {
+            if(pathMetrics[previous] != UNREACHABLE)
+            {
+                int metric = pathMetrics[previous] + branchMetrics.mFlushingErrors[flushOffset + previous];
+
+                if(metric < bestMetric)
+                {
+                    bestMetric = metric;
+                    state = previous;
+                }
+            }
+        }
+
+        for(int x = symbolCount - 1; x >= 0; x--)
+        {
+            inputValues[x] = state;
+            state = traceback[x * stateCount + state];
+        }
+
+        return bestMetric;
+    }
+
+    /**
+     * Creates a corrected binary message from the decoded input values where each input value contributes
+     * getInputBitLength() bits, most significant bit first.
+     *
+     * @param inputValues decoded by decode(int[],int[])
+     * @param length number of input values to use
+     * @param errorCount to assign as the corrected bit count
+     * @return corrected binary message
+     */
+    protected CorrectedBinaryMessage getMessage(int[] inputValues, int length, int errorCount)
+    {
+        CorrectedBinaryMessage message = new CorrectedBinaryMessage(length * getInputBitLength());
+
+        int messageOffset = 0;
+
+        for(int x = 0; x < length; x++)
+        {
+            for(int bit = getInputBitLength() - 1; bit >= 0; bit--)
+            {
+                if((inputValues[x] & (1 << bit)) != 0)
+                {
+                    message.set(messageOffset);
+                }
+
+                messageOffset++;
+            }
+        }
+
+        //Transfer the corrected error count to the message
+        message.setCorrectedBitCount(errorCount);
+
+        return message;
+    }
+
+    /**
+     * Branch metrics for the trellis, created on first use from the node state transition matrices.
+     */
+    private BranchMetrics getBranchMetrics()
+    {
+        if(mBranchMetrics == null)
+        {
+            mBranchMetrics = new BranchMetrics();
+        }
+
+        return mBranchMetrics;
     }
 
     /**
@@ -225,4 +381,177 @@ public abstract class ViterbiDecoder
 
         return bestPath;
     }
+
+    /**
+     * Precomputed branch error values for every transmitted output value, preceding state and input value.  Errors
+     * are obtained from the sub-class node implementations so that the table is identical to the node based decoding.
+     */
+    private class BranchMetrics
+    {
+        private int mStartingState;
+        private int[] mErrors;
+        private int[] mFlushingErrors;
+
+        private BranchMetrics()
+        {
+            int stateCount = getInputValueCount();
+            mStartingState = createStartingNode().getInputValue();
+            mErrors = new int[getOutputValueCount() * stateCount * stateCount];
+            mFlushingErrors = new int[getOutputValueCount() * stateCount];
+
+            //The node error calculation only uses the input value of the preceding node
+            Node[] precedingNodes = new Node[stateCount];
+
+            for(int state = 0; state < stateCount; state++)
+            {
+                precedingNodes[state] = createNode(state, 0);
+            }
+
+            for(int symbol = 0; symbol < getOutputValueCount(); symbol++)
+            {
+                Node flushingNode = createFlushingNode(symbol);
+
+                for(int previous = 0; previous < stateCount; previous++)
+                {
+                    mFlushingErrors[symbol * stateCount + previous] = flushingNode.getError(precedingNodes[previous]);
+
+                    for(int state = 0; state < stateCount; state++)
+                    {
+                        mErrors[(symbol * stateCount + previous) * stateCount + state] =
+                            createNode(state, symbol).getError(precedingNodes[previous]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-thread decoding workspace.  Decoder instances are shared as static constants by the message factories, so
+     * path metric and traceback arrays are kept per thread and reused across decode invocations.
+     */
+    private class Workspace
+    {
+        private int[] mPathMetrics = new int[getInputValueCount()];
+        private int[] mNextPathMetrics = new int[getInputValueCount()];
+        private int[] mTraceback = new int[0];
+
+        private int[] getTraceback(int length)
+        {
+            if(mTraceback.length < length)
+            {
+                mTraceback = new int[length];
+            }
+
+            return mTraceback;
+        }
+    }
+
+    /**
+     * Creates a random encoded sequence with bit errors for the decoder.
+     */
+    private static int[] createTestSymbols(int[][] transitionMatrix, int stateCount, int symbolCount, int errors,
+                                           Random random)
+    {
+        int[] symbols = new int[symbolCount];
+        int state = 0;
+
+        for(int x = 0; x < symbolCount; x++)
+        {
+            int input = (x == symbolCount - 1) ? 0 : random.nextInt(stateCount);
+            symbols[x] = transitionMatrix[state][input];
+            state = input;
+        }
+
+        for(int x = 0; x < errors; x++)
+        {
+            symbols[random.nextInt(symbolCount)] ^= (1 << random.nextInt(4));
+        }
+
+        return symbols;
+    }
+
+    /**
+     * Decodes the symbols using the original path copying add() and flush() methods.
+     */
+    private Path decodeWithPaths(int[] transmittedOutputValues)
+    {
+        Collection<Path> survivingPaths = new ArrayList<>();
+        survivingPaths.add(new Path(createStartingNode()));
+
+        for(int x = 0; x < transmittedOutputValues.length - 1; x++)
+        {
+            survivingPaths = add(survivingPaths, transmittedOutputValues[x]);
+        }
+
+        return flush(survivingPaths, transmittedOutputValues[transmittedOutputValues.length - 1]);
+    }
+
+    /**
+     * Equivalence check and benchmark of the table driven decoder against the path copying decoder.
+     */
+    public static void main(String[] args)
+    {
+        Random random = new Random(42);
+        ViterbiDecoder[] decoders = new ViterbiDecoder[]{new ViterbiDecoder_1_2_P25(), new ViterbiDecoder_3_4_P25(),
+            new ViterbiDecoder_3_4_DMR()};
+        int[][][] matrices = new int[][][]{P25_1_2_Node.TRANSITION_MATRIX, P25_3_4_Node.TRANSITION_MATRIX,
+            DMR_3_4_Node.DMR_TRANSITION_MATRIX};
+        int iterations = 2000;
+
+        for(int d = 0; d < decoders.length; d++)
+        {
+            ViterbiDecoder decoder = decoders[d];
+            int[][] testSymbols = new int[iterations][];
+
+            for(int x = 0; x < iterations; x++)
+            {
+                testSymbols[x] = createTestSymbols(matrices[d], decoder.getInputValueCount(), 49, x % 12, random);
+            }
+
+            int mismatches = 0;
+            int[] inputValues = new int[48];
+
+            for(int[] symbols: testSymbols)
+            {
+                Path expected = decoder.decodeWithPaths(symbols);
+                int error = decoder.decode(symbols, inputValues);
+
+                boolean match = expected.getError() == error;
+
+                for(int x = 0; x < inputValues.length; x++)
+                {
+                    match &= expected.getNodes().get(x + 1).getInputValue() == inputValues[x];
+                }
+
+                if(!match)
+                {
+                    mismatches++;
+                }
+            }
+
+            long start = System.nanoTime();
+
+            for(int[] symbols: testSymbols)
+            {
+                decoder.decodeWithPaths(symbols);
+            }
+
+            long pathDuration = System.nanoTime() - start;
+
+            start = System.nanoTime();
+
+            for(int repeat = 0; repeat < 10; repeat++)
+            {
+                for(int[] symbols: testSymbols)
+                {
+                    decoder.decode(symbols, inputValues);
+                }
+            }
+
+            long tableDuration = (System.nanoTime() - start) / 10;
+
+            mLog.info(decoder.getClass().getSimpleName() + " mismatches:" + mismatches + " path decoder:" +
+                (pathDuration / iterations) + " ns/decode table decoder:" + (tableDuration / iterations) + " ns/decode");
+        }
+    }
 }
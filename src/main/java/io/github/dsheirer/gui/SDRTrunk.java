@@ -25,11 +25,13 @@ import io.github.dsheirer.audio.DuplicateCallDetector;
 import io.github.dsheirer.audio.broadcast.AudioStreamingManager;
 import io.github.dsheirer.audio.broadcast.BroadcastFormat;
 import io.github.dsheirer.audio.broadcast.BroadcastStatusPanel;
+import io.github.dsheirer.audio.codec.mbe.JmbeLibrary;
 import io.github.dsheirer.audio.playback.AudioPlaybackManager;
 import io.github.dsheirer.controller.ControllerPanel;
 import io.github.dsheirer.controller.channel.Channel;
 import io.github.dsheirer.controller.channel.ChannelAutoStartFrame;
 import io.github.dsheirer.controller.channel.ChannelSelectionManager;
+import io.github.dsheirer.dsp.filter.FilterDesignCache;
 import io.github.dsheirer.eventbus.MyEventBus;
 import io.github.dsheirer.gui.icon.ViewIconManagerRequest;
 import io.github.dsheirer.gui.playlist.ViewPlaylistRequest;
@@ -37,6 +39,7 @@ import io.github.dsheirer.gui.preference.ViewUserPreferenceEditorRequest;
 import io.github.dsheirer.icon.IconModel;
 import io.github.dsheirer.log.ApplicationLog;
 import io.github.dsheirer.map.MapService;
+import io.github.dsheirer.module.decode.event.store.DecodeEventStore;
 import io.github.dsheirer.module.log.EventLogManager;
 import io.github.dsheirer.playlist.PlaylistManager;
 import io.github.dsheirer.preference.UserPreferences;
@@ -98,6 +101,9 @@ public class SDRTrunk implements Listener<TunerEvent>
     private final static Logger mLog = LoggerFactory.getLogger(SDRTrunk.class);
 
     private static final String PROPERTY_BROADCAST_STATUS_VISIBLE = "main.broadcast.status.visible";
+    private static final String PROPERTY_DECODE_EVENT_STORE_ENABLED = "decode.event.store.enabled";
+    private static final String PROPERTY_FILTER_DESIGN_CACHE_PERSISTED = "filter.design.cache.persisted";
+    private static final String FILTER_DESIGN_CACHE_FILE = "filter_design_cache.bin";
     private static final String BASE_WINDOW_NAME = "sdrtrunk.main.window";
     private static final String CONTROLLER_PANEL_IDENTIFIER = BASE_WINDOW_NAME + ".control.panel";
     private static final String SPECTRAL_PANEL_IDENTIFIER = BASE_WINDOW_NAME + ".spectral.panel";
@@ -105,6 +111,8 @@ public class SDRTrunk implements Listener<TunerEvent>
 
     private boolean mBroadcastStatusVisible;
     private AudioRecordingManager mAudioRecordingManager;
+    private DecodeEventStore mDecodeEventStore;
+    private EventLogManager mEventLogManager;
     private AudioStreamingManager mAudioStreamingManager;
     private BroadcastStatusPanel mBroadcastStatusPanel;
     private ControllerPanel mControllerPanel;
@@ -157,6 +165,12 @@ public class SDRTrunk implements Listener<TunerEvent>
         //Log current properties setting
         SystemProperties.getInstance().logCurrentSettings();
 
+        //Preload previously designed filters so that channels don't have to design them at startup
+        if(SystemProperties.getInstance().get(PROPERTY_FILTER_DESIGN_CACHE_PERSISTED, true))
+        {
+            FilterDesignCache.load(getFilterDesignCachePath());
+        }
+
         //Register FontAwesome so we can use the fonts in Swing windows
         IconFontSwing.register(FontAwesome.getIconFont());
 
@@ -167,8 +181,9 @@ public class SDRTrunk implements Listener<TunerEvent>
         mSourceManager = new SourceManager(tunerModel, mSettingsManager, mUserPreferences);
 
         AliasModel aliasModel = new AliasModel();
-        EventLogManager eventLogManager = new EventLogManager(aliasModel, mUserPreferences);
-        mPlaylistManager = new PlaylistManager(mUserPreferences, mSourceManager, aliasModel, eventLogManager, mIconModel);
+        mEventLogManager = new EventLogManager(aliasModel, mUserPreferences);
+        mPlaylistManager = new PlaylistManager(mUserPreferences, mSourceManager, aliasModel, mEventLogManager,
+            mIconModel);
         mJavaFxWindowManager = new JavaFxWindowManager(mUserPreferences, mPlaylistManager);
         new ChannelSelectionManager(mPlaylistManager.getChannelModel());
 
@@ -191,6 +206,14 @@ public class SDRTrunk implements Listener<TunerEvent>
         MapService mapService = new MapService(mIconModel);
         mPlaylistManager.getChannelProcessingManager().addDecodeEventListener(mapService);
 
+        //Nothing reads from the decode event store yet, so it only runs when explicitly enabled
+        if(SystemProperties.getInstance().get(PROPERTY_DECODE_EVENT_STORE_ENABLED, false))
+        {
+            mDecodeEventStore = new DecodeEventStore(mUserPreferences);
+            mDecodeEventStore.start();
+            mPlaylistManager.getChannelProcessingManager().addDecodeEventListener(mDecodeEventStore);
+        }
+
         mControllerPanel = new ControllerPanel(mPlaylistManager, audioPlaybackManager, mIconModel, mapService,
             mSettingsManager, mSourceManager, mUserPreferences);
 
@@ -430,8 +453,20 @@ public class SDRTrunk implements Listener<TunerEvent>
         mJavaFxWindowManager.shutdown();
         mLog.info("Stopping channels ...");
         mPlaylistManager.getChannelProcessingManager().shutdown();
+        mEventLogManager.shutdown();
+        JmbeLibrary.getInstance().shutdown();
         mAudioRecordingManager.stop();
 
+        if(mDecodeEventStore != null)
+        {
+            mDecodeEventStore.stop();
+        }
+
+        if(SystemProperties.getInstance().get(PROPERTY_FILTER_DESIGN_CACHE_PERSISTED, true))
+        {
+            FilterDesignCache.save(getFilterDesignCachePath());
+        }
+
         mLog.info("Stopping spectral display ...");
         mSpectralPanel.clearTuner();
         mSourceManager.shutdown();
@@ -439,6 +474,15 @@ public class SDRTrunk implements Listener<TunerEvent>
         mApplicationLog.stop();
     }
 
+    /**
+     * Path to the persisted filter design cache in the application root directory
+     */
+    private Path getFilterDesignCachePath()
+    {
+        return mUserPreferences.getDirectoryPreference().getDirectoryApplicationRoot()
+            .resolve(FILTER_DESIGN_CACHE_FILE);
+    }
+
     /**
      * Lazy constructor for broadcast status panel
      */
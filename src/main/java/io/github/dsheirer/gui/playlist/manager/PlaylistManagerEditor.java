@@ -389,6 +389,12 @@ public class PlaylistManagerEditor extends HBox
 
                         try
                         {
+                            //Fold any journaled alias changes into the current playlist file before copying it
+                            if(selected.equals(mUserPreferences.getPlaylistPreference().getPlaylist()))
+                            {
+                                mPlaylistManager.compactPlaylist();
+                            }
+
                             Files.copy(selected.toFile(), copyFile);
                             getPlaylistTableView().getItems().add(copyFile.toPath());
                             savePlaylistsPreference();
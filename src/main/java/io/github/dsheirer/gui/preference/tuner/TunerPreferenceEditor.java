@@ -44,6 +44,9 @@ public class TunerPreferenceEditor extends HBox
 {
     private static final String HELP_TEXT_POLYPHASE = "Processes all channels from tuner.  This " +
         "channelizer is more efficient when decoding 3 or more channels.";
+    private static final String HELP_TEXT_POLYPHASE_PARALLEL = "Polyphase channelizer that splits the channelizer " +
+        "work for each tuner across multiple threads.  Use this for wideband tuners with many channels when a single " +
+        "processor core cannot keep up with the tuner sample rate.";
     private static final String HELP_TEXT_HETERODYNE = "Processes each channel on-demand.  This " +
         "channelizer may work better for computers with constrained resources when processing a small number of channels.";
 
@@ -53,6 +56,8 @@ public class TunerPreferenceEditor extends HBox
     private Label mChannelizerLabel;
     private Label mPolyphaseLabel;
     private Label mHelpTextPolyphaseLabel;
+    private Label mPolyphaseParallelLabel;
+    private Label mHelpTextPolyphaseParallelLabel;
     private Label mHeterodyneLabel;
     private Label mHelpTextHeterodyneLabel;
 
@@ -77,8 +82,11 @@ public class TunerPreferenceEditor extends HBox
             mEditorPane.add(getPolyphaseLabel(), 0, 2, 2, 1);
             mEditorPane.add(getHelpTextPolyphaseLabel(), 0, 3, 2, 3);
             mEditorPane.add(new Label(" "), 0, 6);
-            mEditorPane.add(getHeterodyneLabel(), 0, 7, 2, 1);
-            mEditorPane.add(getHelpTextHeterodyneLabel(), 0, 8, 2, 3);
+            mEditorPane.add(getPolyphaseParallelLabel(), 0, 7, 2, 1);
+            mEditorPane.add(getHelpTextPolyphaseParallelLabel(), 0, 8, 2, 3);
+            mEditorPane.add(new Label(" "), 0, 11);
+            mEditorPane.add(getHeterodyneLabel(), 0, 12, 2, 1);
+            mEditorPane.add(getHelpTextHeterodyneLabel(), 0, 13, 2, 3);
         }
 
         return mEditorPane;
@@ -141,6 +149,27 @@ public class TunerPreferenceEditor extends HBox
         return mHelpTextPolyphaseLabel;
     }
 
+    private Label getPolyphaseParallelLabel()
+    {
+        if(mPolyphaseParallelLabel == null)
+        {
+            mPolyphaseParallelLabel = new Label("Polyphase Multi-Threaded");
+        }
+
+        return mPolyphaseParallelLabel;
+    }
+
+    private Label getHelpTextPolyphaseParallelLabel()
+    {
+        if(mHelpTextPolyphaseParallelLabel == null)
+        {
+            mHelpTextPolyphaseParallelLabel = new Label(HELP_TEXT_POLYPHASE_PARALLEL);
+            mHelpTextPolyphaseParallelLabel.setWrapText(true);
+        }
+
+        return mHelpTextPolyphaseParallelLabel;
+    }
+
     private Label getHeterodyneLabel()
     {
         if(mHeterodyneLabel == null)
@@ -16,29 +16,33 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>
  * ****************************************************************************
  */
-
 package io.github.dsheirer.identifier;
 
 import io.github.dsheirer.identifier.configuration.AliasListConfigurationIdentifier;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * (Immutable) Collection of identifiers with convenient accessor methods
  *
+ * Identifiers are indexed by role, identifier class and form so that the accessor methods don't have to scan the
+ * full collection.  The identifier list and the indexes are immutable and are replaced as a unit each time the
+ * collection changes.  Accessors return unmodifiable lists that are not affected by later changes to the collection,
+ * and snapshot() creates an immutable copy that shares the current lists without copying them.
+ *
  * @see MutableIdentifierCollection for the mutable version of this class
  */
 public class IdentifierCollection
 {
-    private final static Logger mLog = LoggerFactory.getLogger(IdentifierCollection.class);
-    protected List<Identifier> mIdentifiers = new ArrayList<>();
+    private volatile Index mIndex = Index.EMPTY;
     protected AliasListConfigurationIdentifier mAliasListConfigurationIdentifier;
     private int mTimeslot = 0;
+    protected volatile int mVersion = 0;
 
     /**
      * Constructs an empty identifier collection for the specified timeslot
@@ -71,13 +75,43 @@ public class IdentifierCollection
                 throw new IllegalArgumentException("Identifier cannot be null");
             }
 
-            mIdentifiers.add(identifier);
-
             if(identifier instanceof AliasListConfigurationIdentifier)
             {
                 mAliasListConfigurationIdentifier = (AliasListConfigurationIdentifier)identifier;
             }
         }
+
+        mIndex = Index.of(identifiers);
+    }
+
+    /**
+     * Constructs a collection that shares the (immutable) index of another collection
+     */
+    private IdentifierCollection(Index index, AliasListConfigurationIdentifier aliasList, int timeslot)
+    {
+        mIndex = index;
+        mAliasListConfigurationIdentifier = aliasList;
+        mTimeslot = timeslot;
+    }
+
+    /**
+     * Creates an immutable snapshot of the current state of this collection.  The snapshot shares the identifier
+     * lists of this collection, so it is cheap to create and is safe to hand to other threads.
+     */
+    public IdentifierCollection snapshot()
+    {
+        Index index = mIndex;
+        AliasListConfigurationIdentifier aliasList = null;
+
+        for(Identifier identifier: Index.get(index.mForms, Form.ALIAS_LIST))
+        {
+            if(identifier instanceof AliasListConfigurationIdentifier)
+            {
+                aliasList = (AliasListConfigurationIdentifier)identifier;
+            }
+        }
+
+        return new IdentifierCollection(index, aliasList, mTimeslot);
     }
 
     public int getTimeslot()
@@ -107,12 +141,63 @@ public class IdentifierCollection
         return mAliasListConfigurationIdentifier != null;
     }
 
+    /**
+     * Modification counter for the identifiers in this collection.  The value changes each time an identifier is
+     * added or removed, so that results derived from the identifier set (e.g. alias resolution) can be cached
+     * against the collection and reused until the collection changes.
+     */
+    public int getVersion()
+    {
+        return mVersion;
+    }
+
+    /**
+     * Adds the identifier to the collection and indexes.  For use by mutable subclasses.
+     */
+    protected void addIdentifier(Identifier identifier)
+    {
+        mIndex = mIndex.add(identifier);
+        mVersion++;
+    }
+
+    /**
+     * Removes the first identifier that is equal to the argument from the collection and indexes.  For use by
+     * mutable subclasses.
+     *
+     * @return true if an identifier was removed
+     */
+    protected boolean removeIdentifier(Identifier identifier)
+    {
+        Index index = mIndex.remove(identifier);
+
+        if(index != mIndex)
+        {
+            mIndex = index;
+            mVersion++;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Removes all identifiers from the collection and indexes.  For use by mutable subclasses.
+     */
+    protected void clearIdentifiers()
+    {
+        if(!mIndex.mIdentifiers.isEmpty())
+        {
+            mIndex = Index.EMPTY;
+            mVersion++;
+        }
+    }
+
     /**
      * Immutable list of identifiers contained in this collection
      */
     public List<Identifier> getIdentifiers()
     {
-        return Collections.unmodifiableList(mIdentifiers);
+        return mIndex.mIdentifiers;
     }
 
     /**
@@ -120,89 +205,40 @@ public class IdentifierCollection
      */
     public boolean isEmpty()
     {
-        return mIdentifiers.isEmpty();
+        return mIndex.mIdentifiers.isEmpty();
     }
 
     /**
      * Get a list of identifiers by identifier class from this collection.
      *
      * @param identifierClass to match
-     * @return list of zero or more identifiers
+     * @return unmodifiable list of zero or more identifiers
      */
     public List<Identifier> getIdentifiers(IdentifierClass identifierClass)
     {
-        List<Identifier> identifiers = new ArrayList<>();
-
-        for(Identifier identifier : mIdentifiers)
-        {
-            if(identifier.getIdentifierClass() == identifierClass)
-            {
-                identifiers.add(identifier);
-            }
-        }
-
-        return identifiers;
+        return Index.get(mIndex.mClasses, identifierClass);
     }
 
     /**
      * Get a list of identifiers by form from this collection.
      *
      * @param form to match
-     * @return list of zero or more identifiers
+     * @return unmodifiable list of zero or more identifiers
      */
     public List<Identifier> getIdentifiers(Form form)
     {
-        List<Identifier> identifiers = new ArrayList<>();
-
-        for(Identifier identifier : mIdentifiers)
-        {
-            if(identifier.getForm() == form)
-            {
-                identifiers.add(identifier);
-            }
-        }
-
-        return identifiers;
+        return Index.get(mIndex.mForms, form);
     }
 
     /**
      * Get a list of identifiers by role from this collection.
      *
      * @param role to match
-     * @return list of zero or more identifiers
+     * @return unmodifiable list of zero or more identifiers
      */
     public List<Identifier> getIdentifiers(Role role)
     {
-        List<Identifier> identifiers = new ArrayList<>();
-
-        for(Identifier identifier : mIdentifiers)
-        {
-            try
-            {
-                if(identifier.getRole() == role)
-                {
-                    identifiers.add(identifier);
-                }
-            }
-            catch(NullPointerException npe)
-            {
-                StringBuilder sb = new StringBuilder();
-                for(Identifier i : mIdentifiers)
-                {
-                    if(i == null)
-                    {
-                        sb.append("Identifier: (null)").append("\n");
-                    }
-                    else
-                    {
-                        sb.append("Identifier: ").append(i).append(" Class:").append(i.getClass()).append("\n");
-                    }
-                }
-                mLog.warn("An identifier in a collection is somehow null ...\n" + sb);
-            }
-        }
-
-        return identifiers;
+        return Index.get(mIndex.mRoles, role);
     }
 
     /**
@@ -210,21 +246,26 @@ public class IdentifierCollection
      *
      * @param identifierClass to match
      * @param role to match
-     * @return list of zero or more identifiers
+     * @return unmodifiable list of zero or more identifiers
      */
     public List<Identifier> getIdentifiers(IdentifierClass identifierClass, Role role)
     {
-        List<Identifier> identifiers = new ArrayList<>();
+        List<Identifier> identifiers = null;
 
-        for(Identifier identifier : mIdentifiers)
+        for(Identifier identifier : getIdentifiers(role))
         {
-            if(identifier.getIdentifierClass() == identifierClass && identifier.getRole() == role)
+            if(identifier.getIdentifierClass() == identifierClass)
             {
+                if(identifiers == null)
+                {
+                    identifiers = new ArrayList<>();
+                }
+
                 identifiers.add(identifier);
             }
         }
 
-        return identifiers;
+        return identifiers != null ? Collections.unmodifiableList(identifiers) : Collections.emptyList();
     }
 
     /**
@@ -232,21 +273,26 @@ public class IdentifierCollection
      *
      * @param identifierClass to match
      * @param form to match
-     * @return list of zero or more identifiers
+     * @return unmodifiable list of zero or more identifiers
      */
     public List<Identifier> getIdentifiers(IdentifierClass identifierClass, Form form)
     {
-        List<Identifier> identifiers = new ArrayList<>();
+        List<Identifier> identifiers = null;
 
-        for(Identifier identifier : mIdentifiers)
+        for(Identifier identifier : getIdentifiers(form))
         {
-            if(identifier.getIdentifierClass() == identifierClass && identifier.getForm() == form)
+            if(identifier.getIdentifierClass() == identifierClass)
             {
+                if(identifiers == null)
+                {
+                    identifiers = new ArrayList<>();
+                }
+
                 identifiers.add(identifier);
             }
         }
 
-        return identifiers;
+        return identifiers != null ? Collections.unmodifiableList(identifiers) : Collections.emptyList();
     }
 
     /**
@@ -259,11 +305,9 @@ public class IdentifierCollection
      */
     public Identifier getIdentifier(IdentifierClass identifierClass, Form form, Role role)
     {
-        for(Identifier identifier : mIdentifiers)
+        for(Identifier identifier : getIdentifiers(form))
         {
-            if(identifier.getIdentifierClass() == identifierClass &&
-                identifier.getForm() == form &&
-                identifier.getRole() == role)
+            if(identifier.getIdentifierClass() == identifierClass && identifier.getRole() == role)
             {
                 return identifier;
             }
@@ -317,4 +361,158 @@ public class IdentifierCollection
         }
         return sb.toString();
     }
+
+    /**
+     * Immutable identifier list with role, class and form indexes.  Changes create a new index that shares the
+     * unaffected lists with the previous index.
+     */
+    private static class Index
+    {
+        private static final Index EMPTY = new Index(Collections.emptyList(), new EnumMap<>(Role.class),
+            new EnumMap<>(IdentifierClass.class), new EnumMap<>(Form.class));
+
+        private final List<Identifier> mIdentifiers;
+        private final EnumMap<Role,List<Identifier>> mRoles;
+        private final EnumMap<IdentifierClass,List<Identifier>> mClasses;
+        private final EnumMap<Form,List<Identifier>> mForms;
+
+        private Index(List<Identifier> identifiers, EnumMap<Role,List<Identifier>> roles,
+                      EnumMap<IdentifierClass,List<Identifier>> classes, EnumMap<Form,List<Identifier>> forms)
+        {
+            mIdentifiers = identifiers;
+            mRoles = roles;
+            mClasses = classes;
+            mForms = forms;
+        }
+
+        /**
+         * Creates an index for the identifiers
+         */
+        private static Index of(Collection<Identifier> identifiers)
+        {
+            if(identifiers.isEmpty())
+            {
+                return EMPTY;
+            }
+
+            EnumMap<Role,List<Identifier>> roles = new EnumMap<>(Role.class);
+            EnumMap<IdentifierClass,List<Identifier>> classes = new EnumMap<>(IdentifierClass.class);
+            EnumMap<Form,List<Identifier>> forms = new EnumMap<>(Form.class);
+
+            for(Identifier identifier: identifiers)
+            {
+                index(roles, identifier.getRole(), identifier);
+                index(classes, identifier.getIdentifierClass(), identifier);
+                index(forms, identifier.getForm(), identifier);
+            }
+
+            seal(roles);
+            seal(classes);
+            seal(forms);
+
+            return new Index(Collections.unmodifiableList(new ArrayList<>(identifiers)), roles, classes, forms);
+        }
+
+        private static <K extends Enum<K>> void index(EnumMap<K,List<Identifier>> map, K key, Identifier identifier)
+        {
+            if(key != null)
+            {
+                map.computeIfAbsent(key, k -> new ArrayList<>()).add(identifier);
+            }
+        }
+
+        private static <K extends Enum<K>> void seal(EnumMap<K,List<Identifier>> map)
+        {
+            map.replaceAll((key, list) -> Collections.unmodifiableList(list));
+        }
+
+        private static <K extends Enum<K>> List<Identifier> get(EnumMap<K,List<Identifier>> map, K key)
+        {
+            List<Identifier> identifiers = key != null ? map.get(key) : null;
+            return identifiers != null ? identifiers : Collections.emptyList();
+        }
+
+        /**
+         * Creates a new index with the identifier appended
+         */
+        private Index add(Identifier identifier)
+        {
+            return new Index(append(mIdentifiers, identifier),
+                append(mRoles, identifier.getRole(), identifier),
+                append(mClasses, identifier.getIdentifierClass(), identifier),
+                append(mForms, identifier.getForm(), identifier));
+        }
+
+        /**
+         * Creates a new index with the first identifier equal to the argument removed
+         * @return new index or this index if there is no matching identifier
+         */
+        private Index remove(Identifier identifier)
+        {
+            int position = mIdentifiers.indexOf(identifier);
+
+            if(position < 0)
+            {
+                return this;
+            }
+
+            Identifier existing = mIdentifiers.get(position);
+
+            return new Index(remove(mIdentifiers, existing),
+                remove(mRoles, existing.getRole(), existing),
+                remove(mClasses, existing.getIdentifierClass(), existing),
+                remove(mForms, existing.getForm(), existing));
+        }
+
+        private static List<Identifier> append(List<Identifier> identifiers, Identifier identifier)
+        {
+            List<Identifier> updated = new ArrayList<>(identifiers.size() + 1);
+            updated.addAll(identifiers);
+            updated.add(identifier);
+            return Collections.unmodifiableList(updated);
+        }
+
+        private static <K extends Enum<K>> EnumMap<K,List<Identifier>> append(EnumMap<K,List<Identifier>> map,
+                                                                          K key, Identifier identifier)
+        {
+            if(key == null)
+            {
+                return map;
+            }
+
+            EnumMap<K,List<Identifier>> updated = new EnumMap<>(map);
+            updated.put(key, append(get(map, key), identifier));
+            return updated;
+        }
+
+        private static List<Identifier> remove(List<Identifier> identifiers, Identifier identifier)
+        {
+            List<Identifier> updated = new ArrayList<>(identifiers);
+            updated.remove(identifier);
+            return updated.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(updated);
+        }
+
+        private static <K extends Enum<K>> EnumMap<K,List<Identifier>> remove(EnumMap<K,List<Identifier>> map,
+                                                                          K key, Identifier identifier)
+        {
+            if(key == null)
+            {
+                return map;
+            }
+
+            EnumMap<K,List<Identifier>> updated = new EnumMap<>(map);
+            List<Identifier> identifiers = remove(get(map, key), identifier);
+
+            if(identifiers.isEmpty())
+            {
+                updated.remove(key);
+            }
+            else
+            {
+                updated.put(key, identifiers);
+            }
+
+            return updated;
+        }
+    }
 }
@@ -28,7 +28,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
-import java.util.Iterator;
 
 /**
  * Identifier collection with methods for changing or updating managed identifiers
@@ -123,9 +122,9 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     private void add(Identifier identifier)
     {
-        if(identifier.isValid() && !mIdentifiers.contains(identifier))
+        if(identifier.isValid() && !getIdentifiers().contains(identifier))
         {
-            mIdentifiers.add(identifier);
+            addIdentifier(identifier);
             notifyAdd(identifier);
         }
 
@@ -144,9 +143,9 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     private void silentAdd(Identifier identifier)
     {
-        if(identifier.isValid() && !mIdentifiers.contains(identifier))
+        if(identifier.isValid() && !getIdentifiers().contains(identifier))
         {
-            mIdentifiers.add(identifier);
+            addIdentifier(identifier);
         }
 
         //Retain a reference to the alias list identifier separately so that it can be accessed quickly.
@@ -161,7 +160,7 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void remove(Identifier identifier)
     {
-        if(mIdentifiers.remove(identifier))
+        if(removeIdentifier(identifier))
         {
             notifyRemove(identifier);
         }
@@ -178,7 +177,7 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void silentRemove(Identifier identifier)
     {
-        mIdentifiers.remove(identifier);
+        removeIdentifier(identifier);
 
         //Remove the reference to the alias list identifier.
         if(identifier instanceof AliasListConfigurationIdentifier)
@@ -260,13 +259,12 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void clear()
     {
-        Iterator<Identifier> it = mIdentifiers.iterator();
-
-        while(it.hasNext())
+        for(Identifier identifier: getIdentifiers())
         {
-            notifyRemove(it.next());
-            it.remove();
+            notifyRemove(identifier);
         }
+
+        clearIdentifiers();
     }
 
     /**
@@ -274,19 +272,10 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void remove(IdentifierClass identifierClass)
     {
-        Iterator<Identifier> it = mIdentifiers.iterator();
-
-        Identifier next = null;
-
-        while(it.hasNext())
+        for(Identifier identifier: getIdentifiers(identifierClass))
         {
-            next = it.next();
-
-            if(next.getIdentifierClass() == identifierClass)
-            {
-                it.remove();
-                notifyRemove(next);
-            }
+            removeIdentifier(identifier);
+            notifyRemove(identifier);
         }
     }
 
@@ -295,19 +284,10 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void remove(Form form)
     {
-        Iterator<Identifier> it = mIdentifiers.iterator();
-
-        Identifier next = null;
-
-        while(it.hasNext())
+        for(Identifier identifier: getIdentifiers(form))
         {
-            next = it.next();
-
-            if(next.getForm() == form)
-            {
-                it.remove();
-                notifyRemove(next);
-            }
+            removeIdentifier(identifier);
+            notifyRemove(identifier);
         }
     }
 
@@ -316,19 +296,10 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void remove(Role role)
     {
-        Iterator<Identifier> it = mIdentifiers.iterator();
-
-        Identifier next = null;
-
-        while(it.hasNext())
+        for(Identifier identifier: getIdentifiers(role))
         {
-            next = it.next();
-
-            if(next.getRole() == role)
-            {
-                it.remove();
-                notifyRemove(next);
-            }
+            removeIdentifier(identifier);
+            notifyRemove(identifier);
         }
     }
 
@@ -337,18 +308,12 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void remove(IdentifierClass identifierClass, Form form, Role role)
     {
-        Iterator<Identifier> it = mIdentifiers.iterator();
-
-        Identifier next = null;
-
-        while(it.hasNext())
+        for(Identifier identifier: getIdentifiers(form))
         {
-            next = it.next();
-
-            if(next.getIdentifierClass() == identifierClass && next.getForm() == form && next.getRole() == role)
+            if(identifier.getIdentifierClass() == identifierClass && identifier.getRole() == role)
             {
-                it.remove();
-                notifyRemove(next);
+                removeIdentifier(identifier);
+                notifyRemove(identifier);
             }
         }
     }
@@ -358,19 +323,10 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
      */
     public void remove(IdentifierClass identifierClass, Role role)
     {
-        Iterator<Identifier> it = mIdentifiers.iterator();
-
-        Identifier next = null;
-
-        while(it.hasNext())
+        for(Identifier identifier: getIdentifiers(identifierClass, role))
         {
-            next = it.next();
-
-            if(next.getIdentifierClass() == identifierClass && next.getRole() == role)
-            {
-                it.remove();
-                notifyRemove(next);
-            }
+            removeIdentifier(identifier);
+            notifyRemove(identifier);
         }
     }
 
@@ -401,12 +357,11 @@ public class MutableIdentifierCollection extends IdentifierCollection implements
     }
 
     /**
-     * Creates a copy of this collection and resets the updated flag so that future invocations of this
-     * method will return a copy with the updated flag set to false.
+     * Creates an immutable copy of this collection.  The copy shares the current (immutable) identifier lists and
+     * indexes, so this is inexpensive.
      */
     public IdentifierCollection copyOf()
     {
-        IdentifierCollection copy = new IdentifierCollection(getIdentifiers(), getTimeslot());
-        return copy;
+        return snapshot();
     }
 }
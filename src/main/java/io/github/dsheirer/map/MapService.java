@@ -24,26 +24,32 @@ import io.github.dsheirer.identifier.Identifier;
 import io.github.dsheirer.module.decode.event.IDecodeEvent;
 import io.github.dsheirer.module.decode.event.PlottableDecodeEvent;
 import io.github.dsheirer.sample.Listener;
+import io.github.dsheirer.util.ThreadPool;
+import org.jdesktop.swingx.mapviewer.GeoPosition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class MapService implements Listener<IDecodeEvent>
 {
     private final static Logger mLog = LoggerFactory.getLogger(MapService.class);
 
     private int mMaxHistory = 2;
-    private List<IPlottableUpdateListener> mListeners = new ArrayList<IPlottableUpdateListener>();
+    private List<IPlottableUpdateListener> mListeners = new CopyOnWriteArrayList<>();
     private Map<Identifier,PlottableEntityHistory> mEntityHistories = new HashMap<>();
     private IconModel mIconModel;
 
     public MapService(IconModel resourceManager)
     {
         mIconModel = resourceManager;
+        ThreadPool.SCHEDULED.scheduleAtFixedRate(() -> removeExpired(), 1, 1, TimeUnit.MINUTES);
     }
 
     @Override
@@ -56,16 +62,21 @@ public class MapService implements Listener<IDecodeEvent>
 
             if(from != null)
             {
-                PlottableEntityHistory entityHistory = mEntityHistories.get(from);
+                PlottableEntityHistory entityHistory;
 
-                if(entityHistory == null)
+                synchronized(mEntityHistories)
                 {
-                    entityHistory = new PlottableEntityHistory(from, plottableDecodeEvent);
-                    mEntityHistories.put(from, entityHistory);
-                }
-                else
-                {
-                    entityHistory.add(plottableDecodeEvent);
+                    entityHistory = mEntityHistories.get(from);
+
+                    if(entityHistory == null)
+                    {
+                        entityHistory = new PlottableEntityHistory(from, plottableDecodeEvent);
+                        mEntityHistories.put(from, entityHistory);
+                    }
+                    else
+                    {
+                        entityHistory.add(plottableDecodeEvent);
+                    }
                 }
 
                 for(IPlottableUpdateListener listener : mListeners)
@@ -80,6 +91,52 @@ public class MapService implements Listener<IDecodeEvent>
         }
     }
 
+    /**
+     * Removes aged locations from each entity history and removes any entity that hasn't reported a location within
+     * the maximum location age, so that the plotted history doesn't grow without bound.
+     */
+    private void removeExpired()
+    {
+        long cutoff = System.currentTimeMillis() - PlottableEntityHistory.MAX_LOCATION_AGE_MS;
+        List<PlottableEntityHistory> expired = new ArrayList<>();
+        List<PlottableEntityHistory> trimmed = new ArrayList<>();
+
+        synchronized(mEntityHistories)
+        {
+            Iterator<PlottableEntityHistory> it = mEntityHistories.values().iterator();
+
+            while(it.hasNext())
+            {
+                PlottableEntityHistory entityHistory = it.next();
+                List<GeoPosition> locations = entityHistory.getLocationHistory();
+
+                if(entityHistory.removeExpired(cutoff))
+                {
+                    it.remove();
+                    expired.add(entityHistory);
+                }
+                else if(locations != entityHistory.getLocationHistory())
+                {
+                    trimmed.add(entityHistory);
+                }
+            }
+        }
+
+        for(IPlottableUpdateListener listener : mListeners)
+        {
+            for(PlottableEntityHistory entityHistory : expired)
+            {
+                listener.removePlottableEntity(entityHistory);
+            }
+
+            //Re-adding a trimmed entity updates its extent in the listener's spatial index
+            for(PlottableEntityHistory entityHistory : trimmed)
+            {
+                listener.addPlottableEntity(entityHistory);
+            }
+        }
+    }
+
     public void addListener(IPlottableUpdateListener listener)
     {
         mListeners.add(listener);
@@ -31,10 +31,21 @@ import java.util.List;
 
 /**
  * Plottable entity history with location history.
+ *
+ * The location history is bounded by count and by age.  Locations that are closer than the minimum spacing to the
+ * previous location replace the previous location so that a stationary or slow moving entity doesn't fill the history
+ * with redundant points.
  */
 public class PlottableEntityHistory
 {
+    public static final int MAX_LOCATION_HISTORY = 250;
+    public static final long MAX_LOCATION_AGE_MS = 2 * 60 * 60 * 1000;
+    private static final double MIN_LOCATION_SPACING_METERS = 10.0;
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
     private List<GeoPosition> mLocationHistory = new ArrayList<>();
+    private List<Long> mLocationTimestamps = new ArrayList<>();
+    private List<GeoPosition> mLocationHistorySnapshot = Collections.emptyList();
     private PlottableDecodeEvent mCurrentEvent;
     private Identifier mIdentifier;
 
@@ -48,11 +59,19 @@ public class PlottableEntityHistory
     }
 
     /**
-     * Location history for this entity
+     * Location history for this entity.
+     *
+     * @return immutable snapshot of the location history.  A new snapshot instance is only created when the history
+     * changes, so callers can use the snapshot identity to detect changes.
      */
-    public List<GeoPosition> getLocationHistory()
+    public synchronized List<GeoPosition> getLocationHistory()
     {
-        return Collections.unmodifiableList(mLocationHistory);
+        if(mLocationHistorySnapshot == null)
+        {
+            mLocationHistorySnapshot = Collections.unmodifiableList(new ArrayList<>(mLocationHistory));
+        }
+
+        return mLocationHistorySnapshot;
     }
 
     /**
@@ -66,7 +85,7 @@ public class PlottableEntityHistory
     /**
      * Identifier collection from the latest event for this plottable
      */
-    public IdentifierCollection getIdentifierCollection()
+    public synchronized IdentifierCollection getIdentifierCollection()
     {
         return mCurrentEvent.getIdentifierCollection();
     }
@@ -74,9 +93,80 @@ public class PlottableEntityHistory
     /**
      * Updates the entity history with a location from the latest decode event
      */
-    public void add(PlottableDecodeEvent event)
+    public synchronized void add(PlottableDecodeEvent event)
     {
         mCurrentEvent = event;
-        mLocationHistory.add(event.getLocation());
+
+        GeoPosition location = event.getLocation();
+        long timestamp = System.currentTimeMillis();
+        int last = mLocationHistory.size() - 1;
+
+        if(last >= 0 && isWithinMinimumSpacing(mLocationHistory.get(last), location))
+        {
+            mLocationHistory.set(last, location);
+            mLocationTimestamps.set(last, timestamp);
+        }
+        else
+        {
+            mLocationHistory.add(location);
+            mLocationTimestamps.add(timestamp);
+
+            if(mLocationHistory.size() > MAX_LOCATION_HISTORY)
+            {
+                mLocationHistory.remove(0);
+                mLocationTimestamps.remove(0);
+            }
+        }
+
+        mLocationHistorySnapshot = null;
+    }
+
+    /**
+     * Removes locations that were received before the cutoff timestamp.  The most recent location is always retained
+     * while the entity history is in use.
+     *
+     * @param cutoff timestamp in milliseconds
+     * @return true if the last location was received before the cutoff and this entity history can be discarded.
+     */
+    public synchronized boolean removeExpired(long cutoff)
+    {
+        int expired = 0;
+
+        while(expired < mLocationTimestamps.size() && mLocationTimestamps.get(expired) < cutoff)
+        {
+            expired++;
+        }
+
+        if(expired == mLocationTimestamps.size())
+        {
+            return true;
+        }
+
+        if(expired > 0)
+        {
+            mLocationHistory.subList(0, expired).clear();
+            mLocationTimestamps.subList(0, expired).clear();
+            mLocationHistorySnapshot = null;
+        }
+
+        return false;
+    }
+
+    /**
+     * Indicates if the location is closer than the minimum location spacing to the previous location.
+     */
+    private static boolean isWithinMinimumSpacing(GeoPosition previous, GeoPosition location)
+    {
+        if(previous == null || location == null || !previous.isValid() || !location.isValid())
+        {
+            return false;
+        }
+
+        double latitudeMeters = (location.getLatitude() - previous.getLatitude()) * METERS_PER_DEGREE;
+        double longitudeMeters = (location.getLongitude() - previous.getLongitude()) * METERS_PER_DEGREE *
+            Math.cos(Math.toRadians(location.getLatitude()));
+
+        return (latitudeMeters * latitudeMeters + longitudeMeters * longitudeMeters) <
+            (MIN_LOCATION_SPACING_METERS * MIN_LOCATION_SPACING_METERS);
     }
 }
@@ -0,0 +1,390 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.map;
+
+import io.github.dsheirer.identifier.radio.RadioIdentifier;
+import io.github.dsheirer.module.decode.event.PlottableDecodeEvent;
+import io.github.dsheirer.module.decode.p25.identifier.radio.APCO25RadioIdentifier;
+import org.jdesktop.swingx.mapviewer.GeoPosition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Quadtree spatial index of plottable entities, keyed by the geographic extent of each entity's location history.
+ *
+ * Each entity is stored in the smallest quadrant that fully contains its extent, so a viewport query only visits the
+ * quadrants that overlap the viewport.  Entities are re-indexed by adding them again whenever their location history
+ * changes.  This index is thread safe.
+ */
+public class PlottableEntityIndex
+{
+    private final static Logger mLog = LoggerFactory.getLogger(PlottableEntityIndex.class);
+    private static final int NODE_CAPACITY = 8;
+    private static final int MAX_DEPTH = 16;
+
+    private Node mRoot = new Node(-180.0, -90.0, 180.0, 90.0, 0);
+    private Map<PlottableEntityHistory,Entry> mEntries = new HashMap<>();
+
+    /**
+     * Adds the entity to the index, or updates the indexed extent if the entity is already indexed.  Entities that
+     * don't have a valid location are not indexed.
+     */
+    public synchronized void add(PlottableEntityHistory entity)
+    {
+        remove(entity);
+
+        Entry entry = Entry.create(entity);
+
+        if(entry != null)
+        {
+            mRoot.insert(entry);
+            mEntries.put(entity, entry);
+        }
+    }
+
+    /**
+     * Removes the entity from the index
+     */
+    public synchronized void remove(PlottableEntityHistory entity)
+    {
+        Entry entry = mEntries.remove(entity);
+
+        if(entry != null)
+        {
+            mRoot.remove(entry);
+        }
+    }
+
+    /**
+     * Removes all entities from the index
+     */
+    public synchronized void clear()
+    {
+        mEntries.clear();
+        mRoot = new Node(-180.0, -90.0, 180.0, 90.0, 0);
+    }
+
+    /**
+     * Number of indexed entities
+     */
+    public synchronized int size()
+    {
+        return mEntries.size();
+    }
+
+    /**
+     * Finds the entities with a location history extent that overlaps the geographic bounds.
+     *
+     * @return list of entities that overlap the bounds
+     */
+    public synchronized List<PlottableEntityHistory> query(double west, double south, double east, double north)
+    {
+        List<PlottableEntityHistory> entities = new ArrayList<>();
+        mRoot.query(west, south, east, north, entities);
+        return entities;
+    }
+
+    /**
+     * Indexed entity with the geographic extent of its location history at the time it was indexed
+     */
+    private static class Entry
+    {
+        private PlottableEntityHistory mEntity;
+        private double mWest;
+        private double mSouth;
+        private double mEast;
+        private double mNorth;
+
+        private Entry(PlottableEntityHistory entity, double west, double south, double east, double north)
+        {
+            mEntity = entity;
+            mWest = west;
+            mSouth = south;
+            mEast = east;
+            mNorth = north;
+        }
+
+        /**
+         * Creates an entry from the valid locations in the entity's location history
+         * @return entry or null if the entity doesn't have a valid location
+         */
+        private static Entry create(PlottableEntityHistory entity)
+        {
+            double west = Double.MAX_VALUE;
+            double south = Double.MAX_VALUE;
+            double east = -Double.MAX_VALUE;
+            double north = -Double.MAX_VALUE;
+            boolean valid = false;
+
+            for(GeoPosition location : entity.getLocationHistory())
+            {
+                if(location != null && location.isValid())
+                {
+                    west = Math.min(west, location.getLongitude());
+                    east = Math.max(east, location.getLongitude());
+                    south = Math.min(south, location.getLatitude());
+                    north = Math.max(north, location.getLatitude());
+                    valid = true;
+                }
+            }
+
+            return valid ? new Entry(entity, west, south, east, north) : null;
+        }
+
+        private boolean intersects(double west, double south, double east, double north)
+        {
+            return mWest <= east && mEast >= west && mSouth <= north && mNorth >= south;
+        }
+    }
+
+    /**
+     * Quadtree node
+     */
+    private static class Node
+    {
+        private double mWest;
+        private double mSouth;
+        private double mEast;
+        private double mNorth;
+        private int mDepth;
+        private int mCount;
+        private List<Entry> mEntries = new ArrayList<>();
+        private Node[] mChildren;
+
+        private Node(double west, double south, double east, double north, int depth)
+        {
+            mWest = west;
+            mSouth = south;
+            mEast = east;
+            mNorth = north;
+            mDepth = depth;
+        }
+
+        /**
+         * Child quadrant that fully contains the entry
+         * @return child or null if there are no children or the entry spans more than one quadrant
+         */
+        private Node getChild(Entry entry)
+        {
+            if(mChildren != null)
+            {
+                for(Node child : mChildren)
+                {
+                    if(child.mWest <= entry.mWest && entry.mEast <= child.mEast &&
+                       child.mSouth <= entry.mSouth && entry.mNorth <= child.mNorth)
+                    {
+                        return child;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        private void insert(Entry entry)
+        {
+            mCount++;
+
+            Node child = getChild(entry);
+
+            if(child != null)
+            {
+                child.insert(entry);
+                return;
+            }
+
+            mEntries.add(entry);
+
+            if(mChildren == null && mEntries.size() > NODE_CAPACITY && mDepth < MAX_DEPTH)
+            {
+                split();
+            }
+        }
+
+        private void split()
+        {
+            double longitude = (mWest + mEast) / 2.0;
+            double latitude = (mSouth + mNorth) / 2.0;
+
+            mChildren = new Node[]{
+                new Node(mWest, latitude, longitude, mNorth, mDepth + 1),
+                new Node(longitude, latitude, mEast, mNorth, mDepth + 1),
+                new Node(mWest, mSouth, longitude, latitude, mDepth + 1),
+                new Node(longitude, mSouth, mEast, latitude, mDepth + 1)};
+
+            List<Entry> entries = mEntries;
+            mEntries = new ArrayList<>();
+            mCount -= entries.size();
+
+            for(Entry entry : entries)
+            {
+                insert(entry);
+            }
+        }
+
+        private boolean remove(Entry entry)
+        {
+            Node child = getChild(entry);
+            boolean removed = child != null ? child.remove(entry) : mEntries.remove(entry);
+
+            if(removed)
+            {
+                mCount--;
+
+                //Collapse the children back into this node once the subtree is small enough
+                if(mChildren != null && mCount <= NODE_CAPACITY)
+                {
+                    collect(mEntries);
+                    mChildren = null;
+                }
+            }
+
+            return removed;
+        }
+
+        /**
+         * Moves all entries from the children of this node into the list
+         */
+        private void collect(List<Entry> entries)
+        {
+            if(mChildren != null)
+            {
+                for(Node child : mChildren)
+                {
+                    entries.addAll(child.mEntries);
+                    child.collect(entries);
+                }
+            }
+        }
+
+        private void query(double west, double south, double east, double north, List<PlottableEntityHistory> results)
+        {
+            if(mCount == 0 || mWest > east || mEast < west || mSouth > north || mNorth < south)
+            {
+                return;
+            }
+
+            for(Entry entry : mEntries)
+            {
+                if(entry.intersects(west, south, east, north))
+                {
+                    results.add(entry.mEntity);
+                }
+            }
+
+            if(mChildren != null)
+            {
+                for(Node child : mChildren)
+                {
+                    child.query(west, south, east, north, results);
+                }
+            }
+        }
+    }
+
+    /**
+     * Benchmark harness that compares viewport queries against a scan of every entity
+     */
+    public static void main(String[] args)
+    {
+        int entityCount = 20_000;
+        int tracks = 100;
+        int queries = 2_000;
+        Random random = new Random(7);
+        PlottableEntityIndex index = new PlottableEntityIndex();
+        List<PlottableEntityHistory> entities = new ArrayList<>();
+
+        for(int x = 0; x < entityCount; x++)
+        {
+            RadioIdentifier radio = APCO25RadioIdentifier.createFrom(x + 1);
+            double latitude = 25.0 + random.nextDouble() * 24.0;
+            double longitude = -124.0 + random.nextDouble() * 57.0;
+            PlottableEntityHistory entity = null;
+
+            for(int y = 0; y < tracks; y++)
+            {
+                PlottableDecodeEvent event = new PlottableDecodeEvent(System.currentTimeMillis());
+                latitude += (random.nextDouble() - 0.5) * 0.01;
+                longitude += (random.nextDouble() - 0.5) * 0.01;
+                event.setLocation(new GeoPosition(latitude, longitude));
+
+                if(entity == null)
+                {
+                    entity = new PlottableEntityHistory(radio, event);
+                }
+                else
+                {
+                    entity.add(event);
+                }
+            }
+
+            entities.add(entity);
+            index.add(entity);
+        }
+
+        //Re-index a quarter of the entities to exercise removal
+        for(int x = 0; x < entityCount; x += 4)
+        {
+            index.add(entities.get(x));
+        }
+
+        long indexNanos = 0;
+        long scanNanos = 0;
+        long indexFound = 0;
+        long scanFound = 0;
+
+        for(int x = 0; x < queries; x++)
+        {
+            double west = -124.0 + random.nextDouble() * 55.0;
+            double south = 25.0 + random.nextDouble() * 22.0;
+            double east = west + 0.5 + random.nextDouble() * 2.0;
+            double north = south + 0.5 + random.nextDouble() * 2.0;
+
+            long start = System.nanoTime();
+            indexFound += index.query(west, south, east, north).size();
+            indexNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for(PlottableEntityHistory entity : entities)
+            {
+                Entry entry = Entry.create(entity);
+
+                if(entry != null && entry.intersects(west, south, east, north))
+                {
+                    scanFound++;
+                }
+            }
+            scanNanos += System.nanoTime() - start;
+        }
+
+        mLog.info("Entities:" + index.size() + " Queries:" + queries + " Found index:" + indexFound + " scan:" +
+            scanFound + (indexFound == scanFound ? " (match)" : " (MISMATCH)"));
+        mLog.info("Average query - index:" + (indexNanos / queries / 1000) + " us scan:" +
+            (scanNanos / queries / 1000) + " us");
+    }
+}
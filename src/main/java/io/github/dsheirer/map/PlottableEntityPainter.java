@@ -23,18 +23,28 @@ package io.github.dsheirer.map;
 import io.github.dsheirer.alias.AliasModel;
 import io.github.dsheirer.icon.IconModel;
 import org.jdesktop.swingx.JXMapViewer;
+import org.jdesktop.swingx.mapviewer.GeoPosition;
+import org.jdesktop.swingx.mapviewer.TileFactory;
 import org.jdesktop.swingx.painter.AbstractPainter;
 
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.geom.Point2D;
+import java.util.List;
 
+/**
+ * Paints the plottable entities that are within the map viewport.  Entities are held in a spatial index so that each
+ * repaint only visits the entities with a location history that overlaps the visible area of the map.
+ */
 public class PlottableEntityPainter extends AbstractPainter<JXMapViewer>
 {
+    /**
+     * Pixel margin around the viewport so that icons and labels for entities just outside the viewport are painted
+     */
+    private static final int VIEWPORT_MARGIN = 128;
+
     private PlottableEntityRenderer mRenderer;
-    private Set<PlottableEntityHistory> mEntities = new HashSet<>();
+    private PlottableEntityIndex mEntities = new PlottableEntityIndex();
 
     public PlottableEntityPainter(AliasModel aliasModel, IconModel iconModel)
     {
@@ -58,9 +68,20 @@ public class PlottableEntityPainter extends AbstractPainter<JXMapViewer>
         mEntities.clear();
     }
 
-    private Set<PlottableEntityHistory> getEntities()
+    /**
+     * Entities with a location history that overlaps the viewport bounds
+     */
+    private List<PlottableEntityHistory> getEntities(JXMapViewer map, Rectangle viewportBounds)
     {
-        return Collections.unmodifiableSet(mEntities);
+        TileFactory tileFactory = map.getTileFactory();
+        int zoom = map.getZoom();
+        GeoPosition northWest = tileFactory.pixelToGeo(new Point2D.Double(viewportBounds.getMinX() - VIEWPORT_MARGIN,
+            viewportBounds.getMinY() - VIEWPORT_MARGIN), zoom);
+        GeoPosition southEast = tileFactory.pixelToGeo(new Point2D.Double(viewportBounds.getMaxX() + VIEWPORT_MARGIN,
+            viewportBounds.getMaxY() + VIEWPORT_MARGIN), zoom);
+
+        return mEntities.query(northWest.getLongitude(), southEast.getLatitude(), southEast.getLongitude(),
+            northWest.getLatitude());
     }
 
     @Override
@@ -70,7 +91,7 @@ public class PlottableEntityPainter extends AbstractPainter<JXMapViewer>
 
         g.translate(-viewportBounds.getX(), -viewportBounds.getY());
 
-        Set<PlottableEntityHistory> entities = getEntities();
+        List<PlottableEntityHistory> entities = getEntities(map, viewportBounds);
 
         for(PlottableEntityHistory entity : entities)
         {
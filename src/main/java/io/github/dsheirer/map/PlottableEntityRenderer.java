@@ -25,6 +25,7 @@ import io.github.dsheirer.alias.AliasModel;
 import io.github.dsheirer.icon.IconModel;
 import org.jdesktop.swingx.JXMapViewer;
 import org.jdesktop.swingx.mapviewer.GeoPosition;
+import org.jdesktop.swingx.mapviewer.TileFactory;
 
 import javax.swing.ImageIcon;
 import java.awt.BasicStroke;
@@ -34,11 +35,20 @@ import java.awt.RenderingHints;
 import java.awt.geom.Point2D;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public class PlottableEntityRenderer
 {
+    /**
+     * Minimum pixel distance between route points.  Route points closer than this to the previous point are skipped,
+     * which simplifies long routes when the map is zoomed out.
+     */
+    private static final double MIN_ROUTE_POINT_SPACING_PIXELS = 3.0;
+
     private AliasModel mAliasModel;
     private IconModel mIconModel;
+    private Map<PlottableEntityHistory,Route> mRouteCache = new WeakHashMap<>();
 
     public PlottableEntityRenderer(AliasModel aliasModel, IconModel iconModel)
     {
@@ -139,42 +149,83 @@ public class PlottableEntityRenderer
      */
     private void paintRoute(Graphics2D graphics, JXMapViewer viewer, PlottableEntityHistory entity, Color color)
     {
-        List<GeoPosition> locations = entity.getLocationHistory();
+        Route route = getRoute(entity, viewer);
 
-        if(!locations.isEmpty())
+        if(route.mPointCount > 1)
         {
             // Draw the route with a black background line
             graphics.setColor(Color.BLACK);
             graphics.setStroke(new BasicStroke(3));
 
-            drawRoute(locations, graphics, viewer);
+            graphics.drawPolyline(route.mX, route.mY, route.mPointCount);
 
             // Draw the route again, in the entity's preferred color
             graphics.setColor(color);
             graphics.setStroke(new BasicStroke(1));
 
-            drawRoute(locations, graphics, viewer);
+            graphics.drawPolyline(route.mX, route.mY, route.mPointCount);
+        }
+    }
+
+    /**
+     * Simplified route for the entity at the viewer's current zoom level.  Routes are cached and only rebuilt when the
+     * entity's location history or the zoom level changes, so panning the map doesn't reproject the route.
+     */
+    private Route getRoute(PlottableEntityHistory entity, JXMapViewer viewer)
+    {
+        List<GeoPosition> locations = entity.getLocationHistory();
+        int zoom = viewer.getZoom();
+        Route route = mRouteCache.get(entity);
+
+        if(route == null || route.mLocations != locations || route.mZoom != zoom)
+        {
+            route = new Route(locations, zoom, viewer.getTileFactory());
+            mRouteCache.put(entity, route);
         }
+
+        return route;
     }
 
     /**
-     * Draws a route from a list of plottables
+     * Route points in world bitmap pixels for a location history at a zoom level
      */
-    private void drawRoute(List<GeoPosition> locations, Graphics2D g, JXMapViewer viewer)
+    private static class Route
     {
-        Point2D lastPoint = null;
+        private List<GeoPosition> mLocations;
+        private int mZoom;
+        private int[] mX;
+        private int[] mY;
+        private int mPointCount;
 
-        for(GeoPosition location : locations)
+        private Route(List<GeoPosition> locations, int zoom, TileFactory tileFactory)
         {
-            // convert geo-coordinate to world bitmap pixel
-            Point2D currentPoint = viewer.getTileFactory().geoToPixel(location, viewer.getZoom());
+            mLocations = locations;
+            mZoom = zoom;
+            mX = new int[locations.size()];
+            mY = new int[locations.size()];
 
-            if(lastPoint != null)
+            double lastX = 0;
+            double lastY = 0;
+            int last = locations.size() - 1;
+
+            for(int x = 0; x <= last; x++)
             {
-                g.drawLine((int)lastPoint.getX(), (int)lastPoint.getY(), (int)currentPoint.getX(), (int)currentPoint.getY());
+                // convert geo-coordinate to world bitmap pixel
+                Point2D point = tileFactory.geoToPixel(locations.get(x), zoom);
+
+                double dx = point.getX() - lastX;
+                double dy = point.getY() - lastY;
+
+                if(mPointCount == 0 || x == last ||
+                   (dx * dx + dy * dy) >= (MIN_ROUTE_POINT_SPACING_PIXELS * MIN_ROUTE_POINT_SPACING_PIXELS))
+                {
+                    mX[mPointCount] = (int)point.getX();
+                    mY[mPointCount] = (int)point.getY();
+                    mPointCount++;
+                    lastX = point.getX();
+                    lastY = point.getY();
+                }
             }
-
-            lastPoint = currentPoint;
         }
     }
 }
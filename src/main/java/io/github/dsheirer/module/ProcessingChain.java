@@ -38,6 +38,8 @@ import io.github.dsheirer.controller.channel.Channel;
 import io.github.dsheirer.controller.channel.ChannelEvent;
 import io.github.dsheirer.controller.channel.IChannelEventListener;
 import io.github.dsheirer.controller.channel.IChannelEventProvider;
+import io.github.dsheirer.edac.ErrorCorrectionStatistics;
+import io.github.dsheirer.edac.ErrorCorrectionStatisticsScope;
 import io.github.dsheirer.identifier.IdentifierUpdateListener;
 import io.github.dsheirer.identifier.IdentifierUpdateNotification;
 import io.github.dsheirer.identifier.IdentifierUpdateProvider;
@@ -72,6 +74,7 @@ import io.github.dsheirer.source.SourceEvent;
 import io.github.dsheirer.source.heartbeat.Heartbeat;
 import io.github.dsheirer.source.heartbeat.IHeartbeatListener;
 import io.github.dsheirer.source.heartbeat.IHeartbeatProvider;
+import io.github.dsheirer.util.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -103,6 +106,9 @@ public class ProcessingChain implements Listener<ChannelEvent>
 
     private ReusableBufferBroadcaster<ReusableFloatBuffer> mDemodulatedAudioBufferBroadcaster = new ReusableBufferBroadcaster();
     private ReusableBufferBroadcaster<ReusableComplexBuffer> mBasebandComplexBufferBroadcaster = new ReusableBufferBroadcaster();
+    private BasebandLatencyMonitor mBasebandLatencyMonitor = new BasebandLatencyMonitor();
+    private Listener<ReusableFloatBuffer> mRealSourceListener = new RealSourceMonitor();
+    private ErrorCorrectionStatisticsScope mErrorCorrectionStatistics = new ErrorCorrectionStatisticsScope();
     private ReusableBufferBroadcaster<ReusableByteBuffer> mDemodulatedBitstreamBufferBroadcaster = new ReusableBufferBroadcaster();
     private Broadcaster<AudioSegment> mAudioSegmentBroadcaster = new AudioSegmentBroadcaster<>();
     private Broadcaster<IDecodeEvent> mDecodeEventBroadcaster = new Broadcaster<>();
@@ -589,16 +595,18 @@ public class ProcessingChain implements Listener<ChannelEvent>
                 //Setup the channel state to monitor source overflow conditions
                 mSource.setOverflowListener(mChannelState);
 
+                mErrorCorrectionStatistics.reset();
+
                 /* Register with the source to receive sample data.  Setup a
                  * timer task to process the buffer queues 50 times a second
                  * (every 20 ms) */
                 switch(mSource.getSampleType())
                 {
                     case COMPLEX:
-                        ((ComplexSource)mSource).setListener(mBasebandComplexBufferBroadcaster);
+                        ((ComplexSource)mSource).setListener(mBasebandLatencyMonitor);
                         break;
                     case REAL:
-                        ((RealSource)mSource).setListener(mDemodulatedAudioBufferBroadcaster);
+                        ((RealSource)mSource).setListener(mRealSourceListener);
                         break;
                     default:
                         throw new IllegalArgumentException("Unrecognized source "
@@ -625,6 +633,18 @@ public class ProcessingChain implements Listener<ChannelEvent>
         }
     }
 
+    /**
+     * Records the delay between the request timestamp and the arrival of the first baseband sample buffer in the
+     * histogram, the next time this chain is started.  Only applies to chains with a complex sample source.
+     *
+     * @param histogram to receive the delay value
+     * @param requestTimestamp of the request that started this chain, in System.nanoTime() units
+     */
+    public void measureFirstSampleLatency(LatencyHistogram histogram, long requestTimestamp)
+    {
+        mBasebandLatencyMonitor.measureFirstSample(histogram, requestTimestamp);
+    }
+
     /**
      * Stops processing if the chain is currently processing.  Invocations on an already stopped chain have no effect.
      */
@@ -643,16 +663,20 @@ public class ProcessingChain implements Listener<ChannelEvent>
                 switch(mSource.getSampleType())
                 {
                     case COMPLEX:
-                        ((ComplexSource)mSource).removeListener(mBasebandComplexBufferBroadcaster);
+                        ((ComplexSource)mSource).removeListener(mBasebandLatencyMonitor);
+                        mLog.debug(mBasebandLatencyMonitor.getLatencyHistogram().getSummary());
+                        mBasebandLatencyMonitor.reset();
                         break;
                     case REAL:
-                        ((RealSource)mSource).removeListener(mDemodulatedAudioBufferBroadcaster);
+                        ((RealSource)mSource).removeListener(mRealSourceListener);
                         break;
                     default:
                         throw new IllegalArgumentException("Unrecognized source sample type - cannot start processing " +
                             "chain");
                 }
 
+                logErrorCorrectionStatistics();
+
                 mSource = null;
             }
 
@@ -879,4 +903,110 @@ public class ProcessingChain implements Listener<ChannelEvent>
     {
         mIdentifierUpdateNotificationBroadcaster.broadcast(updateNotification);
     }
+
+    /**
+     * Logs this chain's block code decoder statistics (e.g. P25 Reed-Solomon and BCH) that have decoded codewords.
+     * Rates are measured over the period since this chain was last started.
+     */
+    private void logErrorCorrectionStatistics()
+    {
+        for(ErrorCorrectionStatistics statistics: mErrorCorrectionStatistics.getAll())
+        {
+            if(statistics.getCodewordCount() > 0)
+            {
+                mLog.debug(statistics.getSummary());
+            }
+        }
+    }
+
+    /**
+     * Broadcasts demodulated audio buffers from a real sample source with this chain's error correction statistics
+     * scope active.
+     */
+    public class RealSourceMonitor implements Listener<ReusableFloatBuffer>
+    {
+        @Override
+        public void receive(ReusableFloatBuffer reusableFloatBuffer)
+        {
+            ErrorCorrectionStatisticsScope previous = mErrorCorrectionStatistics.activate();
+
+            try
+            {
+                mDemodulatedAudioBufferBroadcaster.broadcast(reusableFloatBuffer);
+            }
+            finally
+            {
+                mErrorCorrectionStatistics.deactivate(previous);
+            }
+        }
+    }
+
+    /**
+     * Records the end-to-end delay between the timestamp assigned to each baseband sample buffer when it was received
+     * from the tuner and the time it is delivered to the decoder modules, and then broadcasts the buffer.
+     */
+    public class BasebandLatencyMonitor implements Listener<ReusableComplexBuffer>
+    {
+        private LatencyHistogram mLatencyHistogram = new LatencyHistogram("Tuner to decoder");
+        private volatile LatencyHistogram mFirstSampleLatencyHistogram;
+        private long mFirstSampleRequestTimestamp;
+
+        @Override
+        public void receive(ReusableComplexBuffer reusableComplexBuffer)
+        {
+            LatencyHistogram firstSampleLatencyHistogram = mFirstSampleLatencyHistogram;
+
+            if(firstSampleLatencyHistogram != null)
+            {
+                mFirstSampleLatencyHistogram = null;
+                firstSampleLatencyHistogram.add(System.nanoTime() - mFirstSampleRequestTimestamp);
+            }
+
+            long timestamp = reusableComplexBuffer.getTimestamp();
+
+            if(timestamp > 0)
+            {
+                mLatencyHistogram.addMilliseconds(System.currentTimeMillis() - timestamp);
+            }
+
+            ErrorCorrectionStatisticsScope previous = mErrorCorrectionStatistics.activate();
+
+            try
+            {
+                mBasebandComplexBufferBroadcaster.broadcast(reusableComplexBuffer);
+            }
+            finally
+            {
+                mErrorCorrectionStatistics.deactivate(previous);
+            }
+        }
+
+        /**
+         * Histogram of tuner to decoder delay for baseband sample buffers
+         */
+        public LatencyHistogram getLatencyHistogram()
+        {
+            return mLatencyHistogram;
+        }
+
+        /**
+         * Records the delay from the request timestamp to the arrival of the next sample buffer in the histogram
+         * @param histogram to receive the delay value
+         * @param requestTimestamp in System.nanoTime() units
+         */
+        public void measureFirstSample(LatencyHistogram histogram, long requestTimestamp)
+        {
+            mFirstSampleRequestTimestamp = requestTimestamp;
+            mFirstSampleLatencyHistogram = histogram;
+        }
+
+        /**
+         * Clears the recorded latency values and any pending first sample measurement
+         */
+        public void reset()
+        {
+            mLatencyHistogram.reset();
+            mFirstSampleLatencyHistogram = null;
+        }
+    }
 }
@@ -0,0 +1,530 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.module.decode.event.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed block of decode event records within a store segment file.  Instances hold the block's location and
+ * its sparse index: the time range of the records and the distinct FROM, TO and channel name values.
+ *
+ * Block layout: magic, record count, minimum and maximum start time, the FROM, TO and channel name index sets,
+ * the raw payload length, the compressed payload length and the deflated payload.  The payload is columnar with each
+ * string column dictionary encoded and the start times delta encoded.
+ */
+class DecodeEventBlock
+{
+    static final int MAGIC = 0x44455631;
+
+    private Path mSegment;
+    private long mPayloadPosition;
+    private int mCompressedLength;
+    private int mRawLength;
+    private int mCount;
+    private long mMinTime;
+    private long mMaxTime;
+    private Set<String> mFromValues;
+    private Set<String> mToValues;
+    private Set<String> mChannelNames;
+
+    private DecodeEventBlock(Path segment, int count, long minTime, long maxTime, Set<String> fromValues,
+                             Set<String> toValues, Set<String> channelNames, int rawLength, int compressedLength)
+    {
+        mSegment = segment;
+        mCount = count;
+        mMinTime = minTime;
+        mMaxTime = maxTime;
+        mFromValues = fromValues;
+        mToValues = toValues;
+        mChannelNames = channelNames;
+        mRawLength = rawLength;
+        mCompressedLength = compressedLength;
+    }
+
+    /**
+     * Segment file containing this block
+     */
+    Path getSegment()
+    {
+        return mSegment;
+    }
+
+    /**
+     * File position of the compressed payload
+     */
+    long getPayloadPosition()
+    {
+        return mPayloadPosition;
+    }
+
+    void setPayloadPosition(long payloadPosition)
+    {
+        mPayloadPosition = payloadPosition;
+    }
+
+    int getCompressedLength()
+    {
+        return mCompressedLength;
+    }
+
+    int getCount()
+    {
+        return mCount;
+    }
+
+    long getMinTime()
+    {
+        return mMinTime;
+    }
+
+    long getMaxTime()
+    {
+        return mMaxTime;
+    }
+
+    /**
+     * Indicates if the block may contain records matching the query, using the block index
+     */
+    boolean mayMatch(DecodeEventQuery query)
+    {
+        return query.overlaps(mMinTime, mMaxTime) &&
+            (query.getFrom() == null || mFromValues.contains(query.getFrom())) &&
+            (query.getTo() == null || mToValues.contains(query.getTo())) &&
+            (query.getChannelName() == null || mChannelNames.contains(query.getChannelName()));
+    }
+
+    /**
+     * Encodes the records as a block.  Records are sorted by start time.
+     * @param segment file that will contain the block
+     * @param records to encode
+     * @param output to receive the block header and compressed payload
+     * @return block index with the payload position relative to the start of the output
+     */
+    static DecodeEventBlock encode(Path segment, List<DecodeEventRecord> records, ByteArrayOutputStream output)
+        throws IOException
+    {
+        List<DecodeEventRecord> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparingLong(DecodeEventRecord::getTimeStart));
+
+        ByteArrayOutputStream rawBuffer = new ByteArrayOutputStream(sorted.size() * 32);
+        DataOutputStream raw = new DataOutputStream(rawBuffer);
+
+        long previous = sorted.isEmpty() ? 0 : sorted.get(0).getTimeStart();
+        raw.writeLong(previous);
+
+        for(DecodeEventRecord record: sorted)
+        {
+            writeVarLong(raw, record.getTimeStart() - previous);
+            previous = record.getTimeStart();
+        }
+
+        for(DecodeEventRecord record: sorted)
+        {
+            writeVarLong(raw, record.getDuration());
+        }
+
+        for(DecodeEventRecord record: sorted)
+        {
+            writeVarLong(raw, record.getFrequency());
+        }
+
+        for(DecodeEventRecord record: sorted)
+        {
+            writeVarLong(raw, record.getTimeslot() + 1);
+        }
+
+        Set<String> from = writeColumn(raw, sorted, DecodeEventRecord::getFrom);
+        Set<String> to = writeColumn(raw, sorted, DecodeEventRecord::getTo);
+        Set<String> channelNames = writeColumn(raw, sorted, DecodeEventRecord::getChannelName);
+
+        writeColumn(raw, sorted, DecodeEventRecord::getProtocol);
+        writeColumn(raw, sorted, DecodeEventRecord::getEventDescription);
+        writeColumn(raw, sorted, DecodeEventRecord::getSystem);
+        writeColumn(raw, sorted, DecodeEventRecord::getSite);
+        writeColumn(raw, sorted, DecodeEventRecord::getChannel);
+        writeColumn(raw, sorted, DecodeEventRecord::getDetails);
+        raw.flush();
+
+        byte[] rawBytes = rawBuffer.toByteArray();
+        byte[] compressed = deflate(rawBytes);
+
+        long minTime = sorted.isEmpty() ? 0 : sorted.get(0).getTimeStart();
+        long maxTime = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1).getTimeStart();
+
+        DataOutputStream header = new DataOutputStream(output);
+        int start = output.size();
+        header.writeInt(MAGIC);
+        header.writeInt(sorted.size());
+        header.writeLong(minTime);
+        header.writeLong(maxTime);
+        writeStringSet(header, from);
+        writeStringSet(header, to);
+        writeStringSet(header, channelNames);
+        header.writeInt(rawBytes.length);
+        header.writeInt(compressed.length);
+        header.flush();
+
+        DecodeEventBlock block = new DecodeEventBlock(segment, sorted.size(), minTime, maxTime, from, to,
+            channelNames, rawBytes.length, compressed.length);
+        block.setPayloadPosition(output.size() - start);
+        output.write(compressed);
+        return block;
+    }
+
+    /**
+     * Reads a block header from the input stream, leaving the stream positioned at the start of the payload.
+     * @param segment containing the block
+     * @param input stream
+     * @param position of the block within the segment
+     * @param strings pool used to share index string instances across blocks
+     * @return block index
+     * @throws IOException if the header is invalid or truncated
+     */
+    static DecodeEventBlock readHeader(Path segment, DataInputStream input, long position, Map<String,String> strings)
+        throws IOException
+    {
+        CountingInput counting = new CountingInput(input);
+
+        if(counting.readInt() != MAGIC)
+        {
+            throw new IOException("Invalid decode event block header at position " + position + " in " + segment);
+        }
+
+        int count = counting.readInt();
+        long minTime = counting.readLong();
+        long maxTime = counting.readLong();
+        Set<String> from = counting.readStringSet(strings);
+        Set<String> to = counting.readStringSet(strings);
+        Set<String> channelNames = counting.readStringSet(strings);
+        int rawLength = counting.readInt();
+        int compressedLength = counting.readInt();
+
+        DecodeEventBlock block = new DecodeEventBlock(segment, count, minTime, maxTime, from, to, channelNames,
+            rawLength, compressedLength);
+        block.setPayloadPosition(position + counting.getBytesRead());
+        return block;
+    }
+
+    /**
+     * Decodes the compressed payload for this block
+     */
+    List<DecodeEventRecord> decode(byte[] compressed) throws IOException
+    {
+        byte[] rawBytes = inflate(compressed, mRawLength);
+        DataInputStream raw = new DataInputStream(new ByteArrayInputStream(rawBytes));
+
+        long[] timeStart = new long[mCount];
+        long previous = raw.readLong();
+
+        for(int x = 0; x < mCount; x++)
+        {
+            previous += readVarLong(raw);
+            timeStart[x] = previous;
+        }
+
+        long[] duration = readLongColumn(raw, mCount);
+        long[] frequency = readLongColumn(raw, mCount);
+        long[] timeslot = readLongColumn(raw, mCount);
+        String[] from = readColumn(raw, mCount);
+        String[] to = readColumn(raw, mCount);
+        String[] channelName = readColumn(raw, mCount);
+        String[] protocol = readColumn(raw, mCount);
+        String[] description = readColumn(raw, mCount);
+        String[] system = readColumn(raw, mCount);
+        String[] site = readColumn(raw, mCount);
+        String[] channel = readColumn(raw, mCount);
+        String[] details = readColumn(raw, mCount);
+
+        List<DecodeEventRecord> records = new ArrayList<>(mCount);
+
+        for(int x = 0; x < mCount; x++)
+        {
+            records.add(new DecodeEventRecord(timeStart[x], duration[x], protocol[x], description[x], from[x], to[x],
+                system[x], site[x], channelName[x], channel[x], frequency[x], (int)timeslot[x] - 1, details[x]));
+        }
+
+        return records;
+    }
+
+    private interface StringColumn
+    {
+        String get(DecodeEventRecord record);
+    }
+
+    /**
+     * Writes a dictionary encoded string column
+     * @return distinct values in the column
+     */
+    private static Set<String> writeColumn(DataOutputStream out, List<DecodeEventRecord> records, StringColumn column)
+        throws IOException
+    {
+        Map<String,Integer> dictionary = new LinkedHashMap<>();
+        int[] indexes = new int[records.size()];
+
+        for(int x = 0; x < records.size(); x++)
+        {
+            String value = column.get(records.get(x));
+            Integer index = dictionary.get(value);
+
+            if(index == null)
+            {
+                index = dictionary.size();
+                dictionary.put(value, index);
+            }
+
+            indexes[x] = index;
+        }
+
+        writeStringSet(out, dictionary.keySet());
+
+        for(int index: indexes)
+        {
+            writeVarLong(out, index);
+        }
+
+        return dictionary.keySet();
+    }
+
+    private static String[] readColumn(DataInputStream in, int count) throws IOException
+    {
+        int size = (int)readVarLong(in);
+        String[] dictionary = new String[size];
+
+        for(int x = 0; x < size; x++)
+        {
+            dictionary[x] = readString(in);
+        }
+
+        String[] values = new String[count];
+
+        for(int x = 0; x < count; x++)
+        {
+            values[x] = dictionary[(int)readVarLong(in)];
+        }
+
+        return values;
+    }
+
+    private static long[] readLongColumn(DataInputStream in, int count) throws IOException
+    {
+        long[] values = new long[count];
+
+        for(int x = 0; x < count; x++)
+        {
+            values[x] = readVarLong(in);
+        }
+
+        return values;
+    }
+
+    private static void writeStringSet(DataOutputStream out, Set<String> values) throws IOException
+    {
+        writeVarLong(out, values.size());
+
+        for(String value: values)
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[(int)readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes an unsigned variable length value, 7 bits per byte
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        while((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int)((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.writeByte((int)value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        long value = 0;
+        int shift = 0;
+        int b;
+
+        do
+        {
+            b = in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        }
+        while((b & 0x80) != 0);
+
+        return value;
+    }
+
+    private static byte[] deflate(byte[] input)
+    {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+        byte[] buffer = new byte[8192];
+
+        while(!deflater.finished())
+        {
+            int length = deflater.deflate(buffer);
+            output.write(buffer, 0, length);
+        }
+
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] input, int rawLength) throws IOException
+    {
+        Inflater inflater = new Inflater();
+        inflater.setInput(input);
+        byte[] output = new byte[rawLength];
+
+        try
+        {
+            int offset = 0;
+
+            while(offset < rawLength && !inflater.finished())
+            {
+                int length = inflater.inflate(output, offset, rawLength - offset);
+
+                if(length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    throw new IOException("Truncated decode event block payload");
+                }
+
+                offset += length;
+            }
+        }
+        catch(DataFormatException dfe)
+        {
+            throw new IOException("Invalid decode event block payload", dfe);
+        }
+        finally
+        {
+            inflater.end();
+        }
+
+        return output;
+    }
+
+    /**
+     * Reads header fields while counting the bytes consumed
+     */
+    private static class CountingInput
+    {
+        private DataInputStream mInput;
+        private long mBytesRead;
+
+        private CountingInput(DataInputStream input)
+        {
+            mInput = input;
+        }
+
+        private int readInt() throws IOException
+        {
+            mBytesRead += 4;
+            return mInput.readInt();
+        }
+
+        private long readLong() throws IOException
+        {
+            mBytesRead += 8;
+            return mInput.readLong();
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+            int shift = 0;
+            int b;
+
+            do
+            {
+                b = mInput.readUnsignedByte();
+                mBytesRead++;
+                value |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            }
+            while((b & 0x80) != 0);
+
+            return value;
+        }
+
+        private Set<String> readStringSet(Map<String,String> strings) throws IOException
+        {
+            int size = (int)readVarLong();
+
+            if(size == 0)
+            {
+                return Collections.emptySet();
+            }
+
+            Set<String> values = new HashSet<>(size * 2);
+
+            for(int x = 0; x < size; x++)
+            {
+                byte[] bytes = new byte[(int)readVarLong()];
+                mInput.readFully(bytes);
+                mBytesRead += bytes.length;
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                values.add(strings.computeIfAbsent(value, key -> key));
+            }
+
+            return values;
+        }
+
+        private long getBytesRead()
+        {
+            return mBytesRead;
+        }
+    }
+}
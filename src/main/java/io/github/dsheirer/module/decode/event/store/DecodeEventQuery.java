@@ -0,0 +1,230 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.module.decode.event.store;
+
+/**
+ * Query against the decode event store.  Identifier filters match the string value of the event's first FROM or TO
+ * identifier (e.g. radio or talkgroup) or the configured channel name.  Results are ordered newest first and support
+ * paging via offset and limit.
+ */
+public class DecodeEventQuery
+{
+    private long mStart;
+    private long mEnd;
+    private String mFrom;
+    private String mTo;
+    private String mChannelName;
+    private String mProtocol;
+    private int mOffset;
+    private int mLimit;
+
+    private DecodeEventQuery(QueryBuilder builder)
+    {
+        mStart = builder.mStart;
+        mEnd = builder.mEnd;
+        mFrom = builder.mFrom;
+        mTo = builder.mTo;
+        mChannelName = builder.mChannelName;
+        mProtocol = builder.mProtocol;
+        mOffset = builder.mOffset;
+        mLimit = builder.mLimit;
+    }
+
+    /**
+     * Creates a new query builder that matches all events
+     */
+    public static QueryBuilder builder()
+    {
+        return new QueryBuilder();
+    }
+
+    /**
+     * Start of the time range in milliseconds, inclusive
+     */
+    public long getStart()
+    {
+        return mStart;
+    }
+
+    /**
+     * End of the time range in milliseconds, inclusive
+     */
+    public long getEnd()
+    {
+        return mEnd;
+    }
+
+    /**
+     * FROM identifier value filter or null
+     */
+    public String getFrom()
+    {
+        return mFrom;
+    }
+
+    /**
+     * TO identifier value filter or null
+     */
+    public String getTo()
+    {
+        return mTo;
+    }
+
+    /**
+     * Channel name filter or null
+     */
+    public String getChannelName()
+    {
+        return mChannelName;
+    }
+
+    /**
+     * Protocol name filter or null
+     */
+    public String getProtocol()
+    {
+        return mProtocol;
+    }
+
+    /**
+     * Number of matching records to skip
+     */
+    public int getOffset()
+    {
+        return mOffset;
+    }
+
+    /**
+     * Maximum number of records to return
+     */
+    public int getLimit()
+    {
+        return mLimit;
+    }
+
+    /**
+     * Indicates if the record time start falls within the query time range
+     */
+    public boolean overlaps(long start, long end)
+    {
+        return start <= mEnd && end >= mStart;
+    }
+
+    /**
+     * Indicates if the record matches all of the filters in this query
+     */
+    public boolean matches(DecodeEventRecord record)
+    {
+        return record.getTimeStart() >= mStart && record.getTimeStart() <= mEnd &&
+            (mFrom == null || mFrom.equals(record.getFrom())) &&
+            (mTo == null || mTo.equals(record.getTo())) &&
+            (mChannelName == null || mChannelName.equals(record.getChannelName())) &&
+            (mProtocol == null || mProtocol.equals(record.getProtocol()));
+    }
+
+    /**
+     * Builder for decode event queries
+     */
+    public static class QueryBuilder
+    {
+        private long mStart = 0;
+        private long mEnd = Long.MAX_VALUE;
+        private String mFrom;
+        private String mTo;
+        private String mChannelName;
+        private String mProtocol;
+        private int mOffset = 0;
+        private int mLimit = Integer.MAX_VALUE;
+
+        /**
+         * Limits results to events that start within the time range
+         * @param start in milliseconds, inclusive
+         * @param end in milliseconds, inclusive
+         */
+        public QueryBuilder timeRange(long start, long end)
+        {
+            mStart = start;
+            mEnd = end;
+            return this;
+        }
+
+        /**
+         * Limits results to events where the FROM identifier (e.g. radio) has the value
+         */
+        public QueryBuilder from(String from)
+        {
+            mFrom = from;
+            return this;
+        }
+
+        /**
+         * Limits results to events where the TO identifier (e.g. talkgroup) has the value
+         */
+        public QueryBuilder to(String to)
+        {
+            mTo = to;
+            return this;
+        }
+
+        /**
+         * Limits results to events from the named channel
+         */
+        public QueryBuilder channelName(String channelName)
+        {
+            mChannelName = channelName;
+            return this;
+        }
+
+        /**
+         * Limits results to events produced by the protocol
+         * @param protocol name (e.g. APCO25)
+         */
+        public QueryBuilder protocol(String protocol)
+        {
+            mProtocol = protocol;
+            return this;
+        }
+
+        /**
+         * Skips the first offset matching records, for paging
+         */
+        public QueryBuilder offset(int offset)
+        {
+            mOffset = Math.max(0, offset);
+            return this;
+        }
+
+        /**
+         * Maximum number of records to return
+         */
+        public QueryBuilder limit(int limit)
+        {
+            mLimit = Math.max(0, limit);
+            return this;
+        }
+
+        public DecodeEventQuery build()
+        {
+            return new DecodeEventQuery(this);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.module.decode.event.store;
+
+import io.github.dsheirer.channel.IChannelDescriptor;
+import io.github.dsheirer.identifier.Form;
+import io.github.dsheirer.identifier.Identifier;
+import io.github.dsheirer.identifier.IdentifierClass;
+import io.github.dsheirer.identifier.IdentifierCollection;
+import io.github.dsheirer.identifier.Role;
+import io.github.dsheirer.module.decode.event.IDecodeEvent;
+
+import java.util.List;
+
+/**
+ * Flattened, immutable copy of a decode event as persisted in the decode event store.  Identifiers are stored using
+ * their string values so that records can be queried without the identifier classes that produced them.
+ */
+public class DecodeEventRecord
+{
+    public static final int NO_TIMESLOT = -1;
+
+    private long mTimeStart;
+    private long mDuration;
+    private String mProtocol;
+    private String mEventDescription;
+    private String mFrom;
+    private String mTo;
+    private String mSystem;
+    private String mSite;
+    private String mChannelName;
+    private String mChannel;
+    private long mFrequency;
+    private int mTimeslot;
+    private String mDetails;
+
+    /**
+     * Constructs an instance.  Null string values are stored as empty strings.
+     */
+    public DecodeEventRecord(long timeStart, long duration, String protocol, String eventDescription, String from,
+                             String to, String system, String site, String channelName, String channel, long frequency,
+                             int timeslot, String details)
+    {
+        mTimeStart = timeStart;
+        mDuration = duration;
+        mProtocol = clean(protocol);
+        mEventDescription = clean(eventDescription);
+        mFrom = clean(from);
+        mTo = clean(to);
+        mSystem = clean(system);
+        mSite = clean(site);
+        mChannelName = clean(channelName);
+        mChannel = clean(channel);
+        mFrequency = frequency;
+        mTimeslot = timeslot;
+        mDetails = clean(details);
+    }
+
+    /**
+     * Creates a record from the current state of the decode event
+     */
+    public static DecodeEventRecord create(IDecodeEvent event)
+    {
+        IdentifierCollection identifiers = event.getIdentifierCollection();
+        String from = null;
+        String to = null;
+        String system = null;
+        String site = null;
+        String channelName = null;
+        long frequency = 0;
+
+        if(identifiers != null)
+        {
+            from = first(identifiers.getIdentifiers(Role.FROM));
+            to = first(identifiers.getIdentifiers(Role.TO));
+            system = value(identifiers.getIdentifier(IdentifierClass.CONFIGURATION, Form.SYSTEM, Role.ANY));
+            site = value(identifiers.getIdentifier(IdentifierClass.CONFIGURATION, Form.SITE, Role.ANY));
+            channelName = value(identifiers.getIdentifier(IdentifierClass.CONFIGURATION, Form.CHANNEL_NAME, Role.ANY));
+
+            Identifier frequencyIdentifier = identifiers.getIdentifier(IdentifierClass.CONFIGURATION,
+                Form.CHANNEL_FREQUENCY, Role.ANY);
+
+            if(frequencyIdentifier != null && frequencyIdentifier.getValue() instanceof Long)
+            {
+                frequency = (Long)frequencyIdentifier.getValue();
+            }
+        }
+
+        IChannelDescriptor descriptor = event.getChannelDescriptor();
+
+        return new DecodeEventRecord(event.getTimeStart(), event.getDuration(),
+            event.getProtocol() != null ? event.getProtocol().name() : null, event.getEventDescription(), from, to,
+            system, site, channelName, descriptor != null ? descriptor.toString() : null, frequency,
+            event.hasTimeslot() ? event.getTimeslot() : NO_TIMESLOT, event.getDetails());
+    }
+
+    private static String first(List<Identifier> identifiers)
+    {
+        return (identifiers != null && !identifiers.isEmpty()) ? value(identifiers.get(0)) : null;
+    }
+
+    private static String value(Identifier identifier)
+    {
+        return identifier != null && identifier.getValue() != null ? identifier.getValue().toString() : null;
+    }
+
+    private static String clean(String value)
+    {
+        return value != null ? value : "";
+    }
+
+    /**
+     * Event start in milliseconds
+     */
+    public long getTimeStart()
+    {
+        return mTimeStart;
+    }
+
+    /**
+     * Event duration in milliseconds or 0 if there is no duration
+     */
+    public long getDuration()
+    {
+        return mDuration;
+    }
+
+    /**
+     * Protocol name
+     */
+    public String getProtocol()
+    {
+        return mProtocol;
+    }
+
+    /**
+     * Event description
+     */
+    public String getEventDescription()
+    {
+        return mEventDescription;
+    }
+
+    /**
+     * Value of the first FROM identifier (e.g. radio), or empty string
+     */
+    public String getFrom()
+    {
+        return mFrom;
+    }
+
+    /**
+     * Value of the first TO identifier (e.g. talkgroup), or empty string
+     */
+    public String getTo()
+    {
+        return mTo;
+    }
+
+    /**
+     * Configured system name, or empty string
+     */
+    public String getSystem()
+    {
+        return mSystem;
+    }
+
+    /**
+     * Configured site name, or empty string
+     */
+    public String getSite()
+    {
+        return mSite;
+    }
+
+    /**
+     * Configured channel name, or empty string
+     */
+    public String getChannelName()
+    {
+        return mChannelName;
+    }
+
+    /**
+     * Channel descriptor, or empty string
+     */
+    public String getChannel()
+    {
+        return mChannel;
+    }
+
+    /**
+     * Configured channel frequency in hertz or 0 if not specified
+     */
+    public long getFrequency()
+    {
+        return mFrequency;
+    }
+
+    /**
+     * Timeslot or NO_TIMESLOT
+     */
+    public int getTimeslot()
+    {
+        return mTimeslot;
+    }
+
+    /**
+     * Indicates if this record has a timeslot
+     */
+    public boolean hasTimeslot()
+    {
+        return mTimeslot != NO_TIMESLOT;
+    }
+
+    /**
+     * Event details
+     */
+    public String getDetails()
+    {
+        return mDetails;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(mProtocol).append(" DECODE EVENT: ").append(mEventDescription);
+        sb.append(" FROM:").append(mFrom).append(" TO:").append(mTo);
+        sb.append(" CHANNEL:").append(mChannelName).append(" ").append(mChannel);
+        sb.append(" DURATION:").append(mDuration);
+        sb.append(" DETAILS:").append(mDetails);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,689 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.module.decode.event.store;
+
+import com.google.common.collect.MapMaker;
+import io.github.dsheirer.controller.NamingThreadFactory;
+import io.github.dsheirer.module.decode.event.IDecodeEvent;
+import io.github.dsheirer.preference.UserPreferences;
+import io.github.dsheirer.properties.SystemProperties;
+import io.github.dsheirer.sample.Listener;
+import io.github.dsheirer.util.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only local store for decode events with a query API.
+ *
+ * Decode events are held in a pending map until they have not been updated for a quiet period, so that the stored
+ * record contains the final duration and details of the event.  Completed events are buffered and written as
+ * compressed, columnar blocks appended to segment files in the event store directory.  Each application session
+ * starts a new segment and segments are rotated when they reach the maximum segment size.
+ *
+ * The store keeps a sparse in-memory index for each block (time range and the distinct FROM, TO and channel name
+ * values) that is rebuilt from the block headers by a background thread on startup.  Queries use the index to skip
+ * blocks that cannot contain matching records and only decompress candidate blocks.
+ *
+ * The oldest segments are deleted when the store exceeds the maximum store size or when all of the events in a
+ * segment are older than the retention period.
+ */
+public class DecodeEventStore implements Listener<IDecodeEvent>
+{
+    private final static Logger mLog = LoggerFactory.getLogger(DecodeEventStore.class);
+    public static final String STORE_DIRECTORY = "event_store";
+    public static final String SEGMENT_PREFIX = "segment_";
+    public static final String SEGMENT_EXTENSION = ".events";
+    public static final int BLOCK_SIZE = 1024;
+    public static final long MAXIMUM_SEGMENT_SIZE = 32L * 1024 * 1024;
+    public static final long QUIET_PERIOD_MS = 10000;
+    public static final long MAXIMUM_BUFFER_AGE_MS = 60000;
+    public static final long PROCESSING_INTERVAL_MS = 2000;
+    public static final int BLOCK_CACHE_SIZE = 16;
+    public static final long PRUNE_INTERVAL_MS = 60L * 60 * 1000;
+    public static final String PROPERTY_MAXIMUM_STORE_SIZE_MB = "decode.event.store.maximum.size.mb";
+    public static final String PROPERTY_RETENTION_DAYS = "decode.event.store.retention.days";
+    public static final int DEFAULT_MAXIMUM_STORE_SIZE_MB = 1024;
+    public static final int DEFAULT_RETENTION_DAYS = 90;
+
+    private Path mDirectory;
+    private long mMaximumStoreSize;
+    private long mRetentionPeriod;
+    private Map<IDecodeEvent,Long> mPendingEvents = new IdentityHashMap<>();
+    private Map<IDecodeEvent,Boolean> mStoredEvents = new MapMaker().weakKeys().makeMap();
+    private List<DecodeEventRecord> mBufferedRecords = new ArrayList<>();
+    private long mBufferStartTime;
+    private List<DecodeEventBlock> mBlocks = new ArrayList<>();
+    private Map<Path,Long> mSegmentSizes = new TreeMap<>();
+    private Map<DecodeEventBlock,List<DecodeEventRecord>> mBlockCache =
+        new LinkedHashMap<DecodeEventBlock,List<DecodeEventRecord>>(BLOCK_CACHE_SIZE, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<DecodeEventBlock,List<DecodeEventRecord>> eldest)
+            {
+                return size() > BLOCK_CACHE_SIZE;
+            }
+        };
+    private Path mSegment;
+    private FileChannel mSegmentChannel;
+    private long mStoredRecordCount;
+    private ScheduledFuture<?> mProcessorHandle;
+    private Thread mIndexLoaderThread;
+    private long mLastPruneTime;
+
+    /**
+     * Constructs an instance that stores events in the event store folder within the event logs directory, using the
+     * maximum store size and retention period from the system properties.
+     */
+    public DecodeEventStore(UserPreferences userPreferences)
+    {
+        this(userPreferences.getDirectoryPreference().getDirectoryEventLog().resolve(STORE_DIRECTORY),
+            SystemProperties.getInstance().get(PROPERTY_MAXIMUM_STORE_SIZE_MB, DEFAULT_MAXIMUM_STORE_SIZE_MB) *
+                1024L * 1024L,
+            TimeUnit.DAYS.toMillis(
+                SystemProperties.getInstance().get(PROPERTY_RETENTION_DAYS, DEFAULT_RETENTION_DAYS)));
+    }
+
+    /**
+     * Constructs an instance that stores events in the directory
+     * @param directory for segment files
+     * @param maximumStoreSize in bytes for all segments before the oldest segments are deleted
+     * @param retentionPeriod in milliseconds before a segment is deleted
+     */
+    public DecodeEventStore(Path directory, long maximumStoreSize, long retentionPeriod)
+    {
+        mDirectory = directory;
+        mMaximumStoreSize = maximumStoreSize;
+        mRetentionPeriod = retentionPeriod;
+    }
+
+    /**
+     * Starts processing received decode events and loads the index for existing segments on a background thread.
+     * Queries run before the index is loaded only see events from the current session.
+     */
+    public void start()
+    {
+        if(mIndexLoaderThread == null)
+        {
+            try
+            {
+                Files.createDirectories(mDirectory);
+
+                //List the existing segments now so that the loader never sees a segment created by this session
+                List<Path> segments = new ArrayList<>();
+
+                try(DirectoryStream<Path> stream = Files.newDirectoryStream(mDirectory,
+                    SEGMENT_PREFIX + "*" + SEGMENT_EXTENSION))
+                {
+                    stream.forEach(segments::add);
+                }
+
+                mIndexLoaderThread = new NamingThreadFactory("sdrtrunk decode event store index loader")
+                    .newThread(() -> loadIndex(segments));
+                mIndexLoaderThread.setDaemon(true);
+                mIndexLoaderThread.start();
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Error loading decode event store index from " + mDirectory, ioe);
+            }
+        }
+
+        if(mProcessorHandle == null)
+        {
+            mProcessorHandle = ThreadPool.SCHEDULED.scheduleAtFixedRate(() -> process(false),
+                PROCESSING_INTERVAL_MS, PROCESSING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops processing and writes all pending and buffered events to the store
+     */
+    public void stop()
+    {
+        if(mProcessorHandle != null)
+        {
+            mProcessorHandle.cancel(false);
+            mProcessorHandle = null;
+        }
+
+        process(true);
+
+        synchronized(mBlocks)
+        {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Receives new and updated decode events.  Events are stored once they have not been updated for the quiet period.
+     */
+    @Override
+    public void receive(IDecodeEvent event)
+    {
+        if(event != null && !mStoredEvents.containsKey(event))
+        {
+            synchronized(mPendingEvents)
+            {
+                mPendingEvents.put(event, System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Number of records written to the store, including records from previous sessions
+     */
+    public long getStoredRecordCount()
+    {
+        synchronized(mBlocks)
+        {
+            return mStoredRecordCount;
+        }
+    }
+
+    /**
+     * Finds the records that match the query, ordered newest first.  Events that are pending or buffered and not
+     * yet written to disk are included in the results.
+     *
+     * @param query to run
+     * @return matching records limited by the query offset and limit
+     */
+    public List<DecodeEventRecord> query(DecodeEventQuery query)
+    {
+        long needed = (long)query.getOffset() + query.getLimit();
+
+        if(needed == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        List<DecodeEventRecord> matches = new ArrayList<>();
+
+        synchronized(mPendingEvents)
+        {
+            for(IDecodeEvent event: mPendingEvents.keySet())
+            {
+                DecodeEventRecord record = DecodeEventRecord.create(event);
+
+                if(query.matches(record))
+                {
+                    matches.add(record);
+                }
+            }
+        }
+
+        List<DecodeEventBlock> candidates = new ArrayList<>();
+
+        //Copy the candidate blocks under the lock and read them afterward so that queries don't stall event storage
+        synchronized(mBlocks)
+        {
+            for(DecodeEventRecord record: mBufferedRecords)
+            {
+                if(query.matches(record))
+                {
+                    matches.add(record);
+                }
+            }
+
+            for(DecodeEventBlock block: mBlocks)
+            {
+                if(block.mayMatch(query))
+                {
+                    candidates.add(block);
+                }
+            }
+        }
+
+        long threshold = trim(matches, needed);
+
+        //Visit newest blocks first so that paged queries can skip older blocks once the page is full
+        for(int x = candidates.size() - 1; x >= 0; x--)
+        {
+            DecodeEventBlock block = candidates.get(x);
+
+            if(block.getMaxTime() < threshold)
+            {
+                continue;
+            }
+
+            try
+            {
+                for(DecodeEventRecord record: readBlock(block))
+                {
+                    if(query.matches(record))
+                    {
+                        matches.add(record);
+                    }
+                }
+            }
+            catch(NoSuchFileException nsfe)
+            {
+                //The segment was pruned after the candidate blocks were copied
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Error reading decode event block from " + block.getSegment(), ioe);
+            }
+
+            if(matches.size() >= needed * 2)
+            {
+                threshold = trim(matches, needed);
+            }
+        }
+
+        trim(matches, needed);
+
+        if(matches.size() <= query.getOffset())
+        {
+            return Collections.emptyList();
+        }
+
+        return new ArrayList<>(matches.subList(query.getOffset(), matches.size()));
+    }
+
+    /**
+     * Sorts the matches newest first and trims the list to the needed size
+     * @return start time of the oldest retained match when the list is full, or Long.MIN_VALUE
+     */
+    private static long trim(List<DecodeEventRecord> matches, long needed)
+    {
+        matches.sort(Comparator.comparingLong(DecodeEventRecord::getTimeStart).reversed());
+
+        if(matches.size() >= needed)
+        {
+            matches.subList((int)needed, matches.size()).clear();
+            return matches.get(matches.size() - 1).getTimeStart();
+        }
+
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Moves quiet pending events to the buffer and writes the buffer as a block when it is full or has aged.
+     * @param flush true to store all pending and buffered events
+     */
+    private void process(boolean flush)
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            List<DecodeEventRecord> completed = new ArrayList<>();
+
+            synchronized(mPendingEvents)
+            {
+                Iterator<Map.Entry<IDecodeEvent,Long>> it = mPendingEvents.entrySet().iterator();
+
+                while(it.hasNext())
+                {
+                    Map.Entry<IDecodeEvent,Long> entry = it.next();
+
+                    if(flush || now - entry.getValue() >= QUIET_PERIOD_MS)
+                    {
+                        completed.add(DecodeEventRecord.create(entry.getKey()));
+                        mStoredEvents.put(entry.getKey(), Boolean.TRUE);
+                        it.remove();
+                    }
+                }
+            }
+
+            synchronized(mBlocks)
+            {
+                if(!completed.isEmpty())
+                {
+                    //Keep the buffer in start time order so that each block covers a narrow time range
+                    completed.sort(Comparator.comparingLong(DecodeEventRecord::getTimeStart));
+
+                    if(mBufferedRecords.isEmpty())
+                    {
+                        mBufferStartTime = now;
+                    }
+
+                    mBufferedRecords.addAll(completed);
+                }
+
+                while(mBufferedRecords.size() >= BLOCK_SIZE)
+                {
+                    List<DecodeEventRecord> blockRecords = mBufferedRecords.subList(0, BLOCK_SIZE);
+                    writeBlock(new ArrayList<>(blockRecords));
+                    blockRecords.clear();
+                    mBufferStartTime = now;
+                }
+
+                if(!mBufferedRecords.isEmpty() && (flush || now - mBufferStartTime >= MAXIMUM_BUFFER_AGE_MS))
+                {
+                    writeBlock(new ArrayList<>(mBufferedRecords));
+                    mBufferedRecords.clear();
+                }
+
+                if(now - mLastPruneTime >= PRUNE_INTERVAL_MS)
+                {
+                    prune();
+                }
+            }
+        }
+        catch(Throwable t)
+        {
+            mLog.error("Error processing decode events for the decode event store", t);
+        }
+    }
+
+    /**
+     * Appends the records as a block to the current segment and adds the block to the index
+     */
+    private void writeBlock(List<DecodeEventRecord> records)
+    {
+        try
+        {
+            if(mSegmentChannel != null && mSegmentChannel.size() >= MAXIMUM_SEGMENT_SIZE)
+            {
+                closeSegment();
+                prune();
+            }
+
+            if(mSegmentChannel == null)
+            {
+                openSegment();
+            }
+
+            long position = mSegmentChannel.size();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            DecodeEventBlock block = DecodeEventBlock.encode(mSegment, records, output);
+            block.setPayloadPosition(position + block.getPayloadPosition());
+
+            ByteBuffer buffer = ByteBuffer.wrap(output.toByteArray());
+
+            while(buffer.hasRemaining())
+            {
+                mSegmentChannel.write(buffer);
+            }
+
+            mSegmentSizes.put(mSegment, mSegmentChannel.size());
+            addBlock(block);
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error writing " + records.size() + " decode events to the decode event store", ioe);
+        }
+    }
+
+    private void openSegment() throws IOException
+    {
+        Files.createDirectories(mDirectory);
+
+        long timestamp = System.currentTimeMillis();
+        Path segment = mDirectory.resolve(SEGMENT_PREFIX + timestamp + SEGMENT_EXTENSION);
+
+        while(Files.exists(segment))
+        {
+            segment = mDirectory.resolve(SEGMENT_PREFIX + ++timestamp + SEGMENT_EXTENSION);
+        }
+
+        mSegment = segment;
+        mSegmentChannel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        mLog.info("Created decode event store segment:" + segment);
+    }
+
+    private void closeSegment()
+    {
+        if(mSegmentChannel != null)
+        {
+            try
+            {
+                mSegmentChannel.force(true);
+                mSegmentChannel.close();
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Error closing decode event store segment:" + mSegment, ioe);
+            }
+
+            mSegmentChannel = null;
+            mSegment = null;
+        }
+    }
+
+    /**
+     * Adds the block to the index, keeping the index ordered by block start time
+     */
+    private void addBlock(DecodeEventBlock block)
+    {
+        int index = mBlocks.size();
+
+        while(index > 0 && mBlocks.get(index - 1).getMinTime() > block.getMinTime())
+        {
+            index--;
+        }
+
+        mBlocks.add(index, block);
+        mStoredRecordCount += block.getCount();
+    }
+
+    /**
+     * Reads (or retrieves from the cache) the records for the block
+     */
+    private List<DecodeEventRecord> readBlock(DecodeEventBlock block) throws IOException
+    {
+        List<DecodeEventRecord> records;
+
+        synchronized(mBlockCache)
+        {
+            records = mBlockCache.get(block);
+        }
+
+        if(records == null)
+        {
+            byte[] compressed = new byte[block.getCompressedLength()];
+            ByteBuffer buffer = ByteBuffer.wrap(compressed);
+
+            try(FileChannel channel = FileChannel.open(block.getSegment(), StandardOpenOption.READ))
+            {
+                long position = block.getPayloadPosition();
+
+                while(buffer.hasRemaining())
+                {
+                    int read = channel.read(buffer, position + buffer.position());
+
+                    if(read < 0)
+                    {
+                        throw new EOFException("Unexpected end of decode event store segment");
+                    }
+                }
+            }
+
+            records = block.decode(compressed);
+
+            synchronized(mBlockCache)
+            {
+                mBlockCache.put(block, records);
+            }
+        }
+
+        return records;
+    }
+
+    /**
+     * Deletes the oldest segments while the store exceeds the maximum store size, and any segment where every event is
+     * older than the retention period.  The segment that is currently being written is never deleted.  Must be
+     * invoked while holding the mBlocks lock.
+     */
+    private void prune()
+    {
+        mLastPruneTime = System.currentTimeMillis();
+
+        long total = 0;
+
+        for(long size: mSegmentSizes.values())
+        {
+            total += size;
+        }
+
+        Map<Path,Long> newestEventTimes = new HashMap<>();
+
+        for(DecodeEventBlock block: mBlocks)
+        {
+            newestEventTimes.merge(block.getSegment(), block.getMaxTime(), Math::max);
+        }
+
+        long oldest = mLastPruneTime - mRetentionPeriod;
+        Iterator<Map.Entry<Path,Long>> it = mSegmentSizes.entrySet().iterator();
+
+        while(it.hasNext())
+        {
+            Map.Entry<Path,Long> entry = it.next();
+            Path segment = entry.getKey();
+
+            if(segment.equals(mSegment) ||
+               (total <= mMaximumStoreSize && newestEventTimes.getOrDefault(segment, Long.MIN_VALUE) >= oldest))
+            {
+                continue;
+            }
+
+            try
+            {
+                Files.deleteIfExists(segment);
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Error deleting decode event store segment:" + segment, ioe);
+                continue;
+            }
+
+            it.remove();
+            total -= entry.getValue();
+
+            Iterator<DecodeEventBlock> blocks = mBlocks.iterator();
+
+            while(blocks.hasNext())
+            {
+                DecodeEventBlock block = blocks.next();
+
+                if(block.getSegment().equals(segment))
+                {
+                    blocks.remove();
+                    mStoredRecordCount -= block.getCount();
+
+                    synchronized(mBlockCache)
+                    {
+                        mBlockCache.remove(block);
+                    }
+                }
+            }
+
+            mLog.info("Deleted decode event store segment:" + segment);
+        }
+    }
+
+    /**
+     * Rebuilds the block index by reading the block headers from each existing segment and merges the blocks into the
+     * index.  A segment that ends with a partially written block (e.g. after a crash) is indexed up to the last
+     * complete block.  Runs on the index loader thread.
+     *
+     * @param segments that existed when the store was started
+     */
+    private void loadIndex(List<Path> segments)
+    {
+        Collections.sort(segments);
+
+        Map<String,String> indexStrings = new HashMap<>();
+        Map<Path,Long> segmentSizes = new HashMap<>();
+        List<DecodeEventBlock> blocks = new ArrayList<>();
+
+        for(Path segment: segments)
+        {
+            long position = 0;
+
+            try
+            {
+                long size = Files.size(segment);
+                segmentSizes.put(segment, size);
+
+                try(DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment))))
+                {
+                    while(position < size)
+                    {
+                        DecodeEventBlock block = DecodeEventBlock.readHeader(segment, input, position, indexStrings);
+                        long end = block.getPayloadPosition() + block.getCompressedLength();
+
+                        if(end > size)
+                        {
+                            throw new EOFException("Truncated block payload");
+                        }
+
+                        input.skipNBytes(block.getCompressedLength());
+                        blocks.add(block);
+                        position = end;
+                    }
+                }
+            }
+            catch(IOException ioe)
+            {
+                mLog.warn("Decode event store segment [" + segment + "] is incomplete - indexed up to position " +
+                    position + " - " + ioe.getMessage());
+            }
+        }
+
+        synchronized(mBlocks)
+        {
+            blocks.addAll(mBlocks);
+            blocks.sort(Comparator.comparingLong(DecodeEventBlock::getMinTime));
+            mBlocks.clear();
+            mBlocks.addAll(blocks);
+            mSegmentSizes.putAll(segmentSizes);
+
+            mStoredRecordCount = 0;
+
+            for(DecodeEventBlock block: mBlocks)
+            {
+                mStoredRecordCount += block.getCount();
+            }
+
+            mLog.info("Decode event store loaded - segments:" + segments.size() + " blocks:" + mBlocks.size() +
+                " events:" + mStoredRecordCount);
+
+            prune();
+        }
+    }
+}
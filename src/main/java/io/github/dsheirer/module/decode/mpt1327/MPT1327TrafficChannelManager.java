@@ -23,6 +23,7 @@ package io.github.dsheirer.module.decode.mpt1327;
 import io.github.dsheirer.controller.channel.Channel;
 import io.github.dsheirer.controller.channel.ChannelEvent;
 import io.github.dsheirer.controller.channel.ChannelGrantEvent;
+import io.github.dsheirer.controller.channel.ChannelProcessingManager;
 import io.github.dsheirer.controller.channel.IChannelEventListener;
 import io.github.dsheirer.controller.channel.IChannelEventProvider;
 import io.github.dsheirer.controller.channel.map.ChannelMap;
@@ -42,12 +43,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 public class MPT1327TrafficChannelManager extends Module implements IDecodeEventProvider, IChannelEventListener,
     IChannelEventProvider
@@ -57,7 +58,7 @@ public class MPT1327TrafficChannelManager extends Module implements IDecodeEvent
     public static final String CHANNEL_START_REJECTED = "CHANNEL START REJECTED";
     public static final String MAX_TRAFFIC_CHANNELS_EXCEEDED = "MAX TRAFFIC CHANNELS EXCEEDED";
 
-    private Queue<Channel> mAvailableTrafficChannelQueue = new ConcurrentLinkedQueue<>();
+    private Deque<Channel> mAvailableTrafficChannelQueue = new ConcurrentLinkedDeque<>();
     private List<Channel> mManagedTrafficChannels;
     private Map<MPT1327Channel,Channel> mAllocatedTrafficChannelMap = new ConcurrentHashMap<>();
     private Map<MPT1327Channel,MPT1327ChannelGrantEvent> mChannelGrantEventMap = new ConcurrentHashMap<>();
@@ -236,7 +237,7 @@ public class MPT1327TrafficChannelManager extends Module implements IDecodeEvent
     @Override
     public void start()
     {
-
+        ChannelProcessingManager.prepareTrafficChannels(mManagedTrafficChannels, this::broadcast);
     }
 
     @Override
@@ -288,9 +289,10 @@ public class MPT1327TrafficChannelManager extends Module implements IDecodeEvent
     @Override
     public void dispose()
     {
-        for(Channel trafficChannel : mAvailableTrafficChannelQueue)
+        //Delete each managed traffic channel so that any retained processing chains are disposed
+        for(Channel trafficChannel : mManagedTrafficChannels)
         {
-            broadcast(new ChannelEvent(trafficChannel, ChannelEvent.Event.REQUEST_DISABLE));
+            broadcast(ChannelEvent.requestDelete(trafficChannel));
         }
 
         mAvailableTrafficChannelQueue.clear();
@@ -330,7 +332,7 @@ public class MPT1327TrafficChannelManager extends Module implements IDecodeEvent
                         if(toRemove != null)
                         {
                             mAllocatedTrafficChannelMap.remove(toRemove);
-                            mAvailableTrafficChannelQueue.add(channel);
+                            mAvailableTrafficChannelQueue.addFirst(channel);
 
                             final var event = mChannelGrantEventMap.remove(toRemove);
 
@@ -347,7 +349,7 @@ public class MPT1327TrafficChannelManager extends Module implements IDecodeEvent
                         if(rejected != null)
                         {
                             mAllocatedTrafficChannelMap.remove(rejected);
-                            mAvailableTrafficChannelQueue.add(channel);
+                            mAvailableTrafficChannelQueue.addFirst(channel);
 
                             final var event = mChannelGrantEventMap.remove(rejected);
 
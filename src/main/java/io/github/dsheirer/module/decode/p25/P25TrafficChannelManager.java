@@ -26,6 +26,7 @@ import io.github.dsheirer.controller.channel.Channel.ChannelType;
 import io.github.dsheirer.controller.channel.ChannelEvent;
 import io.github.dsheirer.controller.channel.ChannelEvent.Event;
 import io.github.dsheirer.controller.channel.ChannelGrantEvent;
+import io.github.dsheirer.controller.channel.ChannelProcessingManager;
 import io.github.dsheirer.controller.channel.IChannelEventListener;
 import io.github.dsheirer.controller.channel.IChannelEventProvider;
 import io.github.dsheirer.identifier.Identifier;
@@ -61,12 +62,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 /**
  * Monitors channel grant and channel grant update messages to allocate traffic channels to capture
@@ -92,9 +93,9 @@ public class P25TrafficChannelManager extends Module implements IDecodeEventProv
     public static final String CHANNEL_START_REJECTED = "CHANNEL START REJECTED";
     public static final String MAX_TRAFFIC_CHANNELS_EXCEEDED = "MAX TRAFFIC CHANNELS EXCEEDED";
 
-    private Queue<Channel> mAvailablePhase1TrafficChannelQueue = new ConcurrentLinkedQueue<>();
+    private Deque<Channel> mAvailablePhase1TrafficChannelQueue = new ConcurrentLinkedDeque<>();
     private List<Channel> mManagedPhase1TrafficChannels;
-    private Queue<Channel> mAvailablePhase2TrafficChannelQueue = new ConcurrentLinkedQueue<>();
+    private Deque<Channel> mAvailablePhase2TrafficChannelQueue = new ConcurrentLinkedDeque<>();
     private List<Channel> mManagedPhase2TrafficChannels;
 
     private Map<Long,Channel> mAllocatedTrafficChannelMap = new ConcurrentHashMap<>();
@@ -649,14 +650,15 @@ public class P25TrafficChannelManager extends Module implements IDecodeEventProv
     @Override
     public void dispose()
     {
-        for(Channel trafficChannel : mAvailablePhase1TrafficChannelQueue)
+        //Delete each managed traffic channel so that any retained processing chains are disposed
+        for(Channel trafficChannel : mManagedPhase1TrafficChannels)
         {
-            broadcast(new ChannelEvent(trafficChannel, Event.REQUEST_DISABLE));
+            broadcast(ChannelEvent.requestDelete(trafficChannel));
         }
 
-        for(Channel trafficChannel : mAvailablePhase2TrafficChannelQueue)
+        for(Channel trafficChannel : mManagedPhase2TrafficChannels)
         {
-            broadcast(new ChannelEvent(trafficChannel, Event.REQUEST_DISABLE));
+            broadcast(ChannelEvent.requestDelete(trafficChannel));
         }
     }
 
@@ -686,6 +688,8 @@ public class P25TrafficChannelManager extends Module implements IDecodeEventProv
     @Override
     public void start()
     {
+        ChannelProcessingManager.prepareTrafficChannels(mManagedPhase1TrafficChannels, this::broadcast);
+        ChannelProcessingManager.prepareTrafficChannels(mManagedPhase2TrafficChannels, this::broadcast);
     }
 
     @Override
@@ -775,13 +779,14 @@ public class P25TrafficChannelManager extends Module implements IDecodeEventProv
         {
             mAllocatedTrafficChannelMap.remove(frequency);
 
+            //Return the channel to the head of the queue so that channels with a prepared processing chain are reused
             if(isPhase1)
             {
-                mAvailablePhase1TrafficChannelQueue.add(channel);
+                mAvailablePhase1TrafficChannelQueue.addFirst(channel);
             }
             else
             {
-                mAvailablePhase2TrafficChannelQueue.add(channel);
+                mAvailablePhase2TrafficChannelQueue.addFirst(channel);
             }
         }
 
@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 public class EncryptionSynchronizationSequenceProcessor
 {
     private final static Logger mLog = LoggerFactory.getLogger(EncryptionSynchronizationSequenceProcessor.class);
+    private static final ReedSolomon_44_16_29 REED_SOLOMON_44_16_29 = new ReedSolomon_44_16_29();
 
     private BinaryMessage mESSA;
     private BinaryMessage mESSB1;
@@ -177,9 +178,7 @@ public class EncryptionSynchronizationSequenceProcessor
 
             int[] output = new int[63];
 
-            ReedSolomon_44_16_29 rs = new ReedSolomon_44_16_29();
-
-            boolean irrecoverableErrors = rs.decode(input, output);
+            boolean irrecoverableErrors = REED_SOLOMON_44_16_29.decode(input, output);
 
             if(!irrecoverableErrors)
             {
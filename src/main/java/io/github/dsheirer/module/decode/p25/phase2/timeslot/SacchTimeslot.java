@@ -37,6 +37,9 @@ import java.util.List;
  */
 public class SacchTimeslot extends AbstractSignalingTimeslot
 {
+    //Reed-Solomon(52,30,23) code protects the IOEMI word.  Maximum correctable errors are: 14 (58 - 30 / 2)
+    private static final ReedSolomon_63_35_29 reedSolomon_63_35_29 = new ReedSolomon_63_35_29(14);
+
     private static final int[] INFO_1 = {2, 3, 4, 5, 6, 7};
     private static final int[] INFO_2 = {8, 9, 10, 11, 12, 13};
     private static final int[] INFO_3 = {14, 15, 16, 17, 18, 19};
@@ -214,9 +217,6 @@ public class SacchTimeslot extends AbstractSignalingTimeslot
 //            input[61] = 0; //Shortened
 //            input[62] = 0; //Shortened
 
-            //Reed-Solomon(52,30,23) code protects the IOEMI word.  Maximum correctable errors are: 14 (58 - 30 / 2)
-            ReedSolomon_63_35_29 reedSolomon_63_35_29 = new ReedSolomon_63_35_29(14);
-
             boolean irrecoverableErrors;
 
             try
@@ -44,7 +44,7 @@ public class FMDemodulatorModule extends Module implements ISourceEventListener,
     private final static Logger mLog = LoggerFactory.getLogger(FMDemodulatorModule.class);
 
     private ComplexFIRFilter2 mIQFilter;
-    private FMDemodulator mDemodulator = new FMDemodulator();
+    private FMDemodulator mDemodulator = new FMDemodulator(1.0f, FMDemodulator.ArcTangent.POLYNOMIAL);
     private RealResampler mResampler;
     private SourceEventProcessor mSourceEventProcessor = new SourceEventProcessor();
     private Listener<ReusableFloatBuffer> mResampledReusableBufferListener;
@@ -47,9 +47,9 @@ public class DecodeEventLogger extends EventLogger implements IDecodeEventListen
     private AliasList mAliasList;
     private AliasModel mAliasModel;
 
-    public DecodeEventLogger(AliasModel aliasModel, Path logDirectory, String fileNameSuffix, long frequency)
+    public DecodeEventLogger(EventLogWriter eventLogWriter, AliasModel aliasModel, Path logDirectory, String fileNameSuffix, long frequency)
     {
-        super(logDirectory, fileNameSuffix, frequency);
+        super(eventLogWriter, logDirectory, fileNameSuffix, frequency);
         mAliasModel = aliasModel;
     }
 
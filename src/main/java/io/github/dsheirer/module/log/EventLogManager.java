@@ -39,6 +39,7 @@ public class EventLogManager
 
     private UserPreferences mUserPreferences;
     private AliasModel mAliasModel;
+    private EventLogWriter mEventLogWriter = new EventLogWriter();
 
     public EventLogManager(AliasModel aliasModel, UserPreferences userPreferences)
     {
@@ -46,6 +47,22 @@ public class EventLogManager
         mUserPreferences = userPreferences;
     }
 
+    /**
+     * Shared writer for all event logs created by this manager
+     */
+    public EventLogWriter getEventLogWriter()
+    {
+        return mEventLogWriter;
+    }
+
+    /**
+     * Writes all queued event log entries and closes the event log files.  Invoke after all channels have stopped.
+     */
+    public void shutdown()
+    {
+        mEventLogWriter.shutdown(5000);
+    }
+
     public List<Module> getLoggers(Channel channel)
     {
         EventLogConfiguration config = channel.getEventLogConfiguration();
@@ -96,13 +113,17 @@ public class EventLogManager
         switch(eventLogType)
         {
             case CALL_EVENT:
-                return new DecodeEventLogger(mAliasModel, eventLogDirectory, sb.toString(), frequency);
+                return new DecodeEventLogger(mEventLogWriter, mAliasModel, eventLogDirectory, sb.toString(),
+                    frequency);
             case DECODED_MESSAGE:
-                return new MessageEventLogger(eventLogDirectory, sb.toString(), MessageEventLogger.Type.DECODED, frequency);
+                return new MessageEventLogger(mEventLogWriter, eventLogDirectory, sb.toString(),
+                    MessageEventLogger.Type.DECODED, frequency);
             case TRAFFIC_CALL_EVENT:
-                return new DecodeEventLogger(mAliasModel, eventLogDirectory, sb.toString(), frequency);
+                return new DecodeEventLogger(mEventLogWriter, mAliasModel, eventLogDirectory, sb.toString(),
+                    frequency);
             case TRAFFIC_DECODED_MESSAGE:
-                return new MessageEventLogger(eventLogDirectory, sb.toString(), MessageEventLogger.Type.DECODED, frequency);
+                return new MessageEventLogger(mEventLogWriter, eventLogDirectory, sb.toString(),
+                    MessageEventLogger.Type.DECODED, frequency);
             default:
                 return null;
         }
@@ -0,0 +1,497 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.module.log;
+
+import io.github.dsheirer.controller.NamingThreadFactory;
+import io.github.dsheirer.util.TimeStamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shared event log writing service.  Event loggers submit log entries to a lock-free queue and a dedicated I/O
+ * thread writes the entries to buffered log files.  Each batch of queued entries is group-committed by flushing every
+ * log file that was written during the batch.  Log files are rotated to a new file when they exceed the maximum file
+ * size or maximum file age.
+ *
+ * When the queue reaches the maximum queue size, new entries are dropped and counted so that decoder threads are
+ * never blocked by log file I/O.
+ *
+ * Invoke shutdown() at application shutdown to write all queued entries and close the log files.
+ */
+public class EventLogWriter
+{
+    private final static Logger mLog = LoggerFactory.getLogger(EventLogWriter.class);
+    public static final int DEFAULT_MAXIMUM_QUEUE_SIZE = 100000;
+    public static final long DEFAULT_MAXIMUM_FILE_SIZE = 100L * 1024 * 1024;
+    public static final long DEFAULT_MAXIMUM_FILE_AGE = TimeUnit.HOURS.toMillis(24);
+
+    private Queue<Entry> mQueue = new ConcurrentLinkedQueue<>();
+    private AtomicInteger mQueueDepth = new AtomicInteger();
+    private AtomicLong mWrittenEntryCount = new AtomicLong();
+    private AtomicLong mDroppedEntryCount = new AtomicLong();
+    private AtomicLong mRotationCount = new AtomicLong();
+    private int mMaximumQueueSize = DEFAULT_MAXIMUM_QUEUE_SIZE;
+    private long mMaximumFileSize = DEFAULT_MAXIMUM_FILE_SIZE;
+    private long mMaximumFileAge = DEFAULT_MAXIMUM_FILE_AGE;
+    private volatile Thread mWriterThread;
+    private volatile boolean mShutdown = false;
+
+    /**
+     * Constructs an instance.  The I/O thread is started when the first log file is opened.
+     */
+    public EventLogWriter()
+    {
+    }
+
+    /**
+     * Sets the maximum number of queued entries before new entries are dropped.
+     */
+    public void setMaximumQueueSize(int maximumQueueSize)
+    {
+        mMaximumQueueSize = maximumQueueSize;
+    }
+
+    /**
+     * Sets the maximum log file size (approximate, in characters) before the log is rotated to a new file.
+     */
+    public void setMaximumFileSize(long maximumFileSize)
+    {
+        mMaximumFileSize = maximumFileSize;
+    }
+
+    /**
+     * Sets the maximum log file age in milliseconds before the log is rotated to a new file.
+     */
+    public void setMaximumFileAge(long maximumFileAge)
+    {
+        mMaximumFileAge = maximumFileAge;
+    }
+
+    /**
+     * Opens a new log.  The log file is created by the I/O thread in the directory and is named with a timestamp
+     * prefix followed by the file name.  The header is written at the start of the file and at the start of each
+     * rotated file.
+     *
+     * @param directory for the log file
+     * @param fileName to append to the timestamp prefix
+     * @param header to write at the start of each log file, or null
+     * @return log file handle for writing entries
+     */
+    public LogFile open(Path directory, String fileName, String header)
+    {
+        startWriterThread();
+        return new LogFile(directory, fileName, header);
+    }
+
+    /**
+     * Queues the entry for writing to the log file.
+     *
+     * @param logFile to write to
+     * @param text to write as a single line
+     */
+    public void write(LogFile logFile, String text)
+    {
+        if(!logFile.mClosed)
+        {
+            enqueue(new Entry(logFile, text != null ? text : ""));
+        }
+    }
+
+    /**
+     * Closes the log file once all previously queued entries for the log have been written.
+     */
+    public void close(LogFile logFile)
+    {
+        if(!logFile.mClosed)
+        {
+            logFile.mClosed = true;
+
+            //Close requests are never dropped, otherwise the file would remain open
+            mQueue.offer(new Entry(logFile, null));
+            signal(mQueueDepth.getAndIncrement());
+        }
+    }
+
+    /**
+     * Number of entries currently queued for writing
+     */
+    public int getQueueDepth()
+    {
+        return Math.max(0, mQueueDepth.get());
+    }
+
+    /**
+     * Number of entries written to log files
+     */
+    public long getWrittenEntryCount()
+    {
+        return mWrittenEntryCount.get();
+    }
+
+    /**
+     * Number of entries dropped because the queue was full
+     */
+    public long getDroppedEntryCount()
+    {
+        return mDroppedEntryCount.get();
+    }
+
+    /**
+     * Number of times that a log was rotated to a new file
+     */
+    public long getRotationCount()
+    {
+        return mRotationCount.get();
+    }
+
+    /**
+     * Summary of the queue depth, written, dropped and rotation counters
+     */
+    public String getMetrics()
+    {
+        return "Event Log Writer - queue depth:" + getQueueDepth() + " written:" + getWrittenEntryCount() +
+            " dropped:" + getDroppedEntryCount() + " rotations:" + getRotationCount();
+    }
+
+    /**
+     * Stops accepting new entries, writes all queued entries, and then flushes and closes each open log file.  Blocks
+     * until the I/O thread completes or the timeout expires.
+     *
+     * @param timeout in milliseconds to wait for the queued entries to be written
+     */
+    public void shutdown(long timeout)
+    {
+        Thread thread;
+
+        synchronized(this)
+        {
+            mShutdown = true;
+            thread = mWriterThread;
+        }
+
+        if(thread != null)
+        {
+            LockSupport.unpark(thread);
+
+            try
+            {
+                thread.join(timeout);
+            }
+            catch(InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+            }
+
+            if(thread.isAlive())
+            {
+                mLog.warn("Event log writer did not complete within " + timeout + " ms - queued entries: " +
+                    getQueueDepth());
+            }
+        }
+
+        mLog.info(getMetrics());
+    }
+
+    private void enqueue(Entry entry)
+    {
+        if(mShutdown)
+        {
+            mDroppedEntryCount.incrementAndGet();
+            return;
+        }
+
+        if(mQueueDepth.get() >= mMaximumQueueSize)
+        {
+            mDroppedEntryCount.incrementAndGet();
+            return;
+        }
+
+        mQueue.offer(entry);
+        signal(mQueueDepth.getAndIncrement());
+    }
+
+    /**
+     * Wakes the I/O thread when the queue transitions from empty to non-empty
+     */
+    private void signal(int previousDepth)
+    {
+        if(previousDepth <= 0)
+        {
+            Thread thread = mWriterThread;
+
+            if(thread != null)
+            {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private synchronized void startWriterThread()
+    {
+        if(mWriterThread == null && !mShutdown)
+        {
+            mWriterThread = new NamingThreadFactory("sdrtrunk event log writer").newThread(new WriterTask());
+            mWriterThread.setDaemon(true);
+            mWriterThread.start();
+        }
+    }
+
+    /**
+     * Handle for a log that is written by this writer.  The file, writer and byte count are only accessed by the
+     * I/O thread.
+     */
+    public class LogFile
+    {
+        private Path mDirectory;
+        private String mFileName;
+        private String mHeader;
+        private volatile boolean mClosed = false;
+        private volatile Path mPath;
+        private Writer mWriter;
+        private long mBytesWritten;
+        private long mOpenedTimestamp;
+        private boolean mDirty;
+
+        private LogFile(Path directory, String fileName, String header)
+        {
+            mDirectory = directory;
+            mFileName = fileName;
+            mHeader = header;
+        }
+
+        /**
+         * Path of the current log file, or null if the file has not yet been created
+         */
+        public Path getPath()
+        {
+            return mPath;
+        }
+
+        /**
+         * Creates a new log file and writes the header
+         */
+        private void openFile() throws IOException
+        {
+            String timestamp = TimeStamp.getLongTimeStamp("_");
+            mPath = mDirectory.resolve(timestamp + "_" + mFileName);
+
+            //Avoid overwriting a rotated file that was created within the same timestamp interval
+            int sequence = 1;
+            while(Files.exists(mPath))
+            {
+                mPath = mDirectory.resolve(timestamp + "_" + sequence++ + "_" + mFileName);
+            }
+
+            mLog.info("Creating log file:" + mPath);
+            mWriter = Files.newBufferedWriter(mPath, StandardCharsets.UTF_8);
+            mOpenedTimestamp = System.currentTimeMillis();
+            mBytesWritten = 0;
+
+            if(mHeader != null)
+            {
+                writeLine(mHeader);
+            }
+        }
+
+        private void writeLine(String text) throws IOException
+        {
+            mWriter.write(text);
+            mWriter.write('\n');
+            mBytesWritten += text.length() + 1;
+            mDirty = true;
+        }
+
+        /**
+         * Writes the line, creating or rotating the log file as needed
+         */
+        private void write(String text) throws IOException
+        {
+            if(mWriter == null)
+            {
+                openFile();
+            }
+            else if(mBytesWritten >= mMaximumFileSize ||
+                (System.currentTimeMillis() - mOpenedTimestamp) >= mMaximumFileAge)
+            {
+                closeFile();
+                mRotationCount.incrementAndGet();
+                openFile();
+            }
+
+            writeLine(text);
+        }
+
+        private void flush() throws IOException
+        {
+            if(mDirty && mWriter != null)
+            {
+                mWriter.flush();
+                mDirty = false;
+            }
+        }
+
+        private void closeFile() throws IOException
+        {
+            if(mWriter != null)
+            {
+                mWriter.flush();
+                mWriter.close();
+                mWriter = null;
+                mDirty = false;
+            }
+        }
+    }
+
+    /**
+     * Queued log entry.  A null text value is a request to close the log file.
+     */
+    private static class Entry
+    {
+        private LogFile mLogFile;
+        private String mText;
+
+        private Entry(LogFile logFile, String text)
+        {
+            mLogFile = logFile;
+            mText = text;
+        }
+    }
+
+    /**
+     * I/O thread that drains the queue, writes each entry and then group-commits the batch by flushing each log file
+     * that was written.  Parks while the queue is empty.
+     */
+    private class WriterTask implements Runnable
+    {
+        private List<LogFile> mDirtyFiles = new ArrayList<>();
+        private Set<LogFile> mOpenFiles = new HashSet<>();
+
+        @Override
+        public void run()
+        {
+            while(true)
+            {
+                Entry entry = mQueue.poll();
+
+                if(entry == null)
+                {
+                    commit();
+
+                    if(mShutdown)
+                    {
+                        closeOpenFiles();
+                        return;
+                    }
+
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                mQueueDepth.decrementAndGet();
+
+                LogFile logFile = entry.mLogFile;
+
+                try
+                {
+                    if(entry.mText == null)
+                    {
+                        logFile.closeFile();
+                        mDirtyFiles.remove(logFile);
+                        mOpenFiles.remove(logFile);
+                        mLog.debug(getMetrics());
+                    }
+                    else
+                    {
+                        if(!logFile.mDirty)
+                        {
+                            mDirtyFiles.add(logFile);
+                        }
+
+                        logFile.write(entry.mText);
+                        mOpenFiles.add(logFile);
+                        mWrittenEntryCount.incrementAndGet();
+                    }
+                }
+                catch(IOException ioe)
+                {
+                    mLog.error("Error writing entry to event log file [" + logFile.getPath() + "]", ioe);
+                }
+            }
+        }
+
+        /**
+         * Flushes each log file written since the last commit
+         */
+        private void commit()
+        {
+            for(LogFile logFile: mDirtyFiles)
+            {
+                try
+                {
+                    logFile.flush();
+                }
+                catch(IOException ioe)
+                {
+                    mLog.error("Error flushing event log file [" + logFile.getPath() + "]", ioe);
+                }
+            }
+
+            mDirtyFiles.clear();
+        }
+
+        /**
+         * Flushes and closes each log file that is still open at shutdown
+         */
+        private void closeOpenFiles()
+        {
+            for(LogFile logFile: mOpenFiles)
+            {
+                try
+                {
+                    logFile.closeFile();
+                }
+                catch(IOException ioe)
+                {
+                    mLog.error("Error closing event log file [" + logFile.getPath() + "]", ioe);
+                }
+            }
+
+            mOpenFiles.clear();
+        }
+    }
+}
@@ -19,29 +19,24 @@
 package io.github.dsheirer.module.log;
 
 import io.github.dsheirer.module.Module;
-import io.github.dsheirer.util.TimeStamp;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.file.Path;
 
+/**
+ * Base event logger.  Log entries are queued to the shared event log writer, which writes them to the log file on a
+ * dedicated I/O thread so that decoder threads are not blocked by disk writes.
+ */
 public abstract class EventLogger extends Module
 {
-    private final static Logger mLog = LoggerFactory.getLogger(EventLogger.class);
-
+    private EventLogWriter mEventLogWriter;
     private Path mLogDirectory;
     private String mFileNameSuffix;
-    private String mLogFileName;
     private long mFrequency;
-    protected Writer mLogFile;
+    private EventLogWriter.LogFile mLogFile;
 
-    public EventLogger(Path logDirectory, String fileNameSuffix, long frequency)
+    public EventLogger(EventLogWriter eventLogWriter, Path logDirectory, String fileNameSuffix, long frequency)
     {
+        mEventLogWriter = eventLogWriter;
         mLogDirectory = logDirectory;
         mFileNameSuffix = fileNameSuffix;
         mFrequency = frequency;
@@ -49,9 +44,11 @@ public abstract class EventLogger extends Module
 
     public String toString()
     {
-        if(mLogFileName != null)
+        EventLogWriter.LogFile logFile = mLogFile;
+
+        if(logFile != null && logFile.getPath() != null)
         {
-            return mLogFileName;
+            return logFile.getPath().toString();
         }
         else
         {
@@ -66,29 +63,7 @@ public abstract class EventLogger extends Module
     {
         if(mLogFile == null)
         {
-            try
-            {
-                StringBuilder sb = new StringBuilder();
-                sb.append(mLogDirectory);
-                sb.append(File.separator);
-                sb.append(TimeStamp.getLongTimeStamp("_"));
-                sb.append("_");
-                sb.append(mFrequency);
-                sb.append("_Hz_");
-                sb.append(mFileNameSuffix);
-
-                mLogFileName = sb.toString();
-
-                mLog.info("Creating log file:" + mLogFileName);
-
-                mLogFile = new OutputStreamWriter(new FileOutputStream(mLogFileName));
-
-                write(getHeader());
-            }
-            catch(FileNotFoundException e)
-            {
-                mLog.error("Couldn't create log file in directory:" + mLogDirectory);
-            }
+            mLogFile = mEventLogWriter.open(mLogDirectory, mFrequency + "_Hz_" + mFileNameSuffix, getHeader());
         }
     }
 
@@ -96,32 +71,18 @@ public abstract class EventLogger extends Module
     {
         if(mLogFile != null)
         {
-            try
-            {
-                mLogFile.flush();
-                mLogFile.close();
-                mLogFile = null;
-            }
-            catch(Exception e)
-            {
-                mLog.error("Couldn't close log file:" + mFileNameSuffix);
-            }
+            mEventLogWriter.close(mLogFile);
+            mLogFile = null;
         }
     }
 
     protected void write(String eventLogEntry)
     {
-        try
-        {
-            if(mLogFile != null)
-            {
-                mLogFile.write((eventLogEntry != null ? eventLogEntry : "") + "\n");
-                mLogFile.flush();
-            }
-        }
-        catch(Exception e)
+        EventLogWriter.LogFile logFile = mLogFile;
+
+        if(logFile != null)
         {
-            mLog.error("Error writing entry to event log file", e);
+            mEventLogWriter.write(logFile, eventLogEntry);
         }
     }
 }
@@ -0,0 +1,399 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.playlist;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of alias changes that have been saved since the playlist file (the snapshot) was last written.
+ *
+ * Aliases have no persistent identifier, so each entry identifies the alias by its index in the playlist alias list
+ * at the time of the change.  Entries are replayed in order against the alias list loaded from the snapshot.  The
+ * journal header records the length and checksum of the snapshot that the journal applies to, so a journal is never
+ * replayed against a snapshot that has since been rewritten or edited outside of the application.  Each entry carries
+ * a checksum so that an entry torn by a crash during an append is detected and the journal is replayed up to that
+ * entry.
+ */
+public class PlaylistJournal
+{
+    private final static Logger mLog = LoggerFactory.getLogger(PlaylistJournal.class);
+
+    private static final int FILE_MAGIC = 0x504A4E31; //PJN1
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * Journaled alias list operations
+     */
+    public enum Operation
+    {
+        ADD,
+        SET,
+        REMOVE
+    }
+
+    private Path mPath;
+    private boolean mTruncated;
+
+    /**
+     * Constructs an instance
+     * @param path to the journal file
+     */
+    public PlaylistJournal(Path path)
+    {
+        mPath = path;
+    }
+
+    /**
+     * Path to the journal file
+     */
+    public Path getPath()
+    {
+        return mPath;
+    }
+
+    /**
+     * Size of the journal file in bytes, or 0 if the file doesn't exist
+     */
+    public long size()
+    {
+        try
+        {
+            return Files.exists(mPath) ? Files.size(mPath) : 0;
+        }
+        catch(IOException ioe)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Indicates if the most recent read() stopped at an incomplete or corrupt entry.  A truncated journal can't be
+     * appended to, so the snapshot should be rewritten and a new journal created.
+     */
+    public boolean isTruncated()
+    {
+        return mTruncated;
+    }
+
+    /**
+     * Creates a new, empty journal for the snapshot, replacing any existing journal.
+     *
+     * @param snapshotLength of the playlist file in bytes
+     * @param snapshotChecksum of the playlist file
+     * @throws IOException if the journal can't be written
+     */
+    public void create(long snapshotLength, long snapshotChecksum) throws IOException
+    {
+        Path temporary = mPath.resolveSibling(mPath.getFileName() + ".tmp");
+
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary)))
+        {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(snapshotLength);
+            out.writeLong(snapshotChecksum);
+        }
+
+        try
+        {
+            Files.move(temporary, mPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException amnse)
+        {
+            Files.move(temporary, mPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Appends the entries to the journal in a single write and forces them to the storage device.
+     *
+     * @param entries to append
+     * @throws IOException if the journal doesn't exist or can't be written
+     */
+    public void append(List<Entry> entries) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        for(Entry entry : entries)
+        {
+            byte[] payload = entry.getPayload() != null ? entry.getPayload() : new byte[0];
+            out.writeByte(entry.getOperation().ordinal());
+            out.writeInt(entry.getIndex());
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeLong(getChecksum(entry.getOperation(), entry.getIndex(), payload));
+        }
+
+        try(FileChannel channel = FileChannel.open(mPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+        {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+
+            while(bytes.hasRemaining())
+            {
+                channel.write(bytes);
+            }
+
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Reads the journal entries that apply to the snapshot.  Entries are read up to the first incomplete or corrupt
+     * entry, which sets the truncated flag.
+     *
+     * @param snapshotLength of the playlist file in bytes
+     * @param snapshotChecksum of the playlist file
+     * @return entries, or null if there is no journal or the journal applies to a different snapshot
+     */
+    public List<Entry> read(long snapshotLength, long snapshotChecksum)
+    {
+        mTruncated = false;
+
+        if(!Files.exists(mPath))
+        {
+            return null;
+        }
+
+        byte[] bytes;
+
+        try
+        {
+            bytes = Files.readAllBytes(mPath);
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error reading playlist journal [" + mPath + "]", ioe);
+            return null;
+        }
+
+        List<Entry> entries = new ArrayList<>();
+
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)))
+        {
+            if(in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION ||
+                in.readLong() != snapshotLength || in.readLong() != snapshotChecksum)
+            {
+                mLog.info("Ignoring playlist journal that doesn't match the playlist file [" + mPath + "]");
+                return null;
+            }
+
+            while(in.available() > 0)
+            {
+                int operation = in.readUnsignedByte();
+                int index = in.readInt();
+                int length = in.readInt();
+
+                if(operation >= Operation.values().length || length < 0 || length > in.available())
+                {
+                    throw new IOException("Invalid playlist journal entry");
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                if(in.readLong() != getChecksum(Operation.values()[operation], index, payload))
+                {
+                    throw new IOException("Playlist journal entry checksum mismatch");
+                }
+
+                entries.add(new Entry(Operation.values()[operation], index, payload));
+            }
+        }
+        catch(EOFException eofe)
+        {
+            if(entries.isEmpty() && bytes.length < 24)
+            {
+                mLog.info("Ignoring incomplete playlist journal [" + mPath + "]");
+                return null;
+            }
+
+            mTruncated = true;
+            mLog.warn("Playlist journal ends with an incomplete entry - replaying [" + entries.size() + "] entries");
+        }
+        catch(IOException ioe)
+        {
+            mTruncated = true;
+            mLog.warn("Playlist journal is corrupt - replaying [" + entries.size() + "] entries - " +
+                ioe.getMessage());
+        }
+
+        return entries;
+    }
+
+    /**
+     * Deletes the journal file
+     */
+    public void delete()
+    {
+        try
+        {
+            Files.deleteIfExists(mPath);
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error deleting playlist journal [" + mPath + "]", ioe);
+        }
+    }
+
+    /**
+     * Checksum of the bytes, used to identify a snapshot
+     */
+    public static long getChecksum(byte[] bytes)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Checksum of a journal entry
+     */
+    private static long getChecksum(Operation operation, int index, byte[] payload)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(operation.ordinal());
+        crc.update(ByteBuffer.allocate(4).putInt(0, index));
+        crc.update(payload, 0, payload.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Journal entry
+     */
+    public static class Entry
+    {
+        private Operation mOperation;
+        private int mIndex;
+        private byte[] mPayload;
+
+        /**
+         * Constructs an instance
+         * @param operation on the alias list
+         * @param index of the alias in the alias list when the operation is applied
+         * @param payload serialized alias for ADD and SET operations, or null for REMOVE
+         */
+        public Entry(Operation operation, int index, byte[] payload)
+        {
+            mOperation = operation;
+            mIndex = index;
+            mPayload = payload;
+        }
+
+        public Operation getOperation()
+        {
+            return mOperation;
+        }
+
+        public int getIndex()
+        {
+            return mIndex;
+        }
+
+        public byte[] getPayload()
+        {
+            return mPayload;
+        }
+    }
+
+    /**
+     * Compares the cost of appending a single alias change to the journal against rewriting a snapshot of the same
+     * size as a 50,000 alias playlist.  Synthetic payloads are sized like a serialized alias, so serialization cost
+     * is not included.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int aliasCount = 50000;
+        byte[] alias = new byte[320];
+        java.util.Arrays.fill(alias, (byte)'a');
+
+        Path directory = Files.createTempDirectory("playlist-journal");
+        Path snapshot = directory.resolve("playlist.xml");
+        PlaylistJournal journal = new PlaylistJournal(directory.resolve("playlist.xml.journal"));
+
+        byte[] snapshotBytes = new byte[aliasCount * alias.length];
+        long checksum = getChecksum(snapshotBytes);
+
+        for(int warmup = 0; warmup < 3; warmup++)
+        {
+            Files.write(snapshot, snapshotBytes);
+            journal.create(snapshotBytes.length, checksum);
+        }
+
+        int iterations = 20;
+        long start = System.nanoTime();
+
+        for(int x = 0; x < iterations; x++)
+        {
+            try(FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                channel.write(ByteBuffer.wrap(snapshotBytes));
+                channel.force(false);
+            }
+        }
+
+        long snapshotNanos = (System.nanoTime() - start) / iterations;
+
+        List<Entry> entries = new ArrayList<>();
+        entries.add(new Entry(Operation.SET, 12345, alias));
+
+        start = System.nanoTime();
+
+        for(int x = 0; x < iterations; x++)
+        {
+            journal.append(entries);
+        }
+
+        long appendNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        List<Entry> replayed = journal.read(snapshotBytes.length, checksum);
+        long readNanos = System.nanoTime() - start;
+
+        mLog.info("Snapshot write [" + snapshotBytes.length + " bytes]: " + (snapshotNanos / 1000) + " us");
+        mLog.info("Journal append [1 alias]: " + (appendNanos / 1000) + " us");
+        mLog.info("Journal read [" + replayed.size() + " entries]: " + (readNanos / 1000) + " us");
+
+        journal.delete();
+        Files.delete(snapshot);
+        Files.delete(directory);
+    }
+}
@@ -22,6 +22,8 @@
 package io.github.dsheirer.playlist;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.xml.JacksonXmlModule;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
@@ -38,6 +40,7 @@ import io.github.dsheirer.icon.IconModel;
 import io.github.dsheirer.module.log.EventLogManager;
 import io.github.dsheirer.preference.UserPreferences;
 import io.github.dsheirer.preference.playlist.PlaylistPreference;
+import io.github.dsheirer.properties.SystemProperties;
 import io.github.dsheirer.sample.Listener;
 import io.github.dsheirer.service.radioreference.RadioReference;
 import io.github.dsheirer.source.SourceManager;
@@ -47,13 +50,20 @@ import javafx.collections.ListChangeListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -67,6 +77,37 @@ public class PlaylistManager implements Listener<ChannelEvent>
 
     public static final int PLAYLIST_CURRENT_VERSION = 4;
 
+    /**
+     * System property to enable (default) or disable journaling alias changes instead of rewriting the playlist file
+     */
+    public static final String PROPERTY_PLAYLIST_JOURNAL_ENABLED = "playlist.journal.enabled";
+
+    /**
+     * The playlist file is rewritten and the journal restarted once the journal exceeds this size, or a quarter of the
+     * playlist file size, whichever is larger.
+     */
+    private static final long MINIMUM_JOURNAL_COMPACTION_SIZE = 1024 * 1024;
+
+    /**
+     * Playlist reader and writer are immutable and thread safe, so they're created once and shared, avoiding the cost
+     * of building a new XML mapper and introspecting the playlist classes for each load or save.
+     */
+    private static final ObjectReader PLAYLIST_READER;
+    private static final ObjectWriter PLAYLIST_WRITER;
+    private static final ObjectReader ALIAS_READER;
+    private static final ObjectWriter ALIAS_WRITER;
+
+    static
+    {
+        JacksonXmlModule xmlModule = new JacksonXmlModule();
+        xmlModule.setDefaultUseWrapper(false);
+        ObjectMapper objectMapper = new XmlMapper(xmlModule);
+        PLAYLIST_READER = objectMapper.readerFor(PlaylistV2.class);
+        PLAYLIST_WRITER = objectMapper.writerFor(PlaylistV2.class).with(SerializationFeature.INDENT_OUTPUT);
+        ALIAS_READER = objectMapper.readerFor(Alias.class);
+        ALIAS_WRITER = objectMapper.writerFor(Alias.class);
+    }
+
     private AliasModel mAliasModel;
     private ChannelMapModel mChannelMapModel = new ChannelMapModel();
     private IconModel mIconModel;
@@ -80,6 +121,13 @@ public class PlaylistManager implements Listener<ChannelEvent>
     private AtomicBoolean mPlaylistSavePending = new AtomicBoolean();
     private ScheduledFuture<?> mPlaylistSaveFuture;
     private boolean mPlaylistLoading = false;
+    private volatile boolean mPlaylistBackupCreated = false;
+    private PlaylistJournal mJournal;
+    private List<Alias> mJournaledAliases;
+    private Set<Alias> mUpdatedAliases =
+        Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    private AtomicBoolean mSnapshotRequired = new AtomicBoolean(true);
+    private volatile boolean mJournalHasEntries = false;
 
     /**
      * Playlist manager - manages all channel configurations, channel maps, and alias lists and handles loading or
@@ -112,9 +160,9 @@ public class PlaylistManager implements Listener<ChannelEvent>
         //save the playlist when there are any changes
         mChannelModel.addListener(this);
 
-        mAliasModel.aliasList().addListener((ListChangeListener<Alias>)c -> schedulePlaylistSave());
+        mAliasModel.aliasList().addListener((ListChangeListener<Alias>)this::aliasesChanged);
 
-        mChannelMapModel.getChannelMaps().addListener((ListChangeListener<ChannelMap>)c -> schedulePlaylistSave());
+        mChannelMapModel.getChannelMaps().addListener((ListChangeListener<ChannelMap>)c -> scheduleSnapshotSave());
 
         mBroadcastModel.addListener(broadcastEvent -> {
             switch(broadcastEvent.getEvent())
@@ -122,7 +170,7 @@ public class PlaylistManager implements Listener<ChannelEvent>
                 case CONFIGURATION_ADD:
                 case CONFIGURATION_CHANGE:
                 case CONFIGURATION_DELETE:
-                    schedulePlaylistSave();
+                    scheduleSnapshotSave();
                     break;
                 default:
                     //Do nothing
@@ -203,6 +251,9 @@ public class PlaylistManager implements Listener<ChannelEvent>
     {
         PlaylistV2 playlist = load();
         transferPlaylistToModels(playlist);
+
+        //The journal describes the alias list exactly as it was loaded
+        mJournaledAliases = mSnapshotRequired.get() ? null : new ArrayList<>(mAliasModel.getAliases());
     }
 
     /**
@@ -217,8 +268,8 @@ public class PlaylistManager implements Listener<ChannelEvent>
             throw new IllegalArgumentException("Specified playlist path does not exist");
         }
 
-        //Complete any pending playlist save
-        saveNow();
+        //Complete any pending playlist save and fold journaled changes into the playlist file that we're leaving
+        compactPlaylist();
 
         mUserPreferences.getPlaylistPreference().setPlaylist(path);
 
@@ -242,13 +293,9 @@ public class PlaylistManager implements Listener<ChannelEvent>
             return false;
         }
 
-        JacksonXmlModule xmlModule = new JacksonXmlModule();
-        xmlModule.setDefaultUseWrapper(false);
-        ObjectMapper objectMapper = new XmlMapper(xmlModule);
-
-        try(InputStream in = Files.newInputStream(path))
+        try
         {
-            PlaylistV2 playlist = objectMapper.readValue(in, PlaylistV2.class);
+            PlaylistV2 playlist = read(path);
 
             //If jackson can successfully deserialize the file, then it's a good V2 playlist
             return true;
@@ -270,14 +317,9 @@ public class PlaylistManager implements Listener<ChannelEvent>
     {
         PlaylistV2 playlist = new PlaylistV2();
 
-        try(OutputStream out = Files.newOutputStream(path))
+        try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(path)))
         {
-            JacksonXmlModule xmlModule = new JacksonXmlModule();
-            xmlModule.setDefaultUseWrapper(false);
-            ObjectMapper objectMapper = new XmlMapper(xmlModule);
-            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-            objectMapper.writeValue(out, playlist);
-            out.flush();
+            PLAYLIST_WRITER.writeValue(out, playlist);
         }
         catch(IOException ioe)
         {
@@ -327,6 +369,21 @@ public class PlaylistManager implements Listener<ChannelEvent>
         }
     }
 
+    /**
+     * Completes any pending playlist save and rewrites the playlist file when there are journaled alias changes, so
+     * that the playlist file is complete without the journal (e.g. before the playlist file is copied).
+     */
+    public void compactPlaylist()
+    {
+        if(mJournalHasEntries)
+        {
+            mSnapshotRequired.set(true);
+            mPlaylistSavePending.set(true);
+        }
+
+        saveNow();
+    }
+
     /**
      * Transfers data from persisted playlist into system models
      */
@@ -367,34 +424,241 @@ public class PlaylistManager implements Listener<ChannelEvent>
                 case NOTIFICATION_ADD:
                 case NOTIFICATION_CONFIGURATION_CHANGE:
                 case NOTIFICATION_DELETE:
-                    schedulePlaylistSave();
+                    scheduleSnapshotSave();
                     break;
             }
         }
     }
 
     /**
-     * Saves the current playlist
+     * Alias list listener.  Records aliases that were updated so that only those aliases are journaled.  Added,
+     * removed and moved aliases are detected when the playlist is saved.
+     */
+    private void aliasesChanged(ListChangeListener.Change<? extends Alias> change)
+    {
+        if(!mPlaylistLoading)
+        {
+            while(change.next())
+            {
+                if(change.wasUpdated())
+                {
+                    for(int x = change.getFrom(); x < change.getTo(); x++)
+                    {
+                        mUpdatedAliases.add(change.getList().get(x));
+                    }
+                }
+            }
+
+            schedulePlaylistSave();
+        }
+    }
+
+    /**
+     * Saves the current playlist.  Alias changes are appended to the playlist journal when journaling is enabled and
+     * only aliases changed since the last save.  Otherwise, the complete playlist file is rewritten and a new journal
+     * is started.
+     */
+    private synchronized void save()
+    {
+        boolean journalEnabled = SystemProperties.getInstance().get(PROPERTY_PLAYLIST_JOURNAL_ENABLED, true);
+
+        if(journalEnabled && !mSnapshotRequired.get() && mJournal != null && mJournaledAliases != null &&
+            saveJournal())
+        {
+            return;
+        }
+
+        saveSnapshot(journalEnabled);
+    }
+
+    /**
+     * Appends the alias changes since the last save to the journal.
+     * @return true if the changes were journaled, or false if the playlist file must be rewritten instead
+     */
+    private boolean saveJournal()
+    {
+        long start = System.currentTimeMillis();
+        Set<Alias> updated;
+
+        synchronized(mUpdatedAliases)
+        {
+            updated = Collections.newSetFromMap(new IdentityHashMap<>());
+            updated.addAll(mUpdatedAliases);
+            mUpdatedAliases.clear();
+        }
+
+        List<Alias> aliases = new ArrayList<>(mAliasModel.getAliases());
+        List<PlaylistJournal.Entry> entries;
+
+        try
+        {
+            entries = getJournalEntries(mJournaledAliases, aliases, updated);
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error serializing aliases for the playlist journal", ioe);
+            return false;
+        }
+
+        if(entries == null)
+        {
+            return false;
+        }
+
+        if(entries.isEmpty())
+        {
+            return true;
+        }
+
+        long payloadSize = 0;
+
+        for(PlaylistJournal.Entry entry : entries)
+        {
+            payloadSize += entry.getPayload() != null ? entry.getPayload().length : 0;
+        }
+
+        long compactionSize = Math.max(MINIMUM_JOURNAL_COMPACTION_SIZE, getSnapshotSize() / 4);
+
+        if(mJournal.size() + payloadSize > compactionSize)
+        {
+            return false;
+        }
+
+        try
+        {
+            mJournal.append(entries);
+            mJournaledAliases = aliases;
+            mJournalHasEntries = true;
+            mLog.debug("Playlist journal saved in [" + (System.currentTimeMillis() - start) + " ms] - entries [" +
+                entries.size() + "] journal size [" + mJournal.size() + "]");
+            return true;
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error appending to playlist journal [" + mJournal.getPath() + "]", ioe);
+        }
+
+        return false;
+    }
+
+    /**
+     * Size of the current playlist file, or 0 if it doesn't exist
+     */
+    private long getSnapshotSize()
+    {
+        try
+        {
+            return Files.size(mUserPreferences.getPlaylistPreference().getPlaylist());
+        }
+        catch(IOException ioe)
+        {
+            return 0;
+        }
+    }
+
+    /**
+     * Creates the journal entries that transform the journaled alias list into the current alias list.  Aliases have
+     * no persistent identifier, so aliases are matched by object identity within this session and journal entries
+     * identify each alias by its list index.  Removals are journaled from the highest index down, then additions and
+     * updated aliases from the lowest index up, so that each index is valid when the entries are replayed in order.
+     *
+     * @param journaled aliases as currently described by the playlist file and journal
+     * @param current aliases
+     * @param updated aliases whose content has changed
+     * @return entries, or null if the aliases were reordered or the list contains duplicates, which require the
+     * playlist file to be rewritten
+     * @throws IOException if an alias can't be serialized
+     */
+    private static List<PlaylistJournal.Entry> getJournalEntries(List<Alias> journaled, List<Alias> current,
+                                                                 Set<Alias> updated) throws IOException
+    {
+        Set<Alias> journaledSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        journaledSet.addAll(journaled);
+        Set<Alias> currentSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        currentSet.addAll(current);
+
+        if(journaledSet.size() != journaled.size() || currentSet.size() != current.size())
+        {
+            return null;
+        }
+
+        List<PlaylistJournal.Entry> entries = new ArrayList<>();
+        List<Alias> retained = new ArrayList<>();
+
+        for(int x = journaled.size() - 1; x >= 0; x--)
+        {
+            if(!currentSet.contains(journaled.get(x)))
+            {
+                entries.add(new PlaylistJournal.Entry(PlaylistJournal.Operation.REMOVE, x, null));
+            }
+        }
+
+        for(Alias alias : journaled)
+        {
+            if(currentSet.contains(alias))
+            {
+                retained.add(alias);
+            }
+        }
+
+        //Retained aliases must be in the same order, since moves are not journaled
+        int retainedIndex = 0;
+
+        for(Alias alias : current)
+        {
+            if(journaledSet.contains(alias) && retained.get(retainedIndex++) != alias)
+            {
+                return null;
+            }
+        }
+
+        for(int x = 0; x < current.size(); x++)
+        {
+            Alias alias = current.get(x);
+
+            if(!journaledSet.contains(alias))
+            {
+                entries.add(new PlaylistJournal.Entry(PlaylistJournal.Operation.ADD, x,
+                    ALIAS_WRITER.writeValueAsBytes(alias)));
+            }
+            else if(updated.contains(alias))
+            {
+                entries.add(new PlaylistJournal.Entry(PlaylistJournal.Operation.SET, x,
+                    ALIAS_WRITER.writeValueAsBytes(alias)));
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Rewrites the complete playlist file and, when journaling is enabled, starts a new journal for the file.
      */
-    private void save()
+    private void saveSnapshot(boolean journalEnabled)
     {
         PlaylistPreference playlistPreference = mUserPreferences.getPlaylistPreference();
 
+        //Changes made after this point are captured by the next save
+        mSnapshotRequired.set(false);
+        mUpdatedAliases.clear();
+
+        List<Alias> aliases = new ArrayList<>(mAliasModel.getAliases());
         PlaylistV2 playlist = new PlaylistV2();
 
-        playlist.setAliases(new ArrayList(mAliasModel.getAliases()));
+        playlist.setAliases(aliases);
         playlist.setBroadcastConfigurations(new ArrayList(mBroadcastModel.getBroadcastConfigurations()));
         playlist.setChannels(new ArrayList(mChannelModel.getChannels()));
         playlist.setChannelMaps(new ArrayList(mChannelMapModel.getChannelMaps()));
         playlist.setVersion(PLAYLIST_CURRENT_VERSION);
 
-        //Create a backup copy of the current playlist
-        if(Files.exists(playlistPreference.getPlaylist()))
+        //Create a backup copy of the playlist as it was before the first save of this session
+        if(!mPlaylistBackupCreated && Files.exists(playlistPreference.getPlaylist()))
         {
             try
             {
                 Files.copy(playlistPreference.getPlaylist(), playlistPreference.getPlaylistBackup(),
                     StandardCopyOption.REPLACE_EXISTING);
+                mPlaylistBackupCreated = true;
             }
             catch(Exception e)
             {
@@ -403,42 +667,89 @@ public class PlaylistManager implements Listener<ChannelEvent>
             }
         }
 
-        //Create a temporary lock file to signify that we're in the process of updating the playlist
-        if(!Files.exists(playlistPreference.getPlaylistLock()))
+        //Write the playlist to a temporary file and then replace the playlist, so that an incomplete save never
+        //overwrites the current playlist
+        long start = System.currentTimeMillis();
+        Path temporary = playlistPreference.getPlaylistTemporary();
+        byte[] bytes;
+
+        try
+        {
+            bytes = PLAYLIST_WRITER.writeValueAsBytes(playlist);
+            Files.write(temporary, bytes);
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("IO error while writing the playlist to a file [" + temporary.toString() + "]", ioe);
+            mSnapshotRequired.set(true);
+            return;
+        }
+        catch(Exception e)
+        {
+            mLog.error("Error while saving playlist [" + temporary.toString() + "]", e);
+            mSnapshotRequired.set(true);
+            return;
+        }
+
+        try
         {
             try
             {
-                Files.createFile(playlistPreference.getPlaylistLock());
+                Files.move(temporary, playlistPreference.getPlaylist(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
             }
-            catch(IOException e)
+            catch(AtomicMoveNotSupportedException amnse)
             {
-                mLog.error("Error creating temporary lock file prior to saving playlist [" +
-                    playlistPreference.getPlaylistLock().toString() + "]", e);
+                Files.move(temporary, playlistPreference.getPlaylist(), StandardCopyOption.REPLACE_EXISTING);
             }
-        }
 
-        try(OutputStream out = Files.newOutputStream(playlistPreference.getPlaylist()))
+            mLog.debug("Playlist saved in [" + (System.currentTimeMillis() - start) + " ms] - aliases [" +
+                playlist.getAliases().size() + "] channels [" + playlist.getChannels().size() + "]");
+        }
+        catch(IOException ioe)
         {
-            JacksonXmlModule xmlModule = new JacksonXmlModule();
-            xmlModule.setDefaultUseWrapper(false);
-            ObjectMapper objectMapper = new XmlMapper(xmlModule);
-            objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-            objectMapper.writeValue(out, playlist);
-            out.flush();
+            mLog.error("IO error while replacing the playlist file [" + playlistPreference.getPlaylist().toString() +
+                "]", ioe);
+            mSnapshotRequired.set(true);
+            return;
+        }
+
+        //A journal from the previous playlist file no longer matches the file and is replaced (or ignored on load,
+        //if we don't get this far)
+        mJournalHasEntries = false;
+        mJournaledAliases = null;
+        mJournal = new PlaylistJournal(playlistPreference.getPlaylistJournal());
 
-            //Remove the playlist lock file to indicate that we successfully saved the file
-            if(Files.exists(playlistPreference.getPlaylistLock()))
+        if(journalEnabled)
+        {
+            try
+            {
+                mJournal.create(bytes.length, PlaylistJournal.getChecksum(bytes));
+                mJournaledAliases = aliases;
+            }
+            catch(IOException ioe)
             {
-                Files.delete(playlistPreference.getPlaylistLock());
+                mLog.error("Error creating playlist journal [" + mJournal.getPath() + "]", ioe);
+                mJournal.delete();
             }
         }
-        catch(IOException ioe)
+        else
         {
-            mLog.error("IO error while writing the playlist to a file [" + playlistPreference.getPlaylist().toString() + "]", ioe);
+            mJournal.delete();
         }
-        catch(Exception e)
+    }
+
+    /**
+     * Reads a playlist from the file
+     * @param path to the playlist file
+     * @return playlist
+     * @throws IOException if there is an error reading or parsing the file
+     */
+    private static PlaylistV2 read(Path path) throws IOException
+    {
+        try(InputStream in = new BufferedInputStream(Files.newInputStream(path)))
         {
-            mLog.error("Error while saving playlist [" + playlistPreference.getPlaylist().toString() + "]", e);
+            return PLAYLIST_READER.readValue(in);
         }
     }
 
@@ -450,6 +761,22 @@ public class PlaylistManager implements Listener<ChannelEvent>
         PlaylistPreference files = mUserPreferences.getPlaylistPreference();
 
         PlaylistV2 playlist = null;
+        mPlaylistBackupCreated = false;
+        mJournal = new PlaylistJournal(files.getPlaylistJournal());
+        mJournaledAliases = null;
+        mJournalHasEntries = false;
+        mSnapshotRequired.set(true);
+        mUpdatedAliases.clear();
+
+        //Remove any temporary file left over from an incomplete save.  The playlist file is still intact.
+        try
+        {
+            Files.deleteIfExists(files.getPlaylistTemporary());
+        }
+        catch(IOException ioe)
+        {
+            mLog.error("Error removing temporary playlist file [" + files.getPlaylistTemporary().toString() + "]", ioe);
+        }
 
         //Check for a lock file that indicates the previous save attempt was incomplete or had an error
         if(Files.exists(files.getPlaylistLock()))
@@ -481,16 +808,19 @@ public class PlaylistManager implements Listener<ChannelEvent>
         {
             mLog.info("Loading playlist [" + files.getPlaylist().toString() + "]");
 
-            JacksonXmlModule xmlModule = new JacksonXmlModule();
-            xmlModule.setDefaultUseWrapper(false);
-            ObjectMapper objectMapper = new XmlMapper(xmlModule);
-
-            try(InputStream in = Files.newInputStream(files.getPlaylist()))
+            try
             {
-                playlist = objectMapper.readValue(in, PlaylistV2.class);
+                long start = System.currentTimeMillis();
+                byte[] bytes = Files.readAllBytes(files.getPlaylist());
+                playlist = PLAYLIST_READER.readValue(bytes);
+                int replayed = replayJournal(playlist, bytes);
+                mLog.info("Playlist loaded in [" + (System.currentTimeMillis() - start) + " ms] - aliases [" +
+                    playlist.getAliases().size() + "] channels [" + playlist.getChannels().size() +
+                    "] journal entries [" + replayed + "]");
 
                 if(PlaylistUpdater.update(playlist))
                 {
+                    mSnapshotRequired.set(true);
                     schedulePlaylistSave();
                 }
             }
@@ -503,13 +833,9 @@ public class PlaylistManager implements Listener<ChannelEvent>
         {
             mLog.info("Loading legacy playlist [" + files.getLegacyPlaylist().toString() + "]");
 
-            JacksonXmlModule xmlModule = new JacksonXmlModule();
-            xmlModule.setDefaultUseWrapper(false);
-            ObjectMapper objectMapper = new XmlMapper(xmlModule);
-
-            try(InputStream in = Files.newInputStream(files.getLegacyPlaylist()))
+            try
             {
-                playlist = objectMapper.readValue(in, PlaylistV2.class);
+                playlist = read(files.getLegacyPlaylist());
 
                 //Perform any updates that may be needed for the playist.
                 if(PlaylistUpdater.update(playlist))
@@ -537,6 +863,105 @@ public class PlaylistManager implements Listener<ChannelEvent>
         return playlist;
     }
 
+    /**
+     * Replays the journaled alias changes against the aliases loaded from the playlist file.  When journaling is
+     * enabled and the journal can be appended to, later alias changes are journaled instead of rewriting the
+     * playlist file.
+     *
+     * @param playlist loaded from the playlist file
+     * @param bytes of the playlist file
+     * @return number of journal entries replayed
+     */
+    private int replayJournal(PlaylistV2 playlist, byte[] bytes)
+    {
+        long checksum = PlaylistJournal.getChecksum(bytes);
+        List<PlaylistJournal.Entry> entries = mJournal.read(bytes.length, checksum);
+        boolean journalEnabled = SystemProperties.getInstance().get(PROPERTY_PLAYLIST_JOURNAL_ENABLED, true);
+        int replayed = 0;
+
+        if(entries != null)
+        {
+            List<Alias> aliases = playlist.getAliases();
+
+            try
+            {
+                for(PlaylistJournal.Entry entry : entries)
+                {
+                    int index = entry.getIndex();
+
+                    switch(entry.getOperation())
+                    {
+                        case ADD:
+                            if(index < 0 || index > aliases.size())
+                            {
+                                throw new IOException("Invalid playlist journal alias index [" + index + "]");
+                            }
+                            aliases.add(index, ALIAS_READER.readValue(entry.getPayload()));
+                            break;
+                        case SET:
+                            if(index < 0 || index >= aliases.size())
+                            {
+                                throw new IOException("Invalid playlist journal alias index [" + index + "]");
+                            }
+                            aliases.set(index, ALIAS_READER.readValue(entry.getPayload()));
+                            break;
+                        case REMOVE:
+                            if(index < 0 || index >= aliases.size())
+                            {
+                                throw new IOException("Invalid playlist journal alias index [" + index + "]");
+                            }
+                            aliases.remove(index);
+                            break;
+                    }
+
+                    replayed++;
+                }
+
+                //Continue appending to a complete journal - otherwise, rewrite the playlist on the next save
+                mSnapshotRequired.set(!journalEnabled || mJournal.isTruncated());
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Error replaying playlist journal - replayed [" + replayed + "] of [" + entries.size() +
+                    "] entries", ioe);
+            }
+
+            mJournalHasEntries = replayed > 0;
+
+            //Fold the replayed changes into the playlist file when the journal can't be appended to
+            if(replayed > 0 && mSnapshotRequired.get())
+            {
+                schedulePlaylistSave();
+            }
+        }
+        else if(journalEnabled)
+        {
+            try
+            {
+                mJournal.create(bytes.length, checksum);
+                mSnapshotRequired.set(false);
+            }
+            catch(IOException ioe)
+            {
+                mLog.error("Error creating playlist journal [" + mJournal.getPath() + "]", ioe);
+            }
+        }
+
+        return replayed;
+    }
+
+    /**
+     * Schedules a save that rewrites the complete playlist file, for changes that are not journaled.
+     */
+    private void scheduleSnapshotSave()
+    {
+        if(!mPlaylistLoading)
+        {
+            mSnapshotRequired.set(true);
+            schedulePlaylistSave();
+        }
+    }
+
     /**
      * Schedules a playlist save task.  Subsequent calls to this method will be ignored until the save event occurs,
      * thus limiting repetitive playlist saving to a minimum.
@@ -100,6 +100,24 @@ public class PlaylistPreference extends Preference
         return Paths.get(playlist + ".lck");
     }
 
+    /**
+     * Temporary file for writing playlist updates before they replace the playlist file.
+     */
+    public Path getPlaylistTemporary()
+    {
+        String playlist = getPlaylist().toAbsolutePath().toString();
+        return Paths.get(playlist + ".tmp");
+    }
+
+    /**
+     * Journal of alias changes that have been saved since the playlist file was last written.
+     */
+    public Path getPlaylistJournal()
+    {
+        String playlist = getPlaylist().toAbsolutePath().toString();
+        return Paths.get(playlist + ".journal");
+    }
+
     /**
      * Lock file for the playlist when updating the file.
      */
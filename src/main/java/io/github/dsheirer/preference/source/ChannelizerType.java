@@ -26,6 +26,7 @@ package io.github.dsheirer.preference.source;
 public enum ChannelizerType
 {
     POLYPHASE("Polyphase"),
+    POLYPHASE_PARALLEL("Polyphase Multi-Threaded"),
     HETERODYNE(" Heterodyne");
 
     private String mLabel;
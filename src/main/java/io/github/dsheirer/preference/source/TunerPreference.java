@@ -71,6 +71,10 @@ public class TunerPreference extends Preference
                 {
                     mChannelizerType = ChannelizerType.POLYPHASE;
                 }
+                else if(type.equalsIgnoreCase(ChannelizerType.POLYPHASE_PARALLEL.name()))
+                {
+                    mChannelizerType = ChannelizerType.POLYPHASE_PARALLEL;
+                }
                 else if(type.equalsIgnoreCase(ChannelizerType.HETERODYNE.name()))
                 {
                     mChannelizerType = ChannelizerType.HETERODYNE;
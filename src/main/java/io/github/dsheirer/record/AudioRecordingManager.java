@@ -98,6 +98,19 @@ public class AudioRecordingManager implements Listener<AudioSegment>
     public void receive(AudioSegment audioSegment)
     {
         audioSegment.completeProperty().addListener(new AudioSegmentCompletionMonitor(audioSegment));
+
+        //Start incremental MP3 encoding once the segment is flagged for recording
+        if(mUserPreferences.getRecordPreference().getAudioRecordFormat() == RecordFormat.MP3)
+        {
+            if(audioSegment.recordAudioProperty().get())
+            {
+                audioSegment.getMP3EncoderSession();
+            }
+            else
+            {
+                audioSegment.recordAudioProperty().addListener(new AudioSegmentRecordMonitor(audioSegment));
+            }
+        }
     }
 
     /**
@@ -306,6 +319,34 @@ public class AudioRecordingManager implements Listener<AudioSegment>
         }
     }
 
+    /**
+     * Monitors the record audio property of an in-progress audio segment and starts incremental MP3 encoding when
+     * the segment is flagged for recording.
+     */
+    public class AudioSegmentRecordMonitor implements ChangeListener<Boolean>
+    {
+        private AudioSegment mAudioSegment;
+
+        public AudioSegmentRecordMonitor(AudioSegment audioSegment)
+        {
+            mAudioSegment = audioSegment;
+        }
+
+        @Override
+        public void changed(ObservableValue<? extends Boolean> observable, Boolean oldValue, Boolean newValue)
+        {
+            if(newValue)
+            {
+                mAudioSegment.recordAudioProperty().removeListener(this);
+
+                if(!mAudioSegment.completeProperty().get())
+                {
+                    mAudioSegment.getMP3EncoderSession();
+                }
+            }
+        }
+    }
+
     /**
      * Threaded queue processor to process/record each recordable audio segment
      */
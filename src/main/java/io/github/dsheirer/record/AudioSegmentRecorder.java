@@ -21,7 +21,6 @@ package io.github.dsheirer.record;
 
 import io.github.dsheirer.audio.AudioFormats;
 import io.github.dsheirer.audio.AudioSegment;
-import io.github.dsheirer.audio.convert.MP3AudioConverter;
 import io.github.dsheirer.record.wave.AudioMetadata;
 import io.github.dsheirer.record.wave.AudioMetadataUtils;
 import io.github.dsheirer.record.wave.WaveWriter;
@@ -43,9 +42,6 @@ public class AudioSegmentRecorder
 {
     private final static Logger mLog = LoggerFactory.getLogger(AudioSegmentRecorder.class);
 
-    public static final int MP3_BIT_RATE = 16;
-    public static final boolean CONSTANT_BIT_RATE = false;
-
     /**
      * Records the audio segment to the specified path using the specified recording format
      * @param audioSegment to record
@@ -69,7 +65,9 @@ public class AudioSegmentRecorder
     }
 
     /**
-     * Records the audio segment as an MP3 file to the specified path.
+     * Records the audio segment as an MP3 file to the specified path.  The MP3 audio is obtained from the segment's
+     * shared MP3 encoder session, which is started here if no consumer started it earlier.
+     *
      * @param audioSegment to record
      * @param path for the recording
      * @throws IOException on any errors
@@ -81,29 +79,29 @@ public class AudioSegmentRecorder
             OutputStream outputStream = new FileOutputStream(path.toFile());
 
             //Write ID3 metadata
-            Map<AudioMetadata,String> metadataMap = AudioMetadataUtils.getMetadataMap(audioSegment.getIdentifierCollection(),
-                audioSegment.getAliasList());
-
-            byte[] id3Bytes = AudioMetadataUtils.getMP3ID3(metadataMap);
-            outputStream.write(id3Bytes);
-
-            //Convert audio to MP3 and write to file
-            MP3AudioConverter converter = new MP3AudioConverter(MP3_BIT_RATE, CONSTANT_BIT_RATE);
-            byte[] mp3 = converter.convertAudio(audioSegment.getAudioBuffers());
-            outputStream.write(mp3);
+            outputStream.write(getMP3ID3(audioSegment));
 
-            byte[] lastFrame = converter.flush();
-
-            if(lastFrame != null && lastFrame.length > 0)
-            {
-                outputStream.write(lastFrame);
-            }
+            //Write the MP3 audio that was encoded incrementally while the call was in progress
+            outputStream.write(audioSegment.getMP3EncoderSession().getMP3Audio());
 
             outputStream.flush();
             outputStream.close();
         }
     }
 
+    /**
+     * Creates the ID3 metadata tag for an MP3 recording of the audio segment
+     * @param audioSegment to describe
+     * @return ID3 tag bytes
+     */
+    public static byte[] getMP3ID3(AudioSegment audioSegment)
+    {
+        Map<AudioMetadata,String> metadataMap = AudioMetadataUtils.getMetadataMap(audioSegment.getIdentifierCollection(),
+            audioSegment.getAliasList());
+
+        return AudioMetadataUtils.getMP3ID3(metadataMap);
+    }
+
     /**
      * Records the audio segment as a WAVe file to the specified path.
      * @param audioSegment to record
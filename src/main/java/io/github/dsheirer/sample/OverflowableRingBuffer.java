@@ -0,0 +1,396 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.sample;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, array-backed ring buffer with the same overflow and reset threshold semantics as the overflowable transfer
+ * queue, without the transfer queue's linked node storage.  Elements are stored in a pre-allocated array so that enqueueing an element doesn't allocate a queue node,
+ * and the producer and consumer each advance their own index without sharing a size counter.
+ *
+ * Producer operations (offer) are lock-free.  When constructed for a single producer, the producer index is advanced
+ * with an ordered write.  When constructed for multiple producers, each producer claims a slot with a compare-and-set
+ * on the producer index.  The consumer operations (poll, drainTo and clear) are serialized against each other so that
+ * a queue can safely be cleared from a control thread while the processing thread is draining, however the consumer
+ * lock is never taken by producers.
+ *
+ * Ring capacity is the next power of two above the maximum size.  Overflow state is set once the queue size exceeds
+ * the maximum size (or the ring is full) and all inbound elements are ignored until the queue size is at or below the
+ * reset threshold.
+ */
+public class OverflowableRingBuffer<E> extends AbstractOverflowableQueue<E>
+{
+    private final static Logger mLog = LoggerFactory.getLogger(OverflowableRingBuffer.class);
+
+    private final AtomicReferenceArray<E> mBuffer;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+    private final Object mConsumerLock = new Object();
+    private final boolean mMultipleProducers;
+    private final int mCapacity;
+    private final int mMask;
+
+    /**
+     * Constructs an instance.
+     *
+     * @param maximumSize of the queue.  Overflow state will occur once queue size exceeds this value.
+     * @param resetThreshold for resetting overflow state to normal, once queue size is at or below this value.
+     * @param multipleProducers set to true if more than one thread will offer elements to this queue, or false if
+     * elements will only ever be offered from a single thread at a time.
+     */
+    public OverflowableRingBuffer(int maximumSize, int resetThreshold, boolean multipleProducers)
+    {
+        super(maximumSize, resetThreshold);
+
+        if(maximumSize < 1 || maximumSize >= (1 << 30))
+        {
+            throw new IllegalArgumentException("Maximum size must be in range 1 - " + ((1 << 30) - 1));
+        }
+
+        mMultipleProducers = multipleProducers;
+        mCapacity = Integer.highestOneBit(maximumSize) << 1;
+        mMask = mCapacity - 1;
+        mBuffer = new AtomicReferenceArray<>(mCapacity);
+    }
+
+    /**
+     * Constructs a multiple producer instance.
+     *
+     * @param maximumSize of the queue.  Overflow state will occur once queue size exceeds this value.
+     * @param resetThreshold for resetting overflow state to normal, once queue size is at or below this value.
+     */
+    public OverflowableRingBuffer(int maximumSize, int resetThreshold)
+    {
+        this(maximumSize, resetThreshold, true);
+    }
+
+    /**
+     * Number of elements that can be stored in the ring
+     */
+    public int getCapacity()
+    {
+        return mCapacity;
+    }
+
+    /**
+     * Indicates if this ring buffer supports multiple concurrent producers
+     */
+    public boolean isMultipleProducers()
+    {
+        return mMultipleProducers;
+    }
+
+    /**
+     * Current number of elements in the queue.  This value is approximate while producers are actively offering.
+     */
+    public int size()
+    {
+        long size = mTail.get() - mHead.get();
+        return size > 0 ? (int)size : 0;
+    }
+
+    /**
+     * Adds the element to the queue if able to do so without exceeding maximum queue size.  Otherwise, ignores
+     * the element.
+     *
+     * @return true if the element was added to the queue or false if it was ignored
+     */
+    @Override
+    public boolean offer(E e)
+    {
+        if(e == null)
+        {
+            throw new NullPointerException("Ring buffer does not support null elements");
+        }
+
+        if(mOverflow.get())
+        {
+            overflow(e);
+            return false;
+        }
+        else if(enqueue(e))
+        {
+            if(size() > mMaximumSize)
+            {
+                setOverflow(true);
+            }
+
+            return true;
+        }
+        else
+        {
+            //The ring is full
+            setOverflow(true);
+            overflow(e);
+            return false;
+        }
+    }
+
+    /**
+     * Claims the next producer slot and stores the element.
+     * @return true if the element was stored or false if the ring is full
+     */
+    private boolean enqueue(E e)
+    {
+        long tail;
+
+        if(mMultipleProducers)
+        {
+            do
+            {
+                tail = mTail.get();
+
+                if(tail - mHead.get() >= mCapacity)
+                {
+                    return false;
+                }
+            }
+            while(!mTail.compareAndSet(tail, tail + 1));
+        }
+        else
+        {
+            tail = mTail.get();
+
+            if(tail - mHead.get() >= mCapacity)
+            {
+                return false;
+            }
+
+            mTail.lazySet(tail + 1);
+        }
+
+        //The consumer detects a published element by the non-null slot value
+        mBuffer.lazySet((int)tail & mMask, e);
+
+        return true;
+    }
+
+    /**
+     * Removes the element at the head of the ring.  Note: must be invoked while holding the consumer lock.
+     * @return element or null if the ring is empty or the head slot is claimed but not yet published by a producer
+     */
+    private E dequeue()
+    {
+        long head = mHead.get();
+        int index = (int)head & mMask;
+        E e = mBuffer.get(index);
+
+        if(e != null)
+        {
+            mBuffer.lazySet(index, null);
+            mHead.lazySet(head + 1);
+        }
+
+        return e;
+    }
+
+    /**
+     * Removes and returns a single element from the head of the queue or null if the queue is empty
+     */
+    @Override
+    public E poll()
+    {
+        synchronized(mConsumerLock)
+        {
+            return dequeue();
+        }
+    }
+
+    /**
+     * Retrieves elements from the queue into the collection up to the maximum number of elements specified
+     */
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements)
+    {
+        int drainCount = 0;
+
+        synchronized(mConsumerLock)
+        {
+            E e;
+
+            while(drainCount < maxElements && (e = dequeue()) != null)
+            {
+                collection.add(e);
+                drainCount++;
+            }
+        }
+
+        if(mOverflow.get() && size() <= mResetThreshold)
+        {
+            setOverflow(false);
+        }
+
+        return drainCount;
+    }
+
+    /**
+     * Retrieves all elements from the queue into the collection
+     */
+    @Override
+    public int drainTo(Collection<? super E> collection)
+    {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Clears all elements from the queue and resets the overflow state
+     */
+    @Override
+    public void clear()
+    {
+        synchronized(mConsumerLock)
+        {
+            E e = dequeue();
+
+            while(e != null)
+            {
+                cleared(e);
+                e = dequeue();
+            }
+
+            mOverflow.set(false);
+        }
+    }
+
+    /**
+     * Invoked for each element that is removed from the queue by the clear() method.  Override this method in
+     * subclasses to perform any necessary cleanup action(s).
+     *
+     * @param e element that was cleared from the queue
+     */
+    protected void cleared(E e)
+    {
+        //No-op.  Override in subclass to perform any cleanup actions during clear
+    }
+
+    /**
+     * Benchmark comparing element hop latency and throughput of the linked overflowable transfer queue against the
+     * single and multiple producer ring buffers, with producers contending against a single draining consumer.
+     */
+    public static void main(String[] args)
+    {
+        int itemsPerProducer = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int maximumSize = 1000;
+        int resetThreshold = 500;
+
+        for(int x = 0; x < 2; x++)
+        {
+            mLog.debug(x == 0 ? "Warm up ..." : "Test ...");
+
+            benchmark("Linked Transfer Queue - 1 Producer ", new OverflowableTransferQueue<>(maximumSize, resetThreshold),
+                1, itemsPerProducer);
+            benchmark("Ring Buffer SPSC      - 1 Producer ", new OverflowableRingBuffer<>(maximumSize, resetThreshold,
+                false), 1, itemsPerProducer);
+            benchmark("Linked Transfer Queue - 4 Producers", new OverflowableTransferQueue<>(maximumSize, resetThreshold),
+                4, itemsPerProducer);
+            benchmark("Ring Buffer MPSC      - 4 Producers", new OverflowableRingBuffer<>(maximumSize, resetThreshold,
+                true), 4, itemsPerProducer);
+        }
+    }
+
+    /**
+     * Runs producer threads that offer timestamped elements to the queue while the calling thread drains the queue
+     * and measures the hop latency of each element.  Producers limit the number of in-flight elements to half of the
+     * maximum queue size so that the measurements aren't skewed by overflow state.
+     */
+    private static void benchmark(String label, AbstractOverflowableQueue<long[]> queue, int producerCount,
+                                  int itemsPerProducer)
+    {
+        DecimalFormat decimalFormat = new DecimalFormat("0.000");
+        AtomicLong offered = new AtomicLong();
+        AtomicLong inFlight = new AtomicLong();
+        List<Thread> producers = new ArrayList<>();
+
+        for(int x = 0; x < producerCount; x++)
+        {
+            Thread producer = new Thread(() -> {
+                //Elements are reused from a pool that is larger than the queue so that allocation isn't measured
+                long[][] pool = new long[8192][1];
+
+                for(int item = 0; item < itemsPerProducer; item++)
+                {
+                    while(inFlight.get() >= 500)
+                    {
+                        Thread.onSpinWait();
+                    }
+
+                    inFlight.incrementAndGet();
+                    long[] element = pool[item & 8191];
+                    element[0] = System.nanoTime();
+                    queue.offer(element);
+                }
+
+                offered.addAndGet(itemsPerProducer);
+            });
+
+            producers.add(producer);
+        }
+
+        List<long[]> drained = new ArrayList<>();
+        long received = 0;
+        long latencyTotal = 0;
+        long latencyMax = 0;
+        long start = System.nanoTime();
+
+        for(Thread producer: producers)
+        {
+            producer.start();
+        }
+
+        long total = (long)producerCount * itemsPerProducer;
+        boolean producersFinished = false;
+
+        while(!producersFinished || !drained.isEmpty())
+        {
+            drained.clear();
+            producersFinished = offered.get() == total;
+            queue.drainTo(drained);
+
+            long now = System.nanoTime();
+
+            for(long[] element: drained)
+            {
+                long latency = now - element[0];
+                latencyTotal += latency;
+                latencyMax = Math.max(latencyMax, latency);
+            }
+
+            received += drained.size();
+            inFlight.addAndGet(-drained.size());
+        }
+
+        double seconds = (System.nanoTime() - start) / 1E9;
+
+        mLog.debug(label + " Throughput: " + decimalFormat.format(received / seconds / 1E6) + " M/sec" +
+            " Dropped: " + (total - received) + " Mean Latency: " + decimalFormat.format(received > 0 ? latencyTotal / (double)received / 1E3 : 0) +
+            " us Max Latency: " + decimalFormat.format(latencyMax / 1E3) + " us");
+    }
+}
@@ -18,28 +18,21 @@
  ******************************************************************************/
 package io.github.dsheirer.sample;
 
-import io.github.dsheirer.source.Source;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.concurrent.LinkedTransferQueue;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class OverflowableTransferQueue<E>
+public class OverflowableTransferQueue<E> extends AbstractOverflowableQueue<E>
 {
     private final static Logger mLog = LoggerFactory.getLogger(OverflowableTransferQueue.class);
 
     public enum State {NORMAL, OVERFLOW};
-    private IOverflowListener mOverflowListener;
-    private Source mSourceOverflowListener;
 
     protected LinkedTransferQueue<E> mQueue = new LinkedTransferQueue<E>();
     protected AtomicInteger mCounter = new AtomicInteger();
-    protected AtomicBoolean mOverflow = new AtomicBoolean();
-    private int mMaximumSize;
-    private int mResetThreshold;
 
     /**
      * Concurrent transfer queue that couples a higher-throughput linked transfer queue with an atomic integer for
@@ -51,22 +44,17 @@ public class OverflowableTransferQueue<E>
      */
     public OverflowableTransferQueue(int maximumSize, int resetThreshold)
     {
-        mMaximumSize = maximumSize;
-        mResetThreshold = resetThreshold;
-    }
-
-    public void dispose()
-    {
-        clear();
-        mOverflowListener = null;
-        mSourceOverflowListener = null;
+        super(maximumSize, resetThreshold);
     }
 
     /**
      * Adds the element to the queue if able to do so without exceeding maximum queue size.  Otherwise, ignores
      * the element.
+     *
+     * @return true if the element was added to the queue or false if it was ignored
      */
-    public void offer(E e)
+    @Override
+    public boolean offer(E e)
     {
         if(!mOverflow.get())
         {
@@ -78,27 +66,20 @@ public class OverflowableTransferQueue<E>
             {
                 setOverflow(true);
             }
+
+            return true;
         }
         else
         {
             overflow(e);
+            return false;
         }
     }
 
-    /**
-     * Invoked when the buffer is in an overflow state.  The element argument is thrown away.  Override this method
-     * in subclasses to perform any necessary cleanup action(s).
-     *
-     * @param e element that is being thrown away due to an overflow condition
-     */
-    protected void overflow(E e)
-    {
-        //No-op.  Override in subclass to perform any cleanup actions during overflow
-    }
-
     /**
      * Removes and returns a single element from the head of the queue or null if the queue is empty
      */
+    @Override
     public E poll()
     {
         E element = mQueue.poll();
@@ -114,6 +95,7 @@ public class OverflowableTransferQueue<E>
     /**
      * Retrieves elements from the queue into the collection up to the maximum number of elements specified
      */
+    @Override
     public int drainTo(Collection<? super E> collection, int maxElements)
     {
         int drainCount = mQueue.drainTo(collection, maxElements);
@@ -131,6 +113,7 @@ public class OverflowableTransferQueue<E>
     /**
      * Retrieves elements from the queue into the collection up to the maximum number of elements specified
      */
+    @Override
     public int drainTo(Collection<? super E> collection)
     {
         int drainCount = mQueue.drainTo(collection);
@@ -145,45 +128,10 @@ public class OverflowableTransferQueue<E>
         return drainCount;
     }
 
-    /**
-     * Sets a listener to receive overflow state change events.
-     */
-    public void setOverflowListener(IOverflowListener listener)
-    {
-        mOverflowListener = listener;
-    }
-
-    /**
-     * Sets the source to receive overflow state change events (in addition to an IOverflow listener)
-     */
-    public void setSourceOverflowListener(Source source)
-    {
-        mSourceOverflowListener = source;
-    }
-
-
-    /**
-     * Toggles the overflow state and broadcast state change to listener
-     */
-    private void setOverflow(boolean overflow)
-    {
-        if(mOverflow.compareAndSet(!overflow, overflow))
-        {
-            if(mOverflowListener != null)
-            {
-                mOverflowListener.sourceOverflow(overflow);
-            }
-
-            if(mSourceOverflowListener != null)
-            {
-                mSourceOverflowListener.broadcastOverflowState(overflow);
-            }
-        }
-    }
-
     /**
      * Clears all elements from the queue and resets the internal counter to 0
      */
+    @Override
     public void clear()
     {
         synchronized(mQueue)
@@ -0,0 +1,331 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.sample.adapter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Bulk conversion of raw tuner and sound card sample bytes into float samples.
+ *
+ * Each conversion first moves the raw samples into a primitive scratch array with a single bulk transfer (a memory
+ * copy, with byte swapping when required, for direct/native buffers) and then converts the scratch array with a
+ * simple indexed loop.  This replaces per-sample relative ByteBuffer get() calls, each of which performs position and
+ * limit checks, and gives the JIT compiler a loop that it can unroll and auto-vectorize.
+ *
+ * Instances reuse their scratch arrays and are not thread safe.
+ */
+public class BulkSampleConverter
+{
+    private final static Logger mLog = LoggerFactory.getLogger(BulkSampleConverter.class);
+
+    private static final float SCALE_SIGNED_16_BIT_TO_FLOAT = 1.0f / 32768.0f;
+    private static final float SCALE_SIGNED_12_BIT_TO_FLOAT = 1.0f / 2048.0f;
+
+    private byte[] mByteScratch = new byte[0];
+    private short[] mShortScratch = new short[0];
+
+    /**
+     * Constructs an instance
+     */
+    public BulkSampleConverter()
+    {
+    }
+
+    /**
+     * Converts 8-bit samples using a 256-entry lookup table that is indexed by the unsigned byte value.
+     *
+     * @param buffer containing 8-bit samples, read from index 0 without changing the buffer position
+     * @param length number of bytes to convert
+     * @param lookup table of 256 float values
+     * @param samples to receive the converted samples, sized to at least length
+     */
+    public void convert8Bit(ByteBuffer buffer, int length, float[] lookup, float[] samples)
+    {
+        byte[] bytes = getByteScratch(length);
+        buffer.get(0, bytes, 0, length);
+
+        for(int x = 0; x < length; x++)
+        {
+            samples[x] = lookup[bytes[x] & 0xFF];
+        }
+    }
+
+    /**
+     * Converts signed 16-bit samples to floats in the range -1.0 to 1.0
+     *
+     * @param buffer containing 16-bit samples, read from index 0 without changing the buffer position or byte order
+     * @param order of the sample bytes
+     * @param sampleCount number of 16-bit samples to convert
+     * @param samples to receive the converted samples, sized to at least sampleCount
+     */
+    public void convert16Bit(ByteBuffer buffer, ByteOrder order, int sampleCount, float[] samples)
+    {
+        short[] shorts = getShortScratch(sampleCount);
+        buffer.duplicate().order(order).rewind().asShortBuffer().get(shorts, 0, sampleCount);
+
+        for(int x = 0; x < sampleCount; x++)
+        {
+            samples[x] = shorts[x] * SCALE_SIGNED_16_BIT_TO_FLOAT;
+        }
+    }
+
+    /**
+     * Converts signed 16-bit samples to floats in the range -1.0 to 1.0
+     *
+     * @param bytes containing 16-bit samples
+     * @param order of the sample bytes
+     * @param samples to receive the converted samples, sized to at least bytes.length / 2
+     */
+    public void convert16Bit(byte[] bytes, ByteOrder order, float[] samples)
+    {
+        convert16Bit(ByteBuffer.wrap(bytes), order, bytes.length / 2, samples);
+    }
+
+    /**
+     * Converts a single channel from interleaved multi-channel signed 16-bit samples to floats in the range -1.0 to 1.0
+     *
+     * @param bytes containing interleaved 16-bit samples
+     * @param order of the sample bytes
+     * @param channel index to extract
+     * @param channelCount number of interleaved channels
+     * @param samples to receive the converted samples, sized to at least bytes.length / 2 / channelCount
+     */
+    public void convert16BitChannel(byte[] bytes, ByteOrder order, int channel, int channelCount, float[] samples)
+    {
+        int sampleCount = bytes.length / 2;
+        short[] shorts = getShortScratch(sampleCount);
+        ByteBuffer.wrap(bytes).order(order).asShortBuffer().get(shorts, 0, sampleCount);
+
+        int frameCount = sampleCount / channelCount;
+
+        for(int x = 0; x < frameCount; x++)
+        {
+            samples[x] = shorts[x * channelCount + channel] * SCALE_SIGNED_16_BIT_TO_FLOAT;
+        }
+    }
+
+    /**
+     * Converts unsigned 12-bit samples stored in the low bits of 16-bit little endian words to floats in the range
+     * -1.0 to 1.0
+     *
+     * @param buffer containing the 16-bit words, read from index 0 without changing the buffer position or byte order
+     * @param sampleCount number of samples to convert
+     * @param samples to receive the converted samples, sized to at least sampleCount
+     */
+    public void convertUnsigned12Bit(ByteBuffer buffer, int sampleCount, float[] samples)
+    {
+        short[] shorts = getShortScratch(sampleCount);
+        buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).rewind().asShortBuffer().get(shorts, 0, sampleCount);
+
+        for(int x = 0; x < sampleCount; x++)
+        {
+            samples[x] = ((shorts[x] & 0xFFF) - 2048) * SCALE_SIGNED_12_BIT_TO_FLOAT;
+        }
+    }
+
+    /**
+     * Converts pairs of unsigned 12-bit samples packed into 3 bytes to floats in the range -1.0 to 1.0
+     *
+     * @param buffer containing packed samples, read from index 0 without changing the buffer position
+     * @param sampleCount number of samples to convert (an even number)
+     * @param samples to receive the converted samples, sized to at least sampleCount
+     */
+    public void convertPackedUnsigned12Bit(ByteBuffer buffer, int sampleCount, float[] samples)
+    {
+        int length = sampleCount / 2 * 3;
+        byte[] bytes = getByteScratch(length);
+        buffer.get(0, bytes, 0, length);
+
+        int pointer = 0;
+
+        for(int x = 0; x < length; x += 3)
+        {
+            int b2 = bytes[x + 1];
+            samples[pointer++] = ((((bytes[x] << 4) & 0xFF0) | ((b2 >> 4) & 0xF)) - 2048) * SCALE_SIGNED_12_BIT_TO_FLOAT;
+            samples[pointer++] = ((((b2 << 8) & 0xF00) | (bytes[x + 2] & 0xFF)) - 2048) * SCALE_SIGNED_12_BIT_TO_FLOAT;
+        }
+    }
+
+    private byte[] getByteScratch(int length)
+    {
+        if(mByteScratch.length < length)
+        {
+            mByteScratch = new byte[length];
+        }
+
+        return mByteScratch;
+    }
+
+    private short[] getShortScratch(int length)
+    {
+        if(mShortScratch.length < length)
+        {
+            mShortScratch = new short[length];
+        }
+
+        return mShortScratch;
+    }
+
+    /**
+     * Legacy 8-bit conversion: per-sample relative gets into an intermediate float buffer that is then copied.
+     */
+    private static void legacy8Bit(ByteBuffer buffer, int length, float[] lookup, FloatBuffer floatBuffer, float[] samples)
+    {
+        buffer.rewind();
+        floatBuffer.rewind();
+
+        int count = 0;
+
+        while(buffer.hasRemaining() && count < length)
+        {
+            floatBuffer.put(lookup[buffer.get() & 0xFF]);
+            count++;
+        }
+
+        floatBuffer.rewind();
+        floatBuffer.get(samples);
+    }
+
+    /**
+     * Legacy 16-bit conversion: per-sample relative getShort() calls
+     */
+    private static void legacy16Bit(byte[] bytes, ByteOrder order, float[] samples)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+        int pointer = 0;
+
+        while(buffer.hasRemaining())
+        {
+            samples[pointer++] = (float)buffer.getShort() / 32768.0f;
+        }
+    }
+
+    /**
+     * Legacy unpacked 12-bit conversion: per-sample relative byte gets
+     */
+    private static void legacy12Bit(ByteBuffer buffer, float[] samples)
+    {
+        buffer.rewind();
+        int pointer = 0;
+
+        while(buffer.remaining() >= 2)
+        {
+            byte lsb = buffer.get();
+            byte msb = buffer.get();
+            samples[pointer++] = (float)((((lsb & 0xFF) | (msb << 8)) & 0xFFF) - 2048) * SCALE_SIGNED_12_BIT_TO_FLOAT;
+        }
+    }
+
+    /**
+     * Reports the conversion throughput of the bulk methods against the legacy per-sample approach for each sample
+     * format, using a 256 KB direct buffer to mimic a libusb transfer buffer.
+     *
+     * Argument: number of timed iterations per format (default 2000)
+     */
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int length = 262144;
+
+        ByteBuffer nativeBuffer = ByteBuffer.allocateDirect(length);
+
+        for(int x = 0; x < length; x++)
+        {
+            nativeBuffer.put(x, (byte)(x * 31));
+        }
+
+        byte[] heapBytes = new byte[length];
+        nativeBuffer.get(0, heapBytes);
+
+        float[] lookup = new float[256];
+
+        for(int x = 0; x < 256; x++)
+        {
+            lookup[x] = (float)(x - 127) / 128.0f;
+        }
+
+        float[] samples = new float[length];
+        FloatBuffer floatBuffer = FloatBuffer.allocate(length);
+        BulkSampleConverter converter = new BulkSampleConverter();
+
+        for(int pass = 0; pass < 2; pass++)
+        {
+            boolean report = pass == 1;
+
+            long start = System.nanoTime();
+            for(int x = 0; x < iterations; x++)
+            {
+                legacy8Bit(nativeBuffer, length, lookup, floatBuffer, samples);
+            }
+            report(report, "8-bit legacy", length, iterations, start);
+
+            start = System.nanoTime();
+            for(int x = 0; x < iterations; x++)
+            {
+                converter.convert8Bit(nativeBuffer, length, lookup, samples);
+            }
+            report(report, "8-bit bulk", length, iterations, start);
+
+            start = System.nanoTime();
+            for(int x = 0; x < iterations; x++)
+            {
+                legacy16Bit(heapBytes, ByteOrder.LITTLE_ENDIAN, samples);
+            }
+            report(report, "16-bit legacy", length / 2, iterations, start);
+
+            start = System.nanoTime();
+            for(int x = 0; x < iterations; x++)
+            {
+                converter.convert16Bit(heapBytes, ByteOrder.LITTLE_ENDIAN, samples);
+            }
+            report(report, "16-bit bulk", length / 2, iterations, start);
+
+            start = System.nanoTime();
+            for(int x = 0; x < iterations; x++)
+            {
+                legacy12Bit(nativeBuffer, samples);
+            }
+            report(report, "12-bit legacy", length / 2, iterations, start);
+
+            start = System.nanoTime();
+            for(int x = 0; x < iterations; x++)
+            {
+                converter.convertUnsigned12Bit(nativeBuffer, length / 2, samples);
+            }
+            report(report, "12-bit bulk", length / 2, iterations, start);
+        }
+    }
+
+    private static void report(boolean report, String label, int samplesPerIteration, int iterations, long start)
+    {
+        if(report)
+        {
+            double seconds = (System.nanoTime() - start) / 1E9;
+            mLog.info(String.format("%-14s %8.1f MS/s", label, (double)samplesPerIteration * iterations / seconds / 1E6));
+        }
+    }
+}
@@ -19,7 +19,6 @@ import io.github.dsheirer.sample.buffer.ReusableComplexBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -29,7 +28,7 @@ public class ComplexShortAdapter extends ComplexSampleAdapter
 {
     private final static Logger mLog = LoggerFactory.getLogger(ComplexShortAdapter.class);
     private ByteOrder mByteOrder = ByteOrder.LITTLE_ENDIAN;
-    private ByteBuffer mByteBuffer;
+    private BulkSampleConverter mBulkSampleConverter = new BulkSampleConverter();
 
     /**
      * Constructs a real sample adapter
@@ -45,21 +44,7 @@ public class ComplexShortAdapter extends ComplexSampleAdapter
     public ReusableComplexBuffer convert(byte[] samples)
     {
         ReusableComplexBuffer reusableBuffer = getBuffer(samples.length / 2);
-        float[] convertedSamples = reusableBuffer.getSamples();
-
-        int pointer = 0;
-
-        mByteBuffer = ByteBuffer.wrap(samples);
-
-        /* Set endian to correct byte ordering */
-        mByteBuffer.order(mByteOrder);
-
-        while(mByteBuffer.hasRemaining())
-        {
-            convertedSamples[pointer] = (float) mByteBuffer.getShort() / 32768.0f;
-            pointer++;
-        }
-
+        mBulkSampleConverter.convert16Bit(samples, mByteOrder, reusableBuffer.getSamples());
         return reusableBuffer;
     }
 
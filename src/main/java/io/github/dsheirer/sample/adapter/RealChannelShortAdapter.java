@@ -21,7 +21,6 @@ import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -32,7 +31,7 @@ public class RealChannelShortAdapter extends RealSampleAdapter
     private final static Logger mLog = LoggerFactory.getLogger(RealChannelShortAdapter.class);
     private ByteOrder mByteOrder = ByteOrder.LITTLE_ENDIAN;
     private MixerChannel mMixerChannel;
-    private ByteBuffer mByteBuffer;
+    private BulkSampleConverter mBulkSampleConverter = new BulkSampleConverter();
 
     public RealChannelShortAdapter(MixerChannel channel, String debugName)
     {
@@ -48,32 +47,10 @@ public class RealChannelShortAdapter extends RealSampleAdapter
     public ReusableFloatBuffer convert(byte[] samples)
     {
         ReusableFloatBuffer reusableFloatBuffer = getBuffer(samples.length / 4);
-        float[] convertedSamples = reusableFloatBuffer.getSamples();
 
-        mByteBuffer = ByteBuffer.wrap(samples);
-
-        /* Set endian to correct byte ordering */
-        mByteBuffer.order(mByteOrder);
-
-        int pointer = 0;
-
-        while(mByteBuffer.hasRemaining())
-        {
-            if(mMixerChannel == MixerChannel.LEFT)
-            {
-                convertedSamples[pointer++] = (float) mByteBuffer.getShort() / 32768.0f;
-
-                //Throw away the right channel
-                mByteBuffer.getShort();
-            }
-            else
-            {
-                //Throw away the left channel
-                mByteBuffer.getShort();
-
-                convertedSamples[pointer++] = (float) mByteBuffer.getShort() / 32768.0f;
-            }
-        }
+        //Left channel is the first of each interleaved pair of samples and right channel is the second
+        mBulkSampleConverter.convert16BitChannel(samples, mByteOrder, (mMixerChannel == MixerChannel.LEFT ? 0 : 1), 2,
+            reusableFloatBuffer.getSamples());
 
         return reusableFloatBuffer;
     }
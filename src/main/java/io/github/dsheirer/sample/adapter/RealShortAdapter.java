@@ -17,7 +17,6 @@ package io.github.dsheirer.sample.adapter;
 
 import io.github.dsheirer.sample.buffer.ReusableFloatBuffer;
 
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -25,7 +24,7 @@ import java.nio.ByteOrder;
  */
 public class RealShortAdapter extends RealSampleAdapter
 {
-    private ByteBuffer mByteBuffer;
+    private BulkSampleConverter mBulkSampleConverter = new BulkSampleConverter();
     private ByteOrder mByteOrder = ByteOrder.LITTLE_ENDIAN;
 
     /**
@@ -42,21 +41,7 @@ public class RealShortAdapter extends RealSampleAdapter
     public ReusableFloatBuffer convert(byte[] samples)
     {
         ReusableFloatBuffer reusableFloatBuffer = getBuffer(samples.length / 2);
-        float[] convertedSamples = reusableFloatBuffer.getSamples();
-
-        int pointer = 0;
-
-        mByteBuffer = ByteBuffer.wrap(samples);
-
-        /* Set endian to correct byte ordering */
-        mByteBuffer.order(mByteOrder);
-
-        while(mByteBuffer.hasRemaining())
-        {
-            convertedSamples[pointer] = (float) mByteBuffer.getShort() / 32768.0f;
-            pointer++;
-        }
-
+        mBulkSampleConverter.convert16Bit(samples, mByteOrder, reusableFloatBuffer.getSamples());
         return reusableFloatBuffer;
     }
 
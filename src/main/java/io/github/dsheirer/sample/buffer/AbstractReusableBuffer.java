@@ -91,36 +91,49 @@ public abstract class AbstractReusableBuffer
      * indicate that they have finished processing the buffer so that when the user count reaches zero, this buffer
      * can be reused.
      *
-     * This method is thread-safe.
+     * This method is thread-safe.  Only the caller that decrements the user count to zero recycles the buffer, so
+     * no lock is required.
      */
-    public synchronized void decrementUserCount()
+    public void decrementUserCount()
     {
-        if(mUserCount.decrementAndGet() <= 0)
+        int userCount = mUserCount.decrementAndGet();
+
+        if(userCount == 0)
         {
             recycle();
         }
+        else if(userCount < 0)
+        {
+            mUserCount.set(0);
+            throw new IllegalStateException("User count is below zero.  This indicates that this buffer's decrement" +
+                " user count was invoked by more than the expected user count");
+        }
     }
 
     /**
      * Sends this buffer back to the owning buffer queue for reuse
      */
-    private synchronized void recycle()
+    private void recycle()
     {
         prepareForRecycle();
 
-        if(mBufferDisposedListener != null)
-        {
-            mBufferDisposedListener.disposed(this);
-        }
+        IReusableBufferDisposedListener listener = mBufferDisposedListener;
 
-        if(mUserCount.get() < 0)
+        if(listener != null)
         {
-            mUserCount.set(0);
-            throw new IllegalStateException("User count is below zero.  This indicates that this buffer's decrement" +
-                " user count was invoked by more than the expected user count");
+            listener.disposed(this);
         }
     }
 
+    /**
+     * Size class used by the owning buffer queue to pool this buffer with other buffers of the same size.  Buffers
+     * that do not vary in size can use the default size class of zero.
+     */
+    protected int getSizeClass()
+    {
+        return 0;
+    }
+
     /**
      * Invoked just prior to notifying the owner that this buffer is ready for prepareForRecycle.  This method
      * is intended for sub-class implementations to perform any prepareForRecycle cleanup actions.
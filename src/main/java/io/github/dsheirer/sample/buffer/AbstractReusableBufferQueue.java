@@ -18,16 +18,52 @@ package io.github.dsheirer.sample.buffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Base queue for managing the creation and reuse of reusable buffers.
+ *
+ * Recycled buffers are pooled by size class (see AbstractReusableBuffer.getSizeClass()) so that a buffer is only
+ * reused for a request of the same size and never has to reallocate its internal array.
+ *
+ * Each thread that recycles or requests buffers has a small, bounded magazine of recycled buffers that is serviced
+ * before the shared size class queues.  A full magazine spills half of its buffers to the shared queues so that
+ * buffers recycled on a consumer thread flow back to the producer thread in batches.  Magazines are registered with
+ * the queue: dispose() empties the magazines of every thread, and the magazine of a thread that has terminated is
+ * returned to the shared queues the next time a new buffer has to be created.  Magazine buffers count against the
+ * pooled buffer cap.
+ *
+ * The total count of pooled buffers can be capped with setMaximumPooledBufferCount().  Recycled buffers that exceed
+ * the cap are discarded and pooled buffers from other size classes are trimmed whenever a new buffer has to be
+ * created, so that stale size classes don't hold on to memory after a sample rate change.
+ */
 public abstract class AbstractReusableBufferQueue<T extends AbstractReusableBuffer>
         implements IReusableBufferDisposedListener<T>
 {
     private final static Logger mLog = LoggerFactory.getLogger(AbstractReusableBufferQueue.class);
 
-    private Queue<T> mReusableBufferQueue = new LinkedTransferQueue<>();
-    private int mBufferCount = 0;
+    public static final int DEFAULT_MAGAZINE_SIZE = 8;
+
+    private Map<Integer,Queue<T>> mSizeClassQueues = new ConcurrentHashMap<>();
+    private ThreadLocal<Magazine<T>> mMagazine = new ThreadLocal<>();
+    private Set<Magazine<T>> mMagazines = ConcurrentHashMap.newKeySet();
+    private volatile int mMagazineSize = DEFAULT_MAGAZINE_SIZE;
+    private volatile int mMaximumPooledBufferCount = Integer.MAX_VALUE;
+    private AtomicInteger mBufferCount = new AtomicInteger();
+    private AtomicInteger mPooledBufferCount = new AtomicInteger();
+    private AtomicLong mRecycleHitCount = new AtomicLong();
+    private AtomicLong mRecycleMissCount = new AtomicLong();
+    private AtomicLong mTrimmedBufferCount = new AtomicLong();
+    private AtomicLong mUserCountErrorCount = new AtomicLong();
     private String mDebugName;
 
     //Set to true to log when reusable buffers are created to monitor proper user count management
@@ -51,19 +87,74 @@ public abstract class AbstractReusableBufferQueue<T extends AbstractReusableBuff
     }
 
     /**
-     * Disposes of any reclaimed buffers to prepare this queue for disposal.
+     * Disposes of any reclaimed buffers, including buffers held in the magazines of every thread, to prepare this
+     * queue for disposal.
      */
     public void dispose()
     {
-        T buffer = mReusableBufferQueue.poll();
+        if(mLog.isDebugEnabled())
+        {
+            mLog.debug(getMetrics());
+        }
+
+        for(Magazine<T> magazine: mMagazines)
+        {
+            mMagazines.remove(magazine);
+
+            for(T buffer: magazine.retire())
+            {
+                buffer.dispose();
+            }
+        }
+
+        mMagazine.remove();
+
+        for(Queue<T> queue: mSizeClassQueues.values())
+        {
+            T buffer = queue.poll();
+
+            while(buffer != null)
+            {
+                buffer.dispose();
+                buffer = queue.poll();
+            }
+        }
+
+        mSizeClassQueues.clear();
+        mPooledBufferCount.set(0);
+        mBufferCount.set(0);
+    }
+
+    /**
+     * Sets the number of recycled buffers that each thread can hold in its magazine before spilling to the shared
+     * size class queues.
+     *
+     * @param magazineSize buffer count, or 0 to disable the per-thread magazines (default = 8)
+     */
+    public void setMagazineSize(int magazineSize)
+    {
+        if(magazineSize < 0)
+        {
+            throw new IllegalArgumentException("Magazine size cannot be negative");
+        }
 
-        while(buffer != null)
+        mMagazineSize = magazineSize;
+    }
+
+    /**
+     * Sets the maximum number of recycled buffers that will be held for reuse.  Recycled buffers beyond this count
+     * are discarded.
+     *
+     * @param maximumPooledBufferCount (default = unlimited)
+     */
+    public void setMaximumPooledBufferCount(int maximumPooledBufferCount)
+    {
+        if(maximumPooledBufferCount < 0)
         {
-            buffer.dispose();
-            buffer = mReusableBufferQueue.poll();
+            throw new IllegalArgumentException("Maximum pooled buffer count cannot be negative");
         }
 
-        mBufferCount = 0;
+        mMaximumPooledBufferCount = maximumPooledBufferCount;
     }
 
     /**
@@ -75,37 +166,270 @@ public abstract class AbstractReusableBufferQueue<T extends AbstractReusableBuff
     @Override
     public void disposed(T reusableBuffer)
     {
-        mReusableBufferQueue.offer(reusableBuffer);
+        int magazineSize = mMagazineSize;
+
+        if(magazineSize > 0)
+        {
+            if(mPooledBufferCount.incrementAndGet() > mMaximumPooledBufferCount)
+            {
+                mPooledBufferCount.decrementAndGet();
+                discard(reusableBuffer);
+                return;
+            }
+
+            Magazine<T> magazine = getMagazine();
+
+            if(magazine.add(reusableBuffer, magazineSize))
+            {
+                return;
+            }
+
+            //The magazine is full - spill half of it to the shared queues and then retry
+            List<T> spilled = magazine.removeOldest(magazineSize / 2 + 1);
+
+            if(!magazine.add(reusableBuffer, magazineSize))
+            {
+                spilled.add(reusableBuffer);
+            }
+
+            for(T buffer: spilled)
+            {
+                mSizeClassQueues.computeIfAbsent(buffer.getSizeClass(), sizeClass -> new LinkedTransferQueue<>())
+                    .offer(buffer);
+            }
+        }
+        else
+        {
+            pool(reusableBuffer);
+        }
+    }
+
+    /**
+     * Magazine for the calling thread, created and registered on first access or after this queue was disposed.
+     */
+    private Magazine<T> getMagazine()
+    {
+        Magazine<T> magazine = mMagazine.get();
+
+        if(magazine == null || magazine.isRetired())
+        {
+            magazine = new Magazine<>(Thread.currentThread());
+            mMagazine.set(magazine);
+            mMagazines.add(magazine);
+        }
+
+        return magazine;
     }
 
     /**
-     * Get a recycled buffer from the queue
+     * Returns the buffers held in the magazines of terminated threads to the shared size class queues.
+     */
+    private void reclaimMagazines()
+    {
+        for(Magazine<T> magazine: mMagazines)
+        {
+            if(!magazine.isOwnerAlive() && mMagazines.remove(magazine))
+            {
+                for(T buffer: magazine.retire())
+                {
+                    mSizeClassQueues.computeIfAbsent(buffer.getSizeClass(),
+                        sizeClass -> new LinkedTransferQueue<>()).offer(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a recycled buffer from the default (zero) size class.  Use this for buffers that do not vary in size.
      */
     protected T getRecycledBuffer()
     {
-        return mReusableBufferQueue.poll();
+        return getRecycledBuffer(0);
+    }
+
+    /**
+     * Get a recycled buffer with the specified size class from the queue.
+     *
+     * @param sizeClass of the buffer (see AbstractReusableBuffer.getSizeClass())
+     * @return a recycled buffer or null if there are no recycled buffers available for the size class
+     */
+    protected T getRecycledBuffer(int sizeClass)
+    {
+        T buffer = null;
+
+        while(buffer == null)
+        {
+            if(mMagazineSize > 0)
+            {
+                Magazine<T> magazine = mMagazine.get();
+
+                if(magazine != null)
+                {
+                    buffer = magazine.remove(sizeClass);
+                }
+            }
+
+            if(buffer == null)
+            {
+                Queue<T> queue = mSizeClassQueues.get(sizeClass);
+
+                if(queue != null)
+                {
+                    buffer = queue.poll();
+                }
+            }
+
+            if(buffer == null)
+            {
+                mRecycleMissCount.incrementAndGet();
+                reclaimMagazines();
+                trim(sizeClass);
+                return null;
+            }
+
+            mPooledBufferCount.decrementAndGet();
+
+            //A recycled buffer should have no users.  If it does, a user incremented the count after it was
+            //recycled, so the buffer is still in use and cannot safely be handed out again.
+            if(buffer.getUserCount() != 0)
+            {
+                mUserCountErrorCount.incrementAndGet();
+                mBufferCount.decrementAndGet();
+                mLog.warn("Discarding recycled buffer with non-zero user count - " + buffer.name() + " queue:" +
+                    (mDebugName != null ? mDebugName : "null"));
+                buffer = null;
+            }
+        }
+
+        mRecycleHitCount.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Adds the buffer to the shared pool for its size class, or discards it when the pool is at capacity.
+     */
+    private void pool(T buffer)
+    {
+        if(mPooledBufferCount.incrementAndGet() > mMaximumPooledBufferCount)
+        {
+            mPooledBufferCount.decrementAndGet();
+            discard(buffer);
+            return;
+        }
+
+        mSizeClassQueues.computeIfAbsent(buffer.getSizeClass(), sizeClass -> new LinkedTransferQueue<>()).offer(buffer);
     }
 
     /**
-     * Increments the count of buffers managed by this queue.  Note: this method is NOT thread safe
+     * Discards one pooled buffer from a size class other than the specified size class.  This is invoked each time a
+     * new buffer is about to be created so that buffers of a size class that is no longer used are released.
+     */
+    private void trim(int sizeClass)
+    {
+        if(mSizeClassQueues.size() > 1)
+        {
+            for(Map.Entry<Integer,Queue<T>> entry: mSizeClassQueues.entrySet())
+            {
+                if(entry.getKey() != sizeClass)
+                {
+                    T stale = entry.getValue().poll();
+
+                    if(stale != null)
+                    {
+                        mPooledBufferCount.decrementAndGet();
+                        discard(stale);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the buffer from service
+     */
+    private void discard(T buffer)
+    {
+        buffer.dispose();
+        mBufferCount.decrementAndGet();
+        mTrimmedBufferCount.incrementAndGet();
+    }
+
+    /**
+     * Increments the count of buffers managed by this queue.
      */
     protected void incrementBufferCount()
     {
-        mBufferCount++;
+        int count = mBufferCount.incrementAndGet();
 
         if(mBufferCreationLoggingEnabled)
         {
-            mLog.debug("Buffer Created - count:" + mBufferCount +
+            mLog.debug("Buffer Created - count:" + count +
                 " debug:" + (mDebugName != null ? mDebugName : "null") + " class:" + this.getClass());
         }
     }
 
     /**
-     * Current count of buffers created by this queue
+     * Current count of live buffers created by this queue, including pooled buffers and buffers in use.
      */
     protected int getBufferCount()
     {
-        return mBufferCount;
+        return mBufferCount.get();
+    }
+
+    /**
+     * Count of recycled buffers currently held for reuse.
+     */
+    public int getPooledBufferCount()
+    {
+        return mPooledBufferCount.get();
+    }
+
+    /**
+     * Count of buffers that have been handed out and not yet recycled.  A count that grows without bound indicates
+     * that a consumer is not decrementing the user count and buffers are leaking.
+     */
+    public int getOutstandingBufferCount()
+    {
+        return mBufferCount.get() - mPooledBufferCount.get();
+    }
+
+    /**
+     * Ratio of buffer requests that were serviced from recycled buffers
+     *
+     * @return hit rate in the range 0.0 - 1.0
+     */
+    public double getRecycleHitRate()
+    {
+        long hits = mRecycleHitCount.get();
+        long total = hits + mRecycleMissCount.get();
+        return total > 0 ? (double)hits / (double)total : 0.0;
+    }
+
+    /**
+     * Count of buffers discarded because the pool was at capacity or the buffer's size class was no longer in use.
+     */
+    public long getTrimmedBufferCount()
+    {
+        return mTrimmedBufferCount.get();
+    }
+
+    /**
+     * Count of recycled buffers that were discarded because their user count was not zero when reused.
+     */
+    public long getUserCountErrorCount()
+    {
+        return mUserCountErrorCount.get();
+    }
+
+    /**
+     * Summary of the pool metrics for this queue
+     */
+    public String getMetrics()
+    {
+        return String.format("Buffer queue [%s] live:%d outstanding:%d pooled:%d hit rate:%.3f trimmed:%d " +
+                "user count errors:%d", mDebugName, getBufferCount(), getOutstandingBufferCount(),
+            getPooledBufferCount(), getRecycleHitRate(), getTrimmedBufferCount(), getUserCountErrorCount());
     }
 
     /**
@@ -115,4 +439,90 @@ public abstract class AbstractReusableBufferQueue<T extends AbstractReusableBuff
     {
         return mDebugName;
     }
+
+    /**
+     * Bounded cache of recycled buffers for a single thread.  The magazine is normally accessed only by its owning
+     * thread, but it is synchronized so that dispose() and the reclamation of a terminated thread's magazine can
+     * safely empty it from another thread.  The magazine holds no reference to its queue, and it only weakly
+     * references its owning thread, so that it doesn't keep either alive.
+     */
+    private static class Magazine<T extends AbstractReusableBuffer>
+    {
+        private WeakReference<Thread> mOwner;
+        private List<T> mBuffers = new ArrayList<>();
+        private boolean mRetired;
+
+        Magazine(Thread owner)
+        {
+            mOwner = new WeakReference<>(owner);
+        }
+
+        /**
+         * Adds the buffer if there is room
+         * @return true if added, false if the magazine is full or retired
+         */
+        synchronized boolean add(T buffer, int maximumSize)
+        {
+            if(mRetired || mBuffers.size() >= maximumSize)
+            {
+                return false;
+            }
+
+            mBuffers.add(buffer);
+            return true;
+        }
+
+        /**
+         * Removes the most recently added buffer of the size class
+         * @return buffer or null
+         */
+        synchronized T remove(int sizeClass)
+        {
+            for(int x = mBuffers.size() - 1; x >= 0; x--)
+            {
+                if(mBuffers.get(x).getSizeClass() == sizeClass)
+                {
+                    return mBuffers.remove(x);
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Removes up to count of the least recently added buffers
+         */
+        synchronized List<T> removeOldest(int count)
+        {
+            List<T> removed = new ArrayList<>(mBuffers.subList(0, Math.min(count, mBuffers.size())));
+            mBuffers.subList(0, removed.size()).clear();
+            return removed;
+        }
+
+        /**
+         * Retires this magazine so that it no longer accepts buffers
+         * @return the buffers that were held by the magazine
+         */
+        synchronized List<T> retire()
+        {
+            mRetired = true;
+            List<T> buffers = mBuffers;
+            mBuffers = new ArrayList<>();
+            return buffers;
+        }
+
+        synchronized boolean isRetired()
+        {
+            return mRetired;
+        }
+
+        /**
+         * Indicates if the thread that owns this magazine is still running
+         */
+        boolean isOwnerAlive()
+        {
+            Thread owner = mOwner.get();
+            return owner != null && owner.isAlive();
+        }
+    }
 }
@@ -0,0 +1,74 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.sample.buffer;
+
+import io.github.dsheirer.sample.OverflowableRingBuffer;
+
+public class OverflowableReusableBufferRingBuffer<T extends AbstractReusableBuffer> extends OverflowableRingBuffer<T>
+{
+    /**
+     * Bounded ring buffer with overflow and reset thresholds that includes special handling for reusable buffers.
+     * Discarded and cleared buffers have their user count decremented so that they can be reclaimed.
+     *
+     * @param maximumSize of the queue.  Overflow state will occur once queue size exceeds this value.
+     * @param resetThreshold for resetting overflow state to normal, once queue size is at or below this value.
+     * @param multipleProducers set to true if more than one thread will offer buffers to this queue.
+     */
+    public OverflowableReusableBufferRingBuffer(int maximumSize, int resetThreshold, boolean multipleProducers)
+    {
+        super(maximumSize, resetThreshold, multipleProducers);
+    }
+
+    /**
+     * Constructs a multiple producer instance.
+     *
+     * @param maximumSize of the queue.  Overflow state will occur once queue size exceeds this value.
+     * @param resetThreshold for resetting overflow state to normal, once queue size is at or below this value.
+     */
+    public OverflowableReusableBufferRingBuffer(int maximumSize, int resetThreshold)
+    {
+        super(maximumSize, resetThreshold);
+    }
+
+    /**
+     * Overrides the overflow method to decrement the user count on any buffers that are being discarded when the queue
+     * is in an overflow state.
+     *
+     * @param t reusableBuffer that will be discarded
+     */
+    @Override
+    protected void overflow(T t)
+    {
+        t.decrementUserCount();
+    }
+
+    /**
+     * Overrides the cleared method to decrement the user count on each buffer that is being cleared from the queue.
+     *
+     * @param t reusableBuffer that was cleared from the queue
+     */
+    @Override
+    protected void cleared(T t)
+    {
+        t.decrementUserCount();
+    }
+}
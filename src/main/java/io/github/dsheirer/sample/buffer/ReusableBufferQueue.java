@@ -40,7 +40,7 @@ public class ReusableBufferQueue extends AbstractReusableBufferQueue<ReusableFlo
      */
     public ReusableFloatBuffer getBuffer(int size)
     {
-        ReusableFloatBuffer buffer = getRecycledBuffer();
+        ReusableFloatBuffer buffer = getRecycledBuffer(size);
 
         if(buffer == null)
         {
@@ -63,7 +63,7 @@ public class ReusableBufferQueue extends AbstractReusableBufferQueue<ReusableFlo
      */
     public ReusableFloatBuffer getBuffer(float[] samples, long timestamp)
     {
-        ReusableFloatBuffer buffer = getRecycledBuffer();
+        ReusableFloatBuffer buffer = getRecycledBuffer(samples.length);
 
         if(buffer == null)
         {
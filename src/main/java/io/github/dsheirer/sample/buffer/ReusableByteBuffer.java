@@ -82,6 +82,15 @@ public class ReusableByteBuffer extends AbstractReusableBuffer
         return getBytes().length;
     }
 
+    /**
+     * Pools recycled buffers by sample array length so that reuse doesn't require resizing
+     */
+    @Override
+    protected int getSizeClass()
+    {
+        return mSamples.length;
+    }
+
     /**
      * Resizes the internal array to the size argument
      *
@@ -37,7 +37,7 @@ public class ReusableByteBufferQueue extends AbstractReusableBufferQueue<Reusabl
      */
     public ReusableByteBuffer getBuffer(int size)
     {
-        ReusableByteBuffer buffer = getRecycledBuffer();
+        ReusableByteBuffer buffer = getRecycledBuffer(size);
 
         if(buffer == null)
         {
@@ -47,7 +47,7 @@ public class ReusableComplexBufferQueue extends AbstractReusableBufferQueue<Reus
      */
     public ReusableComplexBuffer getBuffer(int size)
     {
-        ReusableComplexBuffer buffer = getRecycledBuffer();
+        ReusableComplexBuffer buffer = getRecycledBuffer(size);
 
         if(buffer == null)
         {
@@ -125,6 +125,15 @@ public class ReusableFloatBuffer extends AbstractReusableBuffer
         mTimestamp = timestamp;
     }
 
+    /**
+     * Pools recycled buffers by sample array length so that reuse doesn't require resizing
+     */
+    @Override
+    protected int getSizeClass()
+    {
+        return mSamples.length;
+    }
+
     /**
      * Resizes the internal array to the size argument
      * @param size for the internal array
@@ -75,6 +75,10 @@ public abstract class Tuner implements ISourceEventProcessor, ITunerErrorListene
         {
             setChannelSourceManager(new PolyphaseChannelSourceManager(mTunerController));
         }
+        else if(channelizerType == ChannelizerType.POLYPHASE_PARALLEL)
+        {
+            setChannelSourceManager(new PolyphaseChannelSourceManager(mTunerController, true));
+        }
         else if(channelizerType == ChannelizerType.HETERODYNE)
         {
             setChannelSourceManager(new HeterodyneChannelSourceManager(mTunerController));
@@ -17,11 +17,10 @@ package io.github.dsheirer.source.tuner.airspy;
 
 import io.github.dsheirer.dsp.filter.dc.DCRemovalFilter;
 import io.github.dsheirer.dsp.filter.hilbert.HilbertTransform;
+import io.github.dsheirer.sample.adapter.BulkSampleConverter;
 import io.github.dsheirer.source.tuner.usb.converter.NativeBufferConverter;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
 
 public class AirspySampleConverter extends NativeBufferConverter
 {
@@ -30,8 +29,7 @@ public class AirspySampleConverter extends NativeBufferConverter
     private DCRemovalFilter mDCFilter = new DCRemovalFilter(0.01f);
     private HilbertTransform mHilbertTransform = new HilbertTransform();
     private boolean mSamplePacking = false;
-    private FloatBuffer mFloatBuffer;
-    private float[] mConvertedSamples;
+    private BulkSampleConverter mBulkSampleConverter = new BulkSampleConverter();
 
     /**
      * Adapter to translate byte buffers received from the airspy tuner into
@@ -41,112 +39,51 @@ public class AirspySampleConverter extends NativeBufferConverter
     {
     }
 
+    /**
+     * Number of float samples produced from the native buffer.  Packed buffers carry two samples in every 3 bytes and
+     * unpacked buffers carry one sample in every 2 bytes.
+     */
     @Override
-    protected FloatBuffer convertSamples(ByteBuffer buffer, int length)
+    protected int getSampleCount(ByteBuffer buffer, int length)
     {
-        float[] samples = convert(buffer);
-
-        if(mFloatBuffer == null || mFloatBuffer.capacity() != samples.length)
-        {
-            mFloatBuffer = FloatBuffer.allocate(samples.length);
-        }
-
-        mFloatBuffer.rewind();
-        mFloatBuffer.put(samples);
-
-        return mFloatBuffer;
+        return mSamplePacking ? buffer.capacity() / 3 * 2 : buffer.capacity() / 2;
     }
 
     /**
-     * Sample packing places two 12-bit samples into 3 bytes when enabled or
-     * places two 12-bit samples into 4 bytes when disabled.
-     *
-     * @param enabled
+     * DC removal and Hilbert transform filtering at up to 10 MS/s is too costly to run on the LibUSB event thread that
+     * is shared by all USB tuners, so Airspy transfers are converted on the tuner's conversion thread.
      */
-    public void setSamplePacking(boolean enabled)
+    @Override
+    public boolean isInlineConversion()
     {
-        mSamplePacking = enabled;
+        return false;
     }
 
-    private float[] convert(ByteBuffer samples)
+    @Override
+    protected void convertSamples(ByteBuffer buffer, int length, float[] samples)
     {
         if(mSamplePacking)
         {
-            convertPacked(samples.order(ByteOrder.LITTLE_ENDIAN));
+            mBulkSampleConverter.convertPackedUnsigned12Bit(buffer, samples.length, samples);
         }
         else
         {
-            convertUnpacked(samples);
-        }
-
-        mDCFilter.filter(mConvertedSamples);
-
-        return mHilbertTransform.filter(mConvertedSamples);
-    }
-
-    /**
-     * Converts the byte array containing unsigned 12-bit short values into
-     * signed float values in the range -1 to 1;
-     *
-     * @param buffer - native byte buffer containing unsigned 16-bit values
-     */
-    private void convertUnpacked(ByteBuffer buffer)
-    {
-        buffer.rewind();
-
-        if(mConvertedSamples == null || mConvertedSamples.length != buffer.capacity() / 2)
-        {
-            mConvertedSamples = new float[buffer.capacity() / 2];
+            mBulkSampleConverter.convertUnsigned12Bit(buffer, samples.length, samples);
         }
 
-        int pointer = 0;
-
-
-        while(buffer.remaining() >= 2)
-        {
-            byte lsb = buffer.get();
-            byte msb = buffer.get();
-            mConvertedSamples[pointer++] = scale((lsb & 0xFF) | (msb << 8));
-        }
+        mDCFilter.filter(samples);
+        mHilbertTransform.filter(samples);
     }
 
     /**
-     * Converts every 3 bytes containing a pair of 12-bit unsigned values into
-     * a pair of float values in the range -1 to 1;
+     * Sample packing places two 12-bit samples into 3 bytes when enabled or
+     * places two 12-bit samples into 4 bytes when disabled.
      *
-     * @param buffer - native byte buffer containing packet 12-bit unsigned samples
+     * @param enabled
      */
-    private void convertPacked(ByteBuffer buffer)
+    public void setSamplePacking(boolean enabled)
     {
-        buffer.rewind();
-
-        int sampleCount = buffer.capacity() / 3 * 2;
-
-        if(mConvertedSamples == null || mConvertedSamples.length != sampleCount)
-        {
-            mConvertedSamples = new float[sampleCount];
-        }
-
-        int pointer = 0;
-
-        byte b1;
-        byte b2;
-        byte b3;
-        int first;
-        int second;
-
-        while(buffer.remaining() >= 3)
-        {
-            b1 = buffer.get();
-            b2 = buffer.get();
-            b3 = buffer.get();
-
-            first = ((b1 << 4) & 0xFF0) | ((b2 >> 4) & 0xF);
-            mConvertedSamples[pointer++] = scale(first);
-
-            second = ((b2 << 8) & 0xF00) | (b3 & 0xFF);
-            mConvertedSamples[pointer++] = scale(second);
-        }
+        mSamplePacking = enabled;
     }
 
     /**
@@ -18,13 +18,12 @@ package io.github.dsheirer.source.tuner.channel;
 import io.github.dsheirer.dsp.filter.cic.ComplexPrimeCICDecimate;
 import io.github.dsheirer.dsp.filter.design.FilterDesignException;
 import io.github.dsheirer.dsp.mixer.IOscillator;
-import io.github.dsheirer.dsp.mixer.LowPhaseNoiseOscillator;
+import io.github.dsheirer.dsp.mixer.TableOscillator;
 import io.github.dsheirer.sample.IOverflowListener;
 import io.github.dsheirer.sample.Listener;
 import io.github.dsheirer.sample.buffer.OverflowableReusableBufferTransferQueue;
 import io.github.dsheirer.sample.buffer.ReusableComplexBuffer;
 import io.github.dsheirer.sample.buffer.ReusableComplexBufferQueue;
-import io.github.dsheirer.sample.complex.Complex;
 import io.github.dsheirer.source.SourceEvent;
 
 import java.util.ArrayList;
@@ -81,7 +80,7 @@ public class CICTunerChannelSource extends TunerChannelSource implements Listene
         mTunerFrequency = tunerChannel.getFrequency();
         long frequencyOffset = mTunerFrequency - getTunerChannel().getFrequency();
 
-        mFrequencyCorrectionMixer = new LowPhaseNoiseOscillator(frequencyOffset, sampleRate);
+        mFrequencyCorrectionMixer = new TableOscillator(frequencyOffset, sampleRate);
     }
 
     /**
@@ -229,16 +228,7 @@ public class CICTunerChannelSource extends TunerChannelSource implements Listene
             float[] translatedSamples = translatedComplexBuffer.getSamples();
 
             /* Perform frequency translation */
-            for(int x = 0; x < samples.length; x += 2)
-            {
-                mFrequencyCorrectionMixer.rotate();
-
-                translatedSamples[x] = Complex.multiplyInphase(samples[x], samples[x + 1],
-                    mFrequencyCorrectionMixer.inphase(), mFrequencyCorrectionMixer.quadrature());
-
-                translatedSamples[x + 1] = Complex.multiplyQuadrature(samples[x], samples[x + 1],
-                    mFrequencyCorrectionMixer.inphase(), mFrequencyCorrectionMixer.quadrature());
-            }
+            mFrequencyCorrectionMixer.mixComplex(samples, translatedSamples);
 
             mDecimationFilter.receive(translatedComplexBuffer);
             complexBuffer.decrementUserCount();
@@ -46,17 +46,28 @@ public class PolyphaseChannelSourceManager extends ChannelSourceManager
      * be provided and then adjusting the center frequency and provisioning a DDC Polyphase Tuner channel source.
      *
      * @param tunerController with a center tuned frequency that will be managed by this instance
+     * @param parallel to use a multi-threaded polyphase channelizer
      */
-    public PolyphaseChannelSourceManager(TunerController tunerController)
+    public PolyphaseChannelSourceManager(TunerController tunerController, boolean parallel)
     {
         mTunerController = tunerController;
 
-        mPolyphaseChannelManager = new PolyphaseChannelManager(tunerController);
+        mPolyphaseChannelManager = new PolyphaseChannelManager(tunerController, parallel);
         //Register to receive channel count change notifications for rebroadcasting
         mPolyphaseChannelManager.addSourceEventListener(this::process);
         mTunerController.addListener(mPolyphaseChannelManager);
     }
 
+    /**
+     * Constructs an instance that uses a single-threaded polyphase channelizer.
+     *
+     * @param tunerController with a center tuned frequency that will be managed by this instance
+     */
+    public PolyphaseChannelSourceManager(TunerController tunerController)
+    {
+        this(tunerController, false);
+    }
+
     /**
      * Indicates if the channel min/max frequencies are within the tunable frequency range of the tuner controller
      *
@@ -61,6 +61,10 @@ public class RecordingTuner extends Tuner
             {
                 setChannelSourceManager(new PolyphaseChannelSourceManager(getTunerController()));
             }
+            else if(channelizerType == ChannelizerType.POLYPHASE_PARALLEL)
+            {
+                setChannelSourceManager(new PolyphaseChannelSourceManager(getTunerController(), true));
+            }
             else if(channelizerType == ChannelizerType.HETERODYNE)
             {
                 setChannelSourceManager(new HeterodyneChannelSourceManager(getTunerController()));
@@ -125,6 +129,10 @@ public class RecordingTuner extends Tuner
                 {
                     setChannelSourceManager(new PolyphaseChannelSourceManager(getTunerController()));
                 }
+                else if(channelizerType == ChannelizerType.POLYPHASE_PARALLEL)
+                {
+                    setChannelSourceManager(new PolyphaseChannelSourceManager(getTunerController(), true));
+                }
                 else if(channelizerType == ChannelizerType.HETERODYNE)
                 {
                     setChannelSourceManager(new HeterodyneChannelSourceManager(getTunerController()));
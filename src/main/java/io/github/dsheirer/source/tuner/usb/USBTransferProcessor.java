@@ -21,11 +21,15 @@
  */
 package io.github.dsheirer.source.tuner.usb;
 
+import io.github.dsheirer.dsp.filter.channelizer.ContinuousBufferProcessor;
+import io.github.dsheirer.dsp.filter.channelizer.ContinuousReusableBufferProcessor;
 import io.github.dsheirer.sample.Listener;
+import io.github.dsheirer.sample.buffer.OverflowableReusableBufferRingBuffer;
 import io.github.dsheirer.sample.buffer.ReusableComplexBuffer;
 import io.github.dsheirer.source.tuner.ITunerErrorListener;
 import io.github.dsheirer.source.tuner.TunerManager;
 import io.github.dsheirer.source.tuner.usb.converter.NativeBufferConverter;
+import io.github.dsheirer.util.LatencyHistogram;
 import io.github.dsheirer.util.ThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,9 +43,9 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.LinkedTransferQueue;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class USBTransferProcessor implements TransferCallback
 {
@@ -53,9 +57,12 @@ public class USBTransferProcessor implements TransferCallback
     //Number of native byte buffers to allocate for transferring data from the USB device
     private static final int TRANSFER_BUFFER_POOL_SIZE = 40;
 
+    //Maximum number of converted sample buffers awaiting dispatch before buffers are dropped
+    private static final int DISPATCH_QUEUE_MAXIMUM_SIZE = 100;
+    private static final int DISPATCH_QUEUE_RESET_THRESHOLD = 50;
+
     private LinkedTransferQueue<Transfer> mAvailableTransfers = new LinkedTransferQueue<>();
     private LinkedTransferQueue<Transfer> mInProgressTransfers = new LinkedTransferQueue<>();
-    private LinkedTransferQueue<Transfer> mCompletedTransfers = new LinkedTransferQueue<>();
     private List<Transfer> mTransfersToDispose = new ArrayList<>();
     private List<Transfer> mTransfersToSubmit = new ArrayList<>();
 
@@ -71,8 +78,11 @@ public class USBTransferProcessor implements TransferCallback
     private DeviceHandle mUsbBulkTransferDeviceHandle;
     private AtomicBoolean mRunning = new AtomicBoolean();
     private AtomicBoolean mRestarting = new AtomicBoolean();
-    private CompletedTransferProcessor mCompletedTransferProcessor = new CompletedTransferProcessor();
-    private ScheduledFuture mBufferDispatcherFuture;
+    private ContinuousReusableBufferProcessor<ReusableComplexBuffer> mBufferDispatcher;
+    private ContinuousBufferProcessor<Transfer> mTransferConverter;
+    private AtomicLong mTransferCount = new AtomicLong();
+    private AtomicLong mDroppedBufferCount = new AtomicLong();
+    private LatencyHistogram mConversionTime;
     private String mDeviceName;
     private int mTransferErrorLoggingCount = 0;
     private int mRestartCount = 0;
@@ -96,6 +106,86 @@ public class USBTransferProcessor implements TransferCallback
         mNativeBufferConverter = nativeBufferConverter;
         mBufferSize = bufferSize;
         mITunerErrorListener = tunerErrorListener;
+        mConversionTime = new LatencyHistogram("[" + deviceName + "] USB transfer conversion");
+
+        //Cheap (lookup table) conversions run on the LibUSB event thread.  Other formats hand completed transfers to
+        //a conversion thread for this tuner so that the event thread that is shared by all USB tuners isn't stalled.
+        if(!mNativeBufferConverter.isInlineConversion())
+        {
+            mTransferConverter = new ContinuousBufferProcessor<>(TRANSFER_BUFFER_POOL_SIZE * 2,
+                TRANSFER_BUFFER_POOL_SIZE);
+            mTransferConverter.setThreadName("sdrtrunk usb converter " + deviceName);
+            mTransferConverter.setDispatchMode(ContinuousBufferProcessor.DispatchMode.SIGNALLING);
+            mTransferConverter.setListener(transfers -> {
+                for(Transfer transfer: transfers)
+                {
+                    convert(transfer);
+                    resubmit(transfer);
+                }
+            });
+        }
+
+        //Converted sample buffers are produced by a single thread and are dispatched to the listener on a dedicated
+        //thread that is signalled as each buffer arrives
+        mBufferDispatcher = new ContinuousReusableBufferProcessor<>(new DispatchQueue());
+        mBufferDispatcher.setThreadName("sdrtrunk usb dispatcher " + deviceName);
+        mBufferDispatcher.setDispatchMode(ContinuousBufferProcessor.DispatchMode.SIGNALLING);
+        mBufferDispatcher.setListener(buffers -> {
+            Listener<ReusableComplexBuffer> listener = mComplexBufferListener;
+
+            for(ReusableComplexBuffer buffer: buffers)
+            {
+                if(listener != null)
+                {
+                    listener.receive(buffer);
+                }
+                else
+                {
+                    buffer.decrementUserCount();
+                }
+            }
+        });
+    }
+
+    /**
+     * Number of USB transfers currently submitted to the device and awaiting completion
+     */
+    public int getTransfersInFlight()
+    {
+        return mInProgressTransfers.size();
+    }
+
+    /**
+     * Number of completed USB transfers that carried sample data
+     */
+    public long getTransferCount()
+    {
+        return mTransferCount.get();
+    }
+
+    /**
+     * Number of converted sample buffers that were dropped because the listener could not keep up
+     */
+    public long getDroppedBufferCount()
+    {
+        return mDroppedBufferCount.get();
+    }
+
+    /**
+     * Histogram of the time spent converting each USB transfer into complex samples
+     */
+    public LatencyHistogram getConversionTime()
+    {
+        return mConversionTime;
+    }
+
+    /**
+     * Summary of the transfer counters for this processor
+     */
+    public String getMetrics()
+    {
+        return "[" + mDeviceName + "] USB transfers:" + getTransferCount() + " in flight:" + getTransfersInFlight() +
+            " dropped buffers:" + getDroppedBufferCount() + " " + mConversionTime.getSummary();
     }
 
     /**
@@ -138,12 +228,17 @@ public class USBTransferProcessor implements TransferCallback
             prepareDeviceStart();
             prepareTransfers();
 
+            //Start the converted buffer dispatcher before the first transfer can complete
+            mBufferDispatcher.start();
+
+            if(mTransferConverter != null)
+            {
+                mTransferConverter.start();
+            }
+
             if(submitTransfers())
             {
                 success = true;
-                //Start transferred buffer dispatcher
-                mBufferDispatcherFuture = ThreadPool.SCHEDULED.scheduleAtFixedRate(mCompletedTransferProcessor,
-                    0, 6, TimeUnit.MILLISECONDS);
 
                 //Register with LibUSB processor so that it auto-starts LibUSB processing
                 TunerManager.LIBUSB_TRANSFER_PROCESSOR.registerTransferProcessor(this);
@@ -158,24 +253,33 @@ public class USBTransferProcessor implements TransferCallback
      */
     private void stop()
     {
-        if(mRunning.compareAndSet(true, false))
+        boolean stopping;
+
+        //Change the running state under the submit lock so that no transfer submission is in progress afterward
+        synchronized(this)
         {
-            if(mBufferDispatcherFuture != null)
-            {
-                mBufferDispatcherFuture.cancel(false);
-                mBufferDispatcherFuture = null;
-            }
+            stopping = mRunning.compareAndSet(true, false);
+        }
 
-            //Cancel all buffers that are currently in progress
-            for(Transfer transfer : mInProgressTransfers)
+        if(stopping)
+        {
+            //Return any transfers awaiting conversion to the available transfers
+            if(mTransferConverter != null)
             {
-                LibUsb.cancelTransfer(transfer);
+                mTransferConverter.flushAndStop();
             }
 
-            //Await completion of all in-progress transfers
+            //Cancel all buffers that are currently in progress and await completion of all in-progress transfers.
+            //Cancellation is repeated on each cycle to catch any transfer that was resubmitted by the LibUSB event
+            //thread while this processor was stopping.
             int waitCycleCount = 0;
             while(!mInProgressTransfers.isEmpty() && waitCycleCount < 30)
             {
+                for(Transfer transfer : mInProgressTransfers)
+                {
+                    LibUsb.cancelTransfer(transfer);
+                }
+
                 waitCycleCount++;
 
                 try
@@ -188,21 +292,21 @@ public class USBTransferProcessor implements TransferCallback
                 }
             }
 
-            //Clear all completed buffers
-            Transfer completedTransfer = mCompletedTransfers.poll();
+            //Clear any converted buffers that are awaiting dispatch
+            mBufferDispatcher.stop();
 
-            while(completedTransfer != null)
-            {
-                mAvailableTransfers.add(completedTransfer);
-                completedTransfer = mCompletedTransfers.poll();
-            }
+            mLog.debug(getMetrics());
+            mLog.debug("[" + mDeviceName + "] " + mNativeBufferConverter.getBufferPoolMetrics());
 
             //Unregister from LibUSB processor so that it auto-stops LibUSB event timeout processing
             TunerManager.LIBUSB_TRANSFER_PROCESSOR.unregisterTransferProcessor(this);
 
             executeDeviceStop();
 
-            disposeTransfers();
+            synchronized(this)
+            {
+                disposeTransfers();
+            }
         }
     }
 
@@ -262,7 +366,7 @@ public class USBTransferProcessor implements TransferCallback
      * @return boolean true if there were no errors submitting transfer buffers.  A false value indicates that there
      * were errors and that the device likely needs to be reset.
      */
-    private boolean submitTransfers()
+    private synchronized boolean submitTransfers()
     {
         if(mRunning.get())
         {
@@ -318,7 +422,7 @@ public class USBTransferProcessor implements TransferCallback
     }
 
     /**
-     * Frees all allocated transfers in preparation for shutdown
+     * Frees all allocated transfers in preparation for shutdown.  Must be invoked while holding the submit lock.
      */
     private void disposeTransfers()
     {
@@ -412,9 +516,11 @@ public class USBTransferProcessor implements TransferCallback
 
     /**
      * Process a filled transfer buffer received back from the USB device.  Note: this method is invoked on the USB
-     * bus processing thread, so we try to keep processing to a minimum and place transfers in the completed
-     * transfer queue so that the scheduled processor thread handles any conversion and additional downstream
-     * processing workload.
+     * bus processing thread.  When the converter supports inline conversion, the transfer is converted directly from
+     * the native buffer into a pooled sample buffer and then immediately resubmitted to the device so that the device
+     * is never waiting on downstream processing.  Otherwise, the transfer is handed off to this tuner's conversion
+     * thread, which converts and resubmits the transfer.  The converted sample buffer is handed off to the dispatcher
+     * thread for distribution to the listener.
      */
     @Override
     public void processTransfer(Transfer transfer)
@@ -428,24 +534,28 @@ public class USBTransferProcessor implements TransferCallback
             case LibUsb.TRANSFER_TIMED_OUT:
                 if(transfer.actualLength() > 0)
                 {
-                    mCompletedTransfers.add(transfer);
-                }
-                else
-                {
-                    transfer.buffer().rewind();
-                    mAvailableTransfers.add(transfer);
+                    if(handOffForConversion(transfer))
+                    {
+                        break;
+                    }
+
+                    convert(transfer);
                 }
+
+                resubmit(transfer);
                 break;
             case LibUsb.TRANSFER_ERROR:
                 if(transfer.actualLength() > 0)
                 {
-                    mCompletedTransfers.add(transfer);
+                    if(handOffForConversion(transfer))
+                    {
+                        break;
+                    }
+
+                    convert(transfer);
                 }
                 else
                 {
-                    transfer.buffer().rewind();
-                    mAvailableTransfers.add(transfer);
-
                     mTransferErrorLoggingCount++;
 
                     if(mTransferErrorLoggingCount <= 5)
@@ -458,6 +568,7 @@ public class USBTransferProcessor implements TransferCallback
                     }
                 }
 
+                resubmit(transfer);
                 break;
             case LibUsb.TRANSFER_CANCELLED:
                 transfer.buffer().rewind();
@@ -474,6 +585,65 @@ public class USBTransferProcessor implements TransferCallback
         }
     }
 
+    /**
+     * Hands the transfer to this tuner's conversion thread when the converter doesn't support inline conversion.  The
+     * running state is checked and the transfer is queued under the submit lock that stop() uses to change the
+     * running state, so a transfer is never queued after stop() has flushed the conversion queue.
+     *
+     * @return true if the transfer was queued for conversion, or false if the caller should convert it inline (or,
+     * when stopped, simply return it to the available transfers)
+     */
+    private synchronized boolean handOffForConversion(Transfer transfer)
+    {
+        if(mTransferConverter != null && mRunning.get())
+        {
+            mTransferConverter.receive(transfer);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Converts the transferred native buffer samples into a pooled complex sample buffer and queues the buffer for
+     * dispatch to the listener.
+     */
+    private void convert(Transfer transfer)
+    {
+        if(mRunning.get())
+        {
+            try
+            {
+                long start = System.nanoTime();
+                ReusableComplexBuffer reusableComplexBuffer =
+                    mNativeBufferConverter.convert(transfer.buffer(), transfer.actualLength());
+                mConversionTime.add(System.nanoTime() - start);
+                mTransferCount.incrementAndGet();
+
+                mBufferDispatcher.receive(reusableComplexBuffer);
+            }
+            catch(Throwable throwable)
+            {
+                mLog.error("[" + mDeviceName + "] - error while converting USB transfer buffer", throwable);
+            }
+        }
+    }
+
+    /**
+     * Resubmits the transfer to the device, or returns it to the available transfers when stopped.  Any available
+     * transfers left over from earlier submit errors are also submitted.  A submission error triggers a restart.
+     */
+    private void resubmit(Transfer transfer)
+    {
+        transfer.buffer().rewind();
+        mAvailableTransfers.add(transfer);
+
+        if(mRunning.get() && !mRestarting.get() && !submitTransfers())
+        {
+            ThreadPool.SCHEDULED.submit(() -> restart());
+        }
+    }
+
     /**
      * Converts the error status code to a textual description
      */
@@ -539,53 +709,20 @@ public class USBTransferProcessor implements TransferCallback
     }
 
     /**
-     * Processes completed USB buffer transfers, converts the transferred bytes into complex samples and dispatches the
-     * sample buffer to the listener.
+     * Dispatch queue that counts converted sample buffers that are dropped while the queue is in overflow
      */
-    public class CompletedTransferProcessor implements Runnable
+    private class DispatchQueue extends OverflowableReusableBufferRingBuffer<ReusableComplexBuffer>
     {
-        @Override
-        public void run()
+        public DispatchQueue()
         {
-            try
-            {
-                Transfer transfer = mCompletedTransfers.poll();
-
-                while(transfer != null)
-                {
-                    if(mRunning.get())
-                    {
-                        ByteBuffer nativeBuffer = transfer.buffer();
-
-                        ReusableComplexBuffer reusableComplexBuffer =
-                            mNativeBufferConverter.convert(nativeBuffer, transfer.actualLength());
-
-                        if(mComplexBufferListener != null)
-                        {
-                            mComplexBufferListener.receive(reusableComplexBuffer);
-                        }
-                    }
-
-                    transfer.buffer().rewind();
-                    mAvailableTransfers.add(transfer);
-
-                    boolean success = submitTransfers();
+            super(DISPATCH_QUEUE_MAXIMUM_SIZE, DISPATCH_QUEUE_RESET_THRESHOLD, false);
+        }
 
-                    if(success)
-                    {
-                        transfer = mCompletedTransfers.poll();
-                    }
-                    else
-                    {
-                        ThreadPool.SCHEDULED.submit(() -> restart());
-                        transfer = null;
-                    }
-                }
-            }
-            catch(Throwable throwable)
-            {
-                mLog.error("[" + mDeviceName + "] - error while processing USB transfer buffers", throwable);
-            }
+        @Override
+        protected void overflow(ReusableComplexBuffer reusableComplexBuffer)
+        {
+            mDroppedBufferCount.incrementAndGet();
+            super.overflow(reusableComplexBuffer);
         }
     }
 }
@@ -15,8 +15,9 @@
  ******************************************************************************/
 package io.github.dsheirer.source.tuner.usb.converter;
 
+import io.github.dsheirer.sample.adapter.BulkSampleConverter;
+
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 
 public class ByteSampleConverter extends NativeBufferConverter
 {
@@ -34,7 +35,7 @@ public class ByteSampleConverter extends NativeBufferConverter
         }
     }
 
-    private FloatBuffer mFloatBuffer;
+    private BulkSampleConverter mBulkSampleConverter = new BulkSampleConverter();
 
     /**
      * Converts native byte buffers containing 8-bit complex samples into complex float samples loaded into a tracked,
@@ -46,35 +47,33 @@ public class ByteSampleConverter extends NativeBufferConverter
     }
 
     /**
-     * Converts the 8-bit complex samples contained in the native buffer into floats that are loaded into a float
-     * buffer and subsequently transferred to a reusable complex buffer by the parent class.
+     * Lookup table conversion is cheap enough to run on the LibUSB event thread
+     */
+    @Override
+    public boolean isInlineConversion()
+    {
+        return true;
+    }
+
+    /**
+     * Number of float samples produced from the native buffer - one sample per byte
+     */
+    @Override
+    protected int getSampleCount(ByteBuffer nativeBuffer, int length)
+    {
+        return length;
+    }
+
+    /**
+     * Converts the 8-bit complex samples contained in the native buffer into floats using a lookup table.
      *
      * @param nativeBuffer containing 8-bit complex samples
      * @param length of bytes to read from the native buffer
-     * @return float buffer loaded with converted samples
+     * @param samples array to receive the converted samples
      */
     @Override
-    protected FloatBuffer convertSamples(ByteBuffer nativeBuffer, int length)
+    protected void convertSamples(ByteBuffer nativeBuffer, int length, float[] samples)
     {
-        nativeBuffer.rewind();
-
-        if(mFloatBuffer == null || mFloatBuffer.capacity() != nativeBuffer.capacity())
-        {
-            mFloatBuffer = FloatBuffer.allocate(nativeBuffer.capacity());
-        }
-
-        mFloatBuffer.rewind();
-
-        int count = 0;
-
-        while(nativeBuffer.hasRemaining() && count < length)
-        {
-            byte sample = nativeBuffer.get();
-            count++;
-
-            mFloatBuffer.put(LOOKUP_VALUES[(sample & 0xFF)]);
-        }
-
-        return mFloatBuffer;
+        mBulkSampleConverter.convert8Bit(nativeBuffer, length, LOOKUP_VALUES, samples);
     }
 }
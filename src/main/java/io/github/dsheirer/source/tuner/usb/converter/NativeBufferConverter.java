@@ -19,10 +19,12 @@ import io.github.dsheirer.sample.buffer.ReusableComplexBuffer;
 import io.github.dsheirer.sample.buffer.ReusableComplexBufferQueue;
 
 import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 
 public abstract class NativeBufferConverter
 {
+    //Caps the recycled sample buffers held per tuner so that a consumer stall doesn't permanently grow the heap
+    private static final int MAXIMUM_POOLED_BUFFERS = 64;
+
     private ReusableComplexBufferQueue mReusableComplexBufferQueue = new ReusableComplexBufferQueue("NativeBufferConverter");
 
     /**
@@ -31,6 +33,15 @@ public abstract class NativeBufferConverter
      */
     public NativeBufferConverter()
     {
+        mReusableComplexBufferQueue.setMaximumPooledBufferCount(MAXIMUM_POOLED_BUFFERS);
+    }
+
+    /**
+     * Buffer pool metrics summary for the sample buffers produced by this converter
+     */
+    public String getBufferPoolMetrics()
+    {
+        return mReusableComplexBufferQueue.getMetrics();
     }
 
     /**
@@ -43,22 +54,41 @@ public abstract class NativeBufferConverter
      */
     public ReusableComplexBuffer convert(ByteBuffer byteBuffer, int length)
     {
-        FloatBuffer floatBuffer = convertSamples(byteBuffer, length);
-
-        ReusableComplexBuffer reusableComplexBuffer = mReusableComplexBufferQueue.getBuffer(floatBuffer.capacity());
+        ReusableComplexBuffer reusableComplexBuffer =
+            mReusableComplexBufferQueue.getBuffer(getSampleCount(byteBuffer, length));
 
-        //The reusable buffer will rewind the float buffer to the beginning
-        reusableComplexBuffer.reloadFrom(floatBuffer, System.currentTimeMillis());
+        //Convert directly from the native buffer into the reusable buffer's sample array
+        convertSamples(byteBuffer, length, reusableComplexBuffer.getSamples());
+        reusableComplexBuffer.setTimestamp(System.currentTimeMillis());
 
         return reusableComplexBuffer;
     }
 
+    /**
+     * Indicates if the conversion is cheap enough (e.g. a lookup table per byte) to run directly on the LibUSB event
+     * thread, which is shared by all USB tuners.  Converters that return false are run on a conversion thread for
+     * each tuner.
+     */
+    public boolean isInlineConversion()
+    {
+        return false;
+    }
+
+    /**
+     * Number of float samples that will be produced from the native byte buffer.
+     *
+     * @param buffer containing native byte buffer samples
+     * @param length of bytes to read from the native buffer
+     * @return float sample count
+     */
+    protected abstract int getSampleCount(ByteBuffer buffer, int length);
+
     /**
      * Converts the native byte buffer bytes into complex float samples.
      *
      * @param buffer containing native byte buffer samples
-     * @return a buffer with complex float samples.  This float buffer will not be modified, therefore sub-class
-     * implementations can reuse the float buffer.
+     * @param length of bytes to read from the native buffer
+     * @param samples array to receive the converted samples, sized according to getSampleCount()
      */
-    protected abstract FloatBuffer convertSamples(ByteBuffer buffer, int length);
+    protected abstract void convertSamples(ByteBuffer buffer, int length, float[] samples);
 }
@@ -0,0 +1,194 @@
+/*
+ *
+ *  * ******************************************************************************
+ *  * Copyright (C) 2014-2020 Dennis Sheirer
+ *  *
+ *  * This program is free software: you can redistribute it and/or modify
+ *  * it under the terms of the GNU General Public License as published by
+ *  * the Free Software Foundation, either version 3 of the License, or
+ *  * (at your option) any later version.
+ *  *
+ *  * This program is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  * GNU General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU General Public License
+ *  * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *  * *****************************************************************************
+ *
+ *
+ */
+package io.github.dsheirer.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lightweight, thread-safe latency histogram with power-of-two microsecond buckets.
+ *
+ * Bucket N counts latencies in the range [2^(N-1), 2^N) microseconds, with bucket 0 holding sub-microsecond values
+ * and the final bucket holding everything beyond the largest bucket boundary.  Recording a value is a handful of
+ * atomic increments with no allocation, so instances can be updated from sample processing threads.
+ */
+public class LatencyHistogram
+{
+    private static final int BUCKET_COUNT = 32;
+
+    private String mName;
+    private AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private AtomicLong mCount = new AtomicLong();
+    private AtomicLong mTotalNanos = new AtomicLong();
+    private AtomicLong mMaxNanos = new AtomicLong();
+
+    /**
+     * Constructs an instance
+     * @param name for the histogram used in the summary output
+     */
+    public LatencyHistogram(String name)
+    {
+        mName = name;
+    }
+
+    /**
+     * Name of this histogram
+     */
+    public String getName()
+    {
+        return mName;
+    }
+
+    /**
+     * Records a latency value
+     * @param nanoseconds of latency.  Negative values are recorded as zero.
+     */
+    public void add(long nanoseconds)
+    {
+        if(nanoseconds < 0)
+        {
+            nanoseconds = 0;
+        }
+
+        long micros = nanoseconds / 1000;
+        int bucket = micros == 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+
+        if(bucket >= BUCKET_COUNT)
+        {
+            bucket = BUCKET_COUNT - 1;
+        }
+
+        mBuckets.incrementAndGet(bucket);
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanoseconds);
+
+        long max = mMaxNanos.get();
+
+        while(nanoseconds > max && !mMaxNanos.compareAndSet(max, nanoseconds))
+        {
+            max = mMaxNanos.get();
+        }
+    }
+
+    /**
+     * Records a latency value measured in milliseconds
+     */
+    public void addMilliseconds(long milliseconds)
+    {
+        add(TimeUnit.MILLISECONDS.toNanos(milliseconds));
+    }
+
+    /**
+     * Number of recorded values
+     */
+    public long getCount()
+    {
+        return mCount.get();
+    }
+
+    /**
+     * Mean latency in milliseconds
+     */
+    public double getMeanMilliseconds()
+    {
+        long count = mCount.get();
+        return count > 0 ? (double)mTotalNanos.get() / count / 1E6 : 0.0;
+    }
+
+    /**
+     * Maximum recorded latency in milliseconds
+     */
+    public double getMaxMilliseconds()
+    {
+        return mMaxNanos.get() / 1E6;
+    }
+
+    /**
+     * Approximate latency percentile in milliseconds, reported as the upper boundary of the bucket that contains the
+     * requested percentile.
+     *
+     * @param percentile in range 0.0 - 1.0
+     */
+    public double getPercentileMilliseconds(double percentile)
+    {
+        long count = mCount.get();
+
+        if(count == 0)
+        {
+            return 0.0;
+        }
+
+        long target = (long)Math.ceil(count * percentile);
+        long accumulated = 0;
+
+        for(int x = 0; x < BUCKET_COUNT; x++)
+        {
+            accumulated += mBuckets.get(x);
+
+            if(accumulated >= target)
+            {
+                return getBucketUpperBoundMilliseconds(x);
+            }
+        }
+
+        return getMaxMilliseconds();
+    }
+
+    /**
+     * Upper boundary of the bucket in milliseconds
+     */
+    private static double getBucketUpperBoundMilliseconds(int bucket)
+    {
+        return (1L << bucket) / 1E3;
+    }
+
+    /**
+     * Clears all recorded values
+     */
+    public void reset()
+    {
+        for(int x = 0; x < BUCKET_COUNT; x++)
+        {
+            mBuckets.set(x, 0);
+        }
+
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * Summary of the recorded values in milliseconds
+     */
+    public String getSummary()
+    {
+        return String.format("%s latency (ms) count:%d mean:%.3f p50<=%.3f p99<=%.3f max:%.3f", mName, getCount(),
+            getMeanMilliseconds(), getPercentileMilliseconds(0.5), getPercentileMilliseconds(0.99), getMaxMilliseconds());
+    }
+
+    @Override
+    public String toString()
+    {
+        return getSummary();
+    }
+}